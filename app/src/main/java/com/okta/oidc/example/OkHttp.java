@@ -16,8 +16,10 @@
 package com.okta.oidc.example;
 
 import android.net.Uri;
+import android.os.CancellationSignal;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 
 import com.okta.oidc.net.ConnectionParameters;
@@ -25,10 +27,14 @@ import com.okta.oidc.net.OktaHttpClient;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -41,6 +47,8 @@ import okhttp3.Response;
 
 /**
  * A OktaHttpClient implementation using OkHttpClient.
+ * Every request gets its own {@link OktaHttpClient.Exchange}, so the library can run several
+ * requests in parallel on the same client.
  */
 public class OkHttp implements OktaHttpClient {
     private static final int CONNECTION_TIMEOUT_MS = 15_000;
@@ -51,19 +59,11 @@ public class OkHttp implements OktaHttpClient {
      * The constant sOkHttpClient.
      */
     protected static OkHttpClient sOkHttpClient;
-    /**
-     * The Call.
-     */
-    protected volatile Call mCall;
-    /**
-     * The response.
-     */
-    protected Response mResponse;
-    /**
-     * The exception.
-     */
-    protected Exception mException;
 
+    private final Set<OkHttpExchange> mExchanges =
+            Collections.newSetFromMap(new ConcurrentHashMap<>());
+    // The exchange of the last connect call, read by the getters of this client.
+    private volatile OkHttpExchange mLastExchange;
 
     /**
      * Build request request.
@@ -73,11 +73,13 @@ public class OkHttp implements OktaHttpClient {
      * @return the request
      */
     protected Request buildRequest(Uri uri, ConnectionParameters param) {
-        if (sOkHttpClient == null) {
-            sOkHttpClient = new OkHttpClient.Builder()
-                    .connectTimeout(CONNECTION_TIMEOUT_MS, TimeUnit.MILLISECONDS)
-                    .readTimeout(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS)
-                    .build();
+        synchronized (OkHttp.class) {
+            if (sOkHttpClient == null) {
+                sOkHttpClient = new OkHttpClient.Builder()
+                        .connectTimeout(CONNECTION_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                        .readTimeout(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                        .build();
+            }
         }
         Request.Builder requestBuilder = new Request.Builder().url(uri.toString());
         for (Map.Entry<String, String> headerEntry : param.requestProperties().entrySet()) {
@@ -103,85 +105,224 @@ public class OkHttp implements OktaHttpClient {
         return requestBuilder.build();
     }
 
-    @Override
+    /**
+     * Runs the call and waits for its response.
+     *
+     * @param call the call
+     * @return the response
+     * @throws Exception the exception indicating failure case.
+     */
     @WorkerThread
-    public InputStream connect(@NonNull Uri uri, @NonNull ConnectionParameters param)
-            throws Exception {
-        Request request = buildRequest(uri, param);
-        mCall = sOkHttpClient.newCall(request);
+    protected Response call(Call call) throws Exception {
         final CountDownLatch latch = new CountDownLatch(1);
-        mCall.enqueue(new Callback() {
+        final AtomicReference<Response> response = new AtomicReference<>();
+        final AtomicReference<IOException> exception = new AtomicReference<>();
+        call.enqueue(new Callback() {
             @Override
             public void onFailure(Call call, IOException e) {
-                mException = e;
+                exception.set(e);
                 latch.countDown();
             }
 
             @Override
-            public void onResponse(Call call, Response response) {
-                mResponse = response;
+            public void onResponse(Call call, Response result) {
+                response.set(result);
                 latch.countDown();
             }
         });
         latch.await();
-        if (mException != null) {
-            throw mException;
+        if (exception.get() != null) {
+            throw exception.get();
         }
-        if (mResponse != null && mResponse.body() != null) {
-            return mResponse.body().byteStream();
+        return response.get();
+    }
+
+    @NonNull
+    @Override
+    @WorkerThread
+    public Exchange execute(@NonNull Uri uri, @NonNull ConnectionParameters param)
+            throws Exception {
+        return open(uri, param, null);
+    }
+
+    @NonNull
+    @Override
+    @WorkerThread
+    public Exchange execute(@NonNull Uri uri, @NonNull ConnectionParameters param,
+                            @NonNull CancellationSignal cancel) throws Exception {
+        return open(uri, param, cancel);
+    }
+
+    private OkHttpExchange open(Uri uri, ConnectionParameters param,
+                                @Nullable CancellationSignal cancel) throws Exception {
+        Request request = buildRequest(uri, param);
+        OkHttpExchange exchange = new OkHttpExchange(sOkHttpClient.newCall(request));
+        mExchanges.add(exchange);
+        try {
+            if (cancel != null) {
+                cancel.setOnCancelListener(exchange::cancel);
+            }
+            exchange.mResponse = call(exchange.mCall);
+        } catch (Exception e) {
+            exchange.cancel();
+            throw e;
+        } finally {
+            if (cancel != null) {
+                cancel.setOnCancelListener(null);
+            }
         }
-        return null;
+        return exchange;
+    }
+
+    @Override
+    @WorkerThread
+    public InputStream connect(@NonNull Uri uri, @NonNull ConnectionParameters param)
+            throws Exception {
+        OkHttpExchange exchange = open(uri, param, null);
+        mLastExchange = exchange;
+        return exchange.getContent();
     }
 
     @Override
     public void cleanUp() {
-        //NO-OP
+        OkHttpExchange exchange = mLastExchange;
+        mLastExchange = null;
+        if (exchange != null) {
+            mExchanges.remove(exchange);
+        }
     }
 
+    /**
+     * Cancels all requests of this client which are in progress.
+     */
     @Override
     public void cancel() {
-        if (mCall != null) {
-            mCall.cancel();
+        for (OkHttpExchange exchange : mExchanges) {
+            exchange.cancel();
         }
     }
 
     @Override
     public Map<String, List<String>> getHeaderFields() {
-        if (mResponse != null) {
-            return mResponse.headers().toMultimap();
+        OkHttpExchange exchange = mLastExchange;
+        if (exchange != null) {
+            return exchange.getHeaderFields();
         }
         return null;
     }
 
     @Override
     public String getHeader(String header) {
-        if (mResponse != null) {
-            return mResponse.header(header);
+        OkHttpExchange exchange = mLastExchange;
+        if (exchange != null) {
+            return exchange.getHeader(header);
         }
         return null;
     }
 
     @Override
     public int getResponseCode() throws IOException {
-        if (mResponse != null) {
-            return mResponse.code();
+        OkHttpExchange exchange = mLastExchange;
+        if (exchange != null) {
+            return exchange.getResponseCode();
         }
         return -1;
     }
 
     @Override
     public int getContentLength() {
-        if (mResponse != null && mResponse.body() != null) {
-            return (int) mResponse.body().contentLength();
+        OkHttpExchange exchange = mLastExchange;
+        if (exchange != null) {
+            return exchange.getContentLength();
         }
         return -1;
     }
 
     @Override
     public String getResponseMessage() throws IOException {
-        if (mResponse != null) {
-            return mResponse.message();
+        OkHttpExchange exchange = mLastExchange;
+        if (exchange != null) {
+            return exchange.getResponseMessage();
         }
         return null;
     }
+
+    private final class OkHttpExchange implements Exchange {
+        private final Call mCall;
+        private volatile Response mResponse;
+
+        OkHttpExchange(Call call) {
+            mCall = call;
+        }
+
+        @Nullable
+        @Override
+        public InputStream getContent() {
+            Response response = mResponse;
+            if (response != null && response.body() != null) {
+                return response.body().byteStream();
+            }
+            return null;
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaderFields() {
+            Response response = mResponse;
+            if (response != null) {
+                return response.headers().toMultimap();
+            }
+            return null;
+        }
+
+        @Override
+        public String getHeader(String header) {
+            Response response = mResponse;
+            if (response != null) {
+                return response.header(header);
+            }
+            return null;
+        }
+
+        @Override
+        public int getResponseCode() {
+            Response response = mResponse;
+            if (response != null) {
+                return response.code();
+            }
+            return -1;
+        }
+
+        @Override
+        public int getContentLength() {
+            Response response = mResponse;
+            if (response != null && response.body() != null) {
+                return (int) response.body().contentLength();
+            }
+            return -1;
+        }
+
+        @Override
+        public String getResponseMessage() {
+            Response response = mResponse;
+            if (response != null) {
+                return response.message();
+            }
+            return null;
+        }
+
+        @Override
+        public void cancel() {
+            mExchanges.remove(this);
+            mCall.cancel();
+        }
+
+        @Override
+        public void close() {
+            mExchanges.remove(this);
+            Response response = mResponse;
+            if (response != null) {
+                response.close();
+            }
+        }
+    }
 }
@@ -15,29 +15,18 @@
 
 package com.okta.oidc.example;
 
-import android.net.Uri;
+import androidx.annotation.WorkerThread;
 
-import androidx.annotation.NonNull;
-
-import com.okta.oidc.net.ConnectionParameters;
-
-import java.io.InputStream;
-
-import okhttp3.Request;
+import okhttp3.Call;
+import okhttp3.Response;
 
 /**
  * A OktaHttpClient implementation using OkHttpClient. This will use synchronous call.
  */
 public class SyncOkHttp extends OkHttp {
     @Override
-    public InputStream connect(@NonNull Uri uri, @NonNull ConnectionParameters param)
-            throws Exception {
-        Request request = buildRequest(uri, param);
-        mCall = sOkHttpClient.newCall(request);
-        mResponse = mCall.execute();
-        if (mResponse != null && mResponse.body() != null) {
-            return mResponse.body().byteStream();
-        }
-        return null;
+    @WorkerThread
+    protected Response call(Call call) throws Exception {
+        return call.execute();
     }
 }
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package androidx.browser.customtabs;
+
+/**
+ * Compile time stand-in for the class of the browser library, which is only published as an
+ * Android archive. Only holds the constants read by the library sources.
+ */
+public abstract class CustomTabsService {
+    public static final String KEY_URL = "android.support.customtabs.otherurls.URL";
+}
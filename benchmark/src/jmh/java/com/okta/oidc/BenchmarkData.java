@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc;
+
+import android.util.Base64;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Sample data of the sizes seen in production responses.
+ */
+public final class BenchmarkData {
+    public static final String ID_TOKEN = encode("{\"kid\":\"FJA0HGNtsuuda_Pl45J42kvQqcsu_0C4"
+            + "Fg7pbJLXTHY\",\"alg\":\"RS256\"}") + "."
+            + encode("{\"sub\":\"00ub41z7mgzNqryMv696\",\"name\":\"John Doe\","
+            + "\"email\":\"john.doe@example.com\",\"ver\":1,"
+            + "\"iss\":\"https://example.okta.com/oauth2/default\","
+            + "\"aud\":\"0oa8m3whgPHwHjKzb357\",\"iat\":1583361402,\"exp\":1583365002,"
+            + "\"jti\":\"ID.WB4X9KGtDh-ADTxR2ipBbBiC1eiiMhRpr6eEdhqL0LA\","
+            + "\"amr\":[\"pwd\",\"mfa\"],\"idp\":\"00o5ne4gdr1mBrvJd356\","
+            + "\"nonce\":\"hl-GA4mczUhrUgs0hXJSGA\",\"preferred_username\":\"john.doe@example.com\","
+            + "\"auth_time\":1583361399,\"at_hash\":\"6zpC8DY1tbhTCaECm4_M1w\"}") + "."
+            + encode(new String(new char[256]).replace('\0', 's'));
+
+    public static final String ACCESS_TOKEN = "eyJraWQiOiJGSkEwSEdOdHN1dWRhX1BsNDVKNDJrdlFxY3N1XzBD"
+            + "NEZnN3BiSkxYVEhZIiwiYWxnIjoiUlMyNTYifQ." + new String(new char[600]).replace('\0', 'a')
+            + "." + new String(new char[342]).replace('\0', 'b');
+
+    public static final String TOKEN_RESPONSE = "{\"token_type\":\"Bearer\",\"expires_in\":3600,"
+            + "\"access_token\":\"" + ACCESS_TOKEN + "\","
+            + "\"scope\":\"openid profile offline_access\","
+            + "\"refresh_token\":\"kcCzThKG8Ho3jiS2t1T5dRtQR5E5XoaWIGMNAhqK3Ls\","
+            + "\"id_token\":\"" + ID_TOKEN + "\"}";
+
+    public static final String PROVIDER_CONFIGURATION = "{"
+            + "\"issuer\":\"https://example.okta.com/oauth2/default\","
+            + "\"authorization_endpoint\":\"https://example.okta.com/oauth2/default/v1/authorize\","
+            + "\"token_endpoint\":\"https://example.okta.com/oauth2/default/v1/token\","
+            + "\"userinfo_endpoint\":\"https://example.okta.com/oauth2/default/v1/userinfo\","
+            + "\"registration_endpoint\":\"https://example.okta.com/oauth2/v1/clients\","
+            + "\"jwks_uri\":\"https://example.okta.com/oauth2/default/v1/keys\","
+            + "\"response_types_supported\":[\"code\",\"id_token\",\"code id_token\","
+            + "\"code token\",\"id_token token\",\"code id_token token\"],"
+            + "\"response_modes_supported\":[\"query\",\"fragment\",\"form_post\","
+            + "\"okta_post_message\"],"
+            + "\"grant_types_supported\":[\"authorization_code\",\"implicit\","
+            + "\"refresh_token\",\"password\"],"
+            + "\"subject_types_supported\":[\"public\"],"
+            + "\"id_token_signing_alg_values_supported\":[\"RS256\"],"
+            + "\"scopes_supported\":[\"openid\",\"profile\",\"email\",\"address\","
+            + "\"phone\",\"offline_access\"],"
+            + "\"token_endpoint_auth_methods_supported\":[\"client_secret_basic\","
+            + "\"client_secret_post\",\"client_secret_jwt\",\"private_key_jwt\",\"none\"],"
+            + "\"claims_supported\":[\"iss\",\"ver\",\"sub\",\"aud\",\"iat\",\"exp\","
+            + "\"jti\",\"auth_time\",\"amr\",\"idp\",\"nonce\",\"name\",\"nickname\","
+            + "\"preferred_username\",\"given_name\",\"middle_name\",\"family_name\","
+            + "\"email\",\"email_verified\",\"profile\",\"zoneinfo\",\"locale\","
+            + "\"address\",\"phone_number\",\"picture\",\"website\",\"gender\","
+            + "\"birthdate\",\"updated_at\",\"at_hash\",\"c_hash\"],"
+            + "\"code_challenge_methods_supported\":[\"S256\"],"
+            + "\"introspection_endpoint\":\"https://example.okta.com/oauth2/default/v1/introspect\","
+            + "\"introspection_endpoint_auth_methods_supported\":[\"client_secret_basic\","
+            + "\"client_secret_post\",\"client_secret_jwt\",\"private_key_jwt\",\"none\"],"
+            + "\"revocation_endpoint\":\"https://example.okta.com/oauth2/default/v1/revoke\","
+            + "\"revocation_endpoint_auth_methods_supported\":[\"client_secret_basic\","
+            + "\"client_secret_post\",\"client_secret_jwt\",\"private_key_jwt\",\"none\"],"
+            + "\"end_session_endpoint\":\"https://example.okta.com/oauth2/default/v1/logout\","
+            + "\"request_parameter_supported\":true,"
+            + "\"request_object_signing_alg_values_supported\":[\"HS256\",\"HS384\",\"HS512\","
+            + "\"RS256\",\"RS384\",\"RS512\",\"ES256\",\"ES384\",\"ES512\"]}";
+
+    private BenchmarkData() {
+    }
+
+    private static String encode(String value) {
+        return Base64.encodeToString(value.getBytes(UTF_8),
+                Base64.URL_SAFE | Base64.NO_WRAP | Base64.NO_PADDING);
+    }
+}
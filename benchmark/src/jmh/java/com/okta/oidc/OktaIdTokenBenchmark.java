@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of an ID token, which happens on every call that reads the tokens. The claims are
+ * read when the token is validated after every token response.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OktaIdTokenBenchmark {
+    @Benchmark
+    public OktaIdToken parseIdToken() {
+        return OktaIdToken.parseIdToken(BenchmarkData.ID_TOKEN);
+    }
+
+    @Benchmark
+    public OktaIdToken.Claims parseClaims() {
+        return OktaIdToken.parseIdToken(BenchmarkData.ID_TOKEN).getClaims();
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.net;
+
+import com.google.gson.Gson;
+import com.okta.oidc.BenchmarkData;
+import com.okta.oidc.net.response.TokenResponse;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reading of a token response body into JSON and into a {@link TokenResponse}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HttpResponseBenchmark {
+    private byte[] mBody;
+
+    @Setup
+    public void setUp() {
+        mBody = BenchmarkData.TOKEN_RESPONSE.getBytes(UTF_8);
+    }
+
+    @Benchmark
+    public JSONObject asJson() throws IOException, JSONException {
+        HttpResponse response = new HttpResponse(HttpURLConnection.HTTP_OK,
+                Collections.emptyMap(), mBody.length, new ByteArrayInputStream(mBody), null);
+        return response.asJson();
+    }
+
+    @Benchmark
+    public TokenResponse asJsonToTokenResponse() throws IOException, JSONException {
+        return new Gson().fromJson(asJson().toString(), TokenResponse.class);
+    }
+
+    @Benchmark
+    public TokenResponse asType() throws IOException {
+        HttpResponse response = new HttpResponse(HttpURLConnection.HTTP_OK,
+                Collections.emptyMap(), mBody.length, new ByteArrayInputStream(mBody), null);
+        return response.asType(TokenResponse.class);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.net.request;
+
+import com.okta.oidc.BenchmarkData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gson serialization of the discovery document, done on every fetch and restore of it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProviderConfigurationBenchmark {
+    private ProviderConfiguration mConfiguration;
+
+    @Setup
+    public void setUp() {
+        mConfiguration = ProviderConfiguration.RESTORE
+                .restore(BenchmarkData.PROVIDER_CONFIGURATION);
+    }
+
+    @Benchmark
+    public ProviderConfiguration restore() {
+        return ProviderConfiguration.RESTORE.restore(BenchmarkData.PROVIDER_CONFIGURATION);
+    }
+
+    @Benchmark
+    public String persist() {
+        return mConfiguration.persist();
+    }
+}
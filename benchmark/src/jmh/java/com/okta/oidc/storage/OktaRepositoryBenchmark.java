@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.storage;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.okta.oidc.BenchmarkData;
+import com.okta.oidc.net.response.TokenResponse;
+import com.okta.oidc.storage.security.SoftwareEncryptionManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving and restoring the tokens through the repository, with the storage kept in memory so
+ * only the serialization, hashing and encryption are measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OktaRepositoryBenchmark {
+    @Param({"false", "true"})
+    public boolean mCacheMode;
+
+    private OktaRepository mRepository;
+    private TokenResponse mTokenResponse;
+
+    @Setup
+    public void setUp() throws OktaRepository.EncryptionException {
+        mRepository = new OktaRepository(new MemoryStorage(), null,
+                new SoftwareEncryptionManager(), false, mCacheMode);
+        mTokenResponse = TokenResponse.RESTORE.restore(BenchmarkData.TOKEN_RESPONSE);
+        mRepository.save(mTokenResponse);
+    }
+
+    @Benchmark
+    public void save() throws OktaRepository.EncryptionException {
+        mRepository.save(mTokenResponse);
+    }
+
+    @Benchmark
+    public TokenResponse get() throws OktaRepository.EncryptionException {
+        return mRepository.get(TokenResponse.RESTORE);
+    }
+
+    private static final class MemoryStorage implements OktaStorage {
+        private final Map<String, String> mValues = new ConcurrentHashMap<>();
+
+        @Override
+        public void save(@NonNull String key, @NonNull String value) {
+            mValues.put(key, value);
+        }
+
+        @Nullable
+        @Override
+        public String get(@NonNull String key) {
+            return mValues.get(key);
+        }
+
+        @Override
+        public void delete(@NonNull String key) {
+            mValues.remove(key);
+        }
+    }
+}
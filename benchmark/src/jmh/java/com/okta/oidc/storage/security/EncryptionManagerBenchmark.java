@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.storage.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encryption of stored values, including the chunked format of earlier library versions. The
+ * benchmarks without cipher reuse recreate the cipher before every operation, which is the
+ * per-operation cost of encryption before initialized ciphers were kept.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EncryptionManagerBenchmark {
+    private static final String ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_.";
+
+    @Param({"256", "4096"})
+    public int mLength;
+
+    private SoftwareEncryptionManager mEncryptionManager;
+    private String mValue;
+    private String mEncrypted;
+    private String mLegacyEncrypted;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        mEncryptionManager = new SoftwareEncryptionManager();
+        Random random = new Random(mLength);
+        StringBuilder builder = new StringBuilder(mLength);
+        for (int i = 0; i < mLength; i++) {
+            builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        mValue = builder.toString();
+        mEncrypted = mEncryptionManager.encrypt(mValue);
+        mLegacyEncrypted = mEncryptionManager.encryptLegacy(mValue);
+        if (!mValue.equals(mEncryptionManager.decrypt(mLegacyEncrypted))) {
+            throw new IllegalStateException("Legacy format mismatch");
+        }
+    }
+
+    @Benchmark
+    public String encrypt() throws GeneralSecurityException {
+        return mEncryptionManager.encrypt(mValue);
+    }
+
+    @Benchmark
+    public String decrypt() throws GeneralSecurityException {
+        return mEncryptionManager.decrypt(mEncrypted);
+    }
+
+    @Benchmark
+    public String encryptWithoutCipherReuse() throws GeneralSecurityException {
+        mEncryptionManager.recreateCipher();
+        return mEncryptionManager.encrypt(mValue);
+    }
+
+    @Benchmark
+    public String decryptWithoutCipherReuse() throws GeneralSecurityException {
+        mEncryptionManager.recreateCipher();
+        return mEncryptionManager.decrypt(mEncrypted);
+    }
+
+    @Benchmark
+    public String decryptLegacy() throws GeneralSecurityException {
+        return mEncryptionManager.decrypt(mLegacyEncrypted);
+    }
+
+    @Benchmark
+    public String getHashed() throws NoSuchAlgorithmException, UnsupportedEncodingException {
+        return mEncryptionManager.getHashed(mValue);
+    }
+}
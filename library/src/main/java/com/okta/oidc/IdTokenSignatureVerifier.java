@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.okta.oidc.net.OktaHttpClient;
+import com.okta.oidc.net.request.HttpRequestBuilder;
+import com.okta.oidc.net.request.ProviderConfiguration;
+import com.okta.oidc.util.AuthorizationException;
+
+import java.security.GeneralSecurityException;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import static com.okta.oidc.util.AuthorizationException.GeneralErrors.ID_TOKEN_VALIDATION_ERROR;
+import static com.okta.oidc.util.AuthorizationException.GeneralErrors.INVALID_DISCOVERY_DOCUMENT;
+import static com.okta.oidc.util.AuthorizationException.TokenValidationError.INVALID_SIGNATURE;
+import static com.okta.oidc.util.AuthorizationException.TokenValidationError.createSigningKeyNotFound;
+
+/**
+ * Verifies the signature of ID tokens with the keys published at the jwks_uri of the
+ * authorization server. The key set is fetched once and kept in memory for the configured time
+ * to live, so verifying a token does not need a network request. A token signed with an unknown
+ * key id causes one refetch, which handles key rotation, unless the key set was fetched less than
+ * a minute ago. Concurrent fetches are merged into a single request.
+ *
+ * @hide
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public final class IdTokenSignatureVerifier {
+    // Tokens with unknown key ids don't refetch a key set younger than this, so they can't
+    // cause a request per token.
+    @VisibleForTesting
+    static final long MIN_REFETCH_INTERVAL_MS = 60_000;
+
+    private final long mTtl;
+    private volatile KeySet mKeySet;
+    private FutureTask<KeySet> mFetch;
+
+    /**
+     * Instantiates a new verifier.
+     *
+     * @param ttl time in milliseconds a fetched key set is used before it is fetched again
+     */
+    public IdTokenSignatureVerifier(long ttl) {
+        mTtl = ttl;
+    }
+
+    /**
+     * Verifies the signature of the token.
+     *
+     * @param idToken       the parsed token
+     * @param config        the config of the client
+     * @param configuration the provider configuration with the jwks_uri
+     * @param client        the http client used if the key set has to be fetched
+     * @throws AuthorizationException if the signature is invalid, the signing key is not in
+     *                                the key set or the key set can't be fetched
+     */
+    @WorkerThread
+    public void verify(@NonNull OktaIdToken idToken, @NonNull OIDCConfig config,
+                       @NonNull ProviderConfiguration configuration,
+                       @NonNull OktaHttpClient client) throws AuthorizationException {
+        if (configuration.jwks_uri == null) {
+            throw AuthorizationException.fromTemplate(INVALID_DISCOVERY_DOCUMENT,
+                    new IllegalStateException("jwks_uri is missing"));
+        }
+        String kid = idToken.getHeader().kid;
+        KeySet keySet = mKeySet;
+        boolean fetched = false;
+        if (keySet == null || !keySet.isValid(configuration.jwks_uri, mTtl)) {
+            keySet = fetch(keySet, config, configuration, client);
+            fetched = true;
+        }
+        RSAPublicKey key = keySet.mKeys.get(kid);
+        if (key == null && !fetched && keySet.isOlderThan(MIN_REFETCH_INTERVAL_MS)) {
+            keySet = fetch(keySet, config, configuration, client);
+            key = keySet.mKeys.get(kid);
+        }
+        if (key == null) {
+            throw AuthorizationException.fromTemplate(ID_TOKEN_VALIDATION_ERROR,
+                    createSigningKeyNotFound(kid));
+        }
+        boolean valid;
+        try {
+            valid = idToken.verifySignature(key);
+        } catch (GeneralSecurityException e) {
+            throw AuthorizationException.fromTemplate(ID_TOKEN_VALIDATION_ERROR,
+                    AuthorizationException.fromTemplate(INVALID_SIGNATURE, e));
+        }
+        if (!valid) {
+            throw AuthorizationException.fromTemplate(ID_TOKEN_VALIDATION_ERROR,
+                    INVALID_SIGNATURE);
+        }
+    }
+
+    /**
+     * Drops the cached key set.
+     */
+    public void clear() {
+        mKeySet = null;
+    }
+
+    // Returns a key set fetched after the given one, either by this call or one that was
+    // already running on another thread. Only the fetch itself stores the key set, so a late
+    // waiter can't replace a newer one.
+    private KeySet fetch(KeySet stale, OIDCConfig config, ProviderConfiguration configuration,
+                         OktaHttpClient client) throws AuthorizationException {
+        FutureTask<KeySet> fetch;
+        boolean owner = false;
+        synchronized (this) {
+            if (mKeySet != stale && mKeySet != null
+                    && configuration.jwks_uri.equals(mKeySet.mUri)) {
+                return mKeySet;
+            }
+            if (mFetch == null) {
+                mFetch = new FutureTask<>(() -> {
+                    Map<String, RSAPublicKey> keys = HttpRequestBuilder.newJwksRequest()
+                            .config(config)
+                            .providerConfiguration(configuration)
+                            .createRequest()
+                            .executeRequest(client);
+                    KeySet keySet = new KeySet(keys, configuration.jwks_uri);
+                    mKeySet = keySet;
+                    return keySet;
+                });
+                owner = true;
+            }
+            fetch = mFetch;
+        }
+        if (owner) {
+            fetch.run();
+        }
+        try {
+            return fetch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthorizationException(e.getMessage(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AuthorizationException) {
+                throw (AuthorizationException) cause;
+            }
+            throw AuthorizationException.fromTemplate(AuthorizationException
+                    .GeneralErrors.NETWORK_ERROR, cause);
+        } finally {
+            if (owner) {
+                synchronized (this) {
+                    mFetch = null;
+                }
+            }
+        }
+    }
+
+    private static final class KeySet {
+        private final Map<String, RSAPublicKey> mKeys;
+        private final String mUri;
+        private final long mFetchedAt;
+
+        KeySet(Map<String, RSAPublicKey> keys, String uri) {
+            mKeys = keys;
+            mUri = uri;
+            mFetchedAt = SystemClock.elapsedRealtime();
+        }
+
+        boolean isValid(String uri, long ttl) {
+            return mUri.equals(uri) && !isOlderThan(ttl);
+        }
+
+        boolean isOlderThan(long age) {
+            return SystemClock.elapsedRealtime() - mFetchedAt >= age;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RawRes;
+import androidx.annotation.RestrictTo;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
@@ -31,6 +32,7 @@ import com.okta.oidc.clients.AuthClient;
 import com.okta.oidc.clients.SyncAuthClient;
 import com.okta.oidc.clients.sessions.SessionClient;
 import com.okta.oidc.clients.sessions.SyncSessionClient;
+import com.okta.oidc.util.GsonUtil;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -42,6 +44,7 @@ import java.io.InputStreamReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
 
 import static com.okta.oidc.net.request.ProviderConfiguration.OAUTH2_CONFIGURATION_RESOURCE;
 import static com.okta.oidc.net.request.ProviderConfiguration.OPENID_CONFIGURATION_RESOURCE;
@@ -72,6 +75,8 @@ public class OIDCConfig {
     private AccountInfo mAccount;
     private boolean mIsOAuth2Configuration;
     private CustomConfiguration mCustomConfiguration;
+    private long mDiscoveryCacheTtl;
+    private IdTokenSignatureVerifier mIdTokenSignatureVerifier;
     private final OktaIdToken.Validator idTokenValidator;
 
     private OIDCConfig(AccountInfo account, OktaIdToken.Validator idTokenValidator) {
@@ -171,6 +176,27 @@ public class OIDCConfig {
         return idTokenValidator;
     }
 
+    /**
+     * Returns how long a fetched discovery document is used before it is revalidated.
+     *
+     * @return the time to live in milliseconds
+     */
+    public long getDiscoveryCacheTtl() {
+        return mDiscoveryCacheTtl;
+    }
+
+    /**
+     * Returns the verifier of ID token signatures, or null if signatures are not verified.
+     *
+     * @return the ID token signature verifier
+     * @hide
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    @Nullable
+    public IdTokenSignatureVerifier getIdTokenSignatureVerifier() {
+        return mIdTokenSignatureVerifier;
+    }
+
     private static class AccountInfo {
         @SerializedName("client_id")
         String mClientId;
@@ -220,6 +246,9 @@ public class OIDCConfig {
         private CustomConfiguration mCustomConfiguration;
         private OktaIdToken.Validator mIdTokenValidator =
                 new OktaIdToken.DefaultValidator(System::currentTimeMillis);
+        private long mDiscoveryCacheTtl = TimeUnit.DAYS.toMillis(1);
+        private boolean mVerifyIdTokenSignature;
+        private long mKeySetCacheTtl = TimeUnit.DAYS.toMillis(1);
 
         /**
          * Instantiates a new Builder.
@@ -237,6 +266,10 @@ public class OIDCConfig {
             mAccountInfo.validate(mCustomConfiguration != null);
             OIDCConfig config = new OIDCConfig(mAccountInfo, mIdTokenValidator);
             config.mCustomConfiguration = mCustomConfiguration;
+            config.mDiscoveryCacheTtl = mDiscoveryCacheTtl;
+            if (mVerifyIdTokenSignature) {
+                config.mIdTokenSignatureVerifier = new IdTokenSignatureVerifier(mKeySetCacheTtl);
+            }
             return config;
         }
 
@@ -327,6 +360,49 @@ public class OIDCConfig {
             return this;
         }
 
+        /**
+         * Optional time to live of the discovery document, one day by default. The stored
+         * document is used without a network request until it is older than this or the
+         * max-age sent by the server. After that it is still used, but revalidated in the
+         * background with a conditional request, so endpoint changes are picked up without
+         * blocking sign in.
+         *
+         * @param ttl  the time to live
+         * @param unit the unit of the time to live
+         * @return current builder
+         */
+        public Builder discoveryCacheTtl(long ttl, @NonNull TimeUnit unit) {
+            mDiscoveryCacheTtl = unit.toMillis(ttl);
+            return this;
+        }
+
+        /**
+         * Optional verification of the RS256 signature of ID tokens, disabled by default. When
+         * enabled, the signing keys are fetched from the jwks_uri of the discovery document and
+         * kept in memory, and a token is rejected if its signature doesn't match the key with
+         * the key id in its header. A token with an unknown key id refetches the key set once.
+         *
+         * @param verify true to verify signatures
+         * @return current builder
+         */
+        public Builder verifyIdTokenSignature(boolean verify) {
+            mVerifyIdTokenSignature = verify;
+            return this;
+        }
+
+        /**
+         * Optional time to live of the key set used to verify ID token signatures, one day by
+         * default. Only used if {@link #verifyIdTokenSignature(boolean)} is enabled.
+         *
+         * @param ttl  the time to live
+         * @param unit the unit of the time to live
+         * @return current builder
+         */
+        public Builder keySetCacheTtl(long ttl, @NonNull TimeUnit unit) {
+            mKeySetCacheTtl = unit.toMillis(ttl);
+            return this;
+        }
+
         /**
          * Sets the resource id of the configuration file in JSON format.
          *
@@ -355,7 +431,7 @@ public class OIDCConfig {
 
         private void readConfiguration(@NonNull final JSONObject jsonObject)
                 throws JsonSyntaxException {
-            Gson gson = new Gson();
+            Gson gson = GsonUtil.gson();
             mAccountInfo = gson.fromJson(jsonObject.toString(), AccountInfo.class);
         }
     }
@@ -20,17 +20,22 @@ import android.os.Build;
 
 import androidx.annotation.AnimRes;
 import androidx.annotation.ColorInt;
+import androidx.annotation.NonNull;
 
 import com.okta.oidc.clients.AuthClient;
 import com.okta.oidc.clients.AuthClientFactoryImpl;
 import com.okta.oidc.clients.SyncAuthClient;
 import com.okta.oidc.clients.SyncAuthClientFactory;
+import com.okta.oidc.clients.sessions.SessionClient;
+import com.okta.oidc.clients.sessions.SessionClientFactoryImpl;
 import com.okta.oidc.clients.web.SyncWebAuthClient;
 import com.okta.oidc.clients.web.SyncWebAuthClientFactory;
 import com.okta.oidc.clients.web.WebAuthClient;
 import com.okta.oidc.clients.web.WebAuthClientFactory;
+import com.okta.oidc.net.OktaHttpClient;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A collection of builders for creating different type of authentication clients.
@@ -44,6 +49,8 @@ public class Okta {
      */
     public static class WebAuthBuilder extends OktaBuilder<WebAuthClient, WebAuthBuilder> {
         private Executor mCallbackExecutor;
+        private int mRequestConcurrency = SessionClientFactoryImpl.DEFAULT_CONCURRENCY;
+        private long mRefreshMargin;
         private CustomTabOptions customTabOptions = new CustomTabOptions();
         private String[] mSupportedBrowsers;
 
@@ -59,6 +66,42 @@ public class Okta {
             return this;
         }
 
+        /**
+         * Sets how many session requests, like {@link SessionClient#getUserProfile} or
+         * {@link SessionClient#authorizedRequest}, run in parallel. Requests that change the
+         * tokens, like {@link SessionClient#refreshToken}, always run alone and in the order
+         * they were made. Three by default, one with an {@link OktaHttpClient} that doesn't
+         * override {@link OktaHttpClient#execute}.
+         *
+         * @param concurrency the number of requests run in parallel, at least one
+         * @return current builder
+         */
+        public WebAuthBuilder withRequestConcurrency(int concurrency) {
+            if (concurrency < 1) {
+                throw new IllegalArgumentException("Concurrency must be at least 1");
+            }
+            mRequestConcurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * Refreshes the access token in the background a margin before it expires, so
+         * requests rarely wait for a refresh. Refreshes are only scheduled while the app is in
+         * the foreground. A failed refresh is retried with an exponential backoff. Disabled by
+         * default.
+         *
+         * @param margin how long before the access token expires it is refreshed
+         * @param unit   the unit of the margin
+         * @return current builder
+         */
+        public WebAuthBuilder withProactiveRefresh(long margin, @NonNull TimeUnit unit) {
+            if (margin <= 0) {
+                throw new IllegalArgumentException("Margin must be positive");
+            }
+            mRefreshMargin = unit.toMillis(margin);
+            return this;
+        }
+
         /**
          * Sets the color for custom tab.
          *
@@ -136,6 +179,7 @@ public class Okta {
         @Override
         public WebAuthClient create() {
             super.withAuthenticationClientFactory(new WebAuthClientFactory(mCallbackExecutor,
+                    mRequestConcurrency, getRequestExecutors(mRequestConcurrency), mRefreshMargin,
                     customTabOptions, mSupportedBrowsers));
             return createAuthClient();
         }
@@ -228,7 +272,8 @@ public class Okta {
         @Override
         public SyncWebAuthClient create() {
             super.withAuthenticationClientFactory(
-                    new SyncWebAuthClientFactory(customTabOptions, mSupportedBrowsers));
+                    new SyncWebAuthClientFactory(getRequestExecutors(), customTabOptions,
+                            mSupportedBrowsers));
             return createAuthClient();
         }
     }
@@ -238,6 +283,8 @@ public class Okta {
      */
     public static class AuthBuilder extends OktaBuilder<AuthClient, AuthBuilder> {
         private Executor mCallbackExecutor;
+        private int mRequestConcurrency = SessionClientFactoryImpl.DEFAULT_CONCURRENCY;
+        private long mRefreshMargin;
 
         /**
          * Sets a executor for use for callbacks. Default behaviour will execute
@@ -251,6 +298,42 @@ public class Okta {
             return toThis();
         }
 
+        /**
+         * Sets how many session requests, like {@link SessionClient#getUserProfile} or
+         * {@link SessionClient#authorizedRequest}, run in parallel. Requests that change the
+         * tokens, like {@link SessionClient#refreshToken}, always run alone and in the order
+         * they were made. Three by default, one with an {@link OktaHttpClient} that doesn't
+         * override {@link OktaHttpClient#execute}.
+         *
+         * @param concurrency the number of requests run in parallel, at least one
+         * @return current builder
+         */
+        public AuthBuilder withRequestConcurrency(int concurrency) {
+            if (concurrency < 1) {
+                throw new IllegalArgumentException("Concurrency must be at least 1");
+            }
+            mRequestConcurrency = concurrency;
+            return toThis();
+        }
+
+        /**
+         * Refreshes the access token in the background a margin before it expires, so
+         * requests rarely wait for a refresh. Refreshes are only scheduled while the app is in
+         * the foreground. A failed refresh is retried with an exponential backoff. Disabled by
+         * default.
+         *
+         * @param margin how long before the access token expires it is refreshed
+         * @param unit   the unit of the margin
+         * @return current builder
+         */
+        public AuthBuilder withProactiveRefresh(long margin, @NonNull TimeUnit unit) {
+            if (margin <= 0) {
+                throw new IllegalArgumentException("Margin must be positive");
+            }
+            mRefreshMargin = unit.toMillis(margin);
+            return toThis();
+        }
+
         @Override
         protected AuthBuilder toThis() {
             return this;
@@ -264,7 +347,8 @@ public class Okta {
         @Override
         public AuthClient create() {
             super.withAuthenticationClientFactory(
-                    new AuthClientFactoryImpl(this.mCallbackExecutor));
+                    new AuthClientFactoryImpl(this.mCallbackExecutor, mRequestConcurrency,
+                            getRequestExecutors(mRequestConcurrency), mRefreshMargin));
             return createAuthClient();
         }
     }
@@ -286,7 +370,8 @@ public class Okta {
          */
         @Override
         public SyncAuthClient create() {
-            super.withAuthenticationClientFactory(new SyncAuthClientFactory());
+            super.withAuthenticationClientFactory(
+                    new SyncAuthClientFactory(getRequestExecutors()));
             return createAuthClient();
         }
     }
@@ -18,14 +18,20 @@ package com.okta.oidc;
 import android.content.Context;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
 
 import com.okta.oidc.clients.ClientFactory;
 import com.okta.oidc.net.HttpClientImpl;
 import com.okta.oidc.net.OktaHttpClient;
+import com.okta.oidc.net.response.TokenResponse;
+import com.okta.oidc.storage.LogFileStorage;
 import com.okta.oidc.storage.OktaStorage;
 import com.okta.oidc.storage.SharedPreferenceStorage;
 import com.okta.oidc.storage.security.DefaultEncryptionManager;
 import com.okta.oidc.storage.security.EncryptionManager;
+import com.okta.oidc.storage.security.PrewarmEncryptionManager;
+
+import java.util.concurrent.Executor;
 
 /**
  * The base type Okta builder.
@@ -35,6 +41,10 @@ import com.okta.oidc.storage.security.EncryptionManager;
  */
 
 public abstract class OktaBuilder<A, T extends OktaBuilder<A, T>> {
+    private static final String CLIENT_POOL_NAME = "OktaClient";
+    // Threads of the client pool for the background work other than session requests.
+    private static final int CLIENT_THREADS = 3;
+
     /**
      * The connection factory.
      */
@@ -71,6 +81,26 @@ public abstract class OktaBuilder<A, T extends OktaBuilder<A, T>> {
      */
     private boolean mCacheMode = true;
 
+    /**
+     * Write Behind Mode.
+     */
+    private boolean mWriteBehind = false;
+
+    /**
+     * Prewarm Mode.
+     */
+    private boolean mPrewarm = false;
+
+    /**
+     * Prefetch Mode.
+     */
+    private boolean mPrefetch = false;
+    private Executor mNetworkExecutor;
+    private Executor mWorkerExecutor;
+    private Integer mThreadPriority;
+    // The executors of the client being created, with the pool of the client if it has one.
+    private RequestExecutors mClientExecutors;
+
     /**
      * Used to prevent lint issues.
      *
@@ -121,7 +151,9 @@ public abstract class OktaBuilder<A, T extends OktaBuilder<A, T>> {
 
     /**
      * Set a storage implementation for the client to use. You can define your own storage
-     * or use the default implementation {@link SharedPreferenceStorage}
+     * or use the default implementation {@link SharedPreferenceStorage}. {@link LogFileStorage}
+     * keeps the data in an append only log file, which makes writes cheaper than rewriting
+     * the whole preferences file.
      *
      * @param storage the storage implementation
      * @return current builder
@@ -176,6 +208,135 @@ public abstract class OktaBuilder<A, T extends OktaBuilder<A, T>> {
         return toThis();
     }
 
+    /**
+     * Sets if saved values are encrypted and persisted in the background. A saved value is
+     * visible to the client right away, while encryption and the storage write run on a
+     * dedicated thread. Several saves of the same value before it is written result in a single
+     * write of the latest one. Call {@code flush()} on the session client to wait until all
+     * values are persisted, for example before the process may be killed.
+     *
+     * @param writeBehind true to persist saved values in the background.
+     * @return current builder
+     */
+    public T setWriteBehindMode(boolean writeBehind) {
+        mWriteBehind = writeBehind;
+        return toThis();
+    }
+
+    /**
+     * Sets if the encryption manager is created and warmed up on a background thread. With
+     * prewarm mode the client is returned without waiting for the keystore to load, keys to
+     * be generated or the stored tokens to be decrypted once. The first call that needs the
+     * encryption manager waits until the warm up is done.
+     *
+     * @param prewarm true to warm up the encryption manager in the background.
+     * @return current builder
+     */
+    public T setPrewarmMode(boolean prewarm) {
+        mPrewarm = prewarm;
+        return toThis();
+    }
+
+    /**
+     * Sets if the discovery document is fetched in the background once the client is created.
+     * The first sign in then finds the configuration stored and a connection to the
+     * authorization server already open, instead of waiting for DNS, TLS and the discovery
+     * request before the browser opens. Has no effect without a discovery uri.
+     *
+     * @param prefetch true to fetch the configuration in the background.
+     * @return current builder
+     */
+    public T setPrefetchMode(boolean prefetch) {
+        mPrefetch = prefetch;
+        return toThis();
+    }
+
+    /**
+     * Sets the executor that runs the network requests of asynchronous clients, like sign in,
+     * refreshing tokens or authorized requests, and the background requests of all clients,
+     * like prefetching the configuration or revoking tokens in parallel. By default each
+     * client creates its own pool, whose threads stop when idle. The concurrency limit of the
+     * session client still applies.
+     *
+     * @param executor the executor used for network requests
+     * @return current builder
+     */
+    public T withNetworkExecutor(Executor executor) {
+        mNetworkExecutor = executor;
+        return toThis();
+    }
+
+    /**
+     * Sets the executor that runs the other background tasks of the clients, like canceling
+     * requests, write behind or warming up the encryption manager. By default each client
+     * creates its own pool, whose threads stop when idle.
+     *
+     * @param executor the executor used for other background tasks
+     * @return current builder
+     */
+    public T withWorkerExecutor(Executor executor) {
+        mWorkerExecutor = executor;
+        return toThis();
+    }
+
+    /**
+     * Sets one executor for the network requests and other background tasks of the clients,
+     * so the clients share the threads of the app instead of creating their own.
+     *
+     * @param executor the executor used for all background work
+     * @return current builder
+     */
+    public T withExecutor(Executor executor) {
+        mNetworkExecutor = executor;
+        mWorkerExecutor = executor;
+        return toThis();
+    }
+
+    /**
+     * Sets the thread priority background tasks of the clients run with, one of the
+     * {@link android.os.Process} THREAD_PRIORITY constants. By default the threads created by
+     * the clients run with background priority and threads of executors provided by the app
+     * keep their priority. If set, the priority is also applied to threads of the provided
+     * executors while a task runs, and restored afterwards.
+     *
+     * @param priority the Linux thread priority
+     * @return current builder
+     */
+    public T withThreadPriority(int priority) {
+        mThreadPriority = priority;
+        return toThis();
+    }
+
+    /**
+     * Returns the executors of the client being created: the executors set on the builder,
+     * and one pool owned by the client for the work they don't cover.
+     *
+     * @return the executors for the client
+     * @hide
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    protected RequestExecutors getRequestExecutors() {
+        return getRequestExecutors(0);
+    }
+
+    /**
+     * Returns the executors of the client being created, with room in the pool of the client
+     * for the given number of concurrent session requests.
+     *
+     * @param requestConcurrency the concurrency of the session client
+     * @return the executors for the client
+     * @hide
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    protected RequestExecutors getRequestExecutors(int requestConcurrency) {
+        if (mClientExecutors == null) {
+            mClientExecutors = new RequestExecutors(mNetworkExecutor, mWorkerExecutor,
+                    mThreadPriority).withClientPool(CLIENT_POOL_NAME,
+                    CLIENT_THREADS + requestConcurrency);
+        }
+        return mClientExecutors;
+    }
+
     /**
      * Create auth client.
      *
@@ -186,16 +347,28 @@ public abstract class OktaBuilder<A, T extends OktaBuilder<A, T>> {
         if (mClient == null) {
             mClient = new HttpClientImpl();
         }
+        if (mStorage == null) {
+            mStorage = new SharedPreferenceStorage(mContext);
+        }
         // By default we enable encryption for all our clients. To change this behaviour, create
         // your own Builder.
-        if (mEncryptionManager == null) {
+        if (mPrewarm) {
+            final Context context = mContext;
+            final EncryptionManager encryptionManager = mEncryptionManager;
+            mEncryptionManager = new PrewarmEncryptionManager(() -> encryptionManager != null ?
+                    encryptionManager : new DefaultEncryptionManager(context), mStorage,
+                    TokenResponse.RESTORE.getKey(), getRequestExecutors());
+        } else if (mEncryptionManager == null) {
             mEncryptionManager = new DefaultEncryptionManager(mContext);
         }
-        if (mStorage == null) {
-            mStorage = new SharedPreferenceStorage(mContext);
+        try {
+            return this.mClientFactory.createClient(mOidcConfig,
+                    mContext, mStorage, mEncryptionManager,
+                    mClient, mRequireHardwareBackedKeyStore, mCacheMode, mWriteBehind,
+                    mPrefetch);
+        } finally {
+            //the next client gets its own pool.
+            mClientExecutors = null;
         }
-        return this.mClientFactory.createClient(mOidcConfig,
-                mContext, mStorage, mEncryptionManager,
-                mClient, mRequireHardwareBackedKeyStore, mCacheMode);
     }
 }
@@ -23,25 +23,26 @@ import androidx.annotation.NonNull;
 import androidx.annotation.RestrictTo;
 import androidx.annotation.VisibleForTesting;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 import com.google.gson.TypeAdapter;
-import com.google.gson.TypeAdapterFactory;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 import com.okta.oidc.net.params.GrantTypes;
 import com.okta.oidc.net.request.ProviderConfiguration;
 import com.okta.oidc.net.request.TokenRequest;
 import com.okta.oidc.util.AuthorizationException;
+import com.okta.oidc.util.GsonUtil;
 
 import java.io.IOException;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
-import java.util.Collections;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
 import java.util.List;
 
-import static com.google.gson.stream.JsonToken.BEGIN_ARRAY;
+import static com.okta.oidc.util.AuthorizationException.GeneralErrors.ID_TOKEN_PARSING_ERROR;
 import static com.okta.oidc.util.AuthorizationException.GeneralErrors.ID_TOKEN_VALIDATION_ERROR;
 
 /**
@@ -54,7 +55,8 @@ import static com.okta.oidc.util.AuthorizationException.GeneralErrors.ID_TOKEN_V
  */
 @SuppressWarnings("unused")
 public class OktaIdToken {
-    private static final int NUMBER_OF_SECTIONS = 3;
+    private static final char SECTION_SEPARATOR = '.';
+    private static final String SIGNATURE_ALGORITHM = "SHA256withRSA";
 
     /**
      * The interface Clock.
@@ -90,17 +92,24 @@ public class OktaIdToken {
     Header mHeader;
 
     /**
-     * The claims section of a idToken.
+     * The claims section of a idToken, decoded on first use.
      * {@link Claims}
      */
     @VisibleForTesting
-    Claims mClaims;
+    volatile Claims mClaims;
 
     /**
      * The signature of a idToken.
      */
     @VisibleForTesting
-    String mSignature;
+    byte[] mSignature;
+
+    /**
+     * The ASCII bytes of the encoded idToken and the bounds of the claims section in it.
+     */
+    private final byte[] mEncoded;
+    private final int mClaimsStart;
+    private final int mClaimsEnd;
 
     private static final Long MILLIS_PER_SECOND = 1000L;
     private static final int SECONDS_IN_ONE_MINUTE = 60;
@@ -109,6 +118,7 @@ public class OktaIdToken {
     /**
      * The address in the claims section.
      */
+    @JsonAdapter(Address.Adapter.class)
     public static class Address {
         /**
          * The Street address.
@@ -130,6 +140,57 @@ public class OktaIdToken {
          * The Country.
          */
         public String country;
+
+        static final class Adapter extends TypeAdapter<Address> {
+            @Override
+            public void write(JsonWriter writer, Address value) throws IOException {
+                if (value == null) {
+                    writer.nullValue();
+                    return;
+                }
+                writer.beginObject();
+                writer.name("street_address").value(value.street_address);
+                writer.name("locality").value(value.locality);
+                writer.name("region").value(value.region);
+                writer.name("postal_code").value(value.postal_code);
+                writer.name("country").value(value.country);
+                writer.endObject();
+            }
+
+            @Override
+            public Address read(JsonReader reader) throws IOException {
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    return null;
+                }
+                Address value = new Address();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "street_address":
+                            value.street_address = GsonUtil.readString(reader);
+                            break;
+                        case "locality":
+                            value.locality = GsonUtil.readString(reader);
+                            break;
+                        case "region":
+                            value.region = GsonUtil.readString(reader);
+                            break;
+                        case "postal_code":
+                            value.postal_code = GsonUtil.readString(reader);
+                            break;
+                        case "country":
+                            value.country = GsonUtil.readString(reader);
+                            break;
+                        default:
+                            reader.skipValue();
+                            break;
+                    }
+                }
+                reader.endObject();
+                return value;
+            }
+        }
     }
 
     /**
@@ -137,6 +198,7 @@ public class OktaIdToken {
      *
      * @see "ID Token Header <https://developer.okta.com/docs/api/resources/oidc/#id-token-header>"
      */
+    @JsonAdapter(Header.Adapter.class)
     public static class Header {
         /**
          * The Alg.
@@ -146,6 +208,45 @@ public class OktaIdToken {
          * The Kid.
          */
         public String kid;
+
+        static final class Adapter extends TypeAdapter<Header> {
+            @Override
+            public void write(JsonWriter writer, Header value) throws IOException {
+                if (value == null) {
+                    writer.nullValue();
+                    return;
+                }
+                writer.beginObject();
+                writer.name("alg").value(value.alg);
+                writer.name("kid").value(value.kid);
+                writer.endObject();
+            }
+
+            @Override
+            public Header read(JsonReader reader) throws IOException {
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    return null;
+                }
+                Header value = new Header();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "alg":
+                            value.alg = GsonUtil.readString(reader);
+                            break;
+                        case "kid":
+                            value.kid = GsonUtil.readString(reader);
+                            break;
+                        default:
+                            reader.skipValue();
+                            break;
+                    }
+                }
+                reader.endObject();
+                return value;
+            }
+        }
     }
 
     /**
@@ -154,6 +255,7 @@ public class OktaIdToken {
      *
      * @see "Claims in the Payload Section <https://developer.okta.com/docs/api/resources/oidc/#id-token-header>"
      */
+    @JsonAdapter(Claims.Adapter.class)
     public static class Claims {
         /**
          * The Amr.
@@ -265,11 +367,159 @@ public class OktaIdToken {
          * The Groups.
          */
         public List<String> groups;
+
+        static final class Adapter extends TypeAdapter<Claims> {
+            private static final TypeAdapter<Address> ADDRESS = new Address.Adapter();
+
+            @Override
+            public void write(JsonWriter writer, Claims value) throws IOException {
+                if (value == null) {
+                    writer.nullValue();
+                    return;
+                }
+                writer.beginObject();
+                writer.name("amr");
+                GsonUtil.writeStringList(writer, value.amr, true);
+                writer.name("aud");
+                GsonUtil.writeStringList(writer, value.aud, true);
+                writer.name("auth_time").value(value.auth_time);
+                writer.name("exp").value(value.exp);
+                writer.name("iat").value(value.iat);
+                writer.name("idp").value(value.idp);
+                writer.name("iss").value(value.iss);
+                writer.name("jti").value(value.jti);
+                writer.name("sub").value(value.sub);
+                writer.name("ver").value(value.ver);
+                writer.name("nonce").value(value.nonce);
+                writer.name("at_hash").value(value.at_hash);
+                writer.name("name").value(value.name);
+                writer.name("preferred_username").value(value.preferred_username);
+                writer.name("nickname").value(value.nickname);
+                writer.name("given_name").value(value.given_name);
+                writer.name("middle_name").value(value.middle_name);
+                writer.name("family_name").value(value.family_name);
+                writer.name("profile").value(value.profile);
+                writer.name("zoneinfo").value(value.zoneinfo);
+                writer.name("locale").value(value.locale);
+                writer.name("updated_at").value(value.updated_at);
+                writer.name("email").value(value.email);
+                writer.name("email_verified").value(value.email_verified);
+                writer.name("address");
+                ADDRESS.write(writer, value.address);
+                writer.name("phone_number").value(value.phone_number);
+                writer.name("groups");
+                GsonUtil.writeStringList(writer, value.groups, true);
+                writer.endObject();
+            }
+
+            @Override
+            public Claims read(JsonReader reader) throws IOException {
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    return null;
+                }
+                Claims value = new Claims();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "amr":
+                            value.amr = GsonUtil.readStringList(reader, true);
+                            break;
+                        case "aud":
+                            value.aud = GsonUtil.readStringList(reader, true);
+                            break;
+                        case "auth_time":
+                            value.auth_time = GsonUtil.readInt(reader, value.auth_time);
+                            break;
+                        case "exp":
+                            value.exp = GsonUtil.readInt(reader, value.exp);
+                            break;
+                        case "iat":
+                            value.iat = GsonUtil.readInt(reader, value.iat);
+                            break;
+                        case "idp":
+                            value.idp = GsonUtil.readString(reader);
+                            break;
+                        case "iss":
+                            value.iss = GsonUtil.readString(reader);
+                            break;
+                        case "jti":
+                            value.jti = GsonUtil.readString(reader);
+                            break;
+                        case "sub":
+                            value.sub = GsonUtil.readString(reader);
+                            break;
+                        case "ver":
+                            value.ver = GsonUtil.readString(reader);
+                            break;
+                        case "nonce":
+                            value.nonce = GsonUtil.readString(reader);
+                            break;
+                        case "at_hash":
+                            value.at_hash = GsonUtil.readString(reader);
+                            break;
+                        case "name":
+                            value.name = GsonUtil.readString(reader);
+                            break;
+                        case "preferred_username":
+                            value.preferred_username = GsonUtil.readString(reader);
+                            break;
+                        case "nickname":
+                            value.nickname = GsonUtil.readString(reader);
+                            break;
+                        case "given_name":
+                            value.given_name = GsonUtil.readString(reader);
+                            break;
+                        case "middle_name":
+                            value.middle_name = GsonUtil.readString(reader);
+                            break;
+                        case "family_name":
+                            value.family_name = GsonUtil.readString(reader);
+                            break;
+                        case "profile":
+                            value.profile = GsonUtil.readString(reader);
+                            break;
+                        case "zoneinfo":
+                            value.zoneinfo = GsonUtil.readString(reader);
+                            break;
+                        case "locale":
+                            value.locale = GsonUtil.readString(reader);
+                            break;
+                        case "updated_at":
+                            value.updated_at = GsonUtil.readInt(reader, value.updated_at);
+                            break;
+                        case "email":
+                            value.email = GsonUtil.readString(reader);
+                            break;
+                        case "email_verified":
+                            value.email_verified = GsonUtil.readString(reader);
+                            break;
+                        case "address":
+                            value.address = ADDRESS.read(reader);
+                            break;
+                        case "phone_number":
+                            value.phone_number = GsonUtil.readString(reader);
+                            break;
+                        case "groups":
+                            value.groups = GsonUtil.readStringList(reader, true);
+                            break;
+                        default:
+                            reader.skipValue();
+                            break;
+                    }
+                }
+                reader.endObject();
+                return value;
+            }
+        }
     }
 
-    private OktaIdToken(Header header, Claims claims, String signature) {
+    private OktaIdToken(Header header, byte[] encoded, int claimsStart, int claimsEnd,
+                        byte[] signature) {
         mHeader = header;
-        mClaims = claims;
+        mEncoded = encoded;
+        mClaimsStart = claimsStart;
+        mClaimsEnd = claimsEnd;
         mSignature = signature;
     }
 
@@ -283,12 +533,26 @@ public class OktaIdToken {
     }
 
     /**
-     * Get the payload claims. {@link Claims}
+     * Get the payload claims. {@link Claims} The claims are decoded on the first call.
      *
      * @return the claims
+     * @throws IllegalArgumentException if the claims section is not valid base64 encoded JSON
      */
-    public Claims getClaims() {
-        return mClaims;
+    public Claims getClaims() throws IllegalArgumentException {
+        Claims claims = mClaims;
+        if (claims == null) {
+            String section = decode(mEncoded, mClaimsStart, mClaimsEnd - mClaimsStart);
+            try {
+                claims = GsonUtil.gson().fromJson(section, Claims.class);
+            } catch (JsonParseException e) {
+                throw new IllegalArgumentException("IdToken claims are malformed", e);
+            }
+            if (claims == null) {
+                throw new IllegalArgumentException("IdToken claims section is empty");
+            }
+            mClaims = claims;
+        }
+        return claims;
     }
 
     /**
@@ -296,9 +560,36 @@ public class OktaIdToken {
      *
      * @return the signature
      * @see "ID Token Signature <https://developer.okta.com/docs/api/resources/oidc/#id-token-signature>"
+     * @deprecated the signature is binary and not a string, use {@link #getSignatureBytes()}.
      */
+    @Deprecated
     public String getSignature() {
-        return mSignature;
+        return new String(mSignature);
+    }
+
+    /**
+     * Get the raw bytes of the signature.
+     *
+     * @return a copy of the signature
+     * @see "ID Token Signature <https://developer.okta.com/docs/api/resources/oidc/#id-token-signature>"
+     */
+    public byte[] getSignatureBytes() {
+        return mSignature.clone();
+    }
+
+    /**
+     * Verifies the RS256 signature of the token.
+     *
+     * @param key the public key of the signing key
+     * @return true if the signature is valid
+     * @throws GeneralSecurityException if the key can't be used for verification
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public boolean verifySignature(@NonNull PublicKey key) throws GeneralSecurityException {
+        Signature signature = Signature.getInstance(SIGNATURE_ALGORITHM);
+        signature.initVerify(key);
+        signature.update(mEncoded, 0, mClaimsEnd);
+        return signature.verify(mSignature);
     }
 
     /**
@@ -312,18 +603,24 @@ public class OktaIdToken {
         final OIDCConfig config = request.getConfig();
         ProviderConfiguration providerConfig = request.getProviderConfiguration();
 
+        Claims claims;
+        try {
+            claims = getClaims();
+        } catch (IllegalArgumentException e) {
+            throw AuthorizationException.fromTemplate(ID_TOKEN_PARSING_ERROR, e);
+        }
         if (!"RS256".equals(mHeader.alg)) {
             throw AuthorizationException.fromTemplate(ID_TOKEN_VALIDATION_ERROR,
                     AuthorizationException.TokenValidationError
                             .createNotSupportedAlgorithmException(mHeader.alg));
         }
         if (providerConfig.issuer != null) {
-            if (!mClaims.iss.equals(providerConfig.issuer)) {
+            if (!claims.iss.equals(providerConfig.issuer)) {
                 throw AuthorizationException.fromTemplate(ID_TOKEN_VALIDATION_ERROR,
                         AuthorizationException.TokenValidationError.ISSUER_MISMATCH);
             }
 
-            Uri issuerUri = Uri.parse(mClaims.iss);
+            Uri issuerUri = Uri.parse(claims.iss);
             if (!issuerUri.getScheme().equals("https")) {
                 throw AuthorizationException.fromTemplate(ID_TOKEN_VALIDATION_ERROR,
                         AuthorizationException.TokenValidationError.ISSUER_NOT_HTTPS_URL);
@@ -342,7 +639,7 @@ public class OktaIdToken {
         }
 
         String clientId = config.getClientId();
-        if (!this.mClaims.aud.contains(clientId)) {
+        if (!claims.aud.contains(clientId)) {
             throw AuthorizationException.fromTemplate(ID_TOKEN_VALIDATION_ERROR,
                     AuthorizationException.TokenValidationError.AUDIENCE_MISMATCH);
         }
@@ -351,13 +648,13 @@ public class OktaIdToken {
 
         if (GrantTypes.AUTHORIZATION_CODE.equals(request.getGrantType())) {
             String expectedNonce = request.getNonce();
-            if (!TextUtils.equals(mClaims.nonce, expectedNonce)) {
+            if (!TextUtils.equals(claims.nonce, expectedNonce)) {
                 throw AuthorizationException.fromTemplate(ID_TOKEN_VALIDATION_ERROR,
                         AuthorizationException.TokenValidationError.NONCE_MISMATCH);
             }
         }
 
-        if (request.getMaxAge() != null && mClaims.auth_time <= 0) {
+        if (request.getMaxAge() != null && claims.auth_time <= 0) {
             throw AuthorizationException.fromTemplate(ID_TOKEN_VALIDATION_ERROR,
                     AuthorizationException.TokenValidationError.AUTH_TIME_MISSING);
         }
@@ -388,12 +685,12 @@ public class OktaIdToken {
          */
         @Override public void validate(OktaIdToken oktaIdToken) throws AuthorizationException {
             long nowInSeconds = clock.getCurrentTimeMillis() / MILLIS_PER_SECOND;
-            if (nowInSeconds > oktaIdToken.mClaims.exp) {
+            if (nowInSeconds > oktaIdToken.getClaims().exp) {
                 throw AuthorizationException.fromTemplate(ID_TOKEN_VALIDATION_ERROR,
                         AuthorizationException.TokenValidationError.ID_TOKEN_EXPIRED);
             }
 
-            if (Math.abs(nowInSeconds - oktaIdToken.mClaims.iat) > TEN_MINUTES_IN_SECONDS) {
+            if (Math.abs(nowInSeconds - oktaIdToken.getClaims().iat) > TEN_MINUTES_IN_SECONDS) {
                 throw AuthorizationException.fromTemplate(ID_TOKEN_VALIDATION_ERROR,
                         AuthorizationException.TokenValidationError.createWrongTokenIssuedTime(
                                 TEN_MINUTES_IN_SECONDS.intValue() / SECONDS_IN_ONE_MINUTE));
@@ -402,91 +699,33 @@ public class OktaIdToken {
     }
 
     /**
-     * Parses a JSON Web Token (JWT).
+     * Parses a JSON Web Token (JWT). Only the header and the signature are decoded, the claims
+     * are decoded on first use.
      *
      * @param token the based64 encoded idToken
      * @return the okta id token
      * @throws IllegalArgumentException the illegal argument exception
      */
     public static OktaIdToken parseIdToken(@NonNull String token) throws IllegalArgumentException {
-        String[] sections = token.split("\\.");
-        if (sections.length < NUMBER_OF_SECTIONS) {
+        int headerEnd = token.indexOf(SECTION_SEPARATOR);
+        int claimsEnd = headerEnd < 0 ? -1 : token.indexOf(SECTION_SEPARATOR, headerEnd + 1);
+        if (claimsEnd < 0 || claimsEnd == headerEnd + 1 || claimsEnd == token.length() - 1) {
             throw new IllegalArgumentException("IdToken missing header, claims or" +
                     " signature section");
         }
-        Gson gson = new GsonBuilder().registerTypeAdapterFactory(ArrayTypeAdapter.CREATE).create();
-        //decode header
-        String headerSection = new String(Base64.decode(sections[0], Base64.URL_SAFE));
-        Header header = gson.fromJson(headerSection, Header.class);
-        //decode claims
-        String claimsSection = new String(Base64.decode(sections[1], Base64.URL_SAFE));
-        Claims claims = gson.fromJson(claimsSection, Claims.class);
-        String signature = new String(Base64.decode(sections[2], Base64.URL_SAFE));
-        return new OktaIdToken(header, claims, signature);
-    }
-
-    /*
-     * Adapter needed for parsing audience which can be a single element or a array.
-     * If audience is a single element then this adapter converts the single element audience
-     * to a list of one element.
-     */
-    private static final class ArrayTypeAdapter extends TypeAdapter<List<Object>> {
-        /**
-         * The M delegate.
-         */
-        final TypeAdapter<List<Object>> mDelegate;
-        /**
-         * The M element.
-         */
-        final TypeAdapter<Object> mElement;
-
-        /**
-         * The Create.
-         */
-        static final TypeAdapterFactory CREATE = new TypeAdapterFactory() {
-            @SuppressWarnings("unchecked")
-            @Override
-            public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
-                if (type.getRawType() != List.class) {
-                    return null;
-                }
-                Type elementType = ((ParameterizedType) type.getType()).getActualTypeArguments()[0];
-                TypeAdapter<List<Object>> delegateAdapter =
-                        (TypeAdapter<List<Object>>) gson.getDelegateAdapter(this, type);
-                TypeAdapter<Object> elementAdapter =
-                        (TypeAdapter<Object>) gson.getAdapter(TypeToken.get(elementType));
-                return (TypeAdapter<T>) new ArrayTypeAdapter(delegateAdapter, elementAdapter);
-            }
-        };
-
-        /**
-         * Instantiates a new Array type adapter.
-         *
-         * @param delegateAdapter the delegate adapter
-         * @param elementAdapter  the element adapter
-         */
-        ArrayTypeAdapter(TypeAdapter<List<Object>> delegateAdapter,
-                         TypeAdapter<Object> elementAdapter) {
-            mDelegate = delegateAdapter;
-            mElement = elementAdapter;
-        }
-
-        @Override
-        public List<Object> read(JsonReader reader) throws IOException {
-            if (reader.peek() != BEGIN_ARRAY) {
-                return Collections.singletonList(mElement.read(reader));
-            }
-            return mDelegate.read(reader);
+        int signatureEnd = token.indexOf(SECTION_SEPARATOR, claimsEnd + 1);
+        if (signatureEnd < 0) {
+            signatureEnd = token.length();
         }
+        byte[] encoded = token.getBytes(StandardCharsets.US_ASCII);
+        Header header = GsonUtil.gson().fromJson(decode(encoded, 0, headerEnd), Header.class);
+        byte[] signature = Base64.decode(encoded, claimsEnd + 1, signatureEnd - claimsEnd - 1,
+                Base64.URL_SAFE);
+        return new OktaIdToken(header, encoded, headerEnd + 1, claimsEnd, signature);
+    }
 
-        @Override
-        public void write(JsonWriter writer, List<Object> value)
-                throws IOException {
-            if (value.size() == 1) {
-                mElement.write(writer, value.get(0));
-            } else {
-                mDelegate.write(writer, value);
-            }
-        }
+    private static String decode(byte[] encoded, int offset, int length) {
+        return new String(Base64.decode(encoded, offset, length, Base64.URL_SAFE),
+                StandardCharsets.UTF_8);
     }
 }
@@ -70,6 +70,10 @@ public class OktaState {
         mOktaRepo.save(persistable);
     }
 
+    public OktaRepository.Transaction newTransaction() {
+        return mOktaRepo.newTransaction();
+    }
+
     public void delete(Persistable persistable) {
         mOktaRepo.delete(persistable);
     }
@@ -78,6 +82,10 @@ public class OktaState {
         mOktaRepo.delete(key);
     }
 
+    public void flush() throws EncryptionException {
+        mOktaRepo.flush();
+    }
+
     public void setEncryptionManager(EncryptionManager encryptionManager) {
         this.mOktaRepo.setEncryptionManager(encryptionManager);
     }
@@ -18,18 +18,24 @@ package com.okta.oidc;
 import android.os.Handler;
 import android.os.Looper;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.RestrictTo;
 import androidx.annotation.VisibleForTesting;
 
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
@@ -41,12 +47,18 @@ import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
 @RestrictTo(LIBRARY_GROUP)
 public class RequestDispatcher extends AbstractExecutorService {
     private static final int MAX_THREADS = 3;
+    private static final String THREAD_NAME = "OktaRequestDispatcher";
     private boolean mShutdown = false;
-    //executor used to run async network requests. only single thread
-    private ExecutorService mExecutorService = Executors.newSingleThreadExecutor();
+    private final RequestExecutors mExecutors;
+
+    //pool created if the app didn't provide executors, null otherwise.
+    private ThreadPoolExecutor mOwnPool;
+
+    //executor used to run async network requests.
+    private Executor mNetworkExecutor;
 
     //executor used to run async requests not related to networking.
-    private ExecutorService mTaskExecutor = Executors.newFixedThreadPool(MAX_THREADS);
+    private Executor mTaskExecutor;
 
     //callback executor provide by app for callbacks
     private Executor mCallbackExecutor;
@@ -54,14 +66,32 @@ public class RequestDispatcher extends AbstractExecutorService {
     //main handler for callbacks on main thread.
     private Handler mHandler;
 
-    private Set<Future> mExecutorServiceTasks = new HashSet<>();
+    //tasks submitted and not done yet. A task removes itself when it completes or is canceled.
+    private final Set<Future<?>> mExecutorServiceTasks =
+            Collections.newSetFromMap(new ConcurrentHashMap<>());
 
     public RequestDispatcher(Executor callbackExecutor) {
+        this(callbackExecutor, RequestExecutors.defaults());
+    }
+
+    public RequestDispatcher(Executor callbackExecutor, @NonNull RequestExecutors executors) {
         if (callbackExecutor == null) {
             mHandler = new Handler(Looper.getMainLooper());
         } else {
             mCallbackExecutor = callbackExecutor;
         }
+        mExecutors = executors;
+        mNetworkExecutor = executors.getNetworkExecutor();
+        mTaskExecutor = executors.getWorkerExecutor();
+        if (mNetworkExecutor == null || mTaskExecutor == null) {
+            mOwnPool = executors.newPool(THREAD_NAME, MAX_THREADS);
+        }
+        if (mNetworkExecutor == null) {
+            mNetworkExecutor = mOwnPool;
+        }
+        if (mTaskExecutor == null) {
+            mTaskExecutor = mOwnPool;
+        }
     }
 
     @Override
@@ -73,13 +103,9 @@ public class RequestDispatcher extends AbstractExecutorService {
             ((ExecutorService) mCallbackExecutor).shutdown();
             mCallbackExecutor = null;
         }
-        if (mExecutorService != null) {
-            mExecutorService.shutdown();
-            mExecutorService = null;
-        }
-        if (mTaskExecutor != null) {
-            mTaskExecutor.shutdown();
-            mTaskExecutor = null;
+        //executors provided by the app are shared and stay running.
+        if (mOwnPool != null) {
+            mOwnPool.shutdown();
         }
 
         mShutdown = true;
@@ -90,16 +116,42 @@ public class RequestDispatcher extends AbstractExecutorService {
             mHandler.removeCallbacksAndMessages(null);
         }
 
-        if (mExecutorServiceTasks != null && !mExecutorServiceTasks.isEmpty()) {
-            Iterator<Future> executorIterator = mExecutorServiceTasks.iterator();
-            while (executorIterator.hasNext()) {
-                executorIterator.next().cancel(true);
-                executorIterator.remove();
-            }
-            mExecutorServiceTasks.clear();
+        for (Future<?> task : mExecutorServiceTasks) {
+            task.cancel(true);
         }
     }
 
+    /**
+     * Returns the number of submitted tasks that are not done yet, queued or running.
+     *
+     * @return the number of pending tasks
+     */
+    public int getPendingTaskCount() {
+        return mExecutorServiceTasks.size();
+    }
+
+    /**
+     * Returns the number of tasks waiting for a thread of the network executor. Zero if the
+     * executor provided by the app is not a {@link ThreadPoolExecutor}.
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return mNetworkExecutor instanceof ThreadPoolExecutor
+                ? ((ThreadPoolExecutor) mNetworkExecutor).getQueue().size() : 0;
+    }
+
+    /**
+     * Returns the approximate number of tasks being run by the network executor. Zero if the
+     * executor provided by the app is not a {@link ThreadPoolExecutor}.
+     *
+     * @return the number of active tasks
+     */
+    public int getActiveCount() {
+        return mNetworkExecutor instanceof ThreadPoolExecutor
+                ? ((ThreadPoolExecutor) mNetworkExecutor).getActiveCount() : 0;
+    }
+
     @Override
     public List<Runnable> shutdownNow() {
         throw new UnsupportedOperationException();
@@ -132,19 +184,48 @@ public class RequestDispatcher extends AbstractExecutorService {
     }
 
     @Override
-    public Future<?> submit(Runnable task) {
-        Future<?> future = super.submit(task);
-        mExecutorServiceTasks.add(future);
-        return future;
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new TrackedTask<>(Executors.callable(runnable, value));
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new TrackedTask<>(callable);
     }
 
     @Override
     public void execute(Runnable command) {
-        mTaskExecutor.execute(command);
+        run(mNetworkExecutor, command);
     }
 
     public void runTask(Runnable runnable) {
-        mExecutorServiceTasks.add(mTaskExecutor.submit(runnable));
+        RunnableFuture<Void> task = newTaskFor(runnable, null);
+        run(mTaskExecutor, task);
+    }
+
+    private void run(Executor executor, Runnable command) {
+        try {
+            executor.execute(executor == mOwnPool ? command : mExecutors.withPriority(command));
+        } catch (RejectedExecutionException e) {
+            //a rejected task never runs, cancel it so it is not tracked forever.
+            if (command instanceof Future) {
+                ((Future<?>) command).cancel(false);
+            }
+            throw e;
+        }
+    }
+
+    //registered before it is queued, so it can't complete before it is tracked.
+    private final class TrackedTask<T> extends FutureTask<T> {
+        TrackedTask(Callable<T> callable) {
+            super(callable);
+            mExecutorServiceTasks.add(this);
+        }
+
+        @Override
+        protected void done() {
+            mExecutorServiceTasks.remove(this);
+        }
     }
 
     @VisibleForTesting(otherwise = VisibleForTesting.NONE)
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc;
+
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
+
+/**
+ * The executors used by the asynchronous clients and the priority their tasks run with.
+ *
+ * <p>Executors provided by the app are used as they are. The threads of an app executor keep
+ * their priority, unless a thread priority is set, in which case it is applied while a task
+ * runs and restored afterwards. If no executor is provided the client creates its own pool,
+ * whose threads run with the thread priority, background by default, and stop when idle.
+ *
+ * @hide
+ */
+@RestrictTo(LIBRARY_GROUP)
+public final class RequestExecutors {
+    private static final String TAG = RequestExecutors.class.getSimpleName();
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    private static final RequestExecutors DEFAULT = new RequestExecutors(null, null, null);
+
+    private final Executor mNetworkExecutor;
+    private final Executor mWorkerExecutor;
+    private final Integer mThreadPriority;
+
+    /**
+     * Instantiates a new instance.
+     *
+     * @param networkExecutor the executor running network requests, or null for a private pool
+     * @param workerExecutor  the executor running other tasks, or null for a private pool
+     * @param threadPriority  the {@link Process} thread priority of the tasks, or null for the
+     *                        default
+     */
+    public RequestExecutors(@Nullable Executor networkExecutor, @Nullable Executor workerExecutor,
+                            @Nullable Integer threadPriority) {
+        mNetworkExecutor = networkExecutor;
+        mWorkerExecutor = workerExecutor;
+        mThreadPriority = threadPriority;
+    }
+
+    /**
+     * Returns the default executors, private pools running with background priority. Each
+     * part of a client using them creates its own pool, clients created by the builders
+     * share one pool per client instead, see {@link #withClientPool(String, int)}.
+     *
+     * @return the default executors
+     */
+    @NonNull
+    public static RequestExecutors defaults() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the executor for network requests provided by the app.
+     *
+     * @return the executor or null if the client should create its own
+     */
+    @Nullable
+    public Executor getNetworkExecutor() {
+        return mNetworkExecutor;
+    }
+
+    /**
+     * Returns the executor for other tasks provided by the app.
+     *
+     * @return the executor or null if the client should create its own
+     */
+    @Nullable
+    public Executor getWorkerExecutor() {
+        return mWorkerExecutor;
+    }
+
+    /**
+     * Wraps a task for an executor provided by the app, so it runs with the thread priority
+     * if one was set.
+     *
+     * @param task the task
+     * @return the task running with the thread priority
+     */
+    @NonNull
+    public Runnable withPriority(@NonNull Runnable task) {
+        if (mThreadPriority == null) {
+            return task;
+        }
+        final int priority = mThreadPriority;
+        return () -> {
+            int tid = Process.myTid();
+            int previous = Process.getThreadPriority(tid);
+            Process.setThreadPriority(priority);
+            try {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Task failed", e);
+                }
+            } finally {
+                Process.setThreadPriority(previous);
+            }
+        };
+    }
+
+    /**
+     * Creates a pool owned by a client. Its threads run with the thread priority and stop
+     * after being idle for a while.
+     *
+     * @param name    the name prefix of the threads
+     * @param threads the maximum number of threads
+     * @return the pool
+     */
+    @NonNull
+    public ThreadPoolExecutor newPool(@NonNull String name, int threads) {
+        final int priority = mThreadPriority != null ? mThreadPriority
+                : Process.THREAD_PRIORITY_BACKGROUND;
+        final AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = runnable -> new Thread(() -> {
+            Process.setThreadPriority(priority);
+            runnable.run();
+        }, name + "-" + count.incrementAndGet());
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(), factory);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Returns the executors of one client. Background work that the app didn't provide an
+     * executor for runs on one pool owned by the client, shared by all its parts. Its threads
+     * run with the thread priority and stop when idle.
+     *
+     * @param name    the name prefix of the threads of the pool
+     * @param threads the maximum number of threads of the pool
+     * @return the executors of the client
+     */
+    @NonNull
+    public RequestExecutors withClientPool(@NonNull String name, int threads) {
+        if (mNetworkExecutor != null && mWorkerExecutor != null) {
+            return this;
+        }
+        ThreadPoolExecutor pool = newPool(name, threads);
+        return new RequestExecutors(mNetworkExecutor != null ? mNetworkExecutor : pool,
+                mWorkerExecutor != null ? mWorkerExecutor : pool, mThreadPriority);
+    }
+
+    /**
+     * Returns an executor for network requests of a client. Tasks run with the thread priority
+     * on the network executor provided by the app, or on a new pool owned by the client.
+     *
+     * @param name    the name prefix of the threads of a new pool
+     * @param threads the maximum number of threads of a new pool
+     * @return the executor
+     */
+    @NonNull
+    public Executor newNetworkExecutor(@NonNull String name, int threads) {
+        return mNetworkExecutor != null ? wrap(mNetworkExecutor) : newPool(name, threads);
+    }
+
+    /**
+     * Returns an executor for other tasks of a client. Tasks run with the thread priority on
+     * the worker executor provided by the app, or on a new pool owned by the client.
+     *
+     * @param name    the name prefix of the threads of a new pool
+     * @param threads the maximum number of threads of a new pool
+     * @return the executor
+     */
+    @NonNull
+    public Executor newWorkerExecutor(@NonNull String name, int threads) {
+        return mWorkerExecutor != null ? wrap(mWorkerExecutor) : newPool(name, threads);
+    }
+
+    /**
+     * Returns an executor for other tasks of a client that runs them one at a time, in the
+     * order they were submitted, also on a worker executor provided by the app.
+     *
+     * @param name the name prefix of the thread of a new pool
+     * @return the executor
+     */
+    @NonNull
+    public Executor newSerialExecutor(@NonNull String name) {
+        return mWorkerExecutor != null ? new SerialExecutor(wrap(mWorkerExecutor))
+                : newPool(name, 1);
+    }
+
+    private Executor wrap(Executor executor) {
+        return task -> executor.execute(withPriority(task));
+    }
+
+    private static final class SerialExecutor implements Executor {
+        private final Executor mExecutor;
+        private final Queue<Runnable> mTasks = new ArrayDeque<>();
+        private boolean mRunning;
+
+        SerialExecutor(Executor executor) {
+            mExecutor = executor;
+        }
+
+        @Override
+        public synchronized void execute(@NonNull Runnable task) {
+            mTasks.add(task);
+            if (!mRunning) {
+                mRunning = true;
+                try {
+                    mExecutor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    mRunning = false;
+                    mTasks.remove(task);
+                    throw e;
+                }
+            }
+        }
+
+        // Runs the queued tasks on one thread of the executor until there are none left.
+        // A failing task doesn't stop the ones queued after it.
+        private void drain() {
+            while (true) {
+                Runnable task;
+                synchronized (this) {
+                    task = mTasks.poll();
+                    if (task == null) {
+                        mRunning = false;
+                        return;
+                    }
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Task failed", e);
+                }
+            }
+        }
+    }
+}
@@ -71,7 +71,8 @@ public class Tokens {
     /**
      * The current ID token, if available.
      * This is a base64 encoded string. For getting a OktaIdToken use
-     * {@link OktaIdToken#parseIdToken(String)}
+     * {@link com.okta.oidc.clients.sessions.SessionClient#getIdToken()}, which caches the parsed
+     * token, or {@link OktaIdToken#parseIdToken(String)}
      *
      * @return id token.
      */
@@ -109,6 +110,15 @@ public class Tokens {
         return mExpiresIn;
     }
 
+    /**
+     * The time in milliseconds since the epoch when the access token expires.
+     *
+     * @return expiration time of the access token, or a value not greater than zero if unknown.
+     */
+    public long getExpiresAt() {
+        return mExpiresAt;
+    }
+
     /**
      * List of scopes.
      *
@@ -17,15 +17,18 @@ package com.okta.oidc.clients;
 
 import android.content.Context;
 import android.net.Uri;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 
 import com.okta.oidc.OIDCConfig;
 import com.okta.oidc.OktaState;
+import com.okta.oidc.RequestExecutors;
 import com.okta.oidc.Tokens;
 import com.okta.oidc.clients.sessions.SyncSessionClient;
 import com.okta.oidc.net.OktaHttpClient;
@@ -33,6 +36,7 @@ import com.okta.oidc.net.request.BaseRequest;
 import com.okta.oidc.net.request.ConfigurationRequest;
 import com.okta.oidc.net.request.HttpRequestBuilder;
 import com.okta.oidc.net.request.ProviderConfiguration;
+import com.okta.oidc.net.request.RevokeTokenRequest;
 import com.okta.oidc.net.request.TokenRequest;
 import com.okta.oidc.net.request.web.AuthorizeRequest;
 import com.okta.oidc.net.request.web.WebRequest;
@@ -45,6 +49,18 @@ import com.okta.oidc.util.AuthorizationException;
 
 import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -56,6 +72,7 @@ import static com.okta.oidc.clients.BaseAuth.FAILED_REVOKE_REFRESH_TOKEN;
 import static com.okta.oidc.clients.BaseAuth.REMOVE_TOKENS;
 import static com.okta.oidc.clients.BaseAuth.REVOKE_ACCESS_TOKEN;
 import static com.okta.oidc.clients.BaseAuth.REVOKE_REFRESH_TOKEN;
+import static com.okta.oidc.clients.BaseAuth.SUCCESS;
 import static com.okta.oidc.clients.BaseAuth.TOKEN_DECRYPT;
 import static com.okta.oidc.clients.State.IDLE;
 import static com.okta.oidc.util.AuthorizationException.GeneralErrors.USER_CANCELED_AUTH_FLOW;
@@ -68,6 +85,15 @@ import static com.okta.oidc.util.AuthorizationException.TYPE_ENCRYPTION_ERROR;
 @RestrictTo(RestrictTo.Scope.LIBRARY)
 public class AuthAPI {
     private static final String TAG = "AuthClientImpl";
+    // Upper bound for revoking the tokens on sign out, longer than the connect and read
+    // timeouts of a single request.
+    private static final long REVOKE_TIMEOUT_MS = 30_000;
+    // Upper bound for waiting on a prefetch in progress before requesting the configuration
+    // again, the prefetch has been running since the client was created.
+    private static final long PREFETCH_TIMEOUT_MS = 10_000;
+    private static final String BACKGROUND_THREAD_NAME = "OktaBackground";
+    // Enough for revoking both tokens in parallel while the configuration is revalidated.
+    private static final int BACKGROUND_THREADS = 3;
     protected OktaState mOktaState;
     protected OIDCConfig mOidcConfig;
     protected OktaHttpClient mHttpClient;
@@ -75,6 +101,18 @@ public class AuthAPI {
     protected int mSignOutStatus;
 
     protected AtomicBoolean mCancel = new AtomicBoolean();
+    // Revocations of a sign out in progress, canceled by cancel() or on timeout. Other
+    // requests of the session client are left alone.
+    private final Set<RevokeTokenRequest> mRevokeRequests =
+            Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private long mRevokeTimeoutMs = REVOKE_TIMEOUT_MS;
+    private final AtomicBoolean mRevalidating = new AtomicBoolean();
+    private volatile Future<ProviderConfiguration> mPrefetch;
+    // Set by the prefetch when it starts, or by a sign in that doesn't wait for it.
+    private final AtomicBoolean mPrefetchStarted = new AtomicBoolean();
+    // Runs the prefetch, revalidations and revocations on the network executor of the app,
+    // or on a pool of this client.
+    private final Executor mBackgroundExecutor;
     protected AtomicReference<WeakReference<BaseRequest>> mCurrentRequest =
             new AtomicReference<>(new WeakReference<>(null));
 
@@ -83,10 +121,14 @@ public class AuthAPI {
                       OktaStorage oktaStorage,
                       EncryptionManager encryptionManager,
                       boolean requireHardwareBackedKeyStore,
-                      boolean cacheMode) {
+                      boolean cacheMode,
+                      boolean writeBehind,
+                      RequestExecutors executors) {
         mOktaState = new OktaState(new OktaRepository(oktaStorage, context, encryptionManager,
-                requireHardwareBackedKeyStore, cacheMode));
+                requireHardwareBackedKeyStore, cacheMode, writeBehind, executors));
         mOidcConfig = oidcConfig;
+        mBackgroundExecutor = executors.newNetworkExecutor(BACKGROUND_THREAD_NAME,
+                BACKGROUND_THREADS);
     }
 
     protected ProviderConfiguration obtainNewConfiguration() throws AuthorizationException {
@@ -94,12 +136,23 @@ public class AuthAPI {
             ProviderConfiguration config = mOktaState.getProviderConfiguration();
             Uri discoveryUri = mOidcConfig.getDiscoveryUri();
             if (discoveryUri != null) {
-                if (config == null || !discoveryUri.toString().contains(config.issuer)) {
+                if (!isCurrent(config)) {
+                    config = awaitPrefetch();
+                    if (mCancel.get()) {
+                        //the caller reports the cancellation.
+                        return config;
+                    }
+                }
+                if (!isCurrent(config)) {
                     mOktaState.setCurrentState(State.OBTAIN_CONFIGURATION);
                     ConfigurationRequest request = configurationRequest();
                     mCurrentRequest.set(new WeakReference<>(request));
                     config = request.executeRequest(mHttpClient);
+                    config.setFetchedAt(System.currentTimeMillis());
                     mOktaState.save(config);
+                } else if (!config.isFresh(System.currentTimeMillis(),
+                        mOidcConfig.getDiscoveryCacheTtl())) {
+                    revalidateConfiguration(config);
                 }
             } else {
                 config = new ProviderConfiguration(mOidcConfig.getCustomConfiguration());
@@ -111,6 +164,110 @@ public class AuthAPI {
         }
     }
 
+    private boolean isCurrent(@Nullable ProviderConfiguration config) {
+        return config != null
+                && mOidcConfig.getDiscoveryUri().toString().contains(config.issuer);
+    }
+
+    /*
+     * Fetches the configuration in the background right after the client is created. A fresh
+     * stored configuration is used as is. A stale one is revalidated, so the request is cheap,
+     * and it leaves a pooled connection to the authorization server for the first sign in.
+     */
+    protected void prefetchConfiguration() {
+        if (mOidcConfig.getDiscoveryUri() == null || !mRevalidating.compareAndSet(false, true)) {
+            return;
+        }
+        FutureTask<ProviderConfiguration> prefetch = new FutureTask<ProviderConfiguration>(() -> {
+            if (!mPrefetchStarted.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                ProviderConfiguration config = mOktaState.getProviderConfiguration();
+                if (!isCurrent(config)) {
+                    return fetchConfiguration(null);
+                } else if (config.isFresh(System.currentTimeMillis(),
+                        mOidcConfig.getDiscoveryCacheTtl())) {
+                    return config;
+                }
+                return fetchConfiguration(config);
+            } catch (AuthorizationException | OktaRepository.EncryptionException e) {
+                Log.w(TAG, "Failed to prefetch configuration", e);
+                return null;
+            }
+        }) {
+            @Override
+            protected void done() {
+                //also called if canceled before it runs.
+                mRevalidating.set(false);
+            }
+        };
+        mPrefetch = prefetch;
+        mBackgroundExecutor.execute(prefetch);
+    }
+
+    /*
+     * Waits for a prefetch in progress, returns null if there is none, it failed, or it
+     * doesn't finish in time. cancel() stops waiting. A prefetch that didn't start yet, for
+     * example queued on a busy executor of the app, isn't waited for.
+     */
+    @Nullable
+    private ProviderConfiguration awaitPrefetch() {
+        Future<ProviderConfiguration> prefetch = mPrefetch;
+        if (prefetch == null) {
+            return null;
+        }
+        if (mPrefetchStarted.compareAndSet(false, true)) {
+            prefetch.cancel(false);
+            mPrefetch = null;
+            return null;
+        }
+        try {
+            return prefetch.get(PREFETCH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | CancellationException e) {
+            return null;
+        } catch (TimeoutException e) {
+            Log.w(TAG, "Prefetch configuration timed out");
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            mPrefetch = null;
+        }
+    }
+
+    /*
+     * Revalidates a stale configuration in the background while the stored one keeps being
+     * used. The request is conditional, so an unchanged document isn't downloaded again.
+     */
+    private void revalidateConfiguration(ProviderConfiguration config) {
+        if (!mRevalidating.compareAndSet(false, true)) {
+            return;
+        }
+        mBackgroundExecutor.execute(() -> {
+            try {
+                fetchConfiguration(config);
+            } catch (AuthorizationException | OktaRepository.EncryptionException e) {
+                Log.w(TAG, "Failed to revalidate configuration", e);
+            } finally {
+                mRevalidating.set(false);
+            }
+        });
+    }
+
+    private ProviderConfiguration fetchConfiguration(@Nullable ProviderConfiguration cached)
+            throws AuthorizationException, OktaRepository.EncryptionException {
+        ProviderConfiguration config = HttpRequestBuilder.newConfigurationRequest()
+                .config(mOidcConfig)
+                .providerConfiguration(cached)
+                .createRequest()
+                .executeRequest(mHttpClient);
+        config.setFetchedAt(System.currentTimeMillis());
+        mOktaState.save(config);
+        return config;
+    }
+
     @VisibleForTesting(otherwise = VisibleForTesting.PACKAGE_PRIVATE)
     public ConfigurationRequest configurationRequest() throws AuthorizationException {
         return HttpRequestBuilder.newConfigurationRequest()
@@ -170,7 +327,11 @@ public class AuthAPI {
 
     public void cancel() {
         mCancel.set(true);
-        mHttpClient.cancel();
+        Future<ProviderConfiguration> prefetch = mPrefetch;
+        if (prefetch != null) {
+            prefetch.cancel(false);
+        }
+        cancelRevocations();
         if (mCurrentRequest.get().get() != null) {
             mCurrentRequest.get().get().cancelRequest();
         }
@@ -187,23 +348,14 @@ public class AuthAPI {
         }
     }
 
-    private int revoke(SyncSessionClient client, int tokenType) {
-        try {
-            Tokens tokens = client.getTokens();
-            if (tokens != null) {
-                client.revokeToken(tokenType == REVOKE_ACCESS_TOKEN ? tokens.getAccessToken()
-                        : tokens.getRefreshToken());
-            }
-            return 0;
-        } catch (AuthorizationException e) {
-            Log.w(TAG, "Revoke token failure", e);
-            int status = tokenType == REVOKE_ACCESS_TOKEN ? FAILED_REVOKE_ACCESS_TOKEN
-                    : FAILED_REVOKE_REFRESH_TOKEN;
-            if (e.type == TYPE_ENCRYPTION_ERROR) {
-                status |= TOKEN_DECRYPT;
-            }
-            return status;
+    private static int revokeFailure(int tokenType, AuthorizationException e) {
+        Log.w(TAG, "Revoke token failure", e);
+        int status = tokenType == REVOKE_ACCESS_TOKEN ? FAILED_REVOKE_ACCESS_TOKEN
+                : FAILED_REVOKE_REFRESH_TOKEN;
+        if (e.type == TYPE_ENCRYPTION_ERROR) {
+            status |= TOKEN_DECRYPT;
         }
+        return status;
     }
 
     protected void removeTokens(SyncSessionClient client) {
@@ -217,18 +369,128 @@ public class AuthAPI {
         }
     }
 
+    /*
+     * Revokes the requested tokens in parallel, so sign out waits for one round trip instead
+     * of one per token. Revocations that don't finish within the timeout are canceled and
+     * reported as failed. Revocations the executor didn't start are run on the calling thread,
+     * bounded by the timeouts of the request.
+     */
     protected void revokeTokens(SyncSessionClient client) throws IOException {
+        List<Integer> tokenTypes = new ArrayList<>();
         if ((mSignOutFlags & REVOKE_ACCESS_TOKEN) == REVOKE_ACCESS_TOKEN) {
-            mSignOutStatus |= revoke(client, REVOKE_ACCESS_TOKEN);
+            tokenTypes.add(REVOKE_ACCESS_TOKEN);
         }
-        checkIfCanceled();
-
         if ((mSignOutFlags & REVOKE_REFRESH_TOKEN) == REVOKE_REFRESH_TOKEN) {
-            mSignOutStatus |= revoke(client, REVOKE_REFRESH_TOKEN);
+            tokenTypes.add(REVOKE_REFRESH_TOKEN);
+        }
+        if (tokenTypes.isEmpty()) {
+            checkIfCanceled();
+            return;
+        }
+        Tokens tokens;
+        try {
+            tokens = client.getTokens();
+        } catch (AuthorizationException e) {
+            for (int tokenType : tokenTypes) {
+                mSignOutStatus |= revokeFailure(tokenType, e);
+            }
+            checkIfCanceled();
+            return;
+        }
+        if (tokens == null) {
+            checkIfCanceled();
+            return;
+        }
+
+        checkIfCanceled();
+        List<FutureTask<Integer>> revocations = new ArrayList<>(tokenTypes.size());
+        try {
+            for (int tokenType : tokenTypes) {
+                String token = tokenType == REVOKE_ACCESS_TOKEN ? tokens.getAccessToken()
+                        : tokens.getRefreshToken();
+                FutureTask<Integer> revocation = new FutureTask<>(
+                        () -> revokeToken(tokenType, token));
+                revocations.add(revocation);
+                mBackgroundExecutor.execute(revocation);
+            }
+            long deadline = SystemClock.elapsedRealtime() + mRevokeTimeoutMs;
+            for (int i = 0; i < revocations.size(); i++) {
+                mSignOutStatus |= awaitRevocation(revocations.get(i), tokenTypes.get(i),
+                        deadline);
+            }
+        } finally {
+            for (Future<Integer> revocation : revocations) {
+                revocation.cancel(false);
+            }
         }
         checkIfCanceled();
     }
 
+    /*
+     * Revokes a token with a request of its own instead of through the session client, so
+     * canceling it doesn't cancel unrelated requests the application runs on the session.
+     */
+    private int revokeToken(int tokenType, String token) {
+        try {
+            RevokeTokenRequest request = HttpRequestBuilder.newRevokeTokenRequest()
+                    .tokenToRevoke(token)
+                    .providerConfiguration(mOktaState.getProviderConfiguration())
+                    .config(mOidcConfig)
+                    .createRequest();
+            mRevokeRequests.add(request);
+            if (mCancel.get()) {
+                request.cancelRequest();
+            }
+            try {
+                request.executeRequest(mHttpClient);
+                return SUCCESS;
+            } finally {
+                mRevokeRequests.remove(request);
+            }
+        } catch (AuthorizationException e) {
+            return revokeFailure(tokenType, e);
+        } catch (OktaRepository.EncryptionException e) {
+            return revokeFailure(tokenType,
+                    AuthorizationException.EncryptionErrors.byEncryptionException(e));
+        }
+    }
+
+    private void cancelRevocations() {
+        for (RevokeTokenRequest request : mRevokeRequests) {
+            request.cancelRequest();
+        }
+    }
+
+    private int awaitRevocation(FutureTask<Integer> revocation, int tokenType, long deadline)
+            throws IOException {
+        int failed = tokenType == REVOKE_ACCESS_TOKEN ? FAILED_REVOKE_ACCESS_TOKEN
+                : FAILED_REVOKE_REFRESH_TOKEN;
+        //runs the revocation here if the executor didn't start it yet, for example because
+        //sign out runs on the only thread of the executor. Does nothing if it already started.
+        revocation.run();
+        try {
+            long remaining = Math.max(0, deadline - SystemClock.elapsedRealtime());
+            return revocation.get(remaining, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            Log.w(TAG, "Revoke token timed out");
+            // Cancels the revocations still in progress, they are awaited next.
+            cancelRevocations();
+            return failed;
+        } catch (ExecutionException e) {
+            Log.w(TAG, "Revoke token failure", e.getCause());
+            return failed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelRevocations();
+            throw new IOException("Canceled", e);
+        }
+    }
+
+    @VisibleForTesting
+    void setRevokeTimeout(long timeoutMs) {
+        mRevokeTimeoutMs = timeoutMs;
+    }
+
     @RestrictTo(TESTS)
     public int getSignOutFlags() {
         return mSignOutFlags;
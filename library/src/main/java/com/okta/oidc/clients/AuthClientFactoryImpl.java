@@ -21,6 +21,7 @@ import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 
 import com.okta.oidc.OIDCConfig;
+import com.okta.oidc.RequestExecutors;
 import com.okta.oidc.net.OktaHttpClient;
 import com.okta.oidc.storage.OktaStorage;
 import com.okta.oidc.storage.security.EncryptionManager;
@@ -33,9 +34,16 @@ import java.util.concurrent.Executor;
 @RestrictTo(RestrictTo.Scope.LIBRARY)
 public class AuthClientFactoryImpl implements ClientFactory<AuthClient> {
     private Executor mCallbackExecutor;
+    private int mRequestConcurrency;
+    private RequestExecutors mRequestExecutors;
+    private long mRefreshMargin;
 
-    public AuthClientFactoryImpl(@Nullable Executor executor) {
+    public AuthClientFactoryImpl(@Nullable Executor executor, int requestConcurrency,
+                                 RequestExecutors requestExecutors, long refreshMargin) {
         mCallbackExecutor = executor;
+        mRequestConcurrency = requestConcurrency;
+        mRequestExecutors = requestExecutors;
+        mRefreshMargin = refreshMargin;
     }
 
     @Override
@@ -45,9 +53,12 @@ public class AuthClientFactoryImpl implements ClientFactory<AuthClient> {
                                    EncryptionManager encryptionManager,
                                    OktaHttpClient httpClient,
                                    boolean requireHardwareBackedKeyStore,
-                                   boolean cacheMode) {
+                                   boolean cacheMode,
+                                   boolean writeBehind,
+                                   boolean prefetch) {
         return new AuthClientImpl(mCallbackExecutor, oidcConfig, context, oktaStorage,
                 encryptionManager, httpClient, requireHardwareBackedKeyStore,
-                cacheMode);
+                cacheMode, writeBehind, prefetch, mRequestConcurrency,
+                mRequestExecutors, mRefreshMargin);
     }
 }
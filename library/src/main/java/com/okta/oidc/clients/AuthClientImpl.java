@@ -16,7 +16,6 @@
 package com.okta.oidc.clients;
 
 import android.content.Context;
-import android.os.Process;
 
 import androidx.annotation.AnyThread;
 
@@ -24,6 +23,7 @@ import com.okta.oidc.AuthenticationPayload;
 import com.okta.oidc.OIDCConfig;
 import com.okta.oidc.RequestCallback;
 import com.okta.oidc.RequestDispatcher;
+import com.okta.oidc.RequestExecutors;
 import com.okta.oidc.ResultCallback;
 import com.okta.oidc.clients.sessions.SessionClient;
 import com.okta.oidc.clients.sessions.SessionClientFactoryImpl;
@@ -49,14 +49,21 @@ class AuthClientImpl implements AuthClient {
                    EncryptionManager encryptionManager,
                    OktaHttpClient httpClient,
                    boolean requireHardwareBackedKeyStore,
-                   boolean cacheMode) {
-        mSyncNativeAuthClient = new SyncAuthClientFactory().createClient(oidcConfig, context,
-                oktaStorage, encryptionManager, httpClient,
-                requireHardwareBackedKeyStore, cacheMode);
-
-        mSessionImpl = new SessionClientFactoryImpl(executor)
-                .createClient(mSyncNativeAuthClient.getSessionClient());
-        mDispatcher = new RequestDispatcher(executor);
+                   boolean cacheMode,
+                   boolean writeBehind,
+                   boolean prefetch,
+                   int requestConcurrency,
+                   RequestExecutors requestExecutors,
+                   long refreshMargin) {
+        mSyncNativeAuthClient = new SyncAuthClientFactory(requestExecutors).createClient(
+                oidcConfig, context, oktaStorage, encryptionManager, httpClient,
+                requireHardwareBackedKeyStore, cacheMode, writeBehind, prefetch);
+
+        mSessionImpl = new SessionClientFactoryImpl(executor,
+                SessionClientFactoryImpl.concurrencyFor(requestConcurrency, httpClient),
+                requestExecutors, refreshMargin)
+                .createClient(mSyncNativeAuthClient.getSessionClient(), oidcConfig, context);
+        mDispatcher = new RequestDispatcher(executor, requestExecutors);
     }
 
     @Override
@@ -65,7 +72,6 @@ class AuthClientImpl implements AuthClient {
                        final RequestCallback<Result, AuthorizationException> cb) {
         cancelFuture();
         mFutureTask = mDispatcher.submit(() -> {
-            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
             Result result = mSyncNativeAuthClient.signIn(sessionToken, payload);
             if (result.isSuccess()) {
                 mDispatcher.submitResults(() -> {
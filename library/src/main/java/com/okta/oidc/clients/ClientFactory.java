@@ -37,6 +37,10 @@ public interface ClientFactory<A> {
      * @param encryptionManager             the encryption manager
      * @param httpClient                    the http client
      * @param requireHardwareBackedKeyStore persist in storage only if hardware backed keystore
+     * @param cacheMode                     keep decrypted values in memory
+     * @param writeBehind                   encrypt and persist saved values in the background
+     * @param prefetch                      fetch the configuration and open a connection to the
+     *                                      authorization server in the background
      * @return the type of auth client
      */
     A createClient(OIDCConfig oidcConfig,
@@ -45,5 +49,7 @@ public interface ClientFactory<A> {
                    EncryptionManager encryptionManager,
                    OktaHttpClient httpClient,
                    boolean requireHardwareBackedKeyStore,
-                   boolean cacheMode);
+                   boolean cacheMode,
+                   boolean writeBehind,
+                   boolean prefetch);
 }
@@ -18,6 +18,7 @@ package com.okta.oidc.clients;
 import android.content.Context;
 
 import com.okta.oidc.OIDCConfig;
+import com.okta.oidc.RequestExecutors;
 import com.okta.oidc.net.OktaHttpClient;
 import com.okta.oidc.storage.OktaStorage;
 import com.okta.oidc.storage.security.EncryptionManager;
@@ -26,6 +27,24 @@ import com.okta.oidc.storage.security.EncryptionManager;
  * Client factory to build a synchronous authentication client.
  */
 public class SyncAuthClientFactory implements ClientFactory<SyncAuthClient> {
+    private RequestExecutors mRequestExecutors;
+
+    /**
+     * Instantiates a new factory whose clients create their own executors.
+     */
+    public SyncAuthClientFactory() {
+        this(RequestExecutors.defaults());
+    }
+
+    /**
+     * Instantiates a new factory whose clients run background work on the given executors.
+     *
+     * @param requestExecutors the executors and thread priority of the clients
+     */
+    public SyncAuthClientFactory(RequestExecutors requestExecutors) {
+        mRequestExecutors = requestExecutors;
+    }
+
     @Override
     public SyncAuthClientImpl createClient(OIDCConfig oidcConfig,
                                            Context context,
@@ -33,8 +52,11 @@ public class SyncAuthClientFactory implements ClientFactory<SyncAuthClient> {
                                            EncryptionManager encryptionManager,
                                            OktaHttpClient httpClient,
                                            boolean requireHardwareBackedKeyStore,
-                                           boolean cacheMode) {
+                                           boolean cacheMode,
+                                           boolean writeBehind,
+                                           boolean prefetch) {
         return new SyncAuthClientImpl(oidcConfig, context, oktaStorage, encryptionManager,
-                httpClient, requireHardwareBackedKeyStore, cacheMode);
+                httpClient, requireHardwareBackedKeyStore, cacheMode, writeBehind, prefetch,
+                mRequestExecutors);
     }
 }
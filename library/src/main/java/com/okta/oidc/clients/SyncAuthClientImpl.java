@@ -23,6 +23,7 @@ import androidx.annotation.WorkerThread;
 
 import com.okta.oidc.AuthenticationPayload;
 import com.okta.oidc.OIDCConfig;
+import com.okta.oidc.RequestExecutors;
 import com.okta.oidc.clients.sessions.SyncSessionClient;
 import com.okta.oidc.clients.sessions.SyncSessionClientFactoryImpl;
 import com.okta.oidc.net.OktaHttpClient;
@@ -51,12 +52,18 @@ class SyncAuthClientImpl extends AuthAPI implements SyncAuthClient {
                        EncryptionManager encryptionManager,
                        OktaHttpClient httpClient,
                        boolean requireHardwareBackedKeyStore,
-                       boolean cacheMode) {
+                       boolean cacheMode,
+                       boolean writeBehind,
+                       boolean prefetch,
+                       RequestExecutors executors) {
         super(oidcConfig, context, oktaStorage, encryptionManager,
-                requireHardwareBackedKeyStore, cacheMode);
+                requireHardwareBackedKeyStore, cacheMode, writeBehind, executors);
         mHttpClient = httpClient;
         sessionClient = new SyncSessionClientFactoryImpl()
                 .createClient(oidcConfig, mOktaState, httpClient);
+        if (prefetch) {
+            prefetchConfiguration();
+        }
     }
 
     @VisibleForTesting
@@ -105,7 +112,8 @@ class SyncAuthClientImpl extends AuthAPI implements SyncAuthClient {
             mCurrentRequest.set(new WeakReference<>(requestToken));
             TokenResponse tokenResponse = requestToken.executeRequest(mHttpClient);
 
-            mOktaState.save(tokenResponse);
+            SyncSessionClientFactoryImpl.saveTokens(sessionClient, mOktaState,
+                    tokenResponse);
             return Result.success();
         } catch (AuthorizationException e) {
             return Result.error(e);
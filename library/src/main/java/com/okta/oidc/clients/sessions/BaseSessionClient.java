@@ -37,4 +37,14 @@ interface BaseSessionClient {
      * @throws AuthorizationException exception if migration fails.
      */
     void migrateTo(EncryptionManager manager) throws AuthorizationException;
+
+    /**
+     * Waits until all data saved by the client is persisted in storage. Only needed when the
+     * client is created with write behind mode, otherwise data is persisted before the call
+     * that saves it returns. Call this before the process may be killed, for example when the
+     * app goes to the background.
+     *
+     * @throws AuthorizationException exception if persisting data failed.
+     */
+    void flush() throws AuthorizationException;
 }
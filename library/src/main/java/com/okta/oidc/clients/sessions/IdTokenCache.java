@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.clients.sessions;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.okta.oidc.OktaIdToken;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small least recently used cache of parsed id tokens keyed by the encoded token. The current
+ * and the previous token of a refresh are kept, so reading the claims between refreshes doesn't
+ * parse the token again.
+ */
+class IdTokenCache {
+    private static final int DEFAULT_SIZE = 2;
+
+    private final Map<String, OktaIdToken> mTokens;
+
+    IdTokenCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    IdTokenCache(int maxSize) {
+        mTokens = new LinkedHashMap<String, OktaIdToken>(maxSize + 1, 1, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, OktaIdToken> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the parsed token, parsing it on a miss.
+     *
+     * @param token the encoded id token
+     * @return the parsed id token
+     * @throws IllegalArgumentException if the token can't be parsed
+     */
+    @NonNull
+    OktaIdToken get(@NonNull String token) throws IllegalArgumentException {
+        OktaIdToken idToken;
+        synchronized (mTokens) {
+            idToken = mTokens.get(token);
+        }
+        if (idToken == null) {
+            idToken = OktaIdToken.parseIdToken(token);
+            put(token, idToken);
+        }
+        return idToken;
+    }
+
+    void put(@NonNull String token, @Nullable OktaIdToken idToken) {
+        if (idToken == null) {
+            return;
+        }
+        synchronized (mTokens) {
+            mTokens.put(token, idToken);
+        }
+    }
+
+    void clear() {
+        synchronized (mTokens) {
+            mTokens.clear();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.clients.sessions;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.okta.oidc.Tokens;
+import com.okta.oidc.util.AuthorizationException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs at most one token refresh at a time. Callers that ask for a refresh while one is in
+ * progress wait for it and get its result instead of sending their own refresh_token grant,
+ * which would fail once the first one rotated the refresh token. A successful refresh is also
+ * reused for a short grace period by callers that still hold the tokens it replaced, or already
+ * hold the tokens it returned.
+ */
+class RefreshCoordinator {
+    static final long DEFAULT_GRACE_PERIOD = TimeUnit.SECONDS.toMillis(5);
+
+    private final long mGracePeriod;
+    private Refresh mRefresh;
+
+    RefreshCoordinator() {
+        this(DEFAULT_GRACE_PERIOD);
+    }
+
+    RefreshCoordinator(long gracePeriod) {
+        mGracePeriod = gracePeriod;
+    }
+
+    /**
+     * Returns the result of the refresh in progress, or of a recent one that replaced or
+     * returned the given access token. Otherwise runs the refresh on the calling thread.
+     *
+     * @param accessToken the access token the caller wants to refresh
+     * @param refresh     the refresh to run if no result can be shared
+     * @return the refreshed tokens
+     * @throws AuthorizationException the exception of the shared refresh
+     */
+    @NonNull
+    Tokens refresh(@Nullable String accessToken, @NonNull Callable<Tokens> refresh)
+            throws AuthorizationException {
+        Refresh task;
+        boolean owner = false;
+        synchronized (this) {
+            if (mRefresh == null || !mRefresh.canJoin(accessToken)) {
+                mRefresh = new Refresh(accessToken, refresh);
+                owner = true;
+            }
+            task = mRefresh;
+        }
+        if (owner) {
+            task.run();
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthorizationException(e.getMessage(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AuthorizationException) {
+                throw (AuthorizationException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new AuthorizationException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Stops sharing the result of the last refresh, for example after the tokens were cleared.
+     * A refresh in progress is still joined.
+     */
+    synchronized void clear() {
+        if (mRefresh != null && mRefresh.isDone()) {
+            mRefresh = null;
+        }
+    }
+
+    private final class Refresh extends FutureTask<Tokens> {
+        private final String mAccessToken;
+        private volatile Tokens mTokens;
+        private volatile long mCompletedAt;
+
+        Refresh(String accessToken, Callable<Tokens> refresh) {
+            super(refresh);
+            mAccessToken = accessToken;
+        }
+
+        @Override
+        protected void set(Tokens tokens) {
+            mTokens = tokens;
+            mCompletedAt = SystemClock.elapsedRealtime();
+            super.set(tokens);
+        }
+
+        // Called with the coordinator locked.
+        boolean canJoin(String accessToken) {
+            if (!isDone()) {
+                return true;
+            }
+            Tokens tokens = mTokens;
+            if (tokens == null || accessToken == null
+                    || SystemClock.elapsedRealtime() - mCompletedAt > mGracePeriod) {
+                return false;
+            }
+            return accessToken.equals(mAccessToken)
+                    || accessToken.equals(tokens.getAccessToken());
+        }
+    }
+}
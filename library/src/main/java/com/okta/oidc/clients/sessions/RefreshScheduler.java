@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.clients.sessions;
+
+import android.app.Activity;
+import android.app.ActivityManager;
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import com.okta.oidc.RequestCallback;
+import com.okta.oidc.RequestDispatcher;
+import com.okta.oidc.Tokens;
+import com.okta.oidc.util.AuthorizationException;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refreshes the access token a margin before it expires, so requests made while the app is in
+ * the foreground rarely wait for a refresh. The refresh time is moved earlier by a random
+ * jitter of up to a fifth of the margin. A failed refresh is retried with an exponential
+ * backoff, unless the authorization server rejected the refresh token.
+ *
+ * <p>Nothing is scheduled while the app is in the background: the scheduler pauses when the
+ * UI of the app is hidden and checks the tokens again when an activity is started. While the
+ * client has no tokens that can be refreshed, the tokens are checked once a minute, so tokens
+ * of a later sign in are picked up. All state is accessed on the main thread.
+ *
+ * <p>There is one scheduler per session: starting a scheduler stops the one of an earlier
+ * client of the same session, so clients created again, for example one per activity, don't
+ * refresh the same tokens in parallel. The scheduler only holds its client weakly and stops
+ * once the client is no longer used by the app.
+ */
+class RefreshScheduler {
+    private static final String TAG = RefreshScheduler.class.getSimpleName();
+    private static final int JITTER_DIVISOR = 5;
+    private static final long IDLE_CHECK_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static final long INITIAL_BACKOFF = TimeUnit.SECONDS.toMillis(5);
+    private static final long MAX_BACKOFF = TimeUnit.MINUTES.toMillis(5);
+
+    // The started scheduler of each session.
+    private static final Map<String, RefreshScheduler> SCHEDULERS = new HashMap<>();
+
+    private final String mSession;
+    private final WeakReference<SessionClient> mClient;
+    private final RequestDispatcher mDispatcher;
+    private final Handler mHandler;
+    private final long mMargin;
+    private final Runnable mCheck = this::check;
+    private Application mApplication;
+    private Lifecycle mLifecycle;
+    private boolean mStopped;
+    private boolean mForeground;
+    private boolean mRefreshing;
+    private int mFailures;
+    // The expiration the refresh time was chosen for, so checks don't draw a new jitter, and
+    // the refresh time on the elapsed realtime clock, which wall clock changes don't move.
+    private long mExpiresAt;
+    private long mRefreshAt;
+
+    RefreshScheduler(@NonNull String session, @NonNull SessionClient client,
+                     @NonNull RequestDispatcher dispatcher, long margin) {
+        mSession = session;
+        mClient = new WeakReference<>(client);
+        mDispatcher = dispatcher;
+        mHandler = new Handler(Looper.getMainLooper());
+        mMargin = margin;
+    }
+
+    /**
+     * Starts scheduling refreshes if the app is in the foreground, and follows the app between
+     * foreground and background from now on. Stops the scheduler started for the same
+     * session before.
+     *
+     * @param application the application
+     */
+    void start(@NonNull Application application) {
+        mApplication = application;
+        mLifecycle = new Lifecycle();
+        application.registerActivityLifecycleCallbacks(mLifecycle);
+        application.registerComponentCallbacks(mLifecycle);
+        RefreshScheduler previous;
+        synchronized (SCHEDULERS) {
+            previous = SCHEDULERS.put(mSession, this);
+        }
+        if (previous != null) {
+            previous.stop();
+        }
+        ActivityManager.RunningAppProcessInfo info = new ActivityManager.RunningAppProcessInfo();
+        ActivityManager.getMyMemoryState(info);
+        if (info.importance <= ActivityManager.RunningAppProcessInfo.IMPORTANCE_VISIBLE) {
+            mHandler.post(this::onForeground);
+        }
+    }
+
+    /**
+     * Stops scheduling refreshes and unregisters the callbacks of the app. A refresh already
+     * running completes, but nothing is scheduled after it.
+     */
+    void stop() {
+        mHandler.post(this::release);
+    }
+
+    private void release() {
+        if (mStopped) {
+            return;
+        }
+        mStopped = true;
+        onBackground();
+        synchronized (SCHEDULERS) {
+            if (SCHEDULERS.get(mSession) == this) {
+                SCHEDULERS.remove(mSession);
+            }
+        }
+        if (mApplication != null) {
+            mApplication.unregisterActivityLifecycleCallbacks(mLifecycle);
+            mApplication.unregisterComponentCallbacks(mLifecycle);
+            mApplication = null;
+        }
+    }
+
+    @VisibleForTesting
+    void onForeground() {
+        if (!mForeground && !mStopped) {
+            mForeground = true;
+            mFailures = 0;
+            check();
+        }
+    }
+
+    @VisibleForTesting
+    void onBackground() {
+        mForeground = false;
+        mHandler.removeCallbacks(mCheck);
+    }
+
+    // Reads the tokens on a worker thread and schedules the next check on the main thread.
+    private void check() {
+        mHandler.removeCallbacks(mCheck);
+        if (!mForeground || mRefreshing) {
+            return;
+        }
+        SessionClient client = mClient.get();
+        if (client == null) {
+            release();
+            return;
+        }
+        mDispatcher.runTask(() -> {
+            Tokens tokens = null;
+            try {
+                tokens = client.getTokens();
+            } catch (AuthorizationException e) {
+                Log.w(TAG, "Failed to read tokens", e);
+            }
+            final Tokens current = tokens;
+            mHandler.post(() -> scheduleFor(current, false));
+        });
+    }
+
+    private void scheduleFor(Tokens tokens, boolean refreshed) {
+        if (!mForeground || mRefreshing) {
+            return;
+        }
+        if (tokens == null || tokens.getRefreshToken() == null || tokens.getExpiresAt() <= 0) {
+            mHandler.postDelayed(mCheck, IDLE_CHECK_INTERVAL);
+            return;
+        }
+        if (refreshed || tokens.getExpiresAt() != mExpiresAt) {
+            long lifetime = tokens.getExpiresAt() - System.currentTimeMillis();
+            long jitter = ThreadLocalRandom.current().nextLong(mMargin / JITTER_DIVISOR + 1);
+            long delay = lifetime - mMargin - jitter;
+            if (refreshed && delay <= 0) {
+                //the tokens live shorter than the margin, don't refresh them again right away.
+                delay = Math.max(lifetime / 2, INITIAL_BACKOFF);
+            }
+            mExpiresAt = tokens.getExpiresAt();
+            mRefreshAt = SystemClock.elapsedRealtime() + delay;
+        }
+        long delay = mRefreshAt - SystemClock.elapsedRealtime();
+        if (delay > 0) {
+            mHandler.postDelayed(mCheck, delay);
+        } else {
+            refresh();
+        }
+    }
+
+    private void refresh() {
+        SessionClient client = mClient.get();
+        if (client == null) {
+            release();
+            return;
+        }
+        mRefreshing = true;
+        client.refreshToken(new RequestCallback<Tokens, AuthorizationException>() {
+            @Override
+            public void onSuccess(@NonNull Tokens result) {
+                mHandler.post(() -> {
+                    mRefreshing = false;
+                    mFailures = 0;
+                    scheduleFor(result, true);
+                });
+            }
+
+            @Override
+            public void onError(String error, AuthorizationException exception) {
+                mHandler.post(() -> {
+                    mRefreshing = false;
+                    if (!mForeground) {
+                        return;
+                    }
+                    if (exception != null
+                            && exception.type == AuthorizationException.TYPE_OAUTH_TOKEN_ERROR) {
+                        Log.w(TAG, "Refresh token rejected, waiting for new tokens", exception);
+                        mHandler.postDelayed(mCheck, IDLE_CHECK_INTERVAL);
+                    } else {
+                        mHandler.postDelayed(mCheck, backoff(++mFailures));
+                    }
+                });
+            }
+        });
+    }
+
+    // Returns a random delay between half and all of the exponential backoff.
+    private static long backoff(int failures) {
+        long backoff = MAX_BACKOFF;
+        if (failures < Long.SIZE - 1) {
+            backoff = Math.min(MAX_BACKOFF, INITIAL_BACKOFF << (failures - 1));
+        }
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    private final class Lifecycle implements Application.ActivityLifecycleCallbacks,
+            ComponentCallbacks2 {
+        @Override
+        public void onActivityStarted(Activity activity) {
+            onForeground();
+        }
+
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_UI_HIDDEN) {
+                onBackground();
+            }
+        }
+
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+            //NO-OP
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+            //NO-OP
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+            //NO-OP
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+            //NO-OP
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+            //NO-OP
+        }
+
+        @Override
+        public void onActivityDestroyed(Activity activity) {
+            //NO-OP
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+            //NO-OP
+        }
+
+        @Override
+        public void onLowMemory() {
+            //NO-OP
+        }
+    }
+}
@@ -20,6 +20,7 @@ import android.net.Uri;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.okta.oidc.OktaIdToken;
 import com.okta.oidc.RequestCallback;
 import com.okta.oidc.Tokens;
 import com.okta.oidc.net.ConnectionParameters;
@@ -216,6 +217,16 @@ public interface SessionClient extends BaseSessionClient {
      */
     Tokens getTokens() throws AuthorizationException;
 
+    /**
+     * Gets the parsed id token of the current tokens {@link OktaIdToken}. The parsed token is
+     * cached, so reading the claims doesn't parse the token again until the tokens change.
+     *
+     * @return the id token or null if there is no id token
+     * @throws AuthorizationException exception when failing to get tokens. Usually from decrypting.
+     */
+    @Nullable
+    OktaIdToken getIdToken() throws AuthorizationException;
+
     /**
      * Clears all data. This will remove all tokens from the client.
      */
@@ -15,8 +15,19 @@
 
 package com.okta.oidc.clients.sessions;
 
+import android.app.Application;
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 
+import com.okta.oidc.OIDCConfig;
+import com.okta.oidc.RequestExecutors;
+import com.okta.oidc.net.ClientExchange;
+import com.okta.oidc.net.ConnectionParameters;
+import com.okta.oidc.net.OktaHttpClient;
+
 import java.util.concurrent.Executor;
 
 /**
@@ -24,13 +35,65 @@ import java.util.concurrent.Executor;
  */
 @RestrictTo(RestrictTo.Scope.LIBRARY)
 public class SessionClientFactoryImpl {
+    public static final int DEFAULT_CONCURRENCY = SessionClientImpl.DEFAULT_CONCURRENCY;
+
     private Executor executor;
+    private int concurrency;
+    private RequestExecutors executors;
+    private long refreshMargin;
 
     public SessionClientFactoryImpl(Executor executor) {
+        this(executor, DEFAULT_CONCURRENCY, RequestExecutors.defaults(), 0);
+    }
+
+    public SessionClientFactoryImpl(Executor executor, int concurrency,
+                                    RequestExecutors executors, long refreshMargin) {
         this.executor = executor;
+        this.concurrency = concurrency;
+        this.executors = executors;
+        this.refreshMargin = refreshMargin;
+    }
+
+    /**
+     * Returns how many session requests run in parallel with the http client. A client that
+     * doesn't override {@link OktaHttpClient#execute(Uri, ConnectionParameters)} holds the
+     * response of its last request, so its requests run one at a time, see
+     * {@link ClientExchange#runsOneRequestAtATime(OktaHttpClient)}.
+     *
+     * @param concurrency the configured concurrency
+     * @param httpClient  the http client of the session
+     * @return the concurrency used for the session requests
+     */
+    public static int concurrencyFor(int concurrency, @Nullable OktaHttpClient httpClient) {
+        if (httpClient == null || !ClientExchange.runsOneRequestAtATime(httpClient)) {
+            return concurrency;
+        }
+        return 1;
     }
 
     public SessionClient createClient(SyncSessionClient syncSessionClient) {
-        return new SessionClientImpl(executor, syncSessionClient);
+        return createClient(syncSessionClient, null, null);
+    }
+
+    /**
+     * Creates the client and, if a refresh margin was set, starts refreshing its tokens before
+     * they expire. The refreshes of a client created before for the same config stop.
+     *
+     * @param syncSessionClient the sync client running the requests
+     * @param config            the config of the client, identifying its session
+     * @param context           the context used to follow the app between foreground and
+     *                          background, refreshes are not scheduled without it
+     * @return the session client
+     */
+    public SessionClient createClient(SyncSessionClient syncSessionClient,
+                                      @Nullable OIDCConfig config, @Nullable Context context) {
+        SessionClientImpl client = new SessionClientImpl(executor, syncSessionClient,
+                concurrency, executors);
+        if (refreshMargin > 0 && config != null && context != null) {
+            String session = config.getClientId() + " " + config.getDiscoveryUri();
+            new RefreshScheduler(session, client, client.getDispatcher(), refreshMargin)
+                    .start((Application) context.getApplicationContext());
+        }
+        return client;
     }
 }
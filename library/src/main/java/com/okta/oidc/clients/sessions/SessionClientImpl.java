@@ -16,13 +16,14 @@
 package com.okta.oidc.clients.sessions;
 
 import android.net.Uri;
-import android.os.Process;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.okta.oidc.OktaIdToken;
 import com.okta.oidc.RequestCallback;
 import com.okta.oidc.RequestDispatcher;
+import com.okta.oidc.RequestExecutors;
 import com.okta.oidc.Tokens;
 import com.okta.oidc.net.ConnectionParameters;
 import com.okta.oidc.net.response.IntrospectInfo;
@@ -32,78 +33,91 @@ import com.okta.oidc.util.AuthorizationException;
 
 import org.json.JSONObject;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Runs the requests of a {@link SyncSessionClient} in the background.
+ *
+ * <p>Requests that only read the tokens run in parallel, up to the configured concurrency.
+ * Requests that change the tokens (refresh and revoke) are ordered: they start after all
+ * requests submitted before them finished, and requests submitted after them start once they
+ * finished. Requests are started in the order they were submitted.
+ */
 class SessionClientImpl implements SessionClient {
+    static final int DEFAULT_CONCURRENCY = 3;
+    private static final String CANCELED = "Canceled";
+    private static final String THREAD_NAME = "OktaSessionClient";
+
     private final SyncSessionClient mSyncSessionClient;
     private final RequestDispatcher mDispatcher;
-    private volatile Future<?> mFutureTask;
     private final List<RequestCallback<Tokens, AuthorizationException>>
             refreshTokenRequestCallbacks;
-    private final Executor serialExecutor = Executors.newSingleThreadExecutor();
+    private final int mConcurrency;
+    private final RequestExecutors mExecutors;
+    // The executor running the requests, a private pool if the app didn't provide one.
+    private final Executor mWorkers;
+    private final boolean mOwnWorkers;
+    // Requests waiting to be started in submission order, and the requests running.
+    private final Queue<Request<?>> mQueue = new ArrayDeque<>();
+    private int mRunning;
+    private boolean mOrderedRunning;
+    // Requests submitted and not done yet, canceled together by cancel().
+    private final Set<Request<?>> mRequests =
+            Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final AtomicLong mSubmitted = new AtomicLong();
+    // Requests with a number up to this one are canceled if they didn't start yet.
+    private volatile long mCanceledUpTo;
 
     SessionClientImpl(Executor callbackExecutor, SyncSessionClient syncSessionClient) {
+        this(callbackExecutor, syncSessionClient, DEFAULT_CONCURRENCY);
+    }
+
+    SessionClientImpl(Executor callbackExecutor, SyncSessionClient syncSessionClient,
+                      int concurrency) {
+        this(callbackExecutor, syncSessionClient, concurrency, RequestExecutors.defaults());
+    }
+
+    SessionClientImpl(Executor callbackExecutor, SyncSessionClient syncSessionClient,
+                      int concurrency, RequestExecutors executors) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1");
+        }
         mSyncSessionClient = syncSessionClient;
-        mDispatcher = new RequestDispatcher(callbackExecutor);
+        mDispatcher = new RequestDispatcher(callbackExecutor, executors);
         refreshTokenRequestCallbacks = new ArrayList<>();
+        mConcurrency = concurrency;
+        mExecutors = executors;
+        mOwnWorkers = executors.getNetworkExecutor() == null;
+        mWorkers = mOwnWorkers ? executors.newPool(THREAD_NAME, concurrency)
+                : executors.getNetworkExecutor();
     }
 
     public void getUserProfile(RequestCallback<UserInfo, AuthorizationException> cb) {
-        CallbackWrapper<UserInfo, AuthorizationException> wrapper = new CallbackWrapper<>(cb);
-        executeSerial(wrapper, () -> {
-            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-            try {
-                UserInfo userInfo = mSyncSessionClient.getUserProfile();
-                mDispatcher.submitResults(() -> wrapper.onSuccess(userInfo));
-            } catch (AuthorizationException ae) {
-                mDispatcher.submitResults(() -> wrapper.onError(ae.error, ae));
-            } catch (Exception ex) {
-                mDispatcher.submitResults(() -> wrapper.onError(ex.getMessage(),
-                        new AuthorizationException(ex.getMessage(), ex)));
-            }
-        });
+        execute(false, mSyncSessionClient::getUserProfile, cb);
     }
 
     public void introspectToken(String token, String tokenType,
                                 final RequestCallback<IntrospectInfo, AuthorizationException> cb) {
-        CallbackWrapper<IntrospectInfo, AuthorizationException> wrapper = new CallbackWrapper<>(cb);
-        executeSerial(wrapper, () -> {
-            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-            try {
-                IntrospectInfo introspectInfo = mSyncSessionClient
-                        .introspectToken(token, tokenType);
-                mDispatcher.submitResults(() -> wrapper.onSuccess(introspectInfo));
-            } catch (AuthorizationException ae) {
-                mDispatcher.submitResults(() -> wrapper.onError(ae.error, ae));
-            } catch (Exception ex) {
-                mDispatcher.submitResults(() -> wrapper.onError(ex.getMessage(),
-                        new AuthorizationException(ex.getMessage(), ex)));
-            }
-        });
+        execute(false, () -> mSyncSessionClient.introspectToken(token, tokenType), cb);
     }
 
     public void revokeToken(String token,
                             final RequestCallback<Boolean, AuthorizationException> cb) {
-        CallbackWrapper<Boolean, AuthorizationException> wrapper = new CallbackWrapper<>(cb);
-        executeSerial(wrapper, () -> {
-            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-            try {
-                Boolean isRevoke = mSyncSessionClient.revokeToken(token);
-                mDispatcher.submitResults(() -> wrapper.onSuccess(isRevoke));
-            } catch (AuthorizationException ae) {
-                mDispatcher.submitResults(() -> wrapper.onError(ae.error, ae));
-            } catch (Exception ex) {
-                mDispatcher.submitResults(() -> wrapper.onError(ex.getMessage(),
-                        new AuthorizationException(ex.getMessage(), ex)));
-            }
-        });
+        execute(true, () -> mSyncSessionClient.revokeToken(token), cb);
     }
 
     public void refreshToken(final RequestCallback<Tokens, AuthorizationException> cb) {
@@ -113,48 +127,35 @@ class SessionClientImpl implements SessionClient {
         if (Thread.holdsLock(refreshTokenRequestCallbacks)) {
             throw new RuntimeException("refreshToken can't be called from callback.");
         }
-        CallbackWrapper<Tokens, AuthorizationException> wrapper = new CallbackWrapper<>(cb);
         synchronized (refreshTokenRequestCallbacks) {
             isEmpty = refreshTokenRequestCallbacks.isEmpty();
-            refreshTokenRequestCallbacks.add(wrapper);
+            refreshTokenRequestCallbacks.add(cb);
         }
         if (isEmpty) {
-            executeSerial(wrapper, () -> {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                try {
-                    Tokens result = mSyncSessionClient.refreshToken();
-                    mDispatcher.submitResults(() -> {
-                        synchronized (refreshTokenRequestCallbacks) {
-                            for (RequestCallback<Tokens, AuthorizationException> callback
-                                    : refreshTokenRequestCallbacks) {
-                                callback.onSuccess(result);
-                            }
-                            refreshTokenRequestCallbacks.clear();
-                        }
-                    });
-                } catch (AuthorizationException ae) {
-                    mDispatcher.submitResults(() -> {
-                        synchronized (refreshTokenRequestCallbacks) {
-                            for (RequestCallback<Tokens, AuthorizationException> callback
-                                    : refreshTokenRequestCallbacks) {
-                                callback.onError(ae.error, ae);
+            execute(true, mSyncSessionClient::refreshToken,
+                    new RequestCallback<Tokens, AuthorizationException>() {
+                        @Override
+                        public void onSuccess(@NonNull Tokens result) {
+                            synchronized (refreshTokenRequestCallbacks) {
+                                for (RequestCallback<Tokens, AuthorizationException> callback
+                                        : refreshTokenRequestCallbacks) {
+                                    callback.onSuccess(result);
+                                }
+                                refreshTokenRequestCallbacks.clear();
                             }
-                            refreshTokenRequestCallbacks.clear();
                         }
-                    });
-                } catch (Exception ex) {
-                    mDispatcher.submitResults(() -> {
-                        synchronized (refreshTokenRequestCallbacks) {
-                            for (RequestCallback<Tokens, AuthorizationException> callback
-                                    : refreshTokenRequestCallbacks) {
-                                callback.onError(ex.getMessage(),
-                                        new AuthorizationException(ex.getMessage(), ex));
+
+                        @Override
+                        public void onError(String error, AuthorizationException exception) {
+                            synchronized (refreshTokenRequestCallbacks) {
+                                for (RequestCallback<Tokens, AuthorizationException> callback
+                                        : refreshTokenRequestCallbacks) {
+                                    callback.onError(error, exception);
+                                }
+                                refreshTokenRequestCallbacks.clear();
                             }
-                            refreshTokenRequestCallbacks.clear();
                         }
                     });
-                }
-            });
         }
     }
 
@@ -163,25 +164,18 @@ class SessionClientImpl implements SessionClient {
         return mSyncSessionClient.getTokens();
     }
 
+    @Override
+    public OktaIdToken getIdToken() throws AuthorizationException {
+        return mSyncSessionClient.getIdToken();
+    }
+
     @Override
     public void authorizedRequest(@NonNull Uri uri, @Nullable Map<String, String> properties,
                                   @Nullable Map<String, String> postParameters,
                                   @NonNull ConnectionParameters.RequestMethod method,
                                   final RequestCallback<JSONObject, AuthorizationException> cb) {
-        CallbackWrapper<JSONObject, AuthorizationException> wrapper = new CallbackWrapper<>(cb);
-        executeSerial(wrapper, () -> {
-            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-            try {
-                JSONObject result = mSyncSessionClient
-                        .authorizedRequest(uri, properties, postParameters, method);
-                mDispatcher.submitResults(() -> wrapper.onSuccess(result));
-            } catch (AuthorizationException ae) {
-                mDispatcher.submitResults(() -> wrapper.onError(ae.error, ae));
-            } catch (Exception ex) {
-                mDispatcher.submitResults(() -> wrapper.onError(ex.getMessage(),
-                        new AuthorizationException(ex.getMessage(), ex)));
-            }
-        });
+        execute(false, () -> mSyncSessionClient
+                .authorizedRequest(uri, properties, postParameters, method), cb);
     }
 
     public boolean isAuthenticated() {
@@ -189,14 +183,28 @@ class SessionClientImpl implements SessionClient {
     }
 
     public void clear() {
+        //A refresh in progress doesn't save its tokens after this, see SyncSessionClientImpl.
         mSyncSessionClient.clear();
     }
 
     @Override
     public void cancel() {
+        //only the requests submitted so far are canceled, not those submitted after this.
+        long canceledUpTo = mSubmitted.get();
+        mCanceledUpTo = canceledUpTo;
+        List<Request<?>> canceled = new ArrayList<>();
+        for (Request<?> request : mRequests) {
+            if (request.mNumber <= canceledUpTo) {
+                canceled.add(request);
+            }
+        }
         mDispatcher.runTask(() -> {
-            mSyncSessionClient.cancel();
-            cancelFuture();
+            if (mSyncSessionClient instanceof SyncSessionClientImpl) {
+                ((SyncSessionClientImpl) mSyncSessionClient).cancel(canceled);
+            }
+            for (Request<?> request : canceled) {
+                request.cancel(true);
+            }
         });
     }
 
@@ -205,46 +213,139 @@ class SessionClientImpl implements SessionClient {
         mSyncSessionClient.migrateTo(manager);
     }
 
-    private void cancelFuture() {
-        if (mFutureTask != null && (!mFutureTask.isDone() || !mFutureTask.isCancelled())) {
-            mFutureTask.cancel(true);
+    @Override
+    public void flush() throws AuthorizationException {
+        mSyncSessionClient.flush();
+    }
+
+    // The dispatcher of the callbacks, also used by the refresh scheduler of this client.
+    RequestDispatcher getDispatcher() {
+        return mDispatcher;
+    }
+
+    private <T> void execute(boolean ordered, Callable<T> call,
+                             @Nullable RequestCallback<T, AuthorizationException> cb) {
+        Request<T> request = new Request<>(mSubmitted.incrementAndGet(), ordered, call, cb);
+        mRequests.add(request);
+        synchronized (mQueue) {
+            mQueue.add(request);
         }
+        schedule();
     }
 
-    private void executeSerial(CallbackWrapper<?, ?> callback, Runnable runnable) {
-        serialExecutor.execute(() -> {
-            cancelFuture();
-            mFutureTask = mDispatcher.submit(runnable);
-            callback.waitForCallback();
-        });
+    // Starts the queued requests that can run next, without waiting for a free thread.
+    private void schedule() {
+        List<Request<?>> started = new ArrayList<>();
+        List<Request<?>> canceled = new ArrayList<>();
+        synchronized (mQueue) {
+            Request<?> next;
+            while ((next = mQueue.peek()) != null) {
+                if (next.isCanceledBefore()) {
+                    canceled.add(mQueue.poll());
+                    continue;
+                }
+                if (mOrderedRunning || (next.mOrdered ? mRunning > 0 : mRunning >= mConcurrency)) {
+                    break;
+                }
+                mQueue.poll();
+                mRunning++;
+                mOrderedRunning = next.mOrdered;
+                started.add(next);
+            }
+        }
+        for (Request<?> request : canceled) {
+            request.cancel(false);
+        }
+        for (Request<?> request : started) {
+            Runnable task = () -> {
+                try {
+                    if (request.isCanceledBefore()) {
+                        request.cancel(false);
+                    } else {
+                        request.run();
+                    }
+                } finally {
+                    finished(request);
+                }
+            };
+            try {
+                mWorkers.execute(mOwnWorkers ? task : mExecutors.withPriority(task));
+            } catch (RejectedExecutionException e) {
+                request.setRejected(e);
+                finished(request);
+            }
+        }
     }
 
-    private static class CallbackWrapper<T, U extends Exception> implements RequestCallback<T, U> {
-        private static final int MAX_WAIT_MINUTES = 5;
-        private final RequestCallback<T, U> delegate;
-        private final CountDownLatch latch = new CountDownLatch(1);
+    private void finished(Request<?> request) {
+        synchronized (mQueue) {
+            mRunning--;
+            if (request.mOrdered) {
+                mOrderedRunning = false;
+            }
+        }
+        schedule();
+    }
 
-        CallbackWrapper(RequestCallback<T, U> delegate) {
-            this.delegate = delegate;
+    private final class Request<T> extends FutureTask<T> {
+        private final long mNumber;
+        private final boolean mOrdered;
+        private final RequestCallback<T, AuthorizationException> mCallback;
+
+        Request(long number, boolean ordered, Callable<T> call,
+                @Nullable RequestCallback<T, AuthorizationException> cb) {
+            super(call);
+            mNumber = number;
+            mOrdered = ordered;
+            mCallback = cb;
         }
 
-        @Override public void onSuccess(@NonNull T result) {
-            delegate.onSuccess(result);
-            latch.countDown();
+        // True if the request was canceled or submitted before the last call to cancel().
+        boolean isCanceledBefore() {
+            return mNumber <= mCanceledUpTo || isCancelled();
         }
 
-        @Override public void onError(String error, U exception) {
-            delegate.onError(error, exception);
-            latch.countDown();
+        void setRejected(Exception e) {
+            setException(e);
         }
 
-        boolean waitForCallback() {
+        @Override
+        public void run() {
+            //lets cancel() abort the connections of this request only.
+            SyncSessionClientImpl.CALLER.set(this);
+            try {
+                super.run();
+            } finally {
+                SyncSessionClientImpl.CALLER.remove();
+            }
+        }
+
+        @Override
+        protected void done() {
+            mRequests.remove(this);
+            if (mCallback == null) {
+                return;
+            }
+            if (isCancelled()) {
+                AuthorizationException ae = new AuthorizationException(CANCELED,
+                        new CancellationException(CANCELED));
+                mDispatcher.submitResults(() -> mCallback.onError(CANCELED, ae));
+                return;
+            }
             try {
-                return latch.await(MAX_WAIT_MINUTES, TimeUnit.MINUTES);
+                T result = get();
+                mDispatcher.submitResults(() -> mCallback.onSuccess(result));
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                AuthorizationException ae = cause instanceof AuthorizationException
+                        ? (AuthorizationException) cause
+                        : new AuthorizationException(cause.getMessage(), cause);
+                String error = cause instanceof AuthorizationException
+                        ? ae.error : cause.getMessage();
+                mDispatcher.submitResults(() -> mCallback.onError(error, ae));
             } catch (InterruptedException e) {
-                e.printStackTrace();
+                Thread.currentThread().interrupt();
             }
-            return false;
         }
     }
 }
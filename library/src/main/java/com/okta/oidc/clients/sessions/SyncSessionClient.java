@@ -20,6 +20,7 @@ import android.net.Uri;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.okta.oidc.OktaIdToken;
 import com.okta.oidc.Tokens;
 import com.okta.oidc.net.ConnectionParameters;
 import com.okta.oidc.net.response.IntrospectInfo;
@@ -163,6 +164,9 @@ public interface SyncSessionClient extends BaseSessionClient {
 
     /**
      * Refresh token returns access, refresh, and ID tokens {@link Tokens}.
+     * Only one refresh is sent at a time. Threads that call this method while a refresh is in
+     * progress wait for it and get the same result or exception. A refresh that succeeded a few
+     * seconds ago is returned again to callers that still hold the tokens it replaced.
      * Example usage:
      * {@code
      * <pre>
@@ -197,6 +201,27 @@ public interface SyncSessionClient extends BaseSessionClient {
      */
     Tokens getTokens() throws AuthorizationException;
 
+    /**
+     * Gets the parsed id token of the current tokens {@link OktaIdToken}. The parsed token is
+     * cached, so reading the claims doesn't parse the token again until the tokens change.
+     * Example usage:
+     * {@code
+     * <pre>
+     * try {
+     *     OktaIdToken idToken = client.getIdToken();
+     *     String email = idToken.getClaims().email;
+     * } catch (AuthorizationException e) {
+     *     //handle exception
+     * }
+     * </pre>
+     * }
+     *
+     * @return the id token or null if there is no id token
+     * @throws AuthorizationException the authorization exception
+     */
+    @Nullable
+    OktaIdToken getIdToken() throws AuthorizationException;
+
     /**
      * Clears all data. This will remove all tokens from the client.
      */
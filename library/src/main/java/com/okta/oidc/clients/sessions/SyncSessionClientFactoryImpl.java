@@ -20,6 +20,8 @@ import androidx.annotation.RestrictTo;
 import com.okta.oidc.OIDCConfig;
 import com.okta.oidc.OktaState;
 import com.okta.oidc.net.OktaHttpClient;
+import com.okta.oidc.net.response.TokenResponse;
+import com.okta.oidc.storage.OktaRepository;
 
 /**
  * @hide
@@ -30,4 +32,22 @@ public class SyncSessionClientFactoryImpl {
                                           OktaHttpClient httpClient) {
         return new SyncSessionClientImpl(oidcConfig, oktaState, httpClient);
     }
+
+    /**
+     * Saves the tokens of a sign in. The ID token parsed by the token request is cached by the
+     * session client, so reading it doesn't parse it again.
+     *
+     * @param sessionClient the session client created by this factory
+     * @param oktaState     the state of the session
+     * @param response      the token response
+     * @throws OktaRepository.EncryptionException if the tokens can't be saved
+     */
+    public static void saveTokens(SyncSessionClient sessionClient, OktaState oktaState,
+                                  TokenResponse response)
+            throws OktaRepository.EncryptionException {
+        oktaState.save(response);
+        if (sessionClient instanceof SyncSessionClientImpl) {
+            ((SyncSessionClientImpl) sessionClient).cacheIdToken(response);
+        }
+    }
 }
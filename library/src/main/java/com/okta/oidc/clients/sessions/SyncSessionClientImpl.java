@@ -20,7 +20,9 @@ import android.net.Uri;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.google.gson.JsonParseException;
 import com.okta.oidc.OIDCConfig;
+import com.okta.oidc.OktaIdToken;
 import com.okta.oidc.OktaState;
 import com.okta.oidc.Tokens;
 import com.okta.oidc.net.ConnectionParameters;
@@ -42,9 +44,9 @@ import com.okta.oidc.util.AuthorizationException;
 
 import org.json.JSONObject;
 
-import java.lang.ref.WeakReference;
+import java.util.Collection;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.okta.oidc.clients.State.IDLE;
 import static com.okta.oidc.storage.OktaRepository.EncryptionException.INVALID_KEYS_ERROR;
@@ -53,8 +55,16 @@ class SyncSessionClientImpl implements SyncSessionClient {
     private OIDCConfig mOidcConfig;
     private OktaState mOktaState;
     OktaHttpClient mHttpClient;
-    private AtomicReference<WeakReference<BaseRequest>> mCurrentRequest =
-            new AtomicReference<>(new WeakReference<>(null));
+    // The caller set by an async session client on the thread running its request.
+    static final ThreadLocal<Object> CALLER = new ThreadLocal<>();
+    // Requests in progress and the callers that run them, canceled by cancel().
+    private final Map<BaseRequest<?, ?>, Object> mRequests = new ConcurrentHashMap<>();
+    private final IdTokenCache mIdTokens = new IdTokenCache();
+    private final RefreshCoordinator mRefresh = new RefreshCoordinator();
+    // Incremented by clear(), a refresh that started before doesn't save its tokens. Saving
+    // and clearing hold the lock, so new tokens saved after a clear are never deleted by it.
+    private final Object mClearLock = new Object();
+    private long mClearCount;
 
     SyncSessionClientImpl(OIDCConfig oidcConfig, OktaState oktaState,
                           OktaHttpClient httpClient) {
@@ -91,8 +101,7 @@ class SyncSessionClientImpl implements SyncSessionClient {
             TokenResponse tokenResponse = mOktaState.getTokenResponse();
             AuthorizedRequest request = createAuthorizedRequest(uri, properties, postParameters,
                     method, providerConfiguration, tokenResponse);
-            mCurrentRequest.set(new WeakReference<>(request));
-            return request.executeRequest(mHttpClient);
+            return execute(request);
         } catch (OktaRepository.EncryptionException e) {
             throw AuthorizationException.EncryptionErrors.byEncryptionException(e);
         }
@@ -119,8 +128,7 @@ class SyncSessionClientImpl implements SyncSessionClient {
             ProviderConfiguration providerConfiguration = mOktaState.getProviderConfiguration();
             TokenResponse tokenResponse = mOktaState.getTokenResponse();
             AuthorizedRequest request = userProfileRequest(providerConfiguration, tokenResponse);
-            JSONObject userInfo = request.executeRequest(mHttpClient);
-            mCurrentRequest.set(new WeakReference<>(request));
+            JSONObject userInfo = execute(request);
             return new UserInfo(userInfo);
         } catch (OktaRepository.EncryptionException e) {
             throw AuthorizationException.EncryptionErrors.byEncryptionException(e);
@@ -143,8 +151,7 @@ class SyncSessionClientImpl implements SyncSessionClient {
         try {
             IntrospectRequest request = introspectTokenRequest(token, tokenType,
                     mOktaState.getProviderConfiguration());
-            mCurrentRequest.set(new WeakReference<>(request));
-            return request.executeRequest(mHttpClient);
+            return execute(request);
         } catch (OktaRepository.EncryptionException e) {
             throw AuthorizationException.EncryptionErrors.byEncryptionException(e);
         }
@@ -164,8 +171,7 @@ class SyncSessionClientImpl implements SyncSessionClient {
         try {
             RevokeTokenRequest request = revokeTokenRequest(token,
                     mOktaState.getProviderConfiguration());
-            mCurrentRequest.set(new WeakReference<>(request));
-            return request.executeRequest(mHttpClient);
+            return execute(request);
         } catch (OktaRepository.EncryptionException e) {
             throw AuthorizationException.EncryptionErrors.byEncryptionException(e);
         }
@@ -183,12 +189,32 @@ class SyncSessionClientImpl implements SyncSessionClient {
 
     @Override
     public Tokens refreshToken() throws AuthorizationException {
+        TokenResponse current;
+        try {
+            current = mOktaState.getTokenResponse();
+        } catch (OktaRepository.EncryptionException e) {
+            throw AuthorizationException.EncryptionErrors.byEncryptionException(e);
+        }
+        return mRefresh.refresh(current != null ? current.getAccessToken() : null,
+                () -> refreshToken(current));
+    }
+
+    private Tokens refreshToken(TokenResponse current) throws AuthorizationException {
+        long clearCount;
+        synchronized (mClearLock) {
+            clearCount = mClearCount;
+        }
         try {
             RefreshTokenRequest request = refreshTokenRequest(mOktaState.getProviderConfiguration(),
-                    mOktaState.getTokenResponse());
-            mCurrentRequest.set(new WeakReference<>(request));
-            TokenResponse tokenResponse = request.executeRequest(mHttpClient);
-            mOktaState.save(tokenResponse);
+                    current);
+            TokenResponse tokenResponse = execute(request);
+            synchronized (mClearLock) {
+                if (clearCount != mClearCount) {
+                    throw AuthorizationException.GeneralErrors.PROGRAM_CANCELED_AUTH_FLOW;
+                }
+                mOktaState.save(tokenResponse);
+            }
+            cacheIdToken(tokenResponse);
             return new Tokens(tokenResponse);
         } catch (OktaRepository.EncryptionException e) {
             throw AuthorizationException.EncryptionErrors.byEncryptionException(e);
@@ -208,6 +234,29 @@ class SyncSessionClientImpl implements SyncSessionClient {
         }
     }
 
+    // Keeps the ID token parsed by the token request of saved tokens.
+    void cacheIdToken(TokenResponse tokenResponse) {
+        if (tokenResponse.getIdToken() != null) {
+            mIdTokens.put(tokenResponse.getIdToken(), tokenResponse.getParsedIdToken());
+        }
+    }
+
+    @Override
+    public OktaIdToken getIdToken() throws AuthorizationException {
+        try {
+            TokenResponse response = mOktaState.getTokenResponse();
+            if (response == null || response.getIdToken() == null) {
+                return null;
+            }
+            return mIdTokens.get(response.getIdToken());
+        } catch (OktaRepository.EncryptionException e) {
+            throw AuthorizationException.EncryptionErrors.byEncryptionException(e);
+        } catch (IllegalArgumentException | JsonParseException e) {
+            throw AuthorizationException.fromTemplate(
+                    AuthorizationException.GeneralErrors.ID_TOKEN_PARSING_ERROR, e);
+        }
+    }
+
     @Override
     public boolean isAuthenticated() {
         boolean hasTokenResponse = mOktaState.hasTokenResponse();
@@ -234,17 +283,40 @@ class SyncSessionClientImpl implements SyncSessionClient {
 
     @Override
     public void clear() {
-        mOktaState.delete(ProviderConfiguration.RESTORE.getKey());
-        mOktaState.delete(TokenResponse.RESTORE.getKey());
-        mOktaState.delete(WebRequest.RESTORE.getKey());
+        synchronized (mClearLock) {
+            mClearCount++;
+            mOktaState.delete(ProviderConfiguration.RESTORE.getKey());
+            mOktaState.delete(TokenResponse.RESTORE.getKey());
+            mOktaState.delete(WebRequest.RESTORE.getKey());
+        }
         mOktaState.setCurrentState(IDLE);
+        mIdTokens.clear();
+        mRefresh.clear();
+    }
+
+    private <T> T execute(BaseRequest<T, ?> request) throws AuthorizationException {
+        Object caller = CALLER.get();
+        mRequests.put(request, caller != null ? caller : request);
+        try {
+            return request.executeRequest(mHttpClient);
+        } finally {
+            mRequests.remove(request);
+        }
     }
 
     @Override
     public void cancel() {
-        mHttpClient.cancel();
-        if (mCurrentRequest.get().get() != null) {
-            mCurrentRequest.get().get().cancelRequest();
+        for (BaseRequest<?, ?> request : mRequests.keySet()) {
+            request.cancelRequest();
+        }
+    }
+
+    // Cancels only the requests in progress for the given callers.
+    void cancel(Collection<?> callers) {
+        for (Map.Entry<BaseRequest<?, ?>, Object> entry : mRequests.entrySet()) {
+            if (callers.contains(entry.getValue())) {
+                entry.getKey().cancelRequest();
+            }
         }
     }
 
@@ -256,13 +328,27 @@ class SyncSessionClientImpl implements SyncSessionClient {
             final TokenResponse tokenResponse = mOktaState.getTokenResponse();
             final WebRequest authorizedRequest = mOktaState.getAuthorizeRequest();
 
-            clear();
-
-            mOktaState.setEncryptionManager(manager);
+            //Replace the values of the old manager in a single storage update. If encryption
+            //with the new manager fails nothing is written and the old manager is kept.
+            mOktaState.newTransaction()
+                    .delete(ProviderConfiguration.RESTORE.getKey())
+                    .delete(TokenResponse.RESTORE.getKey())
+                    .delete(WebRequest.RESTORE.getKey())
+                    .setEncryptionManager(manager)
+                    .save(providerConfiguration)
+                    .save(tokenResponse)
+                    .save(authorizedRequest)
+                    .commit();
+            mOktaState.setCurrentState(IDLE);
+        } catch (OktaRepository.EncryptionException e) {
+            throw AuthorizationException.EncryptionErrors.byEncryptionException(e);
+        }
+    }
 
-            mOktaState.save(providerConfiguration);
-            mOktaState.save(tokenResponse);
-            mOktaState.save(authorizedRequest);
+    @Override
+    public void flush() throws AuthorizationException {
+        try {
+            mOktaState.flush();
         } catch (OktaRepository.EncryptionException e) {
             throw AuthorizationException.EncryptionErrors.byEncryptionException(e);
         }
@@ -21,6 +21,7 @@ import androidx.annotation.Nullable;
 
 import com.okta.oidc.CustomTabOptions;
 import com.okta.oidc.OIDCConfig;
+import com.okta.oidc.RequestExecutors;
 import com.okta.oidc.clients.ClientFactory;
 import com.okta.oidc.net.OktaHttpClient;
 import com.okta.oidc.storage.OktaStorage;
@@ -29,9 +30,17 @@ import com.okta.oidc.storage.security.EncryptionManager;
 public class SyncWebAuthClientFactory implements ClientFactory<SyncWebAuthClient> {
     private CustomTabOptions mCustomTabOptions;
     private String[] mSupportedBrowsers;
+    private RequestExecutors mRequestExecutors;
 
     public SyncWebAuthClientFactory(CustomTabOptions customTabOptions,
                                     @Nullable String... supportedBrowsers) {
+        this(RequestExecutors.defaults(), customTabOptions, supportedBrowsers);
+    }
+
+    public SyncWebAuthClientFactory(RequestExecutors requestExecutors,
+                                    CustomTabOptions customTabOptions,
+                                    @Nullable String... supportedBrowsers) {
+        mRequestExecutors = requestExecutors;
         mCustomTabOptions = customTabOptions;
         mSupportedBrowsers = supportedBrowsers;
     }
@@ -43,9 +52,11 @@ public class SyncWebAuthClientFactory implements ClientFactory<SyncWebAuthClient
                                           EncryptionManager encryptionManager,
                                           OktaHttpClient httpClient,
                                           boolean requireHardwareBackedKeyStore,
-                                          boolean cacheMode) {
+                                          boolean cacheMode,
+                                          boolean writeBehind,
+                                          boolean prefetch) {
         return new SyncWebAuthClientImpl(oidcConfig, context, oktaStorage, encryptionManager,
-                httpClient, requireHardwareBackedKeyStore, cacheMode,
-                mCustomTabOptions, mSupportedBrowsers);
+                httpClient, requireHardwareBackedKeyStore, cacheMode, writeBehind, prefetch,
+                mRequestExecutors, mCustomTabOptions, mSupportedBrowsers);
     }
 }
@@ -41,6 +41,7 @@ import com.okta.oidc.AuthenticationResultHandler.StateResult;
 import com.okta.oidc.CustomTabOptions;
 import com.okta.oidc.OIDCConfig;
 import com.okta.oidc.OktaRedirectActivity;
+import com.okta.oidc.RequestExecutors;
 import com.okta.oidc.clients.AuthAPI;
 import com.okta.oidc.clients.State;
 import com.okta.oidc.clients.sessions.SyncSessionClient;
@@ -94,16 +95,22 @@ class SyncWebAuthClientImpl extends AuthAPI implements SyncWebAuthClient {
                           OktaHttpClient httpClient,
                           boolean requireHardwareBackedKeyStore,
                           boolean cacheMode,
+                          boolean writeBehind,
+                          boolean prefetch,
+                          RequestExecutors executors,
                           CustomTabOptions customTabOptions,
                           String... supportedBrowsers) {
         super(oidcConfig, context, oktaStorage, encryptionManager, requireHardwareBackedKeyStore,
-                cacheMode);
+                cacheMode, writeBehind, executors);
         mSupportedBrowsers = supportedBrowsers;
         mCustomTabOptions = customTabOptions;
         mHttpClient = httpClient;
         mSessionClient = new SyncSessionClientFactoryImpl()
                 .createClient(oidcConfig, mOktaState, mHttpClient);
         mHandler = AuthenticationResultHandler.handler();
+        if (prefetch) {
+            prefetchConfiguration();
+        }
     }
 
     private boolean isRedirectUrisRegistered(@NonNull Uri uri, Activity activity) {
@@ -306,7 +313,8 @@ class SyncWebAuthClientImpl extends AuthAPI implements SyncWebAuthClient {
                             (AuthorizeRequest) authorizedRequest);
                     mCurrentRequest.set(new WeakReference<>(request));
                     response = request.executeRequest(mHttpClient);
-                    mOktaState.save(response);
+                    SyncSessionClientFactoryImpl.saveTokens(mSessionClient, mOktaState,
+                            response);
                 } catch (OktaRepository.EncryptionException e) {
                     return Result.error(EncryptionErrors.byEncryptionException(e));
                 } catch (AuthorizationException e) {
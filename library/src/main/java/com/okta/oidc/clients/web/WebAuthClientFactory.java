@@ -22,6 +22,7 @@ import androidx.annotation.RestrictTo;
 
 import com.okta.oidc.CustomTabOptions;
 import com.okta.oidc.OIDCConfig;
+import com.okta.oidc.RequestExecutors;
 import com.okta.oidc.clients.ClientFactory;
 import com.okta.oidc.net.OktaHttpClient;
 import com.okta.oidc.storage.OktaStorage;
@@ -34,11 +35,18 @@ public class WebAuthClientFactory implements ClientFactory<WebAuthClient> {
     private Executor mCallbackExecutor;
     private CustomTabOptions mCustomTabOptions;
     private String[] mSupportedBrowser;
+    private int mRequestConcurrency;
+    private RequestExecutors mRequestExecutors;
+    private long mRefreshMargin;
 
-    public WebAuthClientFactory(@Nullable Executor callbackExecutor,
+    public WebAuthClientFactory(@Nullable Executor callbackExecutor, int requestConcurrency,
+                                RequestExecutors requestExecutors, long refreshMargin,
                                 CustomTabOptions customTabOptions,
                                 @Nullable String... supportedBrowser) {
         mCallbackExecutor = callbackExecutor;
+        mRequestConcurrency = requestConcurrency;
+        mRequestExecutors = requestExecutors;
+        mRefreshMargin = refreshMargin;
         mCustomTabOptions = customTabOptions;
         mSupportedBrowser = supportedBrowser;
     }
@@ -50,9 +58,12 @@ public class WebAuthClientFactory implements ClientFactory<WebAuthClient> {
                                       EncryptionManager encryptionManager,
                                       OktaHttpClient httpClient,
                                       boolean requireHardwareBackedKeyStore,
-                                      boolean cacheMode) {
+                                      boolean cacheMode,
+                                      boolean writeBehind,
+                                      boolean prefetch) {
         return new WebAuthClientImpl(mCallbackExecutor, oidcConfig, context, oktaStorage,
                 encryptionManager, httpClient, requireHardwareBackedKeyStore, cacheMode,
+                writeBehind, prefetch, mRequestConcurrency, mRequestExecutors, mRefreshMargin,
                 mCustomTabOptions, mSupportedBrowser);
     }
 }
@@ -18,7 +18,6 @@ package com.okta.oidc.clients.web;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
-import android.os.Process;
 
 import androidx.annotation.AnyThread;
 import androidx.annotation.NonNull;
@@ -29,6 +28,7 @@ import com.okta.oidc.CustomTabOptions;
 import com.okta.oidc.OIDCConfig;
 import com.okta.oidc.RequestCallback;
 import com.okta.oidc.RequestDispatcher;
+import com.okta.oidc.RequestExecutors;
 import com.okta.oidc.ResultCallback;
 import com.okta.oidc.clients.sessions.SessionClient;
 import com.okta.oidc.clients.sessions.SessionClientFactoryImpl;
@@ -58,14 +58,23 @@ class WebAuthClientImpl implements WebAuthClient {
                       OktaHttpClient httpClient,
                       boolean requireHardwareBackedKeyStore,
                       boolean cacheMode,
+                      boolean writeBehind,
+                      boolean prefetch,
+                      int requestConcurrency,
+                      RequestExecutors requestExecutors,
+                      long refreshMargin,
                       CustomTabOptions customTabOptions,
                       String... supportedBrowsers) {
-        mSyncAuthClient = new SyncWebAuthClientFactory(customTabOptions, supportedBrowsers)
+        mSyncAuthClient = new SyncWebAuthClientFactory(requestExecutors, customTabOptions,
+                supportedBrowsers)
                 .createClient(oidcConfig, context, oktaStorage, encryptionManager,
-                        httpClient, requireHardwareBackedKeyStore, cacheMode);
-        mSessionImpl = new SessionClientFactoryImpl(executor)
-                .createClient(mSyncAuthClient.getSessionClient());
-        mDispatcher = new RequestDispatcher(executor);
+                        httpClient, requireHardwareBackedKeyStore, cacheMode, writeBehind,
+                        prefetch);
+        mSessionImpl = new SessionClientFactoryImpl(executor,
+                SessionClientFactoryImpl.concurrencyFor(requestConcurrency, httpClient),
+                requestExecutors, refreshMargin)
+                .createClient(mSyncAuthClient.getSessionClient(), oidcConfig, context);
+        mDispatcher = new RequestDispatcher(executor, requestExecutors);
     }
 
     private void registerActivityLifeCycle(@NonNull final Activity activity) {
@@ -144,7 +153,6 @@ class WebAuthClientImpl implements WebAuthClient {
         }
         final AuthenticationPayload finalPayload = payload;
         mFutureTask = mDispatcher.submit(() -> {
-            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
             try {
                 Result result = mSyncAuthClient.signIn(activity, finalPayload);
                 processSignInResult(result);
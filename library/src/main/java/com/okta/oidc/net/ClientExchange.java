@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.net;
+
+import android.net.Uri;
+import android.os.CancellationSignal;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Adapts a {@link OktaHttpClient} which holds the response of its last request to the
+ * {@link OktaHttpClient.Exchange} of that request.
+ *
+ * @hide
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public final class ClientExchange implements OktaHttpClient.Exchange {
+    // One permit per client, held from connect() until the exchange is closed, so a client
+    // that holds the response of its last request runs one request at a time. A semaphore
+    // because the exchange may be closed on another thread than the one that connected.
+    private static final Map<OktaHttpClient, Semaphore> sLocks = new WeakHashMap<>();
+
+    private final OktaHttpClient mClient;
+    private final InputStream mContent;
+    @Nullable
+    private final Semaphore mLock;
+    private final AtomicBoolean mClosed = new AtomicBoolean();
+
+    ClientExchange(OktaHttpClient client, @Nullable InputStream content) {
+        this(client, content, null);
+    }
+
+    private ClientExchange(OktaHttpClient client, @Nullable InputStream content,
+                           @Nullable Semaphore lock) {
+        mClient = client;
+        mContent = content;
+        mLock = lock;
+    }
+
+    /**
+     * Returns if the client holds the response of its last request, because it implements
+     * neither {@link OktaHttpClient#execute(Uri, ConnectionParameters)} nor
+     * {@link OktaHttpClient#execute(Uri, ConnectionParameters, CancellationSignal)}. Requests of
+     * such a client run one at a time.
+     *
+     * @param client the client
+     * @return true if requests of the client run one at a time
+     */
+    public static boolean runsOneRequestAtATime(@NonNull OktaHttpClient client) {
+        return !overrides(client, Uri.class, ConnectionParameters.class) &&
+                !overrides(client, Uri.class, ConnectionParameters.class,
+                        CancellationSignal.class);
+    }
+
+    private static boolean overrides(OktaHttpClient client, Class<?>... parameterTypes) {
+        try {
+            return client.getClass().getMethod("execute", parameterTypes)
+                    .getDeclaringClass() != OktaHttpClient.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Sends a request with the client. A client which implements
+     * {@link OktaHttpClient#execute(Uri, ConnectionParameters)} runs it itself, it can only be
+     * canceled once the exchange is returned. Otherwise the request is sent with
+     * {@link #connect(OktaHttpClient, Uri, ConnectionParameters, CancellationSignal)}.
+     *
+     * @param client the client
+     * @param uri    uri for the connection.
+     * @param param  parameters for the connection.
+     * @param cancel the signal canceling the request
+     * @return the exchange of the request.
+     * @throws Exception the exception indicating failure case.
+     */
+    @NonNull
+    static OktaHttpClient.Exchange execute(@NonNull OktaHttpClient client, @NonNull Uri uri,
+                                           @NonNull ConnectionParameters param,
+                                           @NonNull CancellationSignal cancel)
+            throws Exception {
+        if (overrides(client, Uri.class, ConnectionParameters.class)) {
+            return client.execute(uri, param);
+        }
+        return connect(client, uri, param, cancel);
+    }
+
+    /**
+     * Sends a request with {@link OktaHttpClient#connect(Uri, ConnectionParameters)} once no
+     * other exchange of the client is open. Until connect returns, canceling the signal calls
+     * {@link OktaHttpClient#cancel()}, which only affects this request.
+     *
+     * @param client the client
+     * @param uri    uri for the connection.
+     * @param param  parameters for the connection.
+     * @param cancel the signal canceling the request, or null
+     * @return the exchange of the request, which releases the client when closed.
+     * @throws Exception the exception indicating failure case.
+     */
+    @NonNull
+    static ClientExchange connect(@NonNull OktaHttpClient client, @NonNull Uri uri,
+                                  @NonNull ConnectionParameters param,
+                                  @Nullable CancellationSignal cancel) throws Exception {
+        Semaphore lock;
+        synchronized (sLocks) {
+            lock = sLocks.get(client);
+            if (lock == null) {
+                lock = new Semaphore(1);
+                sLocks.put(client, lock);
+            }
+        }
+        lock.acquire();
+        try {
+            if (cancel == null) {
+                return new ClientExchange(client, client.connect(uri, param), lock);
+            }
+            if (cancel.isCanceled()) {
+                throw new IOException("Canceled");
+            }
+            cancel.setOnCancelListener(client::cancel);
+            try {
+                return new ClientExchange(client, client.connect(uri, param), lock);
+            } finally {
+                cancel.setOnCancelListener(null);
+            }
+        } catch (Exception | Error e) {
+            lock.release();
+            throw e;
+        }
+    }
+
+    @Nullable
+    @Override
+    public InputStream getContent() {
+        return mContent;
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaderFields() {
+        return mClient.getHeaderFields();
+    }
+
+    @Override
+    public String getHeader(String header) {
+        return mClient.getHeader(header);
+    }
+
+    @Override
+    public int getResponseCode() throws IOException {
+        return mClient.getResponseCode();
+    }
+
+    @Override
+    public int getContentLength() {
+        return mClient.getContentLength();
+    }
+
+    @Override
+    public String getResponseMessage() throws IOException {
+        return mClient.getResponseMessage();
+    }
+
+    @Override
+    public void cancel() {
+        mClient.cancel();
+    }
+
+    @Override
+    public void close() {
+        if (!mClosed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            cleanUp();
+        } finally {
+            if (mLock != null) {
+                mLock.release();
+            }
+        }
+    }
+
+    private void cleanUp() {
+        mClient.cleanUp();
+        if (mContent != null) {
+            try {
+                mContent.close();
+            } catch (IOException ioe) {
+                //NO-OP
+            }
+        }
+    }
+}
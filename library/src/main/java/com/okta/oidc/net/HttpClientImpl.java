@@ -17,8 +17,10 @@ package com.okta.oidc.net;
 
 import android.net.Uri;
 import android.os.Build;
+import android.os.CancellationSignal;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import androidx.annotation.VisibleForTesting;
 
@@ -31,17 +33,31 @@ import java.net.HttpURLConnection;
 import java.net.URL;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.net.ssl.HttpsURLConnection;
 
+/**
+ * The default {@link OktaHttpClient} based on {@link HttpURLConnection}.
+ * Every request gets its own connection and {@link OktaHttpClient.Exchange}, so requests can
+ * run in parallel. Connections of responses that were read and closed are kept alive and
+ * reused by the platform connection pool.
+ *
+ * @hide
+ */
 @RestrictTo(RestrictTo.Scope.LIBRARY)
 public class HttpClientImpl implements OktaHttpClient {
     private static final int CONNECTION_TIMEOUT_MS = 15_000;
     private static final int READ_TIMEOUT_MS = 10_000;
 
-    private HttpURLConnection mUrlConnection;
+    private final Set<UrlConnectionExchange> mExchanges =
+            Collections.newSetFromMap(new ConcurrentHashMap<>());
+    // The exchange of the last connect call, read by the getters of this client.
+    private volatile UrlConnectionExchange mLastExchange;
 
     private final int connectionTimeoutMs;
     private final int readTimeoutMs;
@@ -63,7 +79,7 @@ public class HttpClientImpl implements OktaHttpClient {
     private void enableTlsV1_2(HttpURLConnection urlConnection) {
         try {
             ((HttpsURLConnection) urlConnection)
-                    .setSSLSocketFactory(new TLSSocketFactory());
+                    .setSSLSocketFactory(TLSSocketFactory.getInstance());
         } catch (NoSuchAlgorithmException | KeyManagementException e) {
             throw new RuntimeException("Cannot create SSLContext.", e);
         }
@@ -73,9 +89,9 @@ public class HttpClientImpl implements OktaHttpClient {
     protected HttpURLConnection openConnection(URL url, ConnectionParameters params)
             throws IOException {
         HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        if (mUrlConnection instanceof HttpsURLConnection &&
+        if (conn instanceof HttpsURLConnection &&
                 Build.VERSION.SDK_INT <= Build.VERSION_CODES.LOLLIPOP) {
-            enableTlsV1_2(mUrlConnection);
+            enableTlsV1_2(conn);
         }
 
         conn.setConnectTimeout(connectionTimeoutMs);
@@ -105,74 +121,190 @@ public class HttpClientImpl implements OktaHttpClient {
         return conn;
     }
 
+    @NonNull
     @Override
-    public InputStream connect(@NonNull Uri uri, @NonNull ConnectionParameters params)
+    public Exchange execute(@NonNull Uri uri, @NonNull ConnectionParameters params)
             throws Exception {
+        return open(uri, params, null);
+    }
+
+    @NonNull
+    @Override
+    public Exchange execute(@NonNull Uri uri, @NonNull ConnectionParameters params,
+                            @NonNull CancellationSignal cancel) throws Exception {
+        return open(uri, params, cancel);
+    }
 
-        mUrlConnection = openConnection(new URL(uri.toString()), params);
-        mUrlConnection.connect();
+    private UrlConnectionExchange open(Uri uri, ConnectionParameters params,
+                                       @Nullable CancellationSignal cancel) throws IOException {
+        HttpURLConnection conn = openConnection(new URL(uri.toString()), params);
+        UrlConnectionExchange exchange = new UrlConnectionExchange(conn);
+        mExchanges.add(exchange);
         try {
-            return mUrlConnection.getInputStream();
-        } catch (IOException e) {
-            return mUrlConnection.getErrorStream();
+            if (cancel != null) {
+                // Disconnecting aborts a connect or a wait for the response headers.
+                cancel.setOnCancelListener(exchange::cancel);
+                if (cancel.isCanceled()) {
+                    throw new IOException("Canceled");
+                }
+            }
+            conn.connect();
+            try {
+                exchange.mContent = conn.getInputStream();
+            } catch (IOException e) {
+                exchange.mContent = conn.getErrorStream();
+            }
+        } catch (IOException | RuntimeException e) {
+            exchange.cancel();
+            throw e;
+        } finally {
+            if (cancel != null) {
+                cancel.setOnCancelListener(null);
+            }
         }
+        return exchange;
     }
 
+    @Override
+    public InputStream connect(@NonNull Uri uri, @NonNull ConnectionParameters params)
+            throws Exception {
+        UrlConnectionExchange exchange = open(uri, params, null);
+        mLastExchange = exchange;
+        return exchange.getContent();
+    }
 
     @Override
     public void cleanUp() {
-        mUrlConnection = null;
+        UrlConnectionExchange exchange = mLastExchange;
+        mLastExchange = null;
+        if (exchange != null) {
+            mExchanges.remove(exchange);
+        }
     }
 
+    /**
+     * Cancels all requests of this client which are in progress.
+     */
     @Override
     public void cancel() {
-        if (mUrlConnection != null) {
-            mUrlConnection.disconnect();
+        for (UrlConnectionExchange exchange : mExchanges) {
+            exchange.cancel();
         }
     }
 
     @Override
     public Map<String, List<String>> getHeaderFields() {
-        if (mUrlConnection != null) {
-            return mUrlConnection.getHeaderFields();
+        UrlConnectionExchange exchange = mLastExchange;
+        if (exchange != null) {
+            return exchange.getHeaderFields();
         }
         return null;
     }
 
     @Override
     public String getHeader(String header) {
-        if (mUrlConnection != null) {
-            return mUrlConnection.getHeaderField(header);
+        UrlConnectionExchange exchange = mLastExchange;
+        if (exchange != null) {
+            return exchange.getHeader(header);
         }
         return null;
     }
 
     @Override
     public int getResponseCode() throws IOException {
-        if (mUrlConnection != null) {
-            return mUrlConnection.getResponseCode();
+        UrlConnectionExchange exchange = mLastExchange;
+        if (exchange != null) {
+            return exchange.getResponseCode();
         }
         return -1;
     }
 
     @Override
     public int getContentLength() {
-        if (mUrlConnection != null) {
-            return mUrlConnection.getContentLength();
+        UrlConnectionExchange exchange = mLastExchange;
+        if (exchange != null) {
+            return exchange.getContentLength();
         }
         return -1;
     }
 
     @Override
     public String getResponseMessage() throws IOException {
-        if (mUrlConnection != null) {
-            return mUrlConnection.getResponseMessage();
+        UrlConnectionExchange exchange = mLastExchange;
+        if (exchange != null) {
+            return exchange.getResponseMessage();
         }
         return null;
     }
 
     @VisibleForTesting
     public HttpURLConnection getUrlConnection() {
-        return mUrlConnection;
+        UrlConnectionExchange exchange = mLastExchange;
+        return exchange != null ? exchange.mConnection : null;
+    }
+
+    @VisibleForTesting
+    int getExchangeCount() {
+        return mExchanges.size();
+    }
+
+    private final class UrlConnectionExchange implements Exchange {
+        private final HttpURLConnection mConnection;
+        private volatile InputStream mContent;
+
+        UrlConnectionExchange(HttpURLConnection connection) {
+            mConnection = connection;
+        }
+
+        @Nullable
+        @Override
+        public InputStream getContent() {
+            return mContent;
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaderFields() {
+            return mConnection.getHeaderFields();
+        }
+
+        @Override
+        public String getHeader(String header) {
+            return mConnection.getHeaderField(header);
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+            return mConnection.getResponseCode();
+        }
+
+        @Override
+        public int getContentLength() {
+            return mConnection.getContentLength();
+        }
+
+        @Override
+        public String getResponseMessage() throws IOException {
+            return mConnection.getResponseMessage();
+        }
+
+        @Override
+        public void cancel() {
+            mExchanges.remove(this);
+            mConnection.disconnect();
+        }
+
+        @Override
+        public void close() {
+            mExchanges.remove(this);
+            InputStream content = mContent;
+            if (content != null) {
+                try {
+                    // Closing instead of disconnecting returns the connection to the pool.
+                    content.close();
+                } catch (IOException ioe) {
+                    //NO-OP
+                }
+            }
+        }
     }
 }
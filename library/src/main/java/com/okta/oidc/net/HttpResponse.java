@@ -15,33 +15,43 @@
 
 package com.okta.oidc.net;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.MalformedJsonException;
+import com.okta.oidc.util.GsonUtil;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.StringWriter;
-import java.io.Writer;
+import java.io.Reader;
 import java.net.HttpURLConnection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 /**
  * @hide
  */
 @RestrictTo(RestrictTo.Scope.LIBRARY)
 public final class HttpResponse {
     private static final String TAG = HttpResponse.class.getSimpleName();
+    private static final int DEFAULT_BUFFER_SIZE = 1024;
+    private static final int MAX_BUFFER_SIZE = 16 * 1024;
     private final int mStatusCode;
     private final Map<String, List<String>> mHeaders;
     private final int mLength;
-    private final OktaHttpClient mHttpClient;
+    private final OktaHttpClient.Exchange mExchange;
     private InputStream mInputStream;
 
     /**
@@ -51,7 +61,7 @@ public final class HttpResponse {
      * @param headers    response headers
      */
     public HttpResponse(int statusCode, Map<String, List<String>> headers) {
-        this(statusCode, headers, -1, null, null);
+        this(statusCode, headers, -1, null, (OktaHttpClient.Exchange) null);
     }
 
     /**
@@ -65,10 +75,31 @@ public final class HttpResponse {
     public HttpResponse(
             int statusCode, Map<String, List<String>> headers,
             int length, InputStream inputStream, OktaHttpClient client) {
+        this(statusCode, headers, length, inputStream,
+                client != null ? new ClientExchange(client, inputStream) : null);
+    }
+
+    /**
+     * Constructor for HttpResponse.
+     *
+     * @param statusCode HTTP status code of the response
+     * @param headers    response headers
+     * @param length     the length of the response.
+     * @param exchange   the {@link OktaHttpClient.Exchange} of the request
+     */
+    public HttpResponse(
+            int statusCode, Map<String, List<String>> headers,
+            int length, @NonNull OktaHttpClient.Exchange exchange) {
+        this(statusCode, headers, length, exchange.getContent(), exchange);
+    }
+
+    private HttpResponse(
+            int statusCode, Map<String, List<String>> headers,
+            int length, InputStream inputStream, OktaHttpClient.Exchange exchange) {
         mStatusCode = statusCode;
         mHeaders = headers;
         mLength = length;
-        mHttpClient = client;
+        mExchange = exchange;
         mInputStream = inputStream;
     }
 
@@ -81,7 +112,7 @@ public final class HttpResponse {
     }
 
     public String getHeaderField(String field) {
-        return mHttpClient.getHeader(field);
+        return mExchange.getHeader(field);
     }
 
     public int getContentLength() {
@@ -94,8 +125,8 @@ public final class HttpResponse {
     }
 
     public void disconnect() {
-        if (mHttpClient != null) {
-            mHttpClient.cleanUp();
+        if (mExchange != null) {
+            mExchange.close();
         }
         if (mInputStream != null) {
             try {
@@ -107,38 +138,88 @@ public final class HttpResponse {
     }
 
     public JSONObject asJson() throws IOException, JSONException {
-        if (mStatusCode < HttpURLConnection.HTTP_OK ||
-                mStatusCode >= HttpURLConnection.HTTP_MULT_CHOICE) {
-            throw new HttpStatusCodeException(mStatusCode, mHttpClient.getResponseMessage());
-        }
+        checkStatusCode();
         return getJsonObjectFromResponseInputStream(getContent());
     }
 
     public JSONObject asJsonWithErrorDescription() throws IOException, JSONException {
-        if (mStatusCode < HttpURLConnection.HTTP_OK ||
-                mStatusCode >= HttpURLConnection.HTTP_MULT_CHOICE) {
+        if (!isSuccessful()) {
             try {
                 return getJsonObjectFromResponseInputStream(getContent());
             } catch (Exception any) {
-                throw new HttpStatusCodeException(mStatusCode, mHttpClient.getResponseMessage());
+                throw new HttpStatusCodeException(mStatusCode, mExchange.getResponseMessage());
             }
         }
         return getJsonObjectFromResponseInputStream(getContent());
     }
 
-    private static JSONObject getJsonObjectFromResponseInputStream(
+    /**
+     * Deserializes the response body into the given type. The body is streamed from the
+     * connection into the object, without reading it into a string or a {@link JSONObject}
+     * first.
+     *
+     * @param type the type to deserialize
+     * @param <T>  the type to deserialize
+     * @return the deserialized body
+     * @throws IOException        if the status code isn't successful or reading fails
+     * @throws JsonParseException if the body isn't a valid JSON representation of the type
+     */
+    @NonNull
+    public <T> T asType(@NonNull Class<T> type) throws IOException, JsonParseException {
+        checkStatusCode();
+        InputStream inputStream = getContent();
+        if (inputStream == null) {
+            throw new IOException("Input stream must not be null");
+        }
+        T result;
+        try {
+            result = GsonUtil.gson().fromJson(newReader(inputStream), type);
+        } catch (JsonParseException e) {
+            // Gson wraps read errors, they are network errors and not malformed JSON.
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException && !(cause instanceof MalformedJsonException)
+                    && !(cause instanceof EOFException)) {
+                throw (IOException) cause;
+            }
+            throw e;
+        }
+        if (result == null) {
+            throw new JsonSyntaxException("Empty response body");
+        }
+        return result;
+    }
+
+    public boolean isSuccessful() {
+        return mStatusCode >= HttpURLConnection.HTTP_OK
+                && mStatusCode < HttpURLConnection.HTTP_MULT_CHOICE;
+    }
+
+    private void checkStatusCode() throws IOException {
+        if (!isSuccessful()) {
+            throw new HttpStatusCodeException(mStatusCode, mExchange.getResponseMessage());
+        }
+    }
+
+    // Sized to hold the whole body if the length is known, so it is read in one go.
+    private Reader newReader(InputStream inputStream) {
+        int size = mLength > 0 ? Math.min(mLength, MAX_BUFFER_SIZE) : DEFAULT_BUFFER_SIZE;
+        return new BufferedReader(new InputStreamReader(inputStream, UTF_8), size);
+    }
+
+    private JSONObject getJsonObjectFromResponseInputStream(
             final InputStream inputStream
     ) throws IOException, JSONException {
         if (inputStream == null) {
             throw new IOException("Input stream must not be null");
         }
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-        Writer writer = new StringWriter();
-        String line = reader.readLine();
-        while (line != null) {
-            writer.write(line);
-            line = reader.readLine();
+        Reader reader = newReader(inputStream);
+        StringBuilder builder = new StringBuilder(mLength > 0 ? mLength : DEFAULT_BUFFER_SIZE);
+        char[] buffer = new char[DEFAULT_BUFFER_SIZE];
+        int read = reader.read(buffer);
+        while (read != -1) {
+            builder.append(buffer, 0, read);
+            read = reader.read(buffer);
         }
-        return new JSONObject(writer.toString());
+        return new JSONObject(builder.toString());
     }
 }
@@ -16,6 +16,7 @@
 package com.okta.oidc.net;
 
 import android.net.Uri;
+import android.os.CancellationSignal;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -27,8 +28,53 @@ import java.util.Map;
 
 /**
  * The interface Http client for making network connections.
+ * The library sends requests through
+ * {@link #execute(Uri, ConnectionParameters, CancellationSignal)}, which gives each request its
+ * own {@link Exchange}. Clients that only implement
+ * {@link #connect(Uri, ConnectionParameters)} and read the response from the client are
+ * adapted by the default implementation, which runs one request of the client at a time.
  */
 public interface OktaHttpClient {
+    /**
+     * Sends a request and returns the exchange holding its response. Every call returns a new
+     * exchange so several requests can run in parallel on the same client.
+     * The default implementation waits until the exchange of the previous request of this
+     * client is closed, then calls {@link #connect(Uri, ConnectionParameters)} and reads the
+     * response from the getters of this client.
+     *
+     * @param uri   uri for the connection.
+     * @param param parameters for the connection.
+     * @return the exchange of the request.
+     * @throws Exception the exception indicating failure case.
+     */
+    @NonNull
+    default Exchange execute(@NonNull Uri uri, @NonNull ConnectionParameters param)
+            throws Exception {
+        return ClientExchange.connect(this, uri, param, null);
+    }
+
+    /**
+     * Sends a request which can be canceled before its response arrived. Canceling the signal
+     * aborts the request, and the call fails. Every call returns a new exchange so several
+     * requests can run in parallel on the same client.
+     * The default implementation calls {@link #execute(Uri, ConnectionParameters)} if this
+     * client implements it, then the request can only be canceled once the exchange is
+     * returned. Otherwise it calls {@link #connect(Uri, ConnectionParameters)} like
+     * {@link #execute(Uri, ConnectionParameters)}, and canceling the signal calls
+     * {@link #cancel()}.
+     *
+     * @param uri    uri for the connection.
+     * @param param  parameters for the connection.
+     * @param cancel the signal canceling the request.
+     * @return the exchange of the request.
+     * @throws Exception the exception indicating failure case.
+     */
+    @NonNull
+    default Exchange execute(@NonNull Uri uri, @NonNull ConnectionParameters param,
+                             @NonNull CancellationSignal cancel) throws Exception {
+        return ClientExchange.execute(this, uri, param, cancel);
+    }
+
     /**
      * Connect to the url provided in connection parameters.
      *
@@ -87,4 +133,66 @@ public interface OktaHttpClient {
      * @throws IOException the exception indicating connection error.
      */
     String getResponseMessage() throws IOException;
+
+    /**
+     * A request sent with {@link #execute(Uri, ConnectionParameters)} and its response.
+     */
+    interface Exchange {
+        /**
+         * Gets the response body.
+         *
+         * @return the response body, or the error body if the request failed.
+         */
+        @Nullable
+        InputStream getContent();
+
+        /**
+         * Gets header fields.
+         *
+         * @return the header fields.
+         */
+        Map<String, List<String>> getHeaderFields();
+
+        /**
+         * Get header.
+         *
+         * @param header the header.
+         * @return the single header.
+         */
+        String getHeader(String header);
+
+        /**
+         * Gets response code.
+         *
+         * @return the response code.
+         * @throws IOException the exception indicating connection error.
+         */
+        int getResponseCode() throws IOException;
+
+        /**
+         * Gets content length.
+         *
+         * @return the content length.
+         */
+        int getContentLength();
+
+        /**
+         * Gets the Http status message.
+         *
+         * @return the response message.
+         * @throws IOException the exception indicating connection error.
+         */
+        String getResponseMessage() throws IOException;
+
+        /**
+         * Attempt to cancel the request. The connection is not reused.
+         */
+        void cancel();
+
+        /**
+         * Releases the response. The connection can be reused by later requests once the
+         * body was read. Calling it more than once has no effect.
+         */
+        void close();
+    }
 }
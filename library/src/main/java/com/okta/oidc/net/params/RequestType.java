@@ -54,4 +54,9 @@ public enum RequestType {
      * Not using chrome custom tabs.
      */
     AUTHORIZE,
+
+    /**
+     * JSON Web Key Set request type.
+     */
+    JWKS,
 }
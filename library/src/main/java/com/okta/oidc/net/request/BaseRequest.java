@@ -16,6 +16,7 @@
 package com.okta.oidc.net.request;
 
 import android.net.Uri;
+import android.os.CancellationSignal;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.RestrictTo;
@@ -30,7 +31,6 @@ import com.okta.oidc.util.AuthorizationException;
 import com.okta.oidc.util.Preconditions;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.HttpURLConnection;
 
 /**
@@ -43,9 +43,12 @@ public abstract class BaseRequest<T, U extends AuthorizationException>
     private static final String HTTPS_SCHEME = "https";
     private static final int HTTP_CONTINUE = 100;
     private volatile boolean mCanceled;
+    // Aborts the request while the client is still waiting for the response.
+    private final CancellationSignal mCancellation = new CancellationSignal();
     @VisibleForTesting(otherwise = VisibleForTesting.PACKAGE_PRIVATE)
     public ConnectionParameters mConnParams;
     private HttpResponse mResponse;
+    private volatile OktaHttpClient.Exchange mExchange;
     protected Uri mUri;
 
     public BaseRequest() {
@@ -55,25 +58,38 @@ public abstract class BaseRequest<T, U extends AuthorizationException>
     protected HttpResponse openConnection(OktaHttpClient client) throws Exception {
         Preconditions.checkArgument(HTTPS_SCHEME.equals(mUri.getScheme()),
                 "only https connections are permitted");
-        InputStream stream = client.connect(mUri, mConnParams);
         if (mCanceled) {
             throw new IOException("Canceled");
         }
+        OktaHttpClient.Exchange exchange;
+        try {
+            exchange = client.execute(mUri, mConnParams, mCancellation);
+        } catch (Exception e) {
+            if (mCanceled) {
+                throw new IOException("Canceled", e);
+            }
+            throw e;
+        }
+        mExchange = exchange;
 
         boolean keepOpen = false;
         try {
-            int responseCode = client.getResponseCode();
+            if (mCanceled) {
+                exchange.cancel();
+                throw new IOException("Canceled");
+            }
+            int responseCode = exchange.getResponseCode();
             if (responseCode == -1) {
                 throw new IOException("Invalid response code -1 no code can be discerned");
             }
 
             if (!hasResponseBody(responseCode)) {
-                mResponse = new HttpResponse(responseCode, client.getHeaderFields());
+                mResponse = new HttpResponse(responseCode, exchange.getHeaderFields());
             } else {
                 keepOpen = true;
                 mResponse = new HttpResponse(
-                        responseCode, client.getHeaderFields(),
-                        client.getContentLength(), stream, client);
+                        responseCode, exchange.getHeaderFields(),
+                        exchange.getContentLength(), exchange);
             }
             return mResponse;
         } finally {
@@ -86,6 +102,11 @@ public abstract class BaseRequest<T, U extends AuthorizationException>
     @Override
     public void cancelRequest() {
         mCanceled = true;
+        mCancellation.cancel();
+        OktaHttpClient.Exchange exchange = mExchange;
+        if (exchange != null) {
+            exchange.cancel();
+        }
         close();
     }
 
@@ -95,6 +116,10 @@ public abstract class BaseRequest<T, U extends AuthorizationException>
             mResponse.disconnect();
             mResponse = null;
         }
+        if (mExchange != null) {
+            mExchange.close();
+            mExchange = null;
+        }
     }
 
     private boolean hasResponseBody(int responseCode) {
@@ -15,19 +15,22 @@
 
 package com.okta.oidc.net.request;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
+import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 
-import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import com.okta.oidc.net.ConnectionParameters;
 import com.okta.oidc.net.HttpResponse;
 import com.okta.oidc.net.OktaHttpClient;
 import com.okta.oidc.util.AuthorizationException;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * @hide
@@ -35,19 +38,31 @@ import java.io.IOException;
 @RestrictTo(RestrictTo.Scope.LIBRARY)
 public final class ConfigurationRequest extends
         BaseRequest<ProviderConfiguration, AuthorizationException> {
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String ETAG = "ETag";
+    private static final String CACHE_CONTROL = "Cache-Control";
+    private static final String MAX_AGE = "max-age=";
+    private static final long MILLIS_PER_SECOND = 1000;
+
     private boolean mIsOAuth2;
+    // The stored configuration to revalidate, returned if the server responds not modified.
+    private ProviderConfiguration mCachedConfiguration;
 
     ConfigurationRequest(HttpRequestBuilder.Configuration b) {
         super();
         mRequestType = b.mRequestType;
         mIsOAuth2 = b.mConfig.isOAuth2Configuration();
+        mCachedConfiguration = b.mProviderConfiguration;
         mUri = b.mConfig.getDiscoveryUri().buildUpon()
                 .appendQueryParameter("client_id", b.mConfig.getClientId()).build();
 
-        mConnParams = new ConnectionParameters.ParameterBuilder()
+        ConnectionParameters.ParameterBuilder builder = new ConnectionParameters.ParameterBuilder()
                 .setRequestMethod(ConnectionParameters.RequestMethod.GET)
-                .setRequestType(mRequestType)
-                .create();
+                .setRequestType(mRequestType);
+        if (mCachedConfiguration != null && mCachedConfiguration.getETag() != null) {
+            builder.setRequestProperty(IF_NONE_MATCH, mCachedConfiguration.getETag());
+        }
+        mConnParams = builder.create();
     }
 
     @WorkerThread
@@ -58,15 +73,23 @@ public final class ConfigurationRequest extends
         HttpResponse response = null;
         try {
             response = openConnection(client);
+            Long maxAge = maxAge(header(response, CACHE_CONTROL));
+            if (response.getStatusCode() == HttpURLConnection.HTTP_NOT_MODIFIED
+                    && mCachedConfiguration != null) {
+                String entityTag = header(response, ETAG);
+                ProviderConfiguration configuration = mCachedConfiguration.copy();
+                configuration.setCacheHeaders(
+                        entityTag != null ? entityTag : configuration.getETag(), maxAge);
+                return configuration;
+            }
 
-            JSONObject json = response.asJson();
-            ProviderConfiguration configuration = new Gson()
-                    .fromJson(json.toString(), ProviderConfiguration.class);
+            ProviderConfiguration configuration = response.asType(ProviderConfiguration.class);
             configuration.validate(mIsOAuth2);
+            configuration.setCacheHeaders(header(response, ETAG), maxAge);
             return configuration;
         } catch (IOException ex) {
             exception = new AuthorizationException(ex.getMessage(), ex);
-        } catch (JSONException ex) {
+        } catch (JsonParseException ex) {
             exception = AuthorizationException.fromTemplate(
                     AuthorizationException.GeneralErrors.JSON_DESERIALIZATION_ERROR,
                     ex);
@@ -86,4 +109,38 @@ public final class ConfigurationRequest extends
         }
         return null;
     }
+
+    @Nullable
+    private static String header(HttpResponse response, String name) {
+        for (Map.Entry<String, List<String>> entry : response.getHeaders().entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey()) && !entry.getValue().isEmpty()) {
+                return entry.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    // Returns the max-age in milliseconds, 0 if the response must be revalidated before every
+    // use or null if the response doesn't say.
+    @Nullable
+    @VisibleForTesting
+    static Long maxAge(@Nullable String cacheControl) {
+        if (cacheControl == null) {
+            return null;
+        }
+        Long maxAge = null;
+        for (String directive : cacheControl.split(",")) {
+            String value = directive.trim().toLowerCase(Locale.US);
+            if (value.equals("no-cache") || value.equals("no-store")) {
+                return 0L;
+            } else if (value.startsWith(MAX_AGE)) {
+                try {
+                    maxAge = Long.parseLong(value.substring(MAX_AGE.length())) * MILLIS_PER_SECOND;
+                } catch (NumberFormatException e) {
+                    maxAge = 0L;
+                }
+            }
+        }
+        return maxAge;
+    }
 }
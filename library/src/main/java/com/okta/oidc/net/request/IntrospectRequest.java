@@ -19,16 +19,13 @@ import android.net.Uri;
 
 import androidx.annotation.RestrictTo;
 
-import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import com.okta.oidc.net.ConnectionParameters;
 import com.okta.oidc.net.HttpResponse;
 import com.okta.oidc.net.OktaHttpClient;
 import com.okta.oidc.net.response.IntrospectInfo;
 import com.okta.oidc.util.AuthorizationException;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import java.io.IOException;
 
 /**
@@ -57,11 +54,10 @@ public class IntrospectRequest extends
         HttpResponse response = null;
         try {
             response = openConnection(client);
-            JSONObject json = response.asJson();
-            return new Gson().fromJson(json.toString(), IntrospectInfo.class);
+            return response.asType(IntrospectInfo.class);
         } catch (IOException ex) {
             exception = new AuthorizationException(ex.getMessage(), ex);
-        } catch (JSONException e) {
+        } catch (JsonParseException e) {
             exception = AuthorizationException.fromTemplate(
                     AuthorizationException.GeneralErrors.JSON_DESERIALIZATION_ERROR,
                     e);
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.net.request;
+
+import android.net.Uri;
+import android.util.Base64;
+
+import androidx.annotation.RestrictTo;
+import androidx.annotation.WorkerThread;
+
+import com.google.gson.JsonParseException;
+import com.okta.oidc.net.ConnectionParameters;
+import com.okta.oidc.net.HttpResponse;
+import com.okta.oidc.net.OktaHttpClient;
+import com.okta.oidc.util.AuthorizationException;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fetches the JSON Web Key Set of the authorization server and returns its RSA signing keys
+ * by key id.
+ *
+ * @hide
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public final class JwksRequest extends
+        BaseRequest<Map<String, RSAPublicKey>, AuthorizationException> {
+    private static final String KEY_TYPE_RSA = "RSA";
+    private static final String USE_SIGNATURE = "sig";
+    private static final int BASE64_FLAGS = Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP;
+
+    JwksRequest(HttpRequestBuilder.Jwks b) {
+        super();
+        mRequestType = b.mRequestType;
+        mUri = Uri.parse(b.mProviderConfiguration.jwks_uri);
+        mConnParams = new ConnectionParameters.ParameterBuilder()
+                .setRequestMethod(ConnectionParameters.RequestMethod.GET)
+                .setRequestType(mRequestType)
+                .create();
+    }
+
+    @WorkerThread
+    @Override
+    public Map<String, RSAPublicKey> executeRequest(OktaHttpClient client)
+            throws AuthorizationException {
+        AuthorizationException exception = null;
+        HttpResponse response = null;
+        try {
+            response = openConnection(client);
+            return parseKeys(response.asType(KeySet.class));
+        } catch (IOException ex) {
+            exception = new AuthorizationException(ex.getMessage(), ex);
+        } catch (JsonParseException | IllegalArgumentException | GeneralSecurityException e) {
+            exception = AuthorizationException.fromTemplate(
+                    AuthorizationException.GeneralErrors.JSON_DESERIALIZATION_ERROR,
+                    e);
+        } catch (Exception e) {
+            exception = AuthorizationException.fromTemplate(AuthorizationException
+                    .GeneralErrors.NETWORK_ERROR, e);
+        } finally {
+            if (response != null) {
+                response.disconnect();
+            }
+            if (exception != null) {
+                throw exception;
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, RSAPublicKey> parseKeys(KeySet keySet)
+            throws GeneralSecurityException {
+        if (keySet == null || keySet.keys == null) {
+            throw new JsonParseException("Missing keys");
+        }
+        KeyFactory factory = KeyFactory.getInstance(KEY_TYPE_RSA);
+        Map<String, RSAPublicKey> keys = new HashMap<>();
+        for (Key key : keySet.keys) {
+            if (key == null || !KEY_TYPE_RSA.equals(key.kty) || key.kid == null
+                    || key.n == null || key.e == null
+                    || (key.use != null && !USE_SIGNATURE.equals(key.use))) {
+                continue;
+            }
+            RSAPublicKeySpec spec = new RSAPublicKeySpec(decode(key.n), decode(key.e));
+            keys.put(key.kid, (RSAPublicKey) factory.generatePublic(spec));
+        }
+        return Collections.unmodifiableMap(keys);
+    }
+
+    private static BigInteger decode(String value) {
+        return new BigInteger(1, Base64.decode(value, BASE64_FLAGS));
+    }
+
+    static class KeySet {
+        Key[] keys;
+    }
+
+    static class Key {
+        String kty;
+        String kid;
+        String use;
+        String n;
+        String e;
+    }
+}
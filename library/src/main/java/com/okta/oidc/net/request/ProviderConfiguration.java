@@ -22,15 +22,23 @@ import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import androidx.annotation.VisibleForTesting;
 
-import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import com.okta.oidc.CustomConfiguration;
 import com.okta.oidc.storage.Persistable;
+import com.okta.oidc.util.GsonUtil;
+
+import java.io.IOException;
 
 /**
  * @hide
  */
 @SuppressWarnings("unused")
 @RestrictTo(RestrictTo.Scope.LIBRARY)
+@JsonAdapter(ProviderConfiguration.Adapter.class)
 public class ProviderConfiguration implements Persistable {
     public static final String OPENID_CONFIGURATION_RESOURCE = "/.well-known/openid-configuration";
 
@@ -81,6 +89,12 @@ public class ProviderConfiguration implements Persistable {
 
     public String[] id_token_signing_alg_values_supported;
 
+    // Cache metadata of a fetched document, persisted with it but not part of the discovery
+    // response. Null when unknown, so they are left out of the persisted JSON.
+    private Long mFetchedAt;
+    private Long mMaxAge;
+    private String mETag;
+
     @VisibleForTesting
     public ProviderConfiguration() {
         //NO-OP
@@ -128,6 +142,52 @@ public class ProviderConfiguration implements Persistable {
         }
     }
 
+    // Returns a copy to update the cache metadata of, the stored instance is shared.
+    ProviderConfiguration copy() {
+        return GsonUtil.gson().fromJson(persist(), ProviderConfiguration.class);
+    }
+
+    void setCacheHeaders(@Nullable String entityTag, @Nullable Long maxAge) {
+        mETag = entityTag;
+        mMaxAge = maxAge;
+    }
+
+    /**
+     * Returns the ETag of the discovery response, used to revalidate the document.
+     *
+     * @return the entity tag or null if the server didn't send one.
+     */
+    @Nullable
+    public String getETag() {
+        return mETag;
+    }
+
+    /**
+     * Sets the time the document was fetched or revalidated.
+     *
+     * @param fetchedAt the wall clock time in milliseconds
+     */
+    public void setFetchedAt(long fetchedAt) {
+        mFetchedAt = fetchedAt;
+    }
+
+    /**
+     * Checks if the document can be used without revalidating it. The document is fresh for
+     * the max-age of the discovery response, but never longer than the given time to live.
+     *
+     * @param now   the wall clock time in milliseconds
+     * @param ttlMs the maximum time to live in milliseconds
+     * @return true if the document is fresh
+     */
+    public boolean isFresh(long now, long ttlMs) {
+        if (mFetchedAt == null) {
+            return false;
+        }
+        long lifetime = mMaxAge == null ? ttlMs : Math.min(mMaxAge, ttlMs);
+        long age = now - mFetchedAt;
+        return age >= 0 && age < lifetime;
+    }
+
     public static final Persistable.Restore<ProviderConfiguration> RESTORE =
             new Persistable.Restore<ProviderConfiguration>() {
                 private static final String KEY = "ProviderConfiguration";
@@ -141,7 +201,7 @@ public class ProviderConfiguration implements Persistable {
                 @Override
                 public ProviderConfiguration restore(@Nullable String data) {
                     if (data != null) {
-                        return new Gson().fromJson(data, ProviderConfiguration.class);
+                        return GsonUtil.gson().fromJson(data, ProviderConfiguration.class);
                     }
                     return null;
                 }
@@ -156,6 +216,162 @@ public class ProviderConfiguration implements Persistable {
 
     @Override
     public String persist() {
-        return new Gson().toJson(this);
+        return GsonUtil.gson().toJson(this);
+    }
+
+    static final class Adapter extends TypeAdapter<ProviderConfiguration> {
+        @Override
+        public void write(JsonWriter writer, ProviderConfiguration value) throws IOException {
+            if (value == null) {
+                writer.nullValue();
+                return;
+            }
+            writer.beginObject();
+            writer.name("authorization_endpoint").value(value.authorization_endpoint);
+            writer.name("claims_supported");
+            GsonUtil.writeStringArray(writer, value.claims_supported);
+            writer.name("code_challenge_methods_supported");
+            GsonUtil.writeStringArray(writer, value.code_challenge_methods_supported);
+            writer.name("end_session_endpoint").value(value.end_session_endpoint);
+            writer.name("grant_types_supported");
+            GsonUtil.writeStringArray(writer, value.grant_types_supported);
+            writer.name("introspection_endpoint").value(value.introspection_endpoint);
+            writer.name("introspection_endpoint_auth_methods_supported");
+            GsonUtil.writeStringArray(writer, value.introspection_endpoint_auth_methods_supported);
+            writer.name("issuer").value(value.issuer);
+            writer.name("jwks_uri").value(value.jwks_uri);
+            writer.name("registration_endpoint").value(value.registration_endpoint);
+            writer.name("request_object_signing_alg_values_supported");
+            GsonUtil.writeStringArray(writer, value.request_object_signing_alg_values_supported);
+            writer.name("request_parameter_supported").value(value.request_parameter_supported);
+            writer.name("response_modes_supported");
+            GsonUtil.writeStringArray(writer, value.response_modes_supported);
+            writer.name("response_types_supported");
+            GsonUtil.writeStringArray(writer, value.response_types_supported);
+            writer.name("revocation_endpoint").value(value.revocation_endpoint);
+            writer.name("revocation_endpoint_auth_methods_supported");
+            GsonUtil.writeStringArray(writer, value.revocation_endpoint_auth_methods_supported);
+            writer.name("scopes_supported");
+            GsonUtil.writeStringArray(writer, value.scopes_supported);
+            writer.name("subject_types_supported");
+            GsonUtil.writeStringArray(writer, value.subject_types_supported);
+            writer.name("token_endpoint").value(value.token_endpoint);
+            writer.name("token_endpoint_auth_methods_supported");
+            GsonUtil.writeStringArray(writer, value.token_endpoint_auth_methods_supported);
+            writer.name("userinfo_endpoint").value(value.userinfo_endpoint);
+            writer.name("id_token_signing_alg_values_supported");
+            GsonUtil.writeStringArray(writer, value.id_token_signing_alg_values_supported);
+            writer.name("mFetchedAt").value(value.mFetchedAt);
+            writer.name("mMaxAge").value(value.mMaxAge);
+            writer.name("mETag").value(value.mETag);
+            writer.endObject();
+        }
+
+        @Override
+        public ProviderConfiguration read(JsonReader reader) throws IOException {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                return null;
+            }
+            ProviderConfiguration value = new ProviderConfiguration();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "authorization_endpoint":
+                        value.authorization_endpoint = GsonUtil.readString(reader);
+                        break;
+                    case "claims_supported":
+                        value.claims_supported = GsonUtil.readStringArray(reader);
+                        break;
+                    case "code_challenge_methods_supported":
+                        value.code_challenge_methods_supported = GsonUtil.readStringArray(reader);
+                        break;
+                    case "end_session_endpoint":
+                        value.end_session_endpoint = GsonUtil.readString(reader);
+                        break;
+                    case "grant_types_supported":
+                        value.grant_types_supported = GsonUtil.readStringArray(reader);
+                        break;
+                    case "introspection_endpoint":
+                        value.introspection_endpoint = GsonUtil.readString(reader);
+                        break;
+                    case "introspection_endpoint_auth_methods_supported":
+                        value.introspection_endpoint_auth_methods_supported =
+                                GsonUtil.readStringArray(reader);
+                        break;
+                    case "issuer":
+                        value.issuer = GsonUtil.readString(reader);
+                        break;
+                    case "jwks_uri":
+                        value.jwks_uri = GsonUtil.readString(reader);
+                        break;
+                    case "registration_endpoint":
+                        value.registration_endpoint = GsonUtil.readString(reader);
+                        break;
+                    case "request_object_signing_alg_values_supported":
+                        value.request_object_signing_alg_values_supported =
+                                GsonUtil.readStringArray(reader);
+                        break;
+                    case "request_parameter_supported":
+                        value.request_parameter_supported = GsonUtil.readBoolean(reader, false);
+                        break;
+                    case "response_modes_supported":
+                        value.response_modes_supported = GsonUtil.readStringArray(reader);
+                        break;
+                    case "response_types_supported":
+                        value.response_types_supported = GsonUtil.readStringArray(reader);
+                        break;
+                    case "revocation_endpoint":
+                        value.revocation_endpoint = GsonUtil.readString(reader);
+                        break;
+                    case "revocation_endpoint_auth_methods_supported":
+                        value.revocation_endpoint_auth_methods_supported =
+                                GsonUtil.readStringArray(reader);
+                        break;
+                    case "scopes_supported":
+                        value.scopes_supported = GsonUtil.readStringArray(reader);
+                        break;
+                    case "subject_types_supported":
+                        value.subject_types_supported = GsonUtil.readStringArray(reader);
+                        break;
+                    case "token_endpoint":
+                        value.token_endpoint = GsonUtil.readString(reader);
+                        break;
+                    case "token_endpoint_auth_methods_supported":
+                        value.token_endpoint_auth_methods_supported =
+                                GsonUtil.readStringArray(reader);
+                        break;
+                    case "userinfo_endpoint":
+                        value.userinfo_endpoint = GsonUtil.readString(reader);
+                        break;
+                    case "id_token_signing_alg_values_supported":
+                        value.id_token_signing_alg_values_supported =
+                                GsonUtil.readStringArray(reader);
+                        break;
+                    case "mFetchedAt":
+                        value.mFetchedAt = readNullableLong(reader);
+                        break;
+                    case "mMaxAge":
+                        value.mMaxAge = readNullableLong(reader);
+                        break;
+                    case "mETag":
+                        value.mETag = GsonUtil.readString(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+            return value;
+        }
+
+        private static Long readNullableLong(JsonReader reader) throws IOException {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                return null;
+            }
+            return GsonUtil.readLong(reader, 0);
+        }
     }
 }
@@ -15,7 +15,9 @@
 
 package com.okta.oidc.net.request;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
+import androidx.annotation.VisibleForTesting;
 
 import java.io.IOException;
 import java.net.InetAddress;
@@ -34,6 +36,8 @@ import javax.net.ssl.SSLSocketFactory;
  */
 @RestrictTo(RestrictTo.Scope.LIBRARY)
 public class TLSSocketFactory extends SSLSocketFactory {
+    private static volatile TLSSocketFactory sInstance;
+
     private SSLSocketFactory mInternalSslSocketFactory;
     private String[] mProtocolsToEnable = {"TLSv1.1", "TLSv1.2"};
 
@@ -44,9 +48,48 @@ public class TLSSocketFactory extends SSLSocketFactory {
      * @throws NoSuchAlgorithmException when get SSLContext
      */
     public TLSSocketFactory() throws KeyManagementException, NoSuchAlgorithmException {
+        this(createContext());
+    }
+
+    @VisibleForTesting
+    TLSSocketFactory(SSLContext context) {
+        mInternalSslSocketFactory = context.getSocketFactory();
+    }
+
+    /**
+     * Returns the factory shared by all connections of the process. The SSLContext and its
+     * session cache are only created once, so later connections to the same host can resume
+     * the TLS session instead of doing a full handshake.
+     *
+     * @return the shared factory
+     * @throws KeyManagementException   if init operation fails
+     * @throws NoSuchAlgorithmException when get SSLContext
+     */
+    public static TLSSocketFactory getInstance()
+            throws KeyManagementException, NoSuchAlgorithmException {
+        TLSSocketFactory instance = sInstance;
+        if (instance == null) {
+            synchronized (TLSSocketFactory.class) {
+                instance = sInstance;
+                if (instance == null) {
+                    instance = new TLSSocketFactory();
+                    sInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    @VisibleForTesting
+    static void setInstance(@Nullable TLSSocketFactory instance) {
+        sInstance = instance;
+    }
+
+    private static SSLContext createContext()
+            throws KeyManagementException, NoSuchAlgorithmException {
         SSLContext context = SSLContext.getInstance("TLS");
         context.init(null, null, null);
-        mInternalSslSocketFactory = context.getSocketFactory();
+        return context;
     }
 
     @Override
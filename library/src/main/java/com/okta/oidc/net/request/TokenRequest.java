@@ -21,8 +21,9 @@ import android.util.Log;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import com.okta.oidc.IdTokenSignatureVerifier;
 import com.okta.oidc.OIDCConfig;
 import com.okta.oidc.OktaIdToken;
 import com.okta.oidc.net.ConnectionParameters;
@@ -30,6 +31,7 @@ import com.okta.oidc.net.HttpResponse;
 import com.okta.oidc.net.OktaHttpClient;
 import com.okta.oidc.net.response.TokenResponse;
 import com.okta.oidc.util.AuthorizationException;
+import com.okta.oidc.util.GsonUtil;
 import com.okta.oidc.util.UriUtil;
 
 import org.json.JSONException;
@@ -128,25 +130,33 @@ public class TokenRequest extends BaseRequest<TokenResponse, AuthorizationExcept
         TokenResponse tokenResponse;
         try {
             response = openConnection(client);
-            JSONObject json = response.asJsonWithErrorDescription();
-            if (json.has(AuthorizationException.PARAM_ERROR)) {
-                try {
-                    final String error = json.getString(AuthorizationException.PARAM_ERROR);
-                    throw AuthorizationException.fromOAuthTemplate(
-                            AuthorizationException.TokenRequestErrors.byString(error),
-                            error,
-                            json.optString(AuthorizationException.PARAM_ERROR_DESCRIPTION,
-                                    null),
-                            UriUtil.parseUriIfAvailable(
-                                    json.optString(AuthorizationException.PARAM_ERROR_URI)));
-                } catch (JSONException jsonEx) {
-                    throw AuthorizationException.fromTemplate(
-                            AuthorizationException.GeneralErrors.JSON_DESERIALIZATION_ERROR,
-                            jsonEx);
+            if (response.isSuccessful()) {
+                tokenResponse = response.asType(TokenResponse.class);
+            } else {
+                JSONObject json = response.asJsonWithErrorDescription();
+                if (json.has(AuthorizationException.PARAM_ERROR)) {
+                    try {
+                        final String error = json.getString(AuthorizationException.PARAM_ERROR);
+                        throw AuthorizationException.fromOAuthTemplate(
+                                AuthorizationException.TokenRequestErrors.byString(error),
+                                error,
+                                json.optString(AuthorizationException.PARAM_ERROR_DESCRIPTION,
+                                        null),
+                                UriUtil.parseUriIfAvailable(
+                                        json.optString(AuthorizationException.PARAM_ERROR_URI)));
+                    } catch (JSONException jsonEx) {
+                        throw AuthorizationException.fromTemplate(
+                                AuthorizationException.GeneralErrors.JSON_DESERIALIZATION_ERROR,
+                                jsonEx);
+                    }
                 }
+                tokenResponse = GsonUtil.gson().fromJson(json.toString(), TokenResponse.class);
             }
-            tokenResponse = new Gson().fromJson(json.toString(), TokenResponse.class);
             tokenResponse.setCreationTime(System.currentTimeMillis());
+            // Release the connection before the verifier may request the key set with the
+            // same client.
+            response.disconnect();
+            response = null;
             if (tokenResponse.getIdToken() != null) {
                 OktaIdToken idToken;
                 try {
@@ -158,11 +168,16 @@ public class TokenRequest extends BaseRequest<TokenResponse, AuthorizationExcept
                             ex);
                 }
                 idToken.validate(this, mConfig.getIdTokenValidator());
+                IdTokenSignatureVerifier verifier = mConfig.getIdTokenSignatureVerifier();
+                if (verifier != null) {
+                    verifier.verify(idToken, mConfig, mProviderConfiguration, client);
+                }
+                tokenResponse.setParsedIdToken(idToken);
             }
             return tokenResponse;
         } catch (IOException ex) {
             throw new AuthorizationException(ex.getMessage(), ex);
-        } catch (JSONException ex) {
+        } catch (JSONException | JsonParseException ex) {
             throw AuthorizationException.fromTemplate(
                     AuthorizationException.GeneralErrors.JSON_DESERIALIZATION_ERROR, ex);
         } catch (AuthorizationException ae) {
@@ -22,7 +22,11 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 
-import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import com.okta.oidc.AuthenticationPayload;
 import com.okta.oidc.OIDCConfig;
 import com.okta.oidc.net.params.ResponseType;
@@ -31,7 +35,9 @@ import com.okta.oidc.net.request.ProviderConfiguration;
 import com.okta.oidc.util.AsciiStringListUtil;
 import com.okta.oidc.util.AuthorizationException;
 import com.okta.oidc.util.CodeVerifierUtil;
+import com.okta.oidc.util.GsonUtil;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -102,9 +108,10 @@ public class AuthorizeRequest extends WebRequest {
     @Override
     public String persist() {
         mParameters.request_type = "authorize";
-        return new Gson().toJson(mParameters);
+        return GsonUtil.gson().toJson(mParameters);
     }
 
+    @JsonAdapter(Parameters.Adapter.class)
     public static class Parameters {
         Parameters() {
             //NO-OP
@@ -125,6 +132,54 @@ public class AuthorizeRequest extends WebRequest {
             }
             return uriBuilder.build();
         }
+
+        static final class Adapter extends TypeAdapter<Parameters> {
+            @Override
+            public void write(JsonWriter writer, Parameters value) throws IOException {
+                if (value == null) {
+                    writer.nullValue();
+                    return;
+                }
+                writer.beginObject();
+                writer.name("request_type").value(value.request_type);
+                writer.name("queryParams");
+                GsonUtil.writeStringMap(writer, value.queryParams);
+                writer.name("mPayloadParams");
+                GsonUtil.writeStringMap(writer, value.mPayloadParams);
+                writer.endObject();
+            }
+
+            @Override
+            public Parameters read(JsonReader reader) throws IOException {
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    return null;
+                }
+                Parameters value = new Parameters();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "request_type":
+                            value.request_type = GsonUtil.readString(reader);
+                            break;
+                        case "queryParams":
+                            Map<String, String> queryParams = GsonUtil.readStringMap(reader);
+                            if (queryParams != null) {
+                                value.queryParams = queryParams;
+                            }
+                            break;
+                        case "mPayloadParams":
+                            value.mPayloadParams = GsonUtil.readStringMap(reader);
+                            break;
+                        default:
+                            reader.skipValue();
+                            break;
+                    }
+                }
+                reader.endObject();
+                return value;
+            }
+        }
     }
 
     public static final class Builder {
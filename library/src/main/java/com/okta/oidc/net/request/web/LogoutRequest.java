@@ -22,12 +22,19 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 
-import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import com.okta.oidc.OIDCConfig;
 import com.okta.oidc.net.request.ProviderConfiguration;
 import com.okta.oidc.net.response.TokenResponse;
 import com.okta.oidc.util.AuthorizationException;
 import com.okta.oidc.util.CodeVerifierUtil;
+import com.okta.oidc.util.GsonUtil;
+
+import java.io.IOException;
 
 /**
  * @hide
@@ -62,9 +69,10 @@ public class LogoutRequest extends WebRequest {
 
     @Override
     public String persist() {
-        return new Gson().toJson(mParameters);
+        return GsonUtil.gson().toJson(mParameters);
     }
 
+    @JsonAdapter(Parameters.Adapter.class)
     static class Parameters {
         Parameters() {
             //NO-OP
@@ -89,6 +97,53 @@ public class LogoutRequest extends WebRequest {
                 builder.appendQueryParameter(name, value);
             }
         }
+
+        static final class Adapter extends TypeAdapter<Parameters> {
+            @Override
+            public void write(JsonWriter writer, Parameters value) throws IOException {
+                if (value == null) {
+                    writer.nullValue();
+                    return;
+                }
+                writer.beginObject();
+                writer.name("end_session_endpoint").value(value.end_session_endpoint);
+                writer.name("id_token_hint").value(value.id_token_hint);
+                writer.name("post_logout_redirect_uri").value(value.post_logout_redirect_uri);
+                writer.name("state").value(value.state);
+                writer.endObject();
+            }
+
+            @Override
+            public Parameters read(JsonReader reader) throws IOException {
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    return null;
+                }
+                Parameters value = new Parameters();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "end_session_endpoint":
+                            value.end_session_endpoint = GsonUtil.readString(reader);
+                            break;
+                        case "id_token_hint":
+                            value.id_token_hint = GsonUtil.readString(reader);
+                            break;
+                        case "post_logout_redirect_uri":
+                            value.post_logout_redirect_uri = GsonUtil.readString(reader);
+                            break;
+                        case "state":
+                            value.state = GsonUtil.readString(reader);
+                            break;
+                        default:
+                            reader.skipValue();
+                            break;
+                    }
+                }
+                reader.endObject();
+                return value;
+            }
+        }
     }
 
     public static final class Builder {
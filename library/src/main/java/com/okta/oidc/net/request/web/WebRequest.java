@@ -21,8 +21,8 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 
-import com.google.gson.Gson;
 import com.okta.oidc.storage.Persistable;
+import com.okta.oidc.util.GsonUtil;
 
 /**
  * @hide
@@ -48,10 +48,10 @@ public abstract class WebRequest implements Persistable {
         public WebRequest restore(@Nullable String data) {
             if (data != null) {
                 if (data.contains("authorize")) {
-                    return new AuthorizeRequest(new Gson()
+                    return new AuthorizeRequest(GsonUtil.gson()
                             .fromJson(data, AuthorizeRequest.Parameters.class));
                 } else {
-                    return new LogoutRequest(new Gson()
+                    return new LogoutRequest(GsonUtil.gson()
                             .fromJson(data, LogoutRequest.Parameters.class));
                 }
             }
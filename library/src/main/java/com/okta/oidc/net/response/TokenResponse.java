@@ -19,14 +19,23 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 
-import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.okta.oidc.OktaIdToken;
 import com.okta.oidc.storage.Persistable;
+import com.okta.oidc.util.GsonUtil;
+
+import java.io.IOException;
 
 /**
  * @hide
  */
 @SuppressWarnings("unused")
 @RestrictTo(RestrictTo.Scope.LIBRARY)
+@JsonAdapter(TokenResponse.Adapter.class)
 public class TokenResponse implements Persistable {
     private static final int THOUSAND = 1000;
     private String access_token;
@@ -36,6 +45,8 @@ public class TokenResponse implements Persistable {
     private String refresh_token;
     private String id_token;
     private long expiresAt = -1;
+    // The id token parsed while validating the response. Kept in memory only.
+    private OktaIdToken mParsedIdToken;
 
     @NonNull
     public String getAccessToken() {
@@ -69,16 +80,34 @@ public class TokenResponse implements Persistable {
         //NO-OP
     }
 
-    //only called from token request
+    //only called from token request, before the response is saved.
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
     public void setCreationTime(long creationTime) {
         if (expiresAt < 0) {
             expiresAt = System.currentTimeMillis();
         }
     }
 
+    //only called from token request, before the response is saved.
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void setParsedIdToken(@Nullable OktaIdToken idToken) {
+        mParsedIdToken = idToken;
+    }
+
+    /**
+     * Returns the id token parsed while validating the response. Restored responses don't
+     * have it.
+     *
+     * @return the parsed id token or null
+     */
+    @Nullable
+    public OktaIdToken getParsedIdToken() {
+        return mParsedIdToken;
+    }
+
     public long getExpiresAt() {
         if (expiresAt > 0) {
-            expiresAt += Integer.parseInt(expires_in) * THOUSAND;
+            return expiresAt + Integer.parseInt(expires_in) * THOUSAND;
         }
         return expiresAt;
     }
@@ -96,11 +125,16 @@ public class TokenResponse implements Persistable {
                 @Override
                 public TokenResponse restore(@Nullable String data) {
                     if (data != null) {
-                        return new Gson().fromJson(data, TokenResponse.class);
+                        return GsonUtil.gson().fromJson(data, TokenResponse.class);
                     }
                     return null;
                 }
 
+                //restored responses are never changed, they can be shared.
+                @Override
+                public boolean isImmutable() {
+                    return true;
+                }
             };
 
     @NonNull
@@ -111,6 +145,65 @@ public class TokenResponse implements Persistable {
 
     @Override
     public String persist() {
-        return new Gson().toJson(this);
+        return GsonUtil.gson().toJson(this);
+    }
+
+    static final class Adapter extends TypeAdapter<TokenResponse> {
+        @Override
+        public void write(JsonWriter writer, TokenResponse value) throws IOException {
+            if (value == null) {
+                writer.nullValue();
+                return;
+            }
+            writer.beginObject();
+            writer.name("access_token").value(value.access_token);
+            writer.name("token_type").value(value.token_type);
+            writer.name("expires_in").value(value.expires_in);
+            writer.name("scope").value(value.scope);
+            writer.name("refresh_token").value(value.refresh_token);
+            writer.name("id_token").value(value.id_token);
+            writer.name("expiresAt").value(value.expiresAt);
+            writer.endObject();
+        }
+
+        @Override
+        public TokenResponse read(JsonReader reader) throws IOException {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                return null;
+            }
+            TokenResponse response = new TokenResponse();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "access_token":
+                        response.access_token = GsonUtil.readString(reader);
+                        break;
+                    case "token_type":
+                        response.token_type = GsonUtil.readString(reader);
+                        break;
+                    case "expires_in":
+                        response.expires_in = GsonUtil.readString(reader);
+                        break;
+                    case "scope":
+                        response.scope = GsonUtil.readString(reader);
+                        break;
+                    case "refresh_token":
+                        response.refresh_token = GsonUtil.readString(reader);
+                        break;
+                    case "id_token":
+                        response.id_token = GsonUtil.readString(reader);
+                        break;
+                    case "expiresAt":
+                        response.expiresAt = GsonUtil.readLong(reader, response.expiresAt);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+            return response;
+        }
     }
 }
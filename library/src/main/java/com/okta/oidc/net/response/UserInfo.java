@@ -17,8 +17,8 @@ package com.okta.oidc.net.response;
 
 import androidx.annotation.NonNull;
 
-import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import com.okta.oidc.util.GsonUtil;
 
 import org.json.JSONObject;
 
@@ -45,7 +45,7 @@ public class UserInfo {
         if (raw == null) {
             this.map = new HashMap<>();
         } else {
-            this.map = new Gson().fromJson(
+            this.map = GsonUtil.gson().fromJson(
                     raw.toString(), new TypeToken<HashMap<String, Object>>() {
                     }.getType()
             );
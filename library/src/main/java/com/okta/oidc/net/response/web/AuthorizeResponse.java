@@ -20,7 +20,7 @@ import android.net.Uri;
 import androidx.annotation.NonNull;
 import androidx.annotation.RestrictTo;
 
-import com.google.gson.Gson;
+import com.okta.oidc.util.GsonUtil;
 
 /**
  * @hide
@@ -112,6 +112,6 @@ public class AuthorizeResponse extends WebResponse {
 
     @Override
     public String persist() {
-        return new Gson().toJson(this);
+        return GsonUtil.gson().toJson(this);
     }
 }
@@ -20,7 +20,7 @@ import android.net.Uri;
 import androidx.annotation.NonNull;
 import androidx.annotation.RestrictTo;
 
-import com.google.gson.Gson;
+import com.okta.oidc.util.GsonUtil;
 
 /**
  * @hide
@@ -51,7 +51,7 @@ public class LogoutResponse extends WebResponse {
 
     @Override
     public String persist() {
-        return new Gson().toJson(this);
+        return GsonUtil.gson().toJson(this);
     }
 
 }
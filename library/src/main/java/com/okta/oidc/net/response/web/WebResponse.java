@@ -19,8 +19,8 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 
-import com.google.gson.Gson;
 import com.okta.oidc.storage.Persistable;
+import com.okta.oidc.util.GsonUtil;
 
 /**
  * @hide
@@ -44,9 +44,9 @@ public abstract class WebResponse implements Persistable {
         public WebResponse restore(@Nullable String data) {
             if (data != null) {
                 if (data.startsWith("authorize")) {
-                    return new Gson().fromJson(data, AuthorizeResponse.class);
+                    return GsonUtil.gson().fromJson(data, AuthorizeResponse.class);
                 } else {
-                    return new Gson().fromJson(data, LogoutResponse.class);
+                    return GsonUtil.gson().fromJson(data, LogoutResponse.class);
                 }
             }
             return null;
@@ -0,0 +1,448 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.storage;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A implementation of {@link OktaStorage}.
+ * The implementation keeps the data in a single append only log file in the app files
+ * directory. Every change appends one record protected by a CRC32 checksum, so a write costs
+ * the size of the changed values instead of the whole file. The file is memory mapped and
+ * replayed once on first access, and rewritten when most of it holds values that were
+ * overwritten since. A record that was only partially written when the process died is
+ * discarded the next time the file is read. All storages created for the same file in a process
+ * share its contents, so they see each other's changes.
+ * The data will be encrypted by the library before saving.
+ */
+public class LogFileStorage implements OktaStorage {
+    private static final String TAG = LogFileStorage.class.getSimpleName();
+    private static final String DEFAULT_FILE_NAME = "okta_oidc_storage.log";
+    private static final String COMPACT_SUFFIX = ".compact";
+
+    private static final int MAGIC = 0x4F4B4C47;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int OP_HEADER_SIZE = 5;
+    private static final int VALUE_HEADER_SIZE = 4;
+    private static final byte OP_SAVE = 1;
+    private static final byte OP_DELETE = 2;
+    private static final int DEFAULT_COMPACTION_THRESHOLD = 32 * 1024;
+
+    // Open log files by canonical path. Every storage of a file shares its state, so storages
+    // created for the same file never write at their own offsets or read stale values.
+    private static final Map<String, LogFile> FILES = new HashMap<>();
+
+    private final LogFile mLog;
+
+    /**
+     * Instantiates a new instance.
+     * Uses a default file name in the app files directory.
+     *
+     * @param context the context
+     */
+    public LogFileStorage(Context context) {
+        this(context, null);
+    }
+
+    /**
+     * Instantiates a new instance.
+     *
+     * @param context  the context
+     * @param fileName the file name in the app files directory.
+     */
+    public LogFileStorage(Context context, String fileName) {
+        this(new File(context.getFilesDir(), fileName == null ? DEFAULT_FILE_NAME : fileName),
+                DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    @VisibleForTesting
+    LogFileStorage(File file, int compactionThreshold) {
+        mLog = logFor(file, compactionThreshold);
+    }
+
+    private static LogFile logFor(File file, int compactionThreshold) {
+        String path;
+        try {
+            path = file.getCanonicalPath();
+        } catch (IOException e) {
+            path = file.getAbsolutePath();
+        }
+        synchronized (FILES) {
+            LogFile log = FILES.get(path);
+            if (log == null) {
+                log = new LogFile(file, path, compactionThreshold);
+                FILES.put(path, log);
+            }
+            return log;
+        }
+    }
+
+    @Override
+    public void save(@NonNull String key, @NonNull String value) {
+        synchronized (mLog) {
+            mLog.write(Collections.singletonMap(key, value), Collections.emptyList());
+        }
+    }
+
+    @Nullable
+    @Override
+    public String get(@NonNull String key) {
+        synchronized (mLog) {
+            mLog.load();
+            return mLog.mValues.get(key);
+        }
+    }
+
+    @Override
+    public void delete(@NonNull String key) {
+        synchronized (mLog) {
+            mLog.write(Collections.emptyMap(), Collections.singletonList(key));
+        }
+    }
+
+    @Override
+    public void update(@NonNull Map<String, String> values,
+                       @NonNull Collection<String> deletedKeys) {
+        synchronized (mLog) {
+            mLog.write(values, deletedKeys);
+        }
+    }
+
+    // Closes the file of this storage, the next storage of the file reads it again.
+    @VisibleForTesting
+    void close() {
+        synchronized (FILES) {
+            FILES.remove(mLog.mPath);
+        }
+        synchronized (mLog) {
+            mLog.closeChannel();
+        }
+    }
+
+    @VisibleForTesting
+    long getFileSize() {
+        synchronized (mLog) {
+            mLog.load();
+            return mLog.mSize;
+        }
+    }
+
+    // The state of one log file, guarded by its own monitor.
+    private static final class LogFile {
+        private final File mFile;
+        private final String mPath;
+        private final int mCompactionThreshold;
+        private final Map<String, String> mValues = new HashMap<>();
+        // Size of a record saving all current values, what the file shrinks to on compaction.
+        private long mLiveBytes;
+        private FileChannel mChannel;
+        private long mSize;
+        private boolean mLoaded;
+
+        LogFile(File file, String path, int compactionThreshold) {
+            mFile = file;
+            mPath = path;
+            mCompactionThreshold = compactionThreshold;
+        }
+
+        void write(Map<String, String> values, Collection<String> deletedKeys) {
+            load();
+            if (values.isEmpty() && deletedKeys.isEmpty()) {
+                return;
+            }
+            ByteBuffer record = encode(values, deletedKeys);
+            try {
+                if (mChannel == null) {
+                    open();
+                }
+                writeFully(mChannel, record, mSize);
+                mChannel.force(false);
+                mSize += record.capacity();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to write " + mFile, e);
+                discardTail();
+                return;
+            }
+            for (String key : deletedKeys) {
+                putValue(key, null);
+            }
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                putValue(entry.getKey(), entry.getValue());
+            }
+            compactIfNeeded();
+        }
+
+        void load() {
+            if (mLoaded) {
+                return;
+            }
+            mLoaded = true;
+            File compacted = compactedFile();
+            if (compacted.exists() && !compacted.delete()) {
+                Log.w(TAG, "Failed to delete " + compacted);
+            }
+            try {
+                open();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to read " + mFile, e);
+                mValues.clear();
+                mLiveBytes = 0;
+                closeChannel();
+            }
+        }
+
+        private void open() throws IOException {
+            mChannel = new RandomAccessFile(mFile, "rw").getChannel();
+            long size = mChannel.size();
+            long valid = 0;
+            if (size >= HEADER_SIZE) {
+                ByteBuffer buffer = mChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                if (buffer.getInt() == MAGIC && buffer.getInt() == VERSION) {
+                    valid = replay(buffer);
+                } else {
+                    Log.w(TAG, "Unknown format of " + mFile + ", starting empty");
+                }
+            }
+            if (valid == 0) {
+                mChannel.truncate(0);
+                writeFully(mChannel, header(), 0);
+                mChannel.force(false);
+                valid = HEADER_SIZE;
+            } else if (valid < size) {
+                Log.w(TAG, "Discarding " + (size - valid) + " bytes of incomplete records");
+                mChannel.truncate(valid);
+                mChannel.force(false);
+            }
+            mSize = valid;
+        }
+
+        private long replay(ByteBuffer buffer) {
+            long valid = buffer.position();
+            while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                if (checksum(payload) != checksum || !apply(payload)) {
+                    break;
+                }
+                valid = buffer.position();
+            }
+            return valid;
+        }
+
+        // Applies all operations of a record or none of them if the record is malformed.
+        private boolean apply(byte[] payload) {
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            List<String> keys = new ArrayList<>();
+            List<String> values = new ArrayList<>();
+            try {
+                while (buffer.hasRemaining()) {
+                    byte op = buffer.get();
+                    keys.add(readString(buffer));
+                    if (op == OP_SAVE) {
+                        values.add(readString(buffer));
+                    } else if (op == OP_DELETE) {
+                        values.add(null);
+                    } else {
+                        return false;
+                    }
+                }
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                return false;
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                putValue(keys.get(i), values.get(i));
+            }
+            return true;
+        }
+
+        private void compactIfNeeded() {
+            if (mSize < mCompactionThreshold
+                    || mSize < 2L * (HEADER_SIZE + RECORD_HEADER_SIZE + mLiveBytes)) {
+                return;
+            }
+            ByteBuffer record = encode(mValues, Collections.emptyList());
+            File compacted = compactedFile();
+            try {
+                try (FileChannel channel = new RandomAccessFile(compacted, "rw").getChannel()) {
+                    channel.truncate(0);
+                    writeFully(channel, header(), 0);
+                    writeFully(channel, record, HEADER_SIZE);
+                    channel.force(true);
+                }
+                closeChannel();
+                if (!compacted.renameTo(mFile)) {
+                    throw new IOException("Failed to rename " + compacted);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to compact " + mFile, e);
+                if (compacted.exists() && !compacted.delete()) {
+                    Log.w(TAG, "Failed to delete " + compacted);
+                }
+            }
+            try {
+                if (mChannel == null) {
+                    mChannel = new RandomAccessFile(mFile, "rw").getChannel();
+                    mSize = mChannel.size();
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to reopen " + mFile, e);
+                closeChannel();
+            }
+        }
+
+        // Saves or, for a null value, deletes a value and keeps the live size up to date.
+        private void putValue(String key, @Nullable String value) {
+            String previous = value == null ? mValues.remove(key) : mValues.put(key, value);
+            if (previous != null) {
+                mLiveBytes -= entrySize(key, previous);
+            }
+            if (value != null) {
+                mLiveBytes += entrySize(key, value);
+            }
+        }
+
+        // Drops a partially written record so the next one is appended after the last valid one.
+        private void discardTail() {
+            try {
+                if (mChannel != null) {
+                    mChannel.truncate(mSize);
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to truncate " + mFile, e);
+            }
+        }
+
+        void closeChannel() {
+            if (mChannel != null) {
+                try {
+                    mChannel.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Failed to close " + mFile, e);
+                }
+                mChannel = null;
+            }
+        }
+
+        private File compactedFile() {
+            return new File(mFile.getPath() + COMPACT_SUFFIX);
+        }
+    }
+
+    private static ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION);
+        header.flip();
+        return header;
+    }
+
+    private static ByteBuffer encode(Map<String, String> values,
+                                     Collection<String> deletedKeys) {
+        List<byte[]> deleted = new ArrayList<>(deletedKeys.size());
+        int length = 0;
+        for (String key : deletedKeys) {
+            byte[] bytes = key.getBytes(UTF_8);
+            deleted.add(bytes);
+            length += OP_HEADER_SIZE + bytes.length;
+        }
+        List<byte[]> saved = new ArrayList<>(values.size() * 2);
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            byte[] key = entry.getKey().getBytes(UTF_8);
+            byte[] value = entry.getValue() == null ? null : entry.getValue().getBytes(UTF_8);
+            saved.add(key);
+            saved.add(value);
+            length += OP_HEADER_SIZE + key.length;
+            if (value != null) {
+                length += VALUE_HEADER_SIZE + value.length;
+            }
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        for (byte[] key : deleted) {
+            payload.put(OP_DELETE).putInt(key.length).put(key);
+        }
+        for (int i = 0; i < saved.size(); i += 2) {
+            byte[] key = saved.get(i);
+            byte[] value = saved.get(i + 1);
+            if (value == null) {
+                payload.put(OP_DELETE).putInt(key.length).put(key);
+            } else {
+                payload.put(OP_SAVE).putInt(key.length).put(key)
+                        .putInt(value.length).put(value);
+            }
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        record.putInt(length).putInt(checksum(payload.array())).put(payload.array());
+        record.flip();
+        return record;
+    }
+
+    private static long entrySize(String key, String value) {
+        return OP_HEADER_SIZE + key.getBytes(UTF_8).length + VALUE_HEADER_SIZE
+                + value.getBytes(UTF_8).length;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid length " + length);
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                length, UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+}
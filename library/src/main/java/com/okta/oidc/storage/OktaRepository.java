@@ -22,14 +22,23 @@ import android.util.Log;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 
+import com.okta.oidc.RequestExecutors;
 import com.okta.oidc.storage.security.BaseEncryptionManager;
 import com.okta.oidc.storage.security.EncryptionManager;
 
 import java.security.GeneralSecurityException;
 import java.security.InvalidParameterException;
 import java.security.ProviderException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.crypto.IllegalBlockSizeException;
 
@@ -47,182 +56,434 @@ import static com.okta.oidc.storage.OktaRepository.EncryptionException.KEYGUARD_
 public class OktaRepository {
     private static final String TAG = OktaRepository.class.getSimpleName();
     private static final int MAX_WAIT_TIME_MILLISECONDS_BEFORE_RETRY = 100;
+    private static final int LOCK_STRIPES = 8;
+    private static final String WRITE_THREAD_NAME = "OktaWriteBehind";
 
     private final OktaStorage storage;
-    private EncryptionManager encryptionManager;
-    private boolean requireHardwareBackedKeyStore;
-    private boolean cacheMode;
-    final Map<String, String> cacheStorage = new HashMap<>();
+    private volatile EncryptionManager encryptionManager;
+    private final boolean requireHardwareBackedKeyStore;
+    private final boolean cacheMode;
+    // Serial executor of write behind mode, null if saves are written synchronously. It runs
+    // on the worker executor of the app, or on an own thread that stops when idle.
+    @Nullable
+    private final Executor writeExecutor;
+    // Saved values by hashed key that are not written to storage yet. A new save of a key
+    // replaces its pending write, so only the latest value is written.
+    final Map<String, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+    // First failure of a background write, reported by flush().
+    private volatile EncryptionException writeFailure;
+    // Decrypted values by hashed key. Cache hits are served without taking any lock, so reads
+    // never wait for an encryption that is in progress for a write.
+    final Map<String, String> cacheStorage = new ConcurrentHashMap<>();
+    // Restored instances of immutable types by hashed key, so repeated reads of an unchanged
+    // value don't deserialize it again. Other types are restored on every read, so callers
+    // never share an instance they can change. An entry is only used while it was restored
+    // from the current cacheStorage value by the same Restore.
+    final Map<String, RestoredValue> restoredCache = new ConcurrentHashMap<>();
 
-    private final Object lock = new Object();
+    // Hashed keys of the current encryption manager. The key set is small and fixed, so hashing
+    // each key once per manager is enough. Replaced together with the manager.
+    private volatile Map<String, String> hashedKeys = new ConcurrentHashMap<>();
+
+    // Writes and cache loads of the same key are ordered by the stripe lock of that key.
+    // Transactions take the locks of all their keys in stripe order.
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    // Held while pending values are encrypted and written, by the write behind executor or by
+    // a flush, so each pending value is encrypted once. Saves don't take it.
+    private final ReentrantLock writeLock = new ReentrantLock();
 
     public OktaRepository(OktaStorage storage, Context context,
                           @Nullable EncryptionManager encryptionManager,
                           boolean requireHardwareBackedKeyStore,
                           boolean cacheMode) {
+        this(storage, context, encryptionManager, requireHardwareBackedKeyStore, cacheMode,
+                false);
+    }
+
+    public OktaRepository(OktaStorage storage, Context context,
+                          @Nullable EncryptionManager encryptionManager,
+                          boolean requireHardwareBackedKeyStore,
+                          boolean cacheMode,
+                          boolean writeBehind) {
+        this(storage, context, encryptionManager, requireHardwareBackedKeyStore, cacheMode,
+                writeBehind, RequestExecutors.defaults());
+    }
+
+    public OktaRepository(OktaStorage storage, Context context,
+                          @Nullable EncryptionManager encryptionManager,
+                          boolean requireHardwareBackedKeyStore,
+                          boolean cacheMode,
+                          boolean writeBehind,
+                          RequestExecutors executors) {
         this.storage = storage;
         this.cacheMode = cacheMode;
+        this.writeExecutor = writeBehind ? executors.newSerialExecutor(WRITE_THREAD_NAME) : null;
         this.requireHardwareBackedKeyStore = requireHardwareBackedKeyStore;
         this.encryptionManager = encryptionManager;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
     }
 
     public void setEncryptionManager(EncryptionManager encryptionManager) {
         this.encryptionManager = encryptionManager;
+        hashedKeys = new ConcurrentHashMap<>();
+        restoredCache.clear();
     }
 
     public void save(Persistable persistable) throws EncryptionException {
         if (persistable == null) {
             return;
         }
-        synchronized (lock) {
-            if (!requireHardwareBackedKeyStore || encryptionManager != null &&
-                    encryptionManager.isHardwareBackedKeyStore()) {
-                String encryptedData;
-                if (android.os.Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                    try {
-                        encryptedData = getEncrypted(persistable.persist());
-                        storage.save(getHashed(persistable.getKey()), encryptedData);
-                    } catch (BaseEncryptionManager.OktaUserNotAuthenticateException e) {
-                        String error = "Failed during encrypt data: " + e.getMessage();
-                        throw new EncryptionException(ENCRYPT_ERROR, error, e.getCause());
-                    } catch (IllegalBlockSizeException e) {
-                        String error = "Unable to encrypt " + persistable.getKey() + " the " +
-                                "cipher algorithm may not be supported on this device" +
-                                e.getMessage();
-                        throw new EncryptionException(ILLEGAL_BLOCK_SIZE, error,
-                                e.getCause());
-                    } catch (GeneralSecurityException e) {
-                        throw new EncryptionException(INVALID_KEYS_ERROR, e.getMessage(),
-                                e.getCause());
-                    } catch (InvalidParameterException e) {
-                        throw new EncryptionException(ENCRYPT_ERROR, e.getMessage(),
-                                e.getCause());
-                    }
-                } else {
-                    try {
-                        encryptedData = getEncrypted(persistable.persist());
-                        storage.save(getHashed(persistable.getKey()), encryptedData);
-                    } catch (GeneralSecurityException e) {
-                        throw new EncryptionException(INVALID_KEYS_ERROR, e.getMessage(),
-                                e.getCause());
-                    }
-                }
-            } else {
-                throw new EncryptionException(HARDWARE_BACKED_ERROR,
-                        "Client require hardware backed keystore, " +
-                                "but EncryptionManager doesn't support it.", null);
+        String key = getHashed(persistable.getKey());
+        String data = persistable.persist();
+        if (writeExecutor != null) {
+            checkHardwareBacked(encryptionManager);
+            saveBehind(key, new PendingWrite(persistable, data));
+            return;
+        }
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            storage.save(key, encrypt(encryptionManager, persistable, data));
+            if (cacheMode) {
+                putCache(key, data);
             }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void saveBehind(String key, PendingWrite write) {
+        PendingWrite previous;
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            previous = pendingWrites.put(key, write);
             if (cacheMode) {
-                cacheStorage.put(getHashed(persistable.getKey()),
-                        persistable.persist());
+                putCache(key, write.mData);
+            }
+        } finally {
+            lock.unlock();
+        }
+        // A queued write of the key picks up the latest value, only schedule one if none is.
+        if (previous == null) {
+            writeExecutor.execute(() -> writePending(key));
+        }
+    }
+
+    private void writePending(String key) {
+        writeLock.lock();
+        try {
+            writePendingLocked(key);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void writePendingLocked(String key) {
+        PendingWrite write;
+        while ((write = pendingWrites.get(key)) != null) {
+            String encrypted;
+            try {
+                encrypted = encrypt(encryptionManager, write.mPersistable, write.mData);
+            } catch (EncryptionException e) {
+                onWriteFailed(key, write, e);
+                continue;
+            } catch (RuntimeException e) {
+                // A ProviderException that failed the retry too. Drop the pending write like
+                // any other failure, so later saves of the key schedule a new one.
+                onWriteFailed(key, write, new EncryptionException(ENCRYPT_ERROR,
+                        "Failed to encrypt " + write.mPersistable.getKey() + ": " +
+                                e.getMessage(), e));
+                continue;
+            }
+            ReentrantLock lock = lockFor(key);
+            lock.lock();
+            try {
+                // Skip the write if the value was saved again or deleted meanwhile.
+                if (pendingWrites.get(key) == write) {
+                    storage.save(key, encrypted);
+                    pendingWrites.remove(key);
+                }
+            } catch (RuntimeException e) {
+                onWriteFailed(key, write, new EncryptionException(ENCRYPT_ERROR,
+                        "Failed to write " + write.mPersistable.getKey() + ": " +
+                                e.getMessage(), e));
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void onWriteFailed(String key, PendingWrite write, EncryptionException e) {
+        Log.w(TAG, "Failed to write " + write.mPersistable.getKey(), e);
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            if (pendingWrites.remove(key, write)) {
+                // Drop the value that was not persisted, the next read loads it from storage.
+                cacheStorage.remove(key);
+                restoredCache.remove(key);
             }
+        } finally {
+            lock.unlock();
+        }
+        if (writeFailure == null) {
+            writeFailure = e;
+        }
+    }
+
+    /**
+     * Waits until all values saved in write behind mode are persisted. Returns immediately
+     * if write behind mode is off.
+     *
+     * @throws EncryptionException the first failure of a background write since the last
+     *                             flush
+     */
+    public void flush() throws EncryptionException {
+        awaitPendingWrites();
+        EncryptionException failure = writeFailure;
+        if (failure != null) {
+            writeFailure = null;
+            throw failure;
+        }
+    }
+
+    /**
+     * Starts a transaction that deletes and saves several values with a single storage
+     * update.
+     *
+     * @return the transaction
+     */
+    public Transaction newTransaction() {
+        return new Transaction();
+    }
+
+    private void awaitPendingWrites() {
+        if (writeExecutor == null) {
+            return;
+        }
+        // Writes the pending values on this thread instead of waiting for the executor, whose
+        // threads may all be busy, possibly with the caller. A write the executor is doing
+        // already is waited for by writePending.
+        for (String key : pendingWrites.keySet()) {
+            writePending(key);
+        }
+    }
+
+    private void checkHardwareBacked(EncryptionManager manager) throws EncryptionException {
+        if (requireHardwareBackedKeyStore && (manager == null ||
+                !manager.isHardwareBackedKeyStore())) {
+            throw new EncryptionException(HARDWARE_BACKED_ERROR,
+                    "Client require hardware backed keystore, " +
+                            "but EncryptionManager doesn't support it.", null);
+        }
+    }
+
+    private String encrypt(EncryptionManager manager, Persistable persistable, String data)
+            throws EncryptionException {
+        checkHardwareBacked(manager);
+        if (android.os.Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            try {
+                return getEncrypted(manager, data);
+            } catch (BaseEncryptionManager.OktaUserNotAuthenticateException e) {
+                String error = "Failed during encrypt data: " + e.getMessage();
+                throw new EncryptionException(ENCRYPT_ERROR, error, e.getCause());
+            } catch (IllegalBlockSizeException e) {
+                String error = "Unable to encrypt " + persistable.getKey() + " the " +
+                        "cipher algorithm may not be supported on this device" +
+                        e.getMessage();
+                throw new EncryptionException(ILLEGAL_BLOCK_SIZE, error,
+                        e.getCause());
+            } catch (GeneralSecurityException e) {
+                throw new EncryptionException(INVALID_KEYS_ERROR, e.getMessage(),
+                        e.getCause());
+            } catch (InvalidParameterException e) {
+                throw new EncryptionException(ENCRYPT_ERROR, e.getMessage(),
+                        e.getCause());
+            }
+        } else {
+            try {
+                return getEncrypted(manager, data);
+            } catch (GeneralSecurityException e) {
+                throw new EncryptionException(INVALID_KEYS_ERROR, e.getMessage(),
+                        e.getCause());
+            }
+        }
+    }
+
+    private void putCache(String key, String data) {
+        if (data != null) {
+            cacheStorage.put(key, data);
+        } else {
+            cacheStorage.remove(key);
         }
+        restoredCache.remove(key);
     }
 
+    @SuppressWarnings("unchecked")
     public <T extends Persistable> T get(Persistable.Restore<T> persistable)
             throws EncryptionException {
-        synchronized (lock) {
-            String data;
-            String key = getHashed(persistable.getKey());
-            if (cacheMode && cacheStorage.get(key) != null) {
-                data = cacheStorage.get(key);
-            } else {
-                data = storage.get(key);
-
-                if (android.os.Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                    try {
-                        data = getDecrypted(data);
-                    } catch (BaseEncryptionManager.OktaUserNotAuthenticateException e) {
-                        String error = "User not authenticated and try to decrypt data: " +
-                                e.getMessage();
-                        throw new EncryptionException(KEYGUARD_AUTHENTICATION_ERROR, error,
-                                e.getCause());
-                    } catch (IllegalBlockSizeException e) {
-                        String error = "Unable to decrypt " + persistable.getKey() + " the key " +
-                                "used may be invalidated. Please clear data and try again. " +
-                                e.getMessage();
-                        throw new EncryptionException(ILLEGAL_BLOCK_SIZE, error,
-                                e.getCause());
-                    } catch (GeneralSecurityException e) {
-                        throw new EncryptionException(INVALID_KEYS_ERROR, e.getMessage(),
-                                e.getCause());
-                    } catch (InvalidParameterException e) {
-                        throw new EncryptionException(DECRYPT_ERROR, e.getMessage(),
-                                e.getCause());
-                    }
-                } else {
-                    try {
-                        data = getDecrypted(data);
-                    } catch (GeneralSecurityException e) {
-                        throw new EncryptionException(INVALID_KEYS_ERROR, e.getMessage(),
-                                e.getCause());
+        String key = getHashed(persistable.getKey());
+        PendingWrite pending = pendingWrites.get(key);
+        if (pending != null && (!cacheMode || pending.mData == null)) {
+            return persistable.restore(pending.mData);
+        }
+        String data = cacheMode ? cacheStorage.get(key) : null;
+        if (data != null) {
+            RestoredValue restored = persistable.isImmutable() ? restoredCache.get(key) : null;
+            // Compare by reference, every save puts a new string in cacheStorage.
+            if (restored != null && restored.mData == data && restored.mRestore == persistable) {
+                return (T) restored.mValue;
+            }
+        } else {
+            ReentrantLock lock = lockFor(key);
+            lock.lock();
+            try {
+                data = cacheMode ? cacheStorage.get(key) : null;
+                if (data == null) {
+                    data = getFromStorage(persistable, key);
+                    if (cacheMode && data != null) {
+                        cacheStorage.put(key, data);
                     }
                 }
+            } finally {
+                lock.unlock();
+            }
+        }
+        T value = persistable.restore(data);
+        if (cacheMode && data != null && value != null && persistable.isImmutable()) {
+            restoredCache.put(key, new RestoredValue(persistable, data, value));
+        }
+        return value;
+    }
 
-                if (cacheMode) {
-                    cacheStorage.put(key, data);
-                }
+    private String getFromStorage(Persistable.Restore<?> persistable, String key)
+            throws EncryptionException {
+        String data = storage.get(key);
+        if (android.os.Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            try {
+                data = getDecrypted(data);
+            } catch (BaseEncryptionManager.OktaUserNotAuthenticateException e) {
+                String error = "User not authenticated and try to decrypt data: " +
+                        e.getMessage();
+                throw new EncryptionException(KEYGUARD_AUTHENTICATION_ERROR, error,
+                        e.getCause());
+            } catch (IllegalBlockSizeException e) {
+                String error = "Unable to decrypt " + persistable.getKey() + " the key " +
+                        "used may be invalidated. Please clear data and try again. " +
+                        e.getMessage();
+                throw new EncryptionException(ILLEGAL_BLOCK_SIZE, error,
+                        e.getCause());
+            } catch (GeneralSecurityException e) {
+                throw new EncryptionException(INVALID_KEYS_ERROR, e.getMessage(),
+                        e.getCause());
+            } catch (InvalidParameterException e) {
+                throw new EncryptionException(DECRYPT_ERROR, e.getMessage(),
+                        e.getCause());
+            }
+        } else {
+            try {
+                data = getDecrypted(data);
+            } catch (GeneralSecurityException e) {
+                throw new EncryptionException(INVALID_KEYS_ERROR, e.getMessage(),
+                        e.getCause());
             }
-            return persistable.restore(data);
         }
+        return data;
     }
 
     public boolean contains(Persistable.Restore persistable) {
-        synchronized (lock) {
-            String key = getHashed(persistable.getKey());
-            return (cacheMode && cacheStorage.get(key) != null) || storage.get(key) != null;
+        String key = getHashed(persistable.getKey());
+        PendingWrite pending = pendingWrites.get(key);
+        if (pending != null) {
+            return pending.mData != null;
         }
+        return (cacheMode && cacheStorage.containsKey(key)) || storage.get(key) != null;
     }
 
     public void delete(Persistable persistable) {
         if (persistable == null) {
             return;
         }
-        synchronized (lock) {
-            String key = getHashed(persistable.getKey());
-            storage.delete(key);
-            cacheStorage.remove(key);
-        }
+        delete(persistable.getKey());
     }
 
     public void delete(String key) {
         if (key == null) {
             return;
         }
-        synchronized (lock) {
-            String hashedKey = getHashed(key);
+        String hashedKey = getHashed(key);
+        ReentrantLock lock = lockFor(hashedKey);
+        lock.lock();
+        try {
+            pendingWrites.remove(hashedKey);
             storage.delete(hashedKey);
             cacheStorage.remove(hashedKey);
+            restoredCache.remove(hashedKey);
+        } finally {
+            lock.unlock();
         }
     }
 
-    private String getEncrypted(String value) throws GeneralSecurityException {
-        if (encryptionManager == null) {
+    private static int stripeFor(String hashedKey) {
+        return (hashedKey.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES;
+    }
+
+    private ReentrantLock lockFor(String hashedKey) {
+        return locks[stripeFor(hashedKey)];
+    }
+
+    private static String getEncrypted(EncryptionManager manager, String value)
+            throws GeneralSecurityException {
+        if (manager == null) {
             return value;
         }
         try {
-            return encryptionManager.encrypt(value);
+            return manager.encrypt(value);
         } catch (ProviderException | GeneralSecurityException ex) {
             sleep();
-            return encryptionManager.encrypt(value);
+            return manager.encrypt(value);
         }
     }
 
     private String getDecrypted(String value) throws GeneralSecurityException {
-        if (encryptionManager == null) {
+        EncryptionManager manager = encryptionManager;
+        if (manager == null) {
             return value;
         }
         try {
-            return encryptionManager.decrypt(value);
+            return manager.decrypt(value);
         } catch (ProviderException | GeneralSecurityException ex) {
             sleep();
-            return encryptionManager.decrypt(value);
+            return manager.decrypt(value);
         }
     }
 
     private String getHashed(String value) {
+        // Read the table before the manager: a table is never older than the manager it's
+        // used with, and a hash computed by a newer manager only lands in a discarded table.
+        Map<String, String> table = hashedKeys;
+        String hashed = table.get(value);
+        if (hashed != null) {
+            return hashed;
+        }
         try {
-            return encryptionManager.getHashed(value);
+            hashed = encryptionManager.getHashed(value);
+            if (hashed != null) {
+                table.put(value, hashed);
+            }
+            return hashed;
+        } catch (Exception ex) {
+            Log.d(TAG, "getHashed: ", ex);
+            return value;
+        }
+    }
+
+    private static String getHashed(EncryptionManager manager, String value) {
+        try {
+            return manager.getHashed(value);
         } catch (Exception ex) {
             Log.d(TAG, "getHashed: ", ex);
             return value;
@@ -240,6 +501,147 @@ public class OktaRepository {
         }
     }
 
+    /**
+     * A set of deletes and saves written to {@link OktaStorage} with one
+     * {@link OktaStorage#update(Map, java.util.Collection)} call. Keys are hashed when they are
+     * added. Deletes are hashed by the current encryption manager, saves by the manager given
+     * to {@link #setEncryptionManager(EncryptionManager)} if any, which lets a transaction
+     * move values to a new manager.
+     */
+    public final class Transaction {
+        private final Set<String> mDeletedKeys = new LinkedHashSet<>();
+        private final List<Persistable> mSaved = new ArrayList<>();
+        private final List<String> mSavedKeys = new ArrayList<>();
+        private EncryptionManager mEncryptionManager;
+        private boolean mReplaceEncryptionManager;
+
+        private Transaction() {
+        }
+
+        /**
+         * Sets the encryption manager used for the values saved after this call. It becomes
+         * the manager of the repository once the transaction is committed.
+         *
+         * @param manager the new encryption manager
+         * @return this transaction
+         */
+        public Transaction setEncryptionManager(EncryptionManager manager) {
+            mEncryptionManager = manager;
+            mReplaceEncryptionManager = true;
+            return this;
+        }
+
+        /**
+         * Adds a value to save.
+         *
+         * @param persistable the value, ignored if null
+         * @return this transaction
+         */
+        public Transaction save(Persistable persistable) {
+            if (persistable != null) {
+                mSaved.add(persistable);
+                mSavedKeys.add(mReplaceEncryptionManager
+                        ? getHashed(mEncryptionManager, persistable.getKey())
+                        : getHashed(persistable.getKey()));
+            }
+            return this;
+        }
+
+        /**
+         * Adds a key to delete.
+         *
+         * @param key the key, ignored if null
+         * @return this transaction
+         */
+        public Transaction delete(String key) {
+            if (key != null) {
+                mDeletedKeys.add(getHashed(key));
+            }
+            return this;
+        }
+
+        /**
+         * Encrypts the saved values and writes all changes to storage.
+         *
+         * @throws EncryptionException if a value can't be encrypted, nothing is written then
+         */
+        public void commit() throws EncryptionException {
+            if (mReplaceEncryptionManager) {
+                // Pending writes are encrypted by the current manager, let them finish first.
+                awaitPendingWrites();
+            }
+            Set<Integer> stripes = new TreeSet<>();
+            for (String key : mSavedKeys) {
+                stripes.add(stripeFor(key));
+            }
+            for (String key : mDeletedKeys) {
+                stripes.add(stripeFor(key));
+            }
+            List<ReentrantLock> held = new ArrayList<>(stripes.size());
+            try {
+                for (int stripe : stripes) {
+                    locks[stripe].lock();
+                    held.add(locks[stripe]);
+                }
+                EncryptionManager manager = mReplaceEncryptionManager
+                        ? mEncryptionManager : encryptionManager;
+                Map<String, String> data = new HashMap<>();
+                Map<String, String> encrypted = new HashMap<>();
+                for (int i = 0; i < mSaved.size(); i++) {
+                    Persistable persistable = mSaved.get(i);
+                    String key = mSavedKeys.get(i);
+                    String value = persistable.persist();
+                    data.put(key, value);
+                    encrypted.put(key, encrypt(manager, persistable, value));
+                }
+                Set<String> deletedKeys = new LinkedHashSet<>(mDeletedKeys);
+                deletedKeys.removeAll(encrypted.keySet());
+                storage.update(encrypted, deletedKeys);
+                // The transaction supersedes pending writes of its keys.
+                pendingWrites.keySet().removeAll(mDeletedKeys);
+                pendingWrites.keySet().removeAll(encrypted.keySet());
+                if (mReplaceEncryptionManager) {
+                    OktaRepository.this.setEncryptionManager(mEncryptionManager);
+                }
+                for (String key : deletedKeys) {
+                    cacheStorage.remove(key);
+                    restoredCache.remove(key);
+                }
+                if (cacheMode) {
+                    for (Map.Entry<String, String> entry : data.entrySet()) {
+                        putCache(entry.getKey(), entry.getValue());
+                    }
+                }
+            } finally {
+                for (int i = held.size() - 1; i >= 0; i--) {
+                    held.get(i).unlock();
+                }
+            }
+        }
+    }
+
+    static final class PendingWrite {
+        final Persistable mPersistable;
+        final String mData;
+
+        PendingWrite(Persistable persistable, String data) {
+            mPersistable = persistable;
+            mData = data;
+        }
+    }
+
+    static final class RestoredValue {
+        final Persistable.Restore<?> mRestore;
+        final String mData;
+        final Object mValue;
+
+        RestoredValue(Persistable.Restore<?> restore, String data, Object value) {
+            mRestore = restore;
+            mData = data;
+            mValue = value;
+        }
+    }
+
     public static class EncryptionException extends Exception {
         public static final int ENCRYPT_ERROR = 1;
         public static final int HARDWARE_BACKED_ERROR = 3;
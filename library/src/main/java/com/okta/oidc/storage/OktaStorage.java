@@ -18,8 +18,13 @@ package com.okta.oidc.storage;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * The interface Okta storage.
+ * Implementations must be thread-safe. Values of different keys may be read and written
+ * concurrently, while writes to the same key are never issued concurrently.
  */
 public interface OktaStorage {
     /**
@@ -47,4 +52,23 @@ public interface OktaStorage {
      * @param key the key
      */
     void delete(@NonNull String key);
+
+    /**
+     * Delete and save several keys as one change. Deletes are applied before saves.
+     * The default implementation calls {@link #delete(String)} and
+     * {@link #save(String, String)} for each key, implementations that can write all keys at
+     * once should override it so the change is atomic.
+     *
+     * @param values      the key-value pairs to save
+     * @param deletedKeys the keys to delete
+     */
+    default void update(@NonNull Map<String, String> values,
+                        @NonNull Collection<String> deletedKeys) {
+        for (String key : deletedKeys) {
+            delete(key);
+        }
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            save(entry.getKey(), entry.getValue());
+        }
+    }
 }
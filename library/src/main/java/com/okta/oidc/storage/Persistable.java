@@ -34,5 +34,16 @@ public interface Persistable {
         String getKey();
 
         T restore(@Nullable String data);
+
+        /**
+         * Returns true if restored instances are never changed, so the repository can return
+         * the same instance to every caller until the value is saved again. Types that return
+         * true must only be changed before they are saved.
+         *
+         * @return true if restored instances can be shared
+         */
+        default boolean isImmutable() {
+            return false;
+        }
     }
 }
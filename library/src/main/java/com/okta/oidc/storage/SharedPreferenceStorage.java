@@ -23,6 +23,9 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
+import java.util.Collection;
+import java.util.Map;
+
 import static android.content.Context.MODE_PRIVATE;
 
 /**
@@ -72,4 +75,17 @@ public class SharedPreferenceStorage implements OktaStorage {
     public void delete(@NonNull String key) {
         prefs.edit().remove(key).commit();
     }
+
+    @Override
+    public void update(@NonNull Map<String, String> values,
+                       @NonNull Collection<String> deletedKeys) {
+        SharedPreferences.Editor editor = prefs.edit();
+        for (String key : deletedKeys) {
+            editor.remove(key);
+        }
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            editor.putString(entry.getKey(), entry.getValue());
+        }
+        editor.commit();
+    }
 }
@@ -39,14 +39,20 @@ import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.ProviderException;
 import java.security.PublicKey;
+import java.security.SecureRandom;
 import java.security.cert.Certificate;
 import java.security.spec.MGF1ParameterSpec;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
 
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.OAEPParameterSpec;
 import javax.crypto.spec.PSource;
+import javax.crypto.spec.SecretKeySpec;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 @RestrictTo(RestrictTo.Scope.LIBRARY)
 public abstract class BaseEncryptionManager implements EncryptionManager {
@@ -69,8 +75,39 @@ public abstract class BaseEncryptionManager implements EncryptionManager {
     private static final int CHUNK_SIZE = (int) (((RSA_KEY_SIZE / 8) - 11) * 0.5);
     private static final String CHUNK_SEPARATOR = ",";
 
+    // Envelope format: a random AES-256-GCM data key encrypts the whole value in one pass and
+    // only the data key is encrypted with RSA. Values without the header are in the legacy
+    // chunked RSA format and are re-encrypted as envelopes on the next save.
+    private static final String ENVELOPE_HEADER = "v2:";
+    private static final String ENVELOPE_SEPARATOR = ":";
+    private static final int ENVELOPE_PARTS = 3;
+    private static final String DATA_KEY_ALGORITHM = "AES";
+    private static final String DATA_TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int DATA_KEY_SIZE_BYTES = 32;
+    private static final int GCM_IV_SIZE_BYTES = 12;
+    private static final int GCM_TAG_SIZE_BITS = 128;
+    // Upper case to match the hashed keys written by earlier versions.
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final int BYTE_MASK = 0xFF;
+    private static final int HALF_BYTE_MASK = 0x0F;
+    private static final int HALF_BYTE_SHIFT = 4;
+
+    private final SecureRandom mSecureRandom = new SecureRandom();
+
     protected KeyStore mKeyStore;
-    protected Cipher mCipher;
+    // Replaced by recreateCipher and setCipher while other threads read it.
+    protected volatile Cipher mCipher;
+
+    // Initialized handles reused across operations until the keys or the cipher change.
+    // Encryption uses its own cipher bound to the public key. Decryption uses mCipher so that
+    // a cipher provided through setCipher keeps being honored.
+    private final Object mEncryptLock = new Object();
+    private final Object mDecryptLock = new Object();
+    private Cipher mEncryptCipher;
+    private Cipher mDataEncryptCipher;
+    private Cipher mDataDecryptCipher;
+    private PrivateKey mDecryptKey;
+    private Cipher mInitializedDecryptCipher;
 
     private long initCipherStart = System.currentTimeMillis();
 
@@ -164,13 +201,13 @@ public abstract class BaseEncryptionManager implements EncryptionManager {
                                      boolean isStrongBoxBacked, @Nullable byte[] seed);
 
     private static String toHex(byte[] data) {
-        StringBuilder sb = new StringBuilder();
-
-        for (byte b : data) {
-            sb.append(String.format("%02X", b));
+        char[] hex = new char[data.length * 2];
+        for (int i = 0; i < data.length; i++) {
+            int value = data[i] & BYTE_MASK;
+            hex[i * 2] = HEX_DIGITS[value >>> HALF_BYTE_SHIFT];
+            hex[i * 2 + 1] = HEX_DIGITS[value & HALF_BYTE_MASK];
         }
-
-        return sb.toString();
+        return new String(hex);
     }
 
     private void deleteInvalidKey(String keyAlias) {
@@ -208,9 +245,17 @@ public abstract class BaseEncryptionManager implements EncryptionManager {
     }
 
     private void initDecodeCipher(String keyAlias, int mode) throws GeneralSecurityException {
-        PrivateKey key = (PrivateKey) mKeyStore.getKey(keyAlias, null);
+        // Keys which require user authentication are checked by the keystore when the cipher
+        // is initialized, so only reuse the initialized cipher for keys that don't.
+        if (mInitializedDecryptCipher == mCipher && !mIsAuthenticateUserRequired) {
+            return;
+        }
+        if (mDecryptKey == null) {
+            mDecryptKey = (PrivateKey) mKeyStore.getKey(keyAlias, null);
+        }
         try {
-            mCipher.init(mode, key);
+            mCipher.init(mode, mDecryptKey);
+            mInitializedDecryptCipher = mCipher;
         } catch (InvalidKeyException e) {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
                 if (e instanceof UserNotAuthenticatedException) {
@@ -223,6 +268,9 @@ public abstract class BaseEncryptionManager implements EncryptionManager {
     }
 
     private void initEncodeCipher(String keyAlias, int mode) throws GeneralSecurityException {
+        if (mEncryptCipher != null) {
+            return;
+        }
         Certificate certificate = mKeyStore.getCertificate(keyAlias);
         if (certificate == null) {
             KeyStore.PrivateKeyEntry entry =
@@ -241,6 +289,7 @@ public abstract class BaseEncryptionManager implements EncryptionManager {
         PublicKey unrestricted = KeyFactory.getInstance(key.getAlgorithm())
                 .generatePublic(new X509EncodedKeySpec(key.getEncoded()));
 
+        Cipher cipher = createCipher(mTransformationString);
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && !mIsStrongBoxBacked) {
             // from https://code.google.com/p/android/issues/detail?id=197719
             // This workaround of using the OAEP spec is not compatible when strong box is used.
@@ -248,9 +297,22 @@ public abstract class BaseEncryptionManager implements EncryptionManager {
             OAEPParameterSpec spec = new OAEPParameterSpec("SHA-256", "MGF1",
                     MGF1ParameterSpec.SHA1, PSource.PSpecified.DEFAULT);
 
-            mCipher.init(mode, unrestricted, spec);
+            cipher.init(mode, unrestricted, spec);
         } else {
-            mCipher.init(mode, unrestricted);
+            cipher.init(mode, unrestricted);
+        }
+        mEncryptCipher = cipher;
+    }
+
+    private void invalidateCiphers() {
+        synchronized (mEncryptLock) {
+            mEncryptCipher = null;
+            mDataEncryptCipher = null;
+        }
+        synchronized (mDecryptLock) {
+            mDecryptKey = null;
+            mInitializedDecryptCipher = null;
+            mDataDecryptCipher = null;
         }
     }
 
@@ -261,23 +323,17 @@ public abstract class BaseEncryptionManager implements EncryptionManager {
                 throw new InvalidParameterException(
                         "Cipher is null. Please initialize proper cipher");
             }
-            if (initCipher(mKeyAlias, Cipher.ENCRYPT_MODE)) {
-                StringBuilder encryptedBuilder = new StringBuilder();
-                int chunkStart = 0;
-                while (chunkStart < inputString.length()) {
-                    int chunkEnd = chunkStart + CHUNK_SIZE;
-                    byte[] chunk = inputString.substring(
-                            chunkStart,
-                            chunkEnd < inputString.length() ? chunkEnd : inputString.length()
-                    ).getBytes();
-                    byte[] bytes = mCipher.doFinal(chunk);
-                    chunkStart = chunkEnd;
-                    encryptedBuilder.append(Base64.encodeToString(bytes, Base64.NO_WRAP));
-                    if (chunkStart < inputString.length()) {
-                        encryptedBuilder.append(CHUNK_SEPARATOR);
+            synchronized (mEncryptLock) {
+                try {
+                    if (initCipher(mKeyAlias, Cipher.ENCRYPT_MODE)) {
+                        return encryptEnvelope(inputString);
                     }
+                } catch (GeneralSecurityException | ProviderException e) {
+                    // The cipher may be left in an unusable state, init again on next call.
+                    mEncryptCipher = null;
+                    mDataEncryptCipher = null;
+                    throw e;
                 }
-                return encryptedBuilder.toString();
             }
         }
         return inputString;
@@ -291,14 +347,26 @@ public abstract class BaseEncryptionManager implements EncryptionManager {
                     throw new InvalidParameterException(
                             "Cipher is null. Please initialize proper cipher");
                 }
-                if (initCipher(mKeyAlias, Cipher.DECRYPT_MODE)) {
-                    StringBuilder decryptedBuilder = new StringBuilder();
-                    String[] chunks = encryptedString.split(CHUNK_SEPARATOR);
-                    for (String chunk : chunks) {
-                        byte[] bytes = Base64.decode(chunk, Base64.NO_WRAP);
-                        decryptedBuilder.append(new String(mCipher.doFinal(bytes)));
+                synchronized (mDecryptLock) {
+                    try {
+                        if (initCipher(mKeyAlias, Cipher.DECRYPT_MODE)) {
+                            if (encryptedString.startsWith(ENVELOPE_HEADER)) {
+                                return decryptEnvelope(encryptedString);
+                            }
+                            StringBuilder decryptedBuilder = new StringBuilder();
+                            String[] chunks = encryptedString.split(CHUNK_SEPARATOR);
+                            for (String chunk : chunks) {
+                                byte[] bytes = Base64.decode(chunk, Base64.NO_WRAP);
+                                decryptedBuilder.append(new String(mCipher.doFinal(bytes), UTF_8));
+                            }
+                            return decryptedBuilder.toString();
+                        }
+                    } catch (GeneralSecurityException | ProviderException e) {
+                        // The cipher may be left in an unusable state, init again on next call.
+                        mInitializedDecryptCipher = null;
+                        mDataDecryptCipher = null;
+                        throw e;
                     }
-                    return decryptedBuilder.toString();
                 }
             }
             return encryptedString;
@@ -316,6 +384,51 @@ public abstract class BaseEncryptionManager implements EncryptionManager {
         }
     }
 
+    private String encryptEnvelope(String inputString) throws GeneralSecurityException {
+        byte[] dataKey = new byte[DATA_KEY_SIZE_BYTES];
+        byte[] iv = new byte[GCM_IV_SIZE_BYTES];
+        mSecureRandom.nextBytes(dataKey);
+        mSecureRandom.nextBytes(iv);
+        try {
+            if (mDataEncryptCipher == null) {
+                mDataEncryptCipher = createCipher(DATA_TRANSFORMATION);
+            }
+            mDataEncryptCipher.init(Cipher.ENCRYPT_MODE,
+                    new SecretKeySpec(dataKey, DATA_KEY_ALGORITHM),
+                    new GCMParameterSpec(GCM_TAG_SIZE_BITS, iv));
+            byte[] payload = mDataEncryptCipher.doFinal(inputString.getBytes(UTF_8));
+            byte[] wrappedKey = mEncryptCipher.doFinal(dataKey);
+            return ENVELOPE_HEADER
+                    + Base64.encodeToString(wrappedKey, Base64.NO_WRAP) + ENVELOPE_SEPARATOR
+                    + Base64.encodeToString(iv, Base64.NO_WRAP) + ENVELOPE_SEPARATOR
+                    + Base64.encodeToString(payload, Base64.NO_WRAP);
+        } finally {
+            Arrays.fill(dataKey, (byte) 0);
+        }
+    }
+
+    private String decryptEnvelope(String encryptedString) throws GeneralSecurityException {
+        String[] parts = encryptedString.substring(ENVELOPE_HEADER.length())
+                .split(ENVELOPE_SEPARATOR);
+        if (parts.length != ENVELOPE_PARTS) {
+            throw new GeneralSecurityException("Malformed encrypted data");
+        }
+        byte[] dataKey = mCipher.doFinal(Base64.decode(parts[0], Base64.NO_WRAP));
+        try {
+            if (mDataDecryptCipher == null) {
+                mDataDecryptCipher = createCipher(DATA_TRANSFORMATION);
+            }
+            mDataDecryptCipher.init(Cipher.DECRYPT_MODE,
+                    new SecretKeySpec(dataKey, DATA_KEY_ALGORITHM),
+                    new GCMParameterSpec(GCM_TAG_SIZE_BITS,
+                            Base64.decode(parts[1], Base64.NO_WRAP)));
+            byte[] payload = mDataDecryptCipher.doFinal(Base64.decode(parts[2], Base64.NO_WRAP));
+            return new String(payload, UTF_8);
+        } finally {
+            Arrays.fill(dataKey, (byte) 0);
+        }
+    }
+
     @Override
     public String getHashed(String value) throws NoSuchAlgorithmException,
             UnsupportedEncodingException {
@@ -329,27 +442,37 @@ public abstract class BaseEncryptionManager implements EncryptionManager {
 
     @Override
     public void recreateCipher() {
+        Cipher cipher;
         try {
-            mCipher = createCipher(mTransformationString);
+            cipher = createCipher(mTransformationString);
         } catch (GeneralSecurityException e) {
             throw new RuntimeException("Failed init Cipher", e.getCause());
         }
+        synchronized (mDecryptLock) {
+            mCipher = cipher;
+        }
+        invalidateCiphers();
         resetTimer();
     }
 
     @Override
     public void removeKeys() {
         deleteInvalidKey(mKeyAlias);
+        invalidateCiphers();
     }
 
     @Override
     public void recreateKeys(Context context) {
         prepare(context, false);
+        invalidateCiphers();
     }
 
     @Override
     public void setCipher(Cipher cipher) {
-        mCipher = cipher;
+        synchronized (mDecryptLock) {
+            mCipher = cipher;
+            mInitializedDecryptCipher = null;
+        }
     }
 
     @Override
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.storage.security;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
+
+import com.okta.oidc.RequestExecutors;
+import com.okta.oidc.storage.OktaStorage;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.crypto.Cipher;
+
+/**
+ * Creates an {@link EncryptionManager} on a worker thread and warms it up, which loads
+ * the keystore, generates missing keys and initializes the ciphers. The warm up decrypts the
+ * stored value of the given key, so the storage is loaded as well, or encrypts and decrypts a
+ * test value if nothing is stored. Only the warm state of the manager is kept, the decrypted
+ * value is dropped, so every decrypt is still done by the created manager and runs its checks,
+ * like user authentication. Every call waits until the warm up is done and is then passed to
+ * the created manager.
+ *
+ * @hide
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public class PrewarmEncryptionManager implements EncryptionManager {
+    private static final String TAG = PrewarmEncryptionManager.class.getSimpleName();
+    private static final String WARM_UP_VALUE = "warm up";
+
+    private final FutureTask<EncryptionManager> mEncryptionManager;
+
+    public PrewarmEncryptionManager(@NonNull Callable<EncryptionManager> factory,
+                                    @NonNull OktaStorage storage, @NonNull String key) {
+        this(factory, storage, key, RequestExecutors.defaults());
+    }
+
+    public PrewarmEncryptionManager(@NonNull Callable<EncryptionManager> factory,
+                                    @NonNull OktaStorage storage, @NonNull String key,
+                                    @NonNull RequestExecutors executors) {
+        mEncryptionManager = new FutureTask<>(() -> {
+            EncryptionManager manager = factory.call();
+            if (manager.isUserAuthenticatedOnDevice()) {
+                try {
+                    String stored = storage.get(manager.getHashed(key));
+                    manager.decrypt(stored != null ? stored : manager.encrypt(WARM_UP_VALUE));
+                } catch (Exception e) {
+                    Log.d(TAG, "Warm up failed", e);
+                }
+            }
+            return manager;
+        });
+        executors.newWorkerExecutor(TAG, 1).execute(mEncryptionManager);
+    }
+
+    EncryptionManager get() {
+        //runs the warm up here if the executor didn't start it yet, a busy worker executor of
+        //the app could otherwise block this call. Does nothing if it already started.
+        mEncryptionManager.run();
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return mEncryptionManager.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Failed to create encryption manager", cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public String encrypt(String value) throws GeneralSecurityException {
+        return get().encrypt(value);
+    }
+
+    @Override
+    public String decrypt(String value) throws GeneralSecurityException {
+        return get().decrypt(value);
+    }
+
+    @Override
+    public String getHashed(String value) throws NoSuchAlgorithmException,
+            UnsupportedEncodingException {
+        return get().getHashed(value);
+    }
+
+    @Override
+    public boolean isHardwareBackedKeyStore() {
+        return get().isHardwareBackedKeyStore();
+    }
+
+    @Override
+    public void recreateCipher() {
+        get().recreateCipher();
+    }
+
+    @Override
+    public void setCipher(Cipher cipher) {
+        get().setCipher(cipher);
+    }
+
+    @Override
+    public Cipher getCipher() {
+        return get().getCipher();
+    }
+
+    @Override
+    public void removeKeys() {
+        get().removeKeys();
+    }
+
+    @Override
+    public void recreateKeys(Context context) {
+        get().recreateKeys(context);
+    }
+
+    @Override
+    public boolean isUserAuthenticatedOnDevice() {
+        return get().isUserAuthenticatedOnDevice();
+    }
+
+    @Override
+    public boolean isValidKeys() {
+        return get().isValidKeys();
+    }
+}
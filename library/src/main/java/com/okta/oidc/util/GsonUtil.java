@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Gson instance shared by the library and helpers for the hand written type adapters of
+ * the persisted models. Gson caches the adapter of every type it has seen, so sharing one
+ * instance builds each adapter once, and the hand written adapters avoid reflection.
+ * The helpers read values the way the reflective adapters of Gson do, so the persisted format
+ * doesn't change.
+ *
+ * @hide
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public final class GsonUtil {
+    private static final Gson GSON = new Gson();
+
+    private GsonUtil() {
+        throw new IllegalStateException("This type is not intended to be instantiated");
+    }
+
+    /**
+     * Returns the shared Gson instance.
+     *
+     * @return the Gson instance
+     */
+    @NonNull
+    public static Gson gson() {
+        return GSON;
+    }
+
+    /**
+     * Reads a string, numbers and booleans are read as their string representation.
+     *
+     * @param reader the reader
+     * @return the string or null
+     * @throws IOException if reading fails
+     */
+    @Nullable
+    public static String readString(@NonNull JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        } else if (token == JsonToken.BOOLEAN) {
+            return Boolean.toString(reader.nextBoolean());
+        }
+        return reader.nextString();
+    }
+
+    /**
+     * Reads an int, null leaves the default value.
+     *
+     * @param reader       the reader
+     * @param defaultValue the value for null
+     * @return the int
+     * @throws IOException if reading fails
+     */
+    public static int readInt(@NonNull JsonReader reader, int defaultValue) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return defaultValue;
+        }
+        try {
+            return reader.nextInt();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    /**
+     * Reads a long, null leaves the default value.
+     *
+     * @param reader       the reader
+     * @param defaultValue the value for null
+     * @return the long
+     * @throws IOException if reading fails
+     */
+    public static long readLong(@NonNull JsonReader reader, long defaultValue)
+            throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return defaultValue;
+        }
+        try {
+            return reader.nextLong();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    /**
+     * Reads a boolean, null leaves the default value.
+     *
+     * @param reader       the reader
+     * @param defaultValue the value for null
+     * @return the boolean
+     * @throws IOException if reading fails
+     */
+    public static boolean readBoolean(@NonNull JsonReader reader, boolean defaultValue)
+            throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return defaultValue;
+        } else if (token == JsonToken.STRING) {
+            return Boolean.parseBoolean(reader.nextString());
+        }
+        return reader.nextBoolean();
+    }
+
+    /**
+     * Reads an array of strings.
+     *
+     * @param reader the reader
+     * @return the array or null
+     * @throws IOException if reading fails
+     */
+    @Nullable
+    public static String[] readStringArray(@NonNull JsonReader reader) throws IOException {
+        List<String> list = readStringList(reader, false);
+        return list == null ? null : list.toArray(new String[list.size()]);
+    }
+
+    /**
+     * Reads a list of strings.
+     *
+     * @param reader        the reader
+     * @param singleAllowed true to read a single string as a list of one element
+     * @return the list or null
+     * @throws IOException if reading fails
+     */
+    @Nullable
+    public static List<String> readStringList(@NonNull JsonReader reader, boolean singleAllowed)
+            throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        } else if (token != JsonToken.BEGIN_ARRAY && singleAllowed) {
+            return Collections.singletonList(readString(reader));
+        }
+        List<String> list = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            list.add(readString(reader));
+        }
+        reader.endArray();
+        return list;
+    }
+
+    /**
+     * Reads an object with string values.
+     *
+     * @param reader the reader
+     * @return the map or null
+     * @throws IOException if reading fails
+     */
+    @Nullable
+    public static Map<String, String> readStringMap(@NonNull JsonReader reader)
+            throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        Map<String, String> map = new LinkedHashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            map.put(reader.nextName(), readString(reader));
+        }
+        reader.endObject();
+        return map;
+    }
+
+    /**
+     * Writes an array of strings, null is skipped like any null value.
+     *
+     * @param writer the writer
+     * @param array  the array or null
+     * @throws IOException if writing fails
+     */
+    public static void writeStringArray(@NonNull JsonWriter writer, @Nullable String[] array)
+            throws IOException {
+        if (array == null) {
+            writer.nullValue();
+            return;
+        }
+        writer.beginArray();
+        for (String value : array) {
+            writer.value(value);
+        }
+        writer.endArray();
+    }
+
+    /**
+     * Writes a list of strings.
+     *
+     * @param writer       the writer
+     * @param list         the list or null
+     * @param singleAsItem true to write a list of one element as a single string
+     * @throws IOException if writing fails
+     */
+    public static void writeStringList(@NonNull JsonWriter writer, @Nullable List<String> list,
+                                       boolean singleAsItem) throws IOException {
+        if (list == null) {
+            writer.nullValue();
+        } else if (singleAsItem && list.size() == 1) {
+            writer.value(list.get(0));
+        } else {
+            writer.beginArray();
+            for (String value : list) {
+                writer.value(value);
+            }
+            writer.endArray();
+        }
+    }
+
+    /**
+     * Writes a map with string values as an object.
+     *
+     * @param writer the writer
+     * @param map    the map or null
+     * @throws IOException if writing fails
+     */
+    public static void writeStringMap(@NonNull JsonWriter writer,
+                                      @Nullable Map<String, String> map) throws IOException {
+        if (map == null) {
+            writer.nullValue();
+            return;
+        }
+        writer.beginObject();
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            writer.name(entry.getKey()).value(entry.getValue());
+        }
+        writer.endObject();
+    }
+}
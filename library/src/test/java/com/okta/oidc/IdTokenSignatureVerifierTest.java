@@ -0,0 +1,380 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc;
+
+import android.net.Uri;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.okta.oidc.net.ConnectionParameters;
+import com.okta.oidc.net.OktaHttpClient;
+import com.okta.oidc.net.request.ProviderConfiguration;
+import com.okta.oidc.util.AuthorizationException;
+import com.okta.oidc.util.TestValues;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+
+import static com.okta.oidc.util.AuthorizationException.GeneralErrors.ID_TOKEN_VALIDATION_ERROR;
+import static com.okta.oidc.util.AuthorizationException.GeneralErrors.INVALID_DISCOVERY_DOCUMENT;
+import static com.okta.oidc.util.AuthorizationException.TokenValidationError.INVALID_SIGNATURE_ERROR;
+import static com.okta.oidc.util.AuthorizationException.TokenValidationError.SIGNING_KEY_NOT_FOUND_ERROR;
+import static com.okta.oidc.util.TestValues.CUSTOM_URL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class IdTokenSignatureVerifierTest {
+    private static final long TTL = TimeUnit.DAYS.toMillis(1);
+    private static final int THREADS = 4;
+    private static final int WAIT_SECONDS = 10;
+
+    private KeyPair mFirstKey;
+    private KeyPair mSecondKey;
+    private OIDCConfig mConfig;
+    private ProviderConfiguration mProviderConfiguration;
+    private KeySetClient mClient;
+
+    @Before
+    public void setUp() {
+        mFirstKey = Keys.keyPairFor(SignatureAlgorithm.RS256);
+        mSecondKey = Keys.keyPairFor(SignatureAlgorithm.RS256);
+        mConfig = TestValues.getConfigWithUrl(CUSTOM_URL);
+        mProviderConfiguration = TestValues.getProviderConfiguration(CUSTOM_URL);
+        mClient = new KeySetClient();
+        mClient.mKeySet = keySet(Collections.singletonMap("first", mFirstKey));
+    }
+
+    @Test
+    public void verifyValidSignature() throws AuthorizationException {
+        IdTokenSignatureVerifier verifier = new IdTokenSignatureVerifier(TTL);
+        verifier.verify(token("first", mFirstKey), mConfig, mProviderConfiguration, mClient);
+        assertEquals(1, mClient.mRequests.get());
+        assertEquals(Collections.singletonList(CUSTOM_URL + TestValues.JWKS_ENDPOINT),
+                mClient.mUris);
+    }
+
+    @Test
+    public void keySetIsCached() throws AuthorizationException {
+        IdTokenSignatureVerifier verifier = new IdTokenSignatureVerifier(TTL);
+        OktaIdToken idToken = token("first", mFirstKey);
+        verifier.verify(idToken, mConfig, mProviderConfiguration, mClient);
+        verifier.verify(idToken, mConfig, mProviderConfiguration, mClient);
+        verifier.verify(token("first", mFirstKey), mConfig, mProviderConfiguration, mClient);
+        assertEquals(1, mClient.mRequests.get());
+    }
+
+    @Test
+    public void expiredKeySetIsFetchedAgain() throws AuthorizationException {
+        IdTokenSignatureVerifier verifier = new IdTokenSignatureVerifier(0);
+        OktaIdToken idToken = token("first", mFirstKey);
+        verifier.verify(idToken, mConfig, mProviderConfiguration, mClient);
+        verifier.verify(idToken, mConfig, mProviderConfiguration, mClient);
+        assertEquals(2, mClient.mRequests.get());
+    }
+
+    @Test
+    public void unknownKeyIdFetchesKeySetAgain() throws AuthorizationException {
+        IdTokenSignatureVerifier verifier = new IdTokenSignatureVerifier(TTL);
+        verifier.verify(token("first", mFirstKey), mConfig, mProviderConfiguration, mClient);
+
+        Map<String, KeyPair> rotated = new HashMap<>();
+        rotated.put("first", mFirstKey);
+        rotated.put("second", mSecondKey);
+        mClient.mKeySet = keySet(rotated);
+        SystemClock.sleep(IdTokenSignatureVerifier.MIN_REFETCH_INTERVAL_MS);
+        verifier.verify(token("second", mSecondKey), mConfig, mProviderConfiguration, mClient);
+        verifier.verify(token("second", mSecondKey), mConfig, mProviderConfiguration, mClient);
+        assertEquals(2, mClient.mRequests.get());
+    }
+
+    @Test
+    public void missingKeyIsRejected() throws AuthorizationException {
+        IdTokenSignatureVerifier verifier = new IdTokenSignatureVerifier(TTL);
+        verifier.verify(token("first", mFirstKey), mConfig, mProviderConfiguration, mClient);
+        SystemClock.sleep(IdTokenSignatureVerifier.MIN_REFETCH_INTERVAL_MS);
+        try {
+            verifier.verify(token("second", mSecondKey), mConfig, mProviderConfiguration,
+                    mClient);
+            fail("Expected missing key");
+        } catch (AuthorizationException e) {
+            assertValidationError(SIGNING_KEY_NOT_FOUND_ERROR, e);
+        }
+        assertEquals(2, mClient.mRequests.get());
+    }
+
+    @Test
+    public void unknownKeyIdsDoNotRefetchRecentKeySet() throws AuthorizationException {
+        IdTokenSignatureVerifier verifier = new IdTokenSignatureVerifier(TTL);
+        verifier.verify(token("first", mFirstKey), mConfig, mProviderConfiguration, mClient);
+        for (int i = 0; i < THREADS; i++) {
+            try {
+                verifier.verify(token("unknown" + i, mSecondKey), mConfig,
+                        mProviderConfiguration, mClient);
+                fail("Expected missing key");
+            } catch (AuthorizationException e) {
+                assertValidationError(SIGNING_KEY_NOT_FOUND_ERROR, e);
+            }
+        }
+        assertEquals(1, mClient.mRequests.get());
+
+        SystemClock.sleep(IdTokenSignatureVerifier.MIN_REFETCH_INTERVAL_MS);
+        try {
+            verifier.verify(token("unknown", mSecondKey), mConfig, mProviderConfiguration,
+                    mClient);
+            fail("Expected missing key");
+        } catch (AuthorizationException e) {
+            assertValidationError(SIGNING_KEY_NOT_FOUND_ERROR, e);
+        }
+        assertEquals(2, mClient.mRequests.get());
+    }
+
+    @Test
+    public void invalidSignatureIsRejected() {
+        IdTokenSignatureVerifier verifier = new IdTokenSignatureVerifier(TTL);
+        try {
+            verifier.verify(token("first", mSecondKey), mConfig, mProviderConfiguration,
+                    mClient);
+            fail("Expected invalid signature");
+        } catch (AuthorizationException e) {
+            assertValidationError(INVALID_SIGNATURE_ERROR, e);
+        }
+    }
+
+    @Test
+    public void keysNotUsedForSignaturesAreIgnored() {
+        String modulus = encode(((RSAPublicKey) mFirstKey.getPublic()).getModulus().toByteArray());
+        mClient.mKeySet = "{\"keys\":[{\"kty\":\"RSA\",\"use\":\"enc\",\"kid\":\"first\","
+                + "\"n\":\"" + modulus + "\",\"e\":\"AQAB\"},"
+                + "{\"kty\":\"EC\",\"kid\":\"other\",\"crv\":\"P-256\"}]}";
+        IdTokenSignatureVerifier verifier = new IdTokenSignatureVerifier(TTL);
+        try {
+            verifier.verify(token("first", mFirstKey), mConfig, mProviderConfiguration,
+                    mClient);
+            fail("Expected missing key");
+        } catch (AuthorizationException e) {
+            assertValidationError(SIGNING_KEY_NOT_FOUND_ERROR, e);
+        }
+    }
+
+    @Test
+    public void concurrentVerificationsFetchOnce() throws Exception {
+        IdTokenSignatureVerifier verifier = new IdTokenSignatureVerifier(TTL);
+        OktaIdToken idToken = token("first", mFirstKey);
+        mClient.mRelease = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> {
+                verifier.verify(idToken, mConfig, mProviderConfiguration, mClient);
+                return null;
+            }));
+        }
+        mClient.mStarted.await(WAIT_SECONDS, TimeUnit.SECONDS);
+        Thread.sleep(100);
+        mClient.mRelease.countDown();
+        for (Future<?> result : results) {
+            result.get(WAIT_SECONDS, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertEquals(1, mClient.mRequests.get());
+    }
+
+    @Test
+    public void missingJwksUriIsRejected() {
+        mProviderConfiguration.jwks_uri = null;
+        IdTokenSignatureVerifier verifier = new IdTokenSignatureVerifier(TTL);
+        try {
+            verifier.verify(token("first", mFirstKey), mConfig, mProviderConfiguration,
+                    mClient);
+            fail("Expected invalid discovery document");
+        } catch (AuthorizationException e) {
+            assertEquals(AuthorizationException.TYPE_GENERAL_ERROR, e.type);
+            assertEquals(INVALID_DISCOVERY_DOCUMENT.code, e.code);
+        }
+        assertEquals(0, mClient.mRequests.get());
+    }
+
+    // Signature failures are reported like the other ID token checks, with the specific
+    // validation error as cause.
+    private static void assertValidationError(int code, AuthorizationException e) {
+        assertEquals(AuthorizationException.TYPE_GENERAL_ERROR, e.type);
+        assertEquals(ID_TOKEN_VALIDATION_ERROR.code, e.code);
+        assertTrue(e.getCause() instanceof AuthorizationException);
+        AuthorizationException cause = (AuthorizationException) e.getCause();
+        assertEquals(AuthorizationException.TYPE_OAUTH_VALIDATION_TOKEN_ERROR, cause.type);
+        assertEquals(code, cause.code);
+    }
+
+    private static OktaIdToken token(String kid, KeyPair keyPair) {
+        String jwt = Jwts.builder()
+                .setHeaderParam("kid", kid)
+                .setSubject("sub")
+                .signWith(keyPair.getPrivate(), SignatureAlgorithm.RS256)
+                .compact();
+        return OktaIdToken.parseIdToken(jwt);
+    }
+
+    private static String keySet(Map<String, KeyPair> keys) {
+        StringBuilder json = new StringBuilder("{\"keys\":[");
+        for (Map.Entry<String, KeyPair> entry : keys.entrySet()) {
+            RSAPublicKey key = (RSAPublicKey) entry.getValue().getPublic();
+            if (json.charAt(json.length() - 1) != '[') {
+                json.append(',');
+            }
+            json.append("{\"kty\":\"RSA\",\"alg\":\"RS256\",\"use\":\"sig\",\"kid\":\"")
+                    .append(entry.getKey())
+                    .append("\",\"n\":\"").append(encode(key.getModulus().toByteArray()))
+                    .append("\",\"e\":\"")
+                    .append(encode(key.getPublicExponent().toByteArray()))
+                    .append("\"}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static class KeySetClient implements OktaHttpClient {
+        private final AtomicInteger mRequests = new AtomicInteger();
+        private final List<String> mUris = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch mStarted = new CountDownLatch(1);
+        private volatile CountDownLatch mRelease;
+        private volatile String mKeySet;
+
+        @NonNull
+        @Override
+        public Exchange execute(@NonNull Uri uri, @NonNull ConnectionParameters param)
+                throws Exception {
+            mRequests.incrementAndGet();
+            mUris.add(uri.toString());
+            mStarted.countDown();
+            if (mRelease != null) {
+                mRelease.await(WAIT_SECONDS, TimeUnit.SECONDS);
+            }
+            byte[] body = mKeySet.getBytes(StandardCharsets.UTF_8);
+            return new Exchange() {
+                @Nullable
+                @Override
+                public InputStream getContent() {
+                    return new ByteArrayInputStream(body);
+                }
+
+                @Override
+                public Map<String, List<String>> getHeaderFields() {
+                    return Collections.emptyMap();
+                }
+
+                @Override
+                public String getHeader(String header) {
+                    return null;
+                }
+
+                @Override
+                public int getResponseCode() {
+                    return 200;
+                }
+
+                @Override
+                public int getContentLength() {
+                    return body.length;
+                }
+
+                @Override
+                public String getResponseMessage() {
+                    return "OK";
+                }
+
+                @Override
+                public void cancel() {
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        @Nullable
+        @Override
+        public InputStream connect(@NonNull Uri uri, @NonNull ConnectionParameters param) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void cleanUp() {
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaderFields() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public String getHeader(String header) {
+            return null;
+        }
+
+        @Override
+        public int getResponseCode() {
+            return 200;
+        }
+
+        @Override
+        public int getContentLength() {
+            return 0;
+        }
+
+        @Override
+        public String getResponseMessage() {
+            return "OK";
+        }
+    }
+}
@@ -14,10 +14,13 @@
  */
 package com.okta.oidc;
 
+import android.util.Base64;
+
 import com.okta.oidc.net.request.ProviderConfiguration;
 import com.okta.oidc.net.request.TokenRequest;
 import com.okta.oidc.util.AuthorizationException;
 import com.okta.oidc.util.CodeVerifierUtil;
+import com.okta.oidc.util.GsonUtil;
 import com.okta.oidc.util.JsonStrings;
 import com.okta.oidc.util.TestValues;
 
@@ -29,14 +32,22 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.okta.oidc.util.AuthorizationException.GeneralErrors.ID_TOKEN_PARSING_ERROR;
 import static com.okta.oidc.util.TestValues.CUSTOM_CODE;
 import static com.okta.oidc.util.TestValues.CUSTOM_NONCE;
 import static com.okta.oidc.util.TestValues.CUSTOM_STATE;
 import static com.okta.oidc.util.TestValues.CUSTOM_URL;
 import static com.okta.oidc.util.TestValues.getAuthorizeRequest;
 import static com.okta.oidc.util.TestValues.getAuthorizeResponse;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
@@ -161,12 +172,105 @@ public class OktaIdTokenTest {
     @Test
     public void parseValidIdToken() {
         OktaIdToken token = OktaIdToken.parseIdToken(JsonStrings.VALID_ID_TOKEN);
-        assertNotNull(token.mClaims);
+        assertNotNull(token.getClaims());
         assertNotNull(token.mSignature);
         assertNotNull(token.mHeader);
         assertEquals("RS256", token.mHeader.alg);
     }
 
+    @Test
+    public void parseDecodesClaimsLazily() {
+        OktaIdToken token = OktaIdToken.parseIdToken(JsonStrings.VALID_ID_TOKEN);
+        assertNull(token.mClaims);
+        OktaIdToken.Claims claims = token.getClaims();
+        assertEquals("00uiz0htbaJHcUtfW0h7", claims.sub);
+        assertSame(claims, token.getClaims());
+    }
+
+    @Test
+    public void parseKeepsRawSignature() {
+        String token = JsonStrings.VALID_ID_TOKEN;
+        String signature = token.substring(token.lastIndexOf('.') + 1);
+        assertArrayEquals(Base64.decode(signature, Base64.URL_SAFE),
+                OktaIdToken.parseIdToken(token).getSignatureBytes());
+    }
+
+    @Test
+    public void parseIdTokenWithoutSignature() {
+        String token = JsonStrings.VALID_ID_TOKEN;
+        mExpectedEx.expect(IllegalArgumentException.class);
+        OktaIdToken.parseIdToken(token.substring(0, token.lastIndexOf('.') + 1));
+    }
+
+    @Test
+    public void parseIdTokenWithEmptyClaims() {
+        String token = JsonStrings.VALID_ID_TOKEN;
+        mExpectedEx.expect(IllegalArgumentException.class);
+        OktaIdToken.parseIdToken(token.substring(0, token.indexOf('.') + 1)
+                + token.substring(token.lastIndexOf('.')));
+    }
+
+    @Test
+    public void getClaimsOfMalformedClaims() {
+        String token = JsonStrings.VALID_ID_TOKEN;
+        OktaIdToken idToken = OktaIdToken.parseIdToken(token.substring(0, token.indexOf('.'))
+                + "." + Base64.encodeToString("{\"iss\":".getBytes(),
+                Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP)
+                + token.substring(token.lastIndexOf('.')));
+        mExpectedEx.expect(IllegalArgumentException.class);
+        idToken.getClaims();
+    }
+
+    @Test
+    public void validateInvalidClaims() {
+        assertValidateFailsWithParsingError("A");
+    }
+
+    @Test
+    public void validateMalformedClaims() {
+        assertValidateFailsWithParsingError(Base64.encodeToString("{\"iss\":".getBytes(),
+                Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP));
+    }
+
+    @Test
+    public void validateEmptyClaims() {
+        assertValidateFailsWithParsingError(Base64.encodeToString(" ".getBytes(),
+                Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP));
+    }
+
+    private void assertValidateFailsWithParsingError(String claims) {
+        String jwt = TestValues.getJwt(CUSTOM_URL, CUSTOM_NONCE, mConfig.getClientId());
+        String header = jwt.substring(0, jwt.indexOf('.'));
+        String signature = jwt.substring(jwt.lastIndexOf('.') + 1);
+        OktaIdToken idToken = OktaIdToken.parseIdToken(header + "." + claims + "." + signature);
+        TokenRequest tokenRequest = TestValues.getTokenRequest(mConfig,
+                getAuthorizeRequest(mConfig, CodeVerifierUtil.generateRandomCodeVerifier()),
+                getAuthorizeResponse(CUSTOM_STATE, CUSTOM_CODE), mConfiguration);
+        try {
+            idToken.validate(tokenRequest,
+                    new OktaIdToken.DefaultValidator(System::currentTimeMillis));
+            fail("Expected parsing error");
+        } catch (AuthorizationException e) {
+            assertEquals(ID_TOKEN_PARSING_ERROR.code, e.code);
+        }
+    }
+
+    @Test
+    public void claimsWithSingleAudience() {
+        String json = "{\"aud\":\"client\",\"amr\":[\"pwd\",\"mfa\"],\"exp\":1583365002,"
+                + "\"ver\":1,\"address\":{\"country\":\"US\"},\"unknown\":{\"a\":[1]}}";
+        OktaIdToken.Claims claims = GsonUtil.gson().fromJson(json, OktaIdToken.Claims.class);
+        assertEquals(Collections.singletonList("client"), claims.aud);
+        assertEquals(Arrays.asList("pwd", "mfa"), claims.amr);
+        assertEquals(1583365002, claims.exp);
+        assertEquals("1", claims.ver);
+        assertEquals("US", claims.address.country);
+        assertEquals("{\"amr\":[\"pwd\",\"mfa\"],\"aud\":\"client\",\"auth_time\":0,"
+                        + "\"exp\":1583365002,\"iat\":0,\"ver\":\"1\",\"updated_at\":0,"
+                        + "\"address\":{\"country\":\"US\"}}",
+                GsonUtil.gson().toJson(claims));
+    }
+
     @Test
     public void parseInvalidIdToken() {
         mExpectedEx.expect(IllegalArgumentException.class);
@@ -14,6 +14,8 @@
  */
 package com.okta.oidc;
 
+import android.os.Process;
+
 import com.okta.oidc.util.DateUtil;
 
 import org.junit.After;
@@ -25,13 +27,19 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 @RunWith(RobolectricTestRunner.class)
@@ -108,6 +116,109 @@ public class RequestDispatcherTest {
         assertNotEquals(dispatcher_tid[0], current_tid);
     }
 
+    @Test
+    public void completedTasksAreNotTracked() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            mDispatcher.submit(() -> {
+            }).get(10, TimeUnit.SECONDS);
+            mDispatcher.runTask(() -> {
+            });
+        }
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (mDispatcher.getPendingTaskCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, mDispatcher.getPendingTaskCount());
+    }
+
+    @Test
+    public void stopAllTasksCancelsPendingTasks() throws Exception {
+        final CountDownLatch started = new CountDownLatch(3);
+        final CountDownLatch release = new CountDownLatch(1);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            tasks.add(mDispatcher.submit(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertEquals(5, mDispatcher.getPendingTaskCount());
+        assertEquals(3, mDispatcher.getActiveCount());
+        assertEquals(2, mDispatcher.getQueueDepth());
+
+        mDispatcher.stopAllTasks();
+        for (Future<?> task : tasks) {
+            assertTrue(task.isCancelled());
+        }
+        assertEquals(0, mDispatcher.getPendingTaskCount());
+    }
+
+    @Test
+    public void providedExecutorsAreUsed() throws Exception {
+        ExecutorService network = Executors.newSingleThreadExecutor();
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        RequestDispatcher dispatcher = new RequestDispatcher(mCallbackExecutor,
+                new RequestExecutors(network, worker, null));
+        Thread networkThread = network.submit(Thread::currentThread).get();
+        Thread workerThread = worker.submit(Thread::currentThread).get();
+
+        final Thread[] threads = new Thread[2];
+        dispatcher.submit(() -> {
+            threads[0] = Thread.currentThread();
+        }).get(10, TimeUnit.SECONDS);
+        final CountDownLatch latch = new CountDownLatch(1);
+        dispatcher.runTask(() -> {
+            threads[1] = Thread.currentThread();
+            latch.countDown();
+        });
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(networkThread, threads[0]);
+        assertEquals(workerThread, threads[1]);
+
+        dispatcher.shutdown();
+        assertFalse(network.isShutdown());
+        assertFalse(worker.isShutdown());
+        network.shutdown();
+        worker.shutdown();
+    }
+
+    @Test
+    public void threadPriorityIsRestored() throws Exception {
+        ExecutorService network = Executors.newSingleThreadExecutor();
+        RequestDispatcher dispatcher = new RequestDispatcher(mCallbackExecutor,
+                new RequestExecutors(network, null, Process.THREAD_PRIORITY_LOWEST));
+        int initial = network.submit(() -> Process.getThreadPriority(Process.myTid())).get();
+        final int[] priority = new int[1];
+        dispatcher.submit(() -> {
+            priority[0] = Process.getThreadPriority(Process.myTid());
+        }).get(10, TimeUnit.SECONDS);
+        assertEquals(Process.THREAD_PRIORITY_LOWEST, priority[0]);
+        assertEquals(initial,
+                (int) network.submit(() -> Process.getThreadPriority(Process.myTid())).get());
+        network.shutdown();
+    }
+
+    @Test
+    public void clientPoolRunsWorkNotCoveredByProvidedExecutors() {
+        ExecutorService network = Executors.newSingleThreadExecutor();
+        RequestExecutors provided = new RequestExecutors(network, null, null);
+        RequestExecutors client = provided.withClientPool("test", 2);
+        assertSame(network, client.getNetworkExecutor());
+        assertTrue(client.getWorkerExecutor() instanceof ThreadPoolExecutor);
+
+        RequestExecutors own = new RequestExecutors(null, null, null).withClientPool("test", 2);
+        assertSame(own.getNetworkExecutor(), own.getWorkerExecutor());
+
+        RequestExecutors all = new RequestExecutors(network, network, null);
+        assertSame(all, all.withClientPool("test", 2));
+        network.shutdown();
+    }
+
     @Test
     public void shutdown() {
         mDispatcher.shutdown();
@@ -0,0 +1,378 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.clients;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.okta.oidc.RequestExecutors;
+import com.okta.oidc.Tokens;
+import com.okta.oidc.clients.sessions.SyncSessionClient;
+import com.okta.oidc.clients.sessions.SyncSessionClientFactoryImpl;
+import com.okta.oidc.net.ConnectionParameters;
+import com.okta.oidc.net.OktaHttpClient;
+import com.okta.oidc.net.request.HttpRequestBuilder;
+import com.okta.oidc.net.request.ProviderConfiguration;
+import com.okta.oidc.util.AuthorizationException;
+import com.okta.oidc.util.EncryptionManagerStub;
+import com.okta.oidc.util.JsonStrings;
+import com.okta.oidc.util.OktaStorageMock;
+import com.okta.oidc.util.TestValues;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.stubbing.OngoingStubbing;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.okta.oidc.clients.BaseAuth.FAILED_REVOKE_ACCESS_TOKEN;
+import static com.okta.oidc.clients.BaseAuth.FAILED_REVOKE_REFRESH_TOKEN;
+import static com.okta.oidc.clients.BaseAuth.REVOKE_ACCESS_TOKEN;
+import static com.okta.oidc.clients.BaseAuth.REVOKE_REFRESH_TOKEN;
+import static com.okta.oidc.clients.BaseAuth.SUCCESS;
+import static com.okta.oidc.clients.BaseAuth.TOKEN_DECRYPT;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
+import static java.net.HttpURLConnection.HTTP_OK;
+import static java.net.HttpURLConnection.HTTP_UNAUTHORIZED;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class AuthAPITest {
+    private static final int WAIT_SECONDS = 10;
+    private static final long SHORT_TIMEOUT_MS = 200;
+    private static final String ISSUER = "https://dev-486177.oktapreview.com/oauth2/default";
+    private static final String ETAG = "\"v1\"";
+
+    private AuthAPI mAuthAPI;
+    private SyncSessionClient mSessionClient;
+
+    @Before
+    public void setUp() throws AuthorizationException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mAuthAPI = new AuthAPI(TestValues.getConfigWithUrl(ISSUER), context,
+                new OktaStorageMock(context, false), new EncryptionManagerStub(),
+                false, false, false, RequestExecutors.defaults()) {
+        };
+        mAuthAPI.mSignOutFlags = REVOKE_ACCESS_TOKEN | REVOKE_REFRESH_TOKEN;
+        Tokens tokens = mock(Tokens.class);
+        when(tokens.getAccessToken()).thenReturn("access");
+        when(tokens.getRefreshToken()).thenReturn("refresh");
+        mSessionClient = mock(SyncSessionClient.class);
+        when(mSessionClient.getTokens()).thenReturn(tokens);
+    }
+
+    @Test
+    public void revokeTokensInParallel() throws Exception {
+        CyclicBarrier bothStarted = new CyclicBarrier(2);
+        OktaHttpClient client = mockRevocations(token -> {
+            OktaHttpClient.Exchange exchange = mock(OktaHttpClient.Exchange.class);
+            when(exchange.getResponseCode()).thenAnswer(invocation -> {
+                bothStarted.await(WAIT_SECONDS, SECONDS);
+                return HTTP_OK;
+            });
+            return exchange;
+        });
+
+        mAuthAPI.revokeTokens(mSessionClient);
+        assertEquals(SUCCESS, mAuthAPI.mSignOutStatus);
+        ArgumentCaptor<Uri> uris = ArgumentCaptor.forClass(Uri.class);
+        verify(client, times(2)).execute(uris.capture(), any(), any());
+        Set<String> revoked = new HashSet<>();
+        for (Uri uri : uris.getAllValues()) {
+            revoked.add(uri.getQueryParameter("token"));
+        }
+        assertEquals(new HashSet<>(Arrays.asList("access", "refresh")), revoked);
+        verify(mSessionClient, never()).revokeToken(anyString());
+    }
+
+    @Test
+    public void revokeTokensFailure() throws Exception {
+        mockRevocations(token -> {
+            OktaHttpClient.Exchange exchange = mock(OktaHttpClient.Exchange.class);
+            when(exchange.getResponseCode())
+                    .thenReturn("refresh".equals(token) ? HTTP_UNAUTHORIZED : HTTP_OK);
+            return exchange;
+        });
+
+        mAuthAPI.revokeTokens(mSessionClient);
+        assertEquals(FAILED_REVOKE_REFRESH_TOKEN, mAuthAPI.mSignOutStatus);
+    }
+
+    @Test
+    public void revokeTokensDecryptFailure() throws Exception {
+        when(mSessionClient.getTokens()).thenThrow(new AuthorizationException(
+                AuthorizationException.TYPE_ENCRYPTION_ERROR, 0, null, null, null, null));
+
+        mAuthAPI.revokeTokens(mSessionClient);
+        assertEquals(FAILED_REVOKE_ACCESS_TOKEN | FAILED_REVOKE_REFRESH_TOKEN | TOKEN_DECRYPT,
+                mAuthAPI.mSignOutStatus);
+    }
+
+    @Test
+    public void revokeTokensTimeoutCancelsRevocation() throws Exception {
+        OktaHttpClient.Exchange hanging = hangingExchange(new CountDownLatch(1));
+        mockRevocations(token -> {
+            if ("access".equals(token)) {
+                return hanging;
+            }
+            OktaHttpClient.Exchange exchange = mock(OktaHttpClient.Exchange.class);
+            when(exchange.getResponseCode()).thenReturn(HTTP_OK);
+            return exchange;
+        });
+        mAuthAPI.setRevokeTimeout(SHORT_TIMEOUT_MS);
+
+        mAuthAPI.revokeTokens(mSessionClient);
+        assertEquals(FAILED_REVOKE_ACCESS_TOKEN, mAuthAPI.mSignOutStatus);
+        verify(hanging, timeout(WAIT_SECONDS * 1000)).cancel();
+        verify(mSessionClient, never()).cancel();
+    }
+
+    @Test
+    public void cancelDuringRevokeCancelsRevocations() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        mockRevocations(token -> hangingExchange(started));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> revoke = executor.submit(() -> {
+            mAuthAPI.revokeTokens(mSessionClient);
+            return null;
+        });
+        started.await(WAIT_SECONDS, SECONDS);
+        mAuthAPI.cancel();
+        try {
+            revoke.get(WAIT_SECONDS, SECONDS);
+            fail("Expected sign out to be canceled");
+        } catch (ExecutionException e) {
+            assertEquals(IOException.class, e.getCause().getClass());
+        }
+        verify(mSessionClient, never()).cancel();
+        executor.shutdown();
+    }
+
+    @Test
+    public void concurrentRequestSurvivesSignOutTimeout() throws Exception {
+        CountDownLatch requestStarted = new CountDownLatch(1);
+        CountDownLatch signedOut = new CountDownLatch(1);
+        OktaHttpClient.Exchange userInfo = mock(OktaHttpClient.Exchange.class);
+        when(userInfo.getResponseCode()).thenAnswer(invocation -> {
+            requestStarted.countDown();
+            signedOut.await(WAIT_SECONDS, SECONDS);
+            return HTTP_OK;
+        });
+        when(userInfo.getContentLength()).thenReturn(-1);
+        when(userInfo.getContent()).thenReturn(new ByteArrayInputStream(
+                "{\"sub\":\"user\"}".getBytes(StandardCharsets.UTF_8)));
+        OktaHttpClient client = mock(OktaHttpClient.class);
+        when(client.execute(any(), any(), any())).thenAnswer(invocation -> {
+            Uri uri = invocation.getArgument(0);
+            return uri.getPath().endsWith(TestValues.USERINFO_ENDPOINT) ? userInfo
+                    : hangingExchange(new CountDownLatch(1));
+        });
+        mAuthAPI.mHttpClient = client;
+        mAuthAPI.getOktaState().save(TestValues.getProviderConfiguration(TestValues.CUSTOM_URL));
+        mAuthAPI.getOktaState().save(TestValues.getTokenResponse());
+        SyncSessionClient sessionClient = new SyncSessionClientFactoryImpl()
+                .createClient(mAuthAPI.mOidcConfig, mAuthAPI.getOktaState(), client);
+        mAuthAPI.setRevokeTimeout(SHORT_TIMEOUT_MS);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<JSONObject> request = executor.submit(() -> sessionClient.authorizedRequest(
+                Uri.parse(TestValues.CUSTOM_URL + TestValues.USERINFO_ENDPOINT), null, null,
+                ConnectionParameters.RequestMethod.GET));
+        requestStarted.await(WAIT_SECONDS, SECONDS);
+        mAuthAPI.revokeTokens(sessionClient);
+        signedOut.countDown();
+
+        assertEquals(FAILED_REVOKE_ACCESS_TOKEN | FAILED_REVOKE_REFRESH_TOKEN,
+                mAuthAPI.mSignOutStatus);
+        assertEquals("user", request.get(WAIT_SECONDS, SECONDS).getString("sub"));
+        verify(userInfo, never()).cancel();
+        executor.shutdown();
+    }
+
+    @Test
+    public void prefetchedConfigurationIsUsed() throws Exception {
+        OktaHttpClient client = mockHttpClient(configurationExchange());
+        mAuthAPI.mHttpClient = client;
+        mAuthAPI.prefetchConfiguration();
+
+        ProviderConfiguration config = mAuthAPI.obtainNewConfiguration();
+        assertEquals(ISSUER, config.issuer);
+        assertEquals(ETAG, mAuthAPI.getOktaState().getProviderConfiguration().getETag());
+        verify(client, times(1)).execute(any(), any(), any());
+    }
+
+    @Test
+    public void freshConfigurationIsNotPrefetched() throws Exception {
+        OktaHttpClient client = mockHttpClient(configurationExchange());
+        mAuthAPI.mHttpClient = client;
+        mAuthAPI.obtainNewConfiguration();
+
+        mAuthAPI.prefetchConfiguration();
+        assertEquals(ISSUER, mAuthAPI.obtainNewConfiguration().issuer);
+        verify(client, after(SHORT_TIMEOUT_MS).times(1)).execute(any(), any(), any());
+    }
+
+    @Test
+    public void cancelStopsWaitingForPrefetch() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        OktaHttpClient.Exchange slow = configurationExchange();
+        when(slow.getResponseCode()).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(WAIT_SECONDS, SECONDS);
+            return HTTP_OK;
+        });
+        mAuthAPI.mHttpClient = mockHttpClient(slow);
+        mAuthAPI.prefetchConfiguration();
+        started.await(WAIT_SECONDS, SECONDS);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<ProviderConfiguration> obtain = executor.submit(mAuthAPI::obtainNewConfiguration);
+        mAuthAPI.cancel();
+        assertNull(obtain.get(WAIT_SECONDS, SECONDS));
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void staleConfigurationIsRevalidatedInBackground() throws Exception {
+        OktaHttpClient.Exchange notModified = mock(OktaHttpClient.Exchange.class);
+        when(notModified.getResponseCode()).thenReturn(HTTP_NOT_MODIFIED);
+        when(notModified.getHeaderFields()).thenReturn(Collections.emptyMap());
+        OktaHttpClient client = mockHttpClient(configurationExchange(), notModified);
+        mAuthAPI.mHttpClient = client;
+        ProviderConfiguration stale = mAuthAPI.obtainNewConfiguration();
+        stale.setFetchedAt(0);
+        mAuthAPI.getOktaState().save(stale);
+
+        ProviderConfiguration config = mAuthAPI.obtainNewConfiguration();
+        assertEquals(ISSUER, config.issuer);
+        ArgumentCaptor<ConnectionParameters> params =
+                ArgumentCaptor.forClass(ConnectionParameters.class);
+        verify(client, timeout(WAIT_SECONDS * 1000).times(2))
+                .execute(any(), params.capture(), any());
+        assertNull(params.getAllValues().get(0).requestProperties().get("If-None-Match"));
+        assertEquals(ETAG, params.getAllValues().get(1).requestProperties().get("If-None-Match"));
+    }
+
+    @Test
+    public void notModifiedLeavesCachedConfigurationUnchanged() throws Exception {
+        OktaHttpClient.Exchange notModified = mock(OktaHttpClient.Exchange.class);
+        when(notModified.getResponseCode()).thenReturn(HTTP_NOT_MODIFIED);
+        when(notModified.getHeaderFields()).thenReturn(Collections.singletonMap("ETag",
+                Collections.singletonList(ETAG)));
+        ProviderConfiguration cached = TestValues.getProviderConfiguration(ISSUER);
+
+        ProviderConfiguration revalidated = HttpRequestBuilder.newConfigurationRequest()
+                .config(mAuthAPI.mOidcConfig)
+                .providerConfiguration(cached)
+                .createRequest()
+                .executeRequest(mockHttpClient(notModified));
+        assertNotSame(cached, revalidated);
+        assertEquals(ISSUER, revalidated.issuer);
+        assertEquals(ETAG, revalidated.getETag());
+        assertNull(cached.getETag());
+    }
+
+    private interface RevocationResponder {
+        OktaHttpClient.Exchange respond(String token) throws IOException;
+    }
+
+    private OktaHttpClient mockRevocations(RevocationResponder responder) throws Exception {
+        OktaHttpClient client = mock(OktaHttpClient.class);
+        when(client.execute(any(), any(), any())).thenAnswer(invocation -> {
+            Uri uri = invocation.getArgument(0);
+            return responder.respond(uri.getQueryParameter("token"));
+        });
+        mAuthAPI.mHttpClient = client;
+        mAuthAPI.getOktaState().save(TestValues.getProviderConfiguration(TestValues.CUSTOM_URL));
+        return client;
+    }
+
+    // An exchange that doesn't respond until it is canceled.
+    private static OktaHttpClient.Exchange hangingExchange(CountDownLatch started)
+            throws IOException {
+        CountDownLatch canceled = new CountDownLatch(1);
+        OktaHttpClient.Exchange exchange = mock(OktaHttpClient.Exchange.class);
+        doAnswer(invocation -> {
+            canceled.countDown();
+            return null;
+        }).when(exchange).cancel();
+        when(exchange.getResponseCode()).thenAnswer(invocation -> {
+            started.countDown();
+            canceled.await(WAIT_SECONDS, SECONDS);
+            throw new IOException("Canceled");
+        });
+        return exchange;
+    }
+
+    private static OktaHttpClient mockHttpClient(OktaHttpClient.Exchange... exchanges)
+            throws Exception {
+        OktaHttpClient client = mock(OktaHttpClient.class);
+        OngoingStubbing<OktaHttpClient.Exchange> stubbing =
+                when(client.execute(any(), any(), any()));
+        for (OktaHttpClient.Exchange exchange : exchanges) {
+            stubbing = stubbing.thenReturn(exchange);
+        }
+        return client;
+    }
+
+    private static OktaHttpClient.Exchange configurationExchange() throws IOException {
+        OktaHttpClient.Exchange exchange = mock(OktaHttpClient.Exchange.class);
+        when(exchange.getResponseCode()).thenReturn(HTTP_OK);
+        when(exchange.getHeaderFields()).thenReturn(Collections.singletonMap("ETag",
+                Collections.singletonList(ETAG)));
+        when(exchange.getContentLength()).thenReturn(-1);
+        when(exchange.getContent()).thenReturn(new ByteArrayInputStream(
+                JsonStrings.PROVIDER_CONFIG.getBytes(StandardCharsets.UTF_8)));
+        return exchange;
+    }
+}
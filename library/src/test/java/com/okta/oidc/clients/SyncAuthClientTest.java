@@ -67,6 +67,7 @@ import static com.okta.oidc.util.JsonStrings.TOKEN_RESPONSE;
 import static com.okta.oidc.util.TestValues.CUSTOM_STATE;
 import static com.okta.oidc.util.TestValues.EXCHANGE_CODE;
 import static com.okta.oidc.util.TestValues.SESSION_TOKEN;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -229,15 +230,11 @@ public class SyncAuthClientTest {
         mEndPoint.enqueueReturnSuccessEmptyBody();
         mEndPoint.enqueueReturnSuccessEmptyBody();
         int status = mSyncNativeAuth.signOut();
-        RecordedRequest recordedRequest = mEndPoint.takeRequest();
-
-        assertThat(recordedRequest.getPath(),
-                equalTo("/revoke?client_id=CLIENT_ID&token=ACCESS_TOKEN"));
-
-        recordedRequest = mEndPoint.takeRequest();
-
-        assertThat(recordedRequest.getPath(),
-                equalTo("/revoke?client_id=CLIENT_ID&token=REFRESH_TOKEN"));
+        //tokens are revoked in parallel
+        assertThat(Arrays.asList(mEndPoint.takeRequest().getPath(),
+                mEndPoint.takeRequest().getPath()),
+                containsInAnyOrder("/revoke?client_id=CLIENT_ID&token=ACCESS_TOKEN",
+                        "/revoke?client_id=CLIENT_ID&token=REFRESH_TOKEN"));
 
         assertEquals(status, SUCCESS);
     }
@@ -253,15 +250,11 @@ public class SyncAuthClientTest {
         mAuthClient.signOut(mockCallback);
         Thread.sleep(200); //wait for request to be created
 
-        RecordedRequest recordedRequest = mEndPoint.takeRequest();
-
-        assertThat(recordedRequest.getPath(),
-                equalTo("/revoke?client_id=CLIENT_ID&token=ACCESS_TOKEN"));
-
-        recordedRequest = mEndPoint.takeRequest();
-
-        assertThat(recordedRequest.getPath(),
-                equalTo("/revoke?client_id=CLIENT_ID&token=REFRESH_TOKEN"));
+        //tokens are revoked in parallel
+        assertThat(Arrays.asList(mEndPoint.takeRequest().getPath(),
+                mEndPoint.takeRequest().getPath()),
+                containsInAnyOrder("/revoke?client_id=CLIENT_ID&token=ACCESS_TOKEN",
+                        "/revoke?client_id=CLIENT_ID&token=REFRESH_TOKEN"));
         int status = mockCallback.getResult();
         assertEquals(status, SUCCESS);
     }
@@ -272,15 +265,11 @@ public class SyncAuthClientTest {
         mEndPoint.enqueueReturnInvalidClient();
 
         int status = mSyncNativeAuth.signOut();
-        RecordedRequest recordedRequest = mEndPoint.takeRequest();
-
-        assertThat(recordedRequest.getPath(),
-                equalTo("/revoke?client_id=CLIENT_ID&token=ACCESS_TOKEN"));
-
-        recordedRequest = mEndPoint.takeRequest();
-
-        assertThat(recordedRequest.getPath(),
-                equalTo("/revoke?client_id=CLIENT_ID&token=REFRESH_TOKEN"));
+        //tokens are revoked in parallel
+        assertThat(Arrays.asList(mEndPoint.takeRequest().getPath(),
+                mEndPoint.takeRequest().getPath()),
+                containsInAnyOrder("/revoke?client_id=CLIENT_ID&token=ACCESS_TOKEN",
+                        "/revoke?client_id=CLIENT_ID&token=REFRESH_TOKEN"));
 
         assertEquals((status & FAILED_REVOKE_ACCESS_TOKEN), FAILED_REVOKE_ACCESS_TOKEN);
         assertEquals((status & FAILED_REVOKE_REFRESH_TOKEN), FAILED_REVOKE_REFRESH_TOKEN);
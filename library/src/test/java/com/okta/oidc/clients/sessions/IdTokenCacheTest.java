@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.clients.sessions;
+
+import com.okta.oidc.OktaIdToken;
+import com.okta.oidc.util.TestValues;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static com.okta.oidc.util.JsonStrings.VALID_ID_TOKEN;
+import static com.okta.oidc.util.TestValues.CUSTOM_NONCE;
+import static com.okta.oidc.util.TestValues.CUSTOM_URL;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class IdTokenCacheTest {
+    @Test
+    public void getParsesOnce() {
+        IdTokenCache cache = new IdTokenCache();
+        OktaIdToken idToken = cache.get(VALID_ID_TOKEN);
+        assertSame(idToken, cache.get(VALID_ID_TOKEN));
+    }
+
+    @Test
+    public void putIsReturned() {
+        IdTokenCache cache = new IdTokenCache();
+        OktaIdToken idToken = OktaIdToken.parseIdToken(VALID_ID_TOKEN);
+        cache.put(VALID_ID_TOKEN, idToken);
+        assertSame(idToken, cache.get(VALID_ID_TOKEN));
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        IdTokenCache cache = new IdTokenCache(2);
+        String second = TestValues.getJwt(CUSTOM_URL, CUSTOM_NONCE, "second");
+        String third = TestValues.getJwt(CUSTOM_URL, CUSTOM_NONCE, "third");
+        OktaIdToken first = cache.get(VALID_ID_TOKEN);
+        OktaIdToken secondToken = cache.get(second);
+        assertSame(first, cache.get(VALID_ID_TOKEN));
+        cache.get(third);
+
+        assertSame(first, cache.get(VALID_ID_TOKEN));
+        assertNotSame(secondToken, cache.get(second));
+    }
+
+    @Test
+    public void clearRemovesTokens() {
+        IdTokenCache cache = new IdTokenCache();
+        OktaIdToken idToken = cache.get(VALID_ID_TOKEN);
+        cache.clear();
+        assertNotSame(idToken, cache.get(VALID_ID_TOKEN));
+    }
+}
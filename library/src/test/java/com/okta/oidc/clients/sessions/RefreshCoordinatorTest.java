@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.clients.sessions;
+
+import android.os.SystemClock;
+
+import com.okta.oidc.Tokens;
+import com.okta.oidc.util.AuthorizationException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class RefreshCoordinatorTest {
+    private static final int WAIT_SECONDS = 10;
+    private static final int CALLERS = 5;
+    private static final long GRACE_PERIOD = 1000;
+
+    @Test
+    public void concurrentCallersShareOneRefresh() throws Exception {
+        RefreshCoordinator coordinator = new RefreshCoordinator(GRACE_PERIOD);
+        Tokens tokens = tokens("new");
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        List<Future<Tokens>> results = new ArrayList<>();
+        results.add(executor.submit(() -> coordinator.refresh("old", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            release.await();
+            return tokens;
+        })));
+        assertTrue(started.await(WAIT_SECONDS, SECONDS));
+        for (int i = 1; i < CALLERS; i++) {
+            results.add(executor.submit(() -> coordinator.refresh("old", () -> {
+                calls.incrementAndGet();
+                return tokens("other");
+            })));
+        }
+        release.countDown();
+        for (Future<Tokens> result : results) {
+            assertSame(tokens, result.get(WAIT_SECONDS, SECONDS));
+        }
+        assertEquals(1, calls.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void recentResultIsReusedWithinGracePeriod() throws Exception {
+        RefreshCoordinator coordinator = new RefreshCoordinator(GRACE_PERIOD);
+        Tokens tokens = tokens("new");
+        coordinator.refresh("old", () -> tokens);
+
+        assertSame(tokens, coordinator.refresh("old", () -> tokens("other")));
+        assertSame(tokens, coordinator.refresh("new", () -> tokens("other")));
+        assertNotSame(tokens, coordinator.refresh("unrelated", () -> tokens("other")));
+    }
+
+    @Test
+    public void recentResultExpiresAfterGracePeriod() throws Exception {
+        RefreshCoordinator coordinator = new RefreshCoordinator(GRACE_PERIOD);
+        Tokens tokens = tokens("new");
+        coordinator.refresh("old", () -> tokens);
+        SystemClock.sleep(GRACE_PERIOD + 1);
+
+        assertNotSame(tokens, coordinator.refresh("new", () -> tokens("newer")));
+    }
+
+    @Test
+    public void failureIsSharedButNotReused() throws Exception {
+        RefreshCoordinator coordinator = new RefreshCoordinator(GRACE_PERIOD);
+        AuthorizationException failure = new AuthorizationException("failed", null);
+        try {
+            coordinator.refresh("old", () -> {
+                throw failure;
+            });
+            fail("Expected refresh failure");
+        } catch (AuthorizationException e) {
+            assertSame(failure, e);
+        }
+        Tokens tokens = tokens("new");
+        assertSame(tokens, coordinator.refresh("old", () -> tokens));
+    }
+
+    @Test
+    public void clearStopsReuse() throws Exception {
+        RefreshCoordinator coordinator = new RefreshCoordinator(GRACE_PERIOD);
+        Tokens tokens = tokens("new");
+        coordinator.refresh("old", () -> tokens);
+        coordinator.clear();
+
+        assertNotSame(tokens, coordinator.refresh("new", () -> tokens("other")));
+    }
+
+    private static Tokens tokens(String accessToken) {
+        Tokens tokens = mock(Tokens.class);
+        when(tokens.getAccessToken()).thenReturn(accessToken);
+        return tokens;
+    }
+}
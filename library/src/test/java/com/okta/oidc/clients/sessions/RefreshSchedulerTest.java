@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.clients.sessions;
+
+import android.app.Application;
+
+import com.okta.oidc.RequestCallback;
+import com.okta.oidc.RequestDispatcher;
+import com.okta.oidc.RequestExecutors;
+import com.okta.oidc.Tokens;
+import com.okta.oidc.util.AuthorizationException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class RefreshSchedulerTest {
+    private static final long MARGIN = MINUTES.toMillis(1);
+    private static final long LIFETIME = MINUTES.toMillis(10);
+    private static final String SESSION = "session";
+
+    private SessionClient mClient;
+    private RequestDispatcher mDispatcher;
+    private RefreshScheduler mScheduler;
+
+    @Before
+    public void setUp() throws AuthorizationException {
+        mClient = mock(SessionClient.class);
+        mDispatcher = new RequestDispatcher(Runnable::run,
+                new RequestExecutors(Runnable::run, Runnable::run, null));
+        mScheduler = new RefreshScheduler(SESSION, mClient, mDispatcher, MARGIN);
+        returnTokens(LIFETIME);
+    }
+
+    @Test
+    public void refreshesMarginBeforeExpiry() {
+        answerRefresh(null);
+        mScheduler.onForeground();
+        idle(LIFETIME - MARGIN - MARGIN / 5 - 1);
+        verify(mClient, never()).refreshToken(any());
+
+        idle(MARGIN / 5 + 1);
+        verify(mClient).refreshToken(any());
+    }
+
+    @Test
+    public void nothingIsScheduledInBackground() throws AuthorizationException {
+        answerRefresh(null);
+        mScheduler.onForeground();
+        mScheduler.onBackground();
+        idle(LIFETIME);
+        verify(mClient, never()).refreshToken(any());
+
+        returnTokens(MARGIN / 2);
+        mScheduler.onForeground();
+        verify(mClient).refreshToken(any());
+    }
+
+    @Test
+    public void failedRefreshIsRetriedWithBackoff() throws AuthorizationException {
+        returnTokens(MARGIN / 2);
+        answerRefresh(new AuthorizationException("network", null));
+        mScheduler.onForeground();
+        verify(mClient).refreshToken(any());
+
+        idle(SECONDS.toMillis(2));
+        verify(mClient).refreshToken(any());
+        idle(SECONDS.toMillis(3));
+        verify(mClient, times(2)).refreshToken(any());
+    }
+
+    @Test
+    public void rejectedRefreshTokenIsNotRetried() throws AuthorizationException {
+        returnTokens(MARGIN / 2);
+        answerRefresh(new AuthorizationException(AuthorizationException.TYPE_OAUTH_TOKEN_ERROR,
+                0, "invalid_grant", null, null, null));
+        mScheduler.onForeground();
+        idle(SECONDS.toMillis(30));
+        verify(mClient).refreshToken(any());
+    }
+
+    @Test
+    public void noTokensAreCheckedAgainLater() throws AuthorizationException {
+        when(mClient.getTokens()).thenReturn(null);
+        mScheduler.onForeground();
+        verify(mClient).getTokens();
+
+        returnTokens(MARGIN / 2);
+        answerRefresh(null);
+        idle(MINUTES.toMillis(1));
+        verify(mClient).refreshToken(any());
+    }
+
+    @Test
+    public void stopUnregistersAndCancelsRefresh() {
+        Application application = mock(Application.class);
+        answerRefresh(null);
+        mScheduler.start(application);
+        mScheduler.onForeground();
+        mScheduler.stop();
+        idle(LIFETIME);
+        verify(mClient, never()).refreshToken(any());
+        verify(application).unregisterActivityLifecycleCallbacks(any());
+        verify(application).unregisterComponentCallbacks(any());
+
+        mScheduler.onForeground();
+        idle(LIFETIME);
+        verify(mClient, never()).refreshToken(any());
+    }
+
+    @Test
+    public void newSchedulerOfSameSessionStopsPrevious() throws AuthorizationException {
+        Application application = mock(Application.class);
+        answerRefresh(null);
+        mScheduler.start(application);
+        mScheduler.onForeground();
+
+        SessionClient client = mock(SessionClient.class);
+        Tokens tokens = tokens(LIFETIME);
+        when(client.getTokens()).thenReturn(tokens);
+        RefreshScheduler scheduler = new RefreshScheduler(SESSION, client, mDispatcher, MARGIN);
+        scheduler.start(application);
+        scheduler.onForeground();
+        idle(LIFETIME);
+        verify(mClient, never()).refreshToken(any());
+        verify(client).refreshToken(any());
+        verify(application).unregisterActivityLifecycleCallbacks(any());
+        scheduler.stop();
+    }
+
+    private void returnTokens(long lifetime) throws AuthorizationException {
+        Tokens tokens = tokens(lifetime);
+        when(mClient.getTokens()).thenReturn(tokens);
+    }
+
+    private void answerRefresh(AuthorizationException error) {
+        Tokens refreshed = tokens(LIFETIME);
+        doAnswer(invocation -> {
+            RequestCallback<Tokens, AuthorizationException> cb = invocation.getArgument(0);
+            if (error == null) {
+                cb.onSuccess(refreshed);
+            } else {
+                cb.onError(error.error, error);
+            }
+            return null;
+        }).when(mClient).refreshToken(any());
+    }
+
+    private static Tokens tokens(long lifetime) {
+        Tokens tokens = mock(Tokens.class);
+        when(tokens.getRefreshToken()).thenReturn("refresh_token");
+        when(tokens.getExpiresAt()).thenReturn(System.currentTimeMillis() + lifetime);
+        return tokens;
+    }
+
+    private static void idle(long millis) {
+        ShadowLooper.idleMainLooper(millis, TimeUnit.MILLISECONDS);
+    }
+}
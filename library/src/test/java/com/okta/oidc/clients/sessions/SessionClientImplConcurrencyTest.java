@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.clients.sessions;
+
+import android.net.Uri;
+
+import com.okta.oidc.RequestExecutors;
+import com.okta.oidc.net.ConnectionParameters;
+import com.okta.oidc.net.HttpClientImpl;
+import com.okta.oidc.util.AuthorizationException;
+import com.okta.oidc.util.MockRequestCallback;
+import com.okta.oidc.util.OkHttp;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class SessionClientImplConcurrencyTest {
+    private static final int WAIT_SECONDS = 10;
+    private static final int BLOCKED_MILLIS = 200;
+
+    private SyncSessionClient mSyncSessionClient;
+    private List<String> mEvents;
+    private CountDownLatch mRelease;
+
+    @Before
+    public void setUp() throws Exception {
+        mEvents = Collections.synchronizedList(new ArrayList<>());
+        mRelease = new CountDownLatch(1);
+        mSyncSessionClient = mock(SyncSessionClient.class);
+        when(mSyncSessionClient.authorizedRequest(any(), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    Uri uri = invocation.getArgument(0);
+                    mEvents.add("start " + uri.getPath());
+                    if (uri.getPath().contains("slow")) {
+                        mRelease.await(WAIT_SECONDS, TimeUnit.SECONDS);
+                    }
+                    mEvents.add("end " + uri.getPath());
+                    return new JSONObject();
+                });
+        when(mSyncSessionClient.revokeToken(anyString())).thenAnswer(invocation -> {
+            mEvents.add("start revoke");
+            mEvents.add("end revoke");
+            return true;
+        });
+    }
+
+    @Test
+    public void slowRequestDoesNotBlockOthers() throws InterruptedException {
+        SessionClientImpl client = new SessionClientImpl(Runnable::run, mSyncSessionClient, 2);
+        CountDownLatch fast = new CountDownLatch(1);
+        CountDownLatch slow = new CountDownLatch(1);
+        request(client, "/slow", slow);
+        request(client, "/fast", fast);
+        assertTrue(fast.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, slow.getCount());
+        mRelease.countDown();
+        assertTrue(slow.await(WAIT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void concurrencyIsBounded() throws InterruptedException {
+        SessionClientImpl client = new SessionClientImpl(Runnable::run, mSyncSessionClient, 1);
+        CountDownLatch fast = new CountDownLatch(1);
+        CountDownLatch slow = new CountDownLatch(1);
+        request(client, "/slow", slow);
+        request(client, "/fast", fast);
+        assertFalse(fast.await(BLOCKED_MILLIS, TimeUnit.MILLISECONDS));
+        mRelease.countDown();
+        assertTrue(fast.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("start /slow", "end /slow", "start /fast", "end /fast"),
+                mEvents);
+    }
+
+    @Test
+    public void tokenRequestsAreOrdered() throws InterruptedException {
+        SessionClientImpl client = new SessionClientImpl(Runnable::run, mSyncSessionClient, 3);
+        CountDownLatch latch = new CountDownLatch(3);
+        request(client, "/slow", latch);
+        client.revokeToken("token", new MockRequestCallback<>(latch));
+        request(client, "/after", latch);
+        Thread.sleep(BLOCKED_MILLIS);
+        assertEquals(Collections.singletonList("start /slow"), mEvents);
+        mRelease.countDown();
+        assertTrue(latch.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("start /slow", "end /slow", "start revoke", "end revoke",
+                "start /after", "end /after"), mEvents);
+    }
+
+    @Test
+    public void cancelQueuedRequest() throws InterruptedException {
+        SessionClientImpl client = new SessionClientImpl(Runnable::run, mSyncSessionClient, 1);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        request(client, "/slow", running);
+        MockRequestCallback<JSONObject, AuthorizationException> queued =
+                request(client, "/queued", latch);
+        Thread.sleep(BLOCKED_MILLIS);
+        client.cancel();
+        //cancel() runs in the background, the running request reports when it is done.
+        assertTrue(running.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        mRelease.countDown();
+        assertTrue(latch.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertNull(queued.getResult());
+        assertEquals("Canceled", queued.getError());
+        assertFalse(mEvents.contains("start /queued"));
+    }
+
+    @Test
+    public void requestSubmittedAfterCancelSucceeds() throws InterruptedException {
+        ExecutorService network = Executors.newFixedThreadPool(2);
+        List<Runnable> deferred = Collections.synchronizedList(new ArrayList<>());
+        SessionClientImpl client = new SessionClientImpl(Runnable::run, mSyncSessionClient, 2,
+                new RequestExecutors(network, deferred::add, null));
+        CountDownLatch latch = new CountDownLatch(1);
+        client.cancel();
+        MockRequestCallback<JSONObject, AuthorizationException> after =
+                request(client, "/slow", latch);
+        Thread.sleep(BLOCKED_MILLIS);
+        //the background part of cancel() runs while the new request is in progress.
+        for (Runnable task : new ArrayList<>(deferred)) {
+            task.run();
+        }
+        mRelease.countDown();
+        assertTrue(latch.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertNull(after.getError());
+        assertNotNull(after.getResult());
+        network.shutdown();
+    }
+
+    @Test
+    public void providedExecutorIsBoundedByConcurrency() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        SessionClientImpl client = new SessionClientImpl(Runnable::run, mSyncSessionClient, 1,
+                new RequestExecutors(executor, executor, null));
+        CountDownLatch fast = new CountDownLatch(1);
+        CountDownLatch slow = new CountDownLatch(1);
+        request(client, "/slow", slow);
+        request(client, "/fast", fast);
+        assertFalse(fast.await(BLOCKED_MILLIS, TimeUnit.MILLISECONDS));
+        mRelease.countDown();
+        assertTrue(fast.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("start /slow", "end /slow", "start /fast", "end /fast"),
+                mEvents);
+        executor.shutdown();
+    }
+
+    @Test
+    public void clientsOnlyImplementingConnectRunOneRequestAtATime() {
+        assertEquals(3, SessionClientFactoryImpl.concurrencyFor(3, new HttpClientImpl()));
+        assertEquals(1, SessionClientFactoryImpl.concurrencyFor(3, new OkHttp()));
+    }
+
+    private static MockRequestCallback<JSONObject, AuthorizationException> request(
+            SessionClientImpl client, String path, CountDownLatch latch) {
+        MockRequestCallback<JSONObject, AuthorizationException> cb =
+                new MockRequestCallback<>(latch);
+        client.authorizedRequest(Uri.parse("https://example.com" + path), null, null,
+                ConnectionParameters.RequestMethod.GET, cb);
+        return cb;
+    }
+}
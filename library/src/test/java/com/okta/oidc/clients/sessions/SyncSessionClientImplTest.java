@@ -17,13 +17,16 @@ package com.okta.oidc.clients.sessions;
 
 import android.content.Context;
 import android.net.Uri;
+import android.util.Base64;
 
 import androidx.test.platform.app.InstrumentationRegistry;
 
 import com.google.gson.Gson;
 import com.okta.oidc.OIDCConfig;
 import com.okta.oidc.Okta;
+import com.okta.oidc.OktaIdToken;
 import com.okta.oidc.OktaState;
+import com.okta.oidc.Tokens;
 import com.okta.oidc.clients.web.SyncWebAuthClient;
 import com.okta.oidc.net.ConnectionParameters;
 import com.okta.oidc.net.OktaHttpClient;
@@ -56,28 +59,45 @@ import org.junit.runner.RunWith;
 import org.robolectric.ParameterizedRobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.io.ByteArrayInputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import okhttp3.mockwebserver.RecordedRequest;
 
 import static com.okta.oidc.util.JsonStrings.TOKEN_RESPONSE;
 import static com.okta.oidc.util.JsonStrings.TOKEN_SUCCESS;
+import static com.okta.oidc.util.JsonStrings.VALID_ID_TOKEN;
 import static com.okta.oidc.util.TestValues.ACCESS_TOKEN;
 import static com.okta.oidc.util.TestValues.CUSTOM_STATE;
+import static com.okta.oidc.util.TestValues.REFRESH_TOKEN;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 @RunWith(ParameterizedRobolectricTestRunner.class)
 @Config(sdk = 27)
 public class SyncSessionClientImplTest {
+    private static final int WAIT_SECONDS = 10;
 
     private Context mContext;
     private OIDCConfig mConfig;
@@ -168,6 +188,66 @@ public class SyncSessionClientImplTest {
         assertNotNull(mSyncSessionClientImpl.getTokens());
     }
 
+    @Test
+    public void getIdTokenIsCached() throws AuthorizationException,
+            OktaRepository.EncryptionException {
+        mOktaState.save(TokenResponse.RESTORE.restore(TestValues.generatePayloadTokenResponse(
+                ACCESS_TOKEN, VALID_ID_TOKEN, REFRESH_TOKEN, "3600", "openid")));
+
+        OktaIdToken idToken = mSyncSessionClientImpl.getIdToken();
+        assertNotNull(idToken);
+        assertEquals("RS256", idToken.getHeader().alg);
+        assertSame(idToken, mSyncSessionClientImpl.getIdToken());
+    }
+
+    @Test
+    public void getIdTokenAfterClear() throws AuthorizationException,
+            OktaRepository.EncryptionException {
+        mOktaState.save(TokenResponse.RESTORE.restore(TestValues.generatePayloadTokenResponse(
+                ACCESS_TOKEN, VALID_ID_TOKEN, REFRESH_TOKEN, "3600", "openid")));
+        assertNotNull(mSyncSessionClientImpl.getIdToken());
+
+        mSyncSessionClientImpl.clear();
+        assertNull(mSyncSessionClientImpl.getIdToken());
+    }
+
+    @Test
+    public void getIdTokenInvalidToken() throws AuthorizationException,
+            OktaRepository.EncryptionException {
+        mOktaState.save(mTokenResponse);
+        mExpectedEx.expect(AuthorizationException.class);
+        mSyncSessionClientImpl.getIdToken();
+    }
+
+    @Test
+    public void getIdTokenMalformedHeader() throws OktaRepository.EncryptionException {
+        String header = Base64.encodeToString("{"alg":".getBytes(StandardCharsets.UTF_8),
+                Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP);
+        String idToken = header + VALID_ID_TOKEN.substring(VALID_ID_TOKEN.indexOf('.'));
+        mOktaState.save(TokenResponse.RESTORE.restore(TestValues.generatePayloadTokenResponse(
+                ACCESS_TOKEN, idToken, REFRESH_TOKEN, "3600", "openid")));
+        try {
+            mSyncSessionClientImpl.getIdToken();
+            fail("Expected parsing error");
+        } catch (AuthorizationException e) {
+            assertEquals(AuthorizationException.GeneralErrors.ID_TOKEN_PARSING_ERROR.code,
+                    e.code);
+        }
+    }
+
+    @Test
+    public void getIdTokenAfterSignInUsesParsedToken() throws AuthorizationException,
+            OktaRepository.EncryptionException {
+        TokenResponse response = TokenResponse.RESTORE.restore(
+                TestValues.generatePayloadTokenResponse(ACCESS_TOKEN, VALID_ID_TOKEN,
+                        REFRESH_TOKEN, "3600", "openid"));
+        OktaIdToken parsed = OktaIdToken.parseIdToken(VALID_ID_TOKEN);
+        response.setParsedIdToken(parsed);
+        SyncSessionClientFactoryImpl.saveTokens(mSyncSessionClientImpl, mOktaState, response);
+
+        assertSame(parsed, mSyncSessionClientImpl.getIdToken());
+    }
+
     @Test
     public void isLoggedIn_false() throws AuthorizationException {
         boolean result = mSyncSessionClientImpl.isAuthenticated();
@@ -193,6 +273,47 @@ public class SyncSessionClientImplTest {
         assertEquals(original.getIdToken(), response.getIdToken());
     }
 
+    @Test
+    public void refreshDoesNotSaveTokensAfterClear() throws Exception {
+        mOktaState.save(mTokenResponse);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        OktaHttpClient.Exchange exchange = mock(OktaHttpClient.Exchange.class);
+        when(exchange.getResponseCode()).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(WAIT_SECONDS, TimeUnit.SECONDS);
+            return HttpURLConnection.HTTP_OK;
+        });
+        when(exchange.getContentLength()).thenReturn(-1);
+        when(exchange.getContent()).thenReturn(new ByteArrayInputStream(
+                ("{\"access_token\":\"refreshed\",\"token_type\":\"Bearer\","
+                        + "\"expires_in\":\"3600\",\"scope\":\"openid\"}")
+                        .getBytes(StandardCharsets.UTF_8)));
+        OktaHttpClient client = mock(OktaHttpClient.class);
+        when(client.execute(any(), any(), any())).thenReturn(exchange);
+        SyncSessionClientImpl sessionClient = new SyncSessionClientImpl(mConfig, mOktaState,
+                client);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Tokens> refresh = executor.submit(sessionClient::refreshToken);
+        started.await(WAIT_SECONDS, TimeUnit.SECONDS);
+        sessionClient.clear();
+        //signed in again while the refresh was in progress.
+        mOktaState.save(mProviderConfig);
+        mOktaState.save(TestValues.getTokenResponse());
+        release.countDown();
+
+        try {
+            refresh.get(WAIT_SECONDS, TimeUnit.SECONDS);
+            fail("Expected the refresh to be canceled");
+        } catch (ExecutionException e) {
+            assertSame(AuthorizationException.GeneralErrors.PROGRAM_CANCELED_AUTH_FLOW,
+                    e.getCause());
+        }
+        assertEquals(TestValues.ACCESS_TOKEN, mOktaState.getTokenResponse().getAccessToken());
+        executor.shutdown();
+    }
+
     @Test
     public void refreshTokenRequestFailure() throws InterruptedException, JSONException, AuthorizationException, OktaRepository.EncryptionException {
         mOktaState.save(mTokenResponse);
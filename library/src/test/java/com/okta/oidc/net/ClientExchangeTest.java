@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.net;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ClientExchangeTest {
+    private static final int WAIT_SECONDS = 10;
+    private static final int BLOCKED_MILLISECONDS = 200;
+
+    private final Uri mUri = Uri.parse("https://example.com");
+    private final ConnectionParameters mParams = new ConnectionParameters.ParameterBuilder()
+            .setRequestMethod(ConnectionParameters.RequestMethod.GET)
+            .create();
+
+    @Test
+    public void executeWaitsForPreviousExchangeOfClient() throws Exception {
+        ConnectOnlyClient client = new ConnectOnlyClient();
+        OktaHttpClient.Exchange first = client.execute(mUri, mParams);
+        assertEquals(1, first.getResponseCode());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Integer> second = executor.submit(() -> {
+            OktaHttpClient.Exchange exchange = client.execute(mUri, mParams);
+            try {
+                return exchange.getResponseCode();
+            } finally {
+                exchange.close();
+            }
+        });
+        try {
+            second.get(BLOCKED_MILLISECONDS, MILLISECONDS);
+            fail("Expected the second request to wait");
+        } catch (TimeoutException e) {
+            // expected
+        }
+        assertEquals(1, client.mConnects.get());
+        assertEquals(1, first.getResponseCode());
+
+        first.close();
+        first.close();
+        assertEquals(2, (int) second.get(WAIT_SECONDS, SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    public void failedConnectReleasesClient() throws Exception {
+        ConnectOnlyClient client = new ConnectOnlyClient();
+        client.mFail = true;
+        try {
+            client.execute(mUri, mParams);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+        client.mFail = false;
+        OktaHttpClient.Exchange exchange = client.execute(mUri, mParams);
+        assertEquals(2, exchange.getResponseCode());
+        exchange.close();
+    }
+
+    @Test
+    public void exchangesOfOtherClientsDoNotWait() throws Exception {
+        OktaHttpClient.Exchange first = new ConnectOnlyClient().execute(mUri, mParams);
+        OktaHttpClient.Exchange second = new ConnectOnlyClient().execute(mUri, mParams);
+        assertEquals(1, first.getResponseCode());
+        assertEquals(1, second.getResponseCode());
+        first.close();
+        second.close();
+    }
+
+    // Holds the response of its last request, like clients written before execute().
+    private static class ConnectOnlyClient implements OktaHttpClient {
+        private final AtomicInteger mConnects = new AtomicInteger();
+        private volatile int mResponseCode;
+        private volatile boolean mFail;
+
+        @Nullable
+        @Override
+        public InputStream connect(@NonNull Uri uri, @NonNull ConnectionParameters param)
+                throws Exception {
+            mResponseCode = mConnects.incrementAndGet();
+            if (mFail) {
+                throw new IOException("failed");
+            }
+            return null;
+        }
+
+        @Override
+        public void cleanUp() {
+            //NO-OP
+        }
+
+        @Override
+        public void cancel() {
+            //NO-OP
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaderFields() {
+            return null;
+        }
+
+        @Override
+        public String getHeader(String header) {
+            return null;
+        }
+
+        @Override
+        public int getResponseCode() {
+            return mResponseCode;
+        }
+
+        @Override
+        public int getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public String getResponseMessage() {
+            return null;
+        }
+    }
+}
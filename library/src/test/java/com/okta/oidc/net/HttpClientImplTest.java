@@ -29,6 +29,7 @@ import com.okta.oidc.util.MockEndPoint;
 import com.okta.oidc.util.TestValues;
 
 import org.json.JSONObject;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -37,14 +38,25 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.Okio;
+
+import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
 import static java.net.HttpURLConnection.HTTP_OK;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 @RunWith(RobolectricTestRunner.class)
 @Config(sdk = 27)
@@ -54,6 +66,7 @@ public class HttpClientImplTest {
     @Rule
     public ExpectedException mExpectedEx = ExpectedException.none();
     private HttpClientImpl mHttpClient;
+    private MockWebServer mServer;
 
     @Before
     public void setUp() throws Exception {
@@ -71,6 +84,28 @@ public class HttpClientImplTest {
                 .providerConfiguration(providerConfiguration)
                 .tokenResponse(tokenResponse)
                 .createRequest();
+        mServer = new MockWebServer();
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                switch (request.getPath()) {
+                    case "/first":
+                        return new MockResponse().setBody("first").addHeader("Name", "first");
+                    case "/slow":
+                        return new MockResponse().setBody("slow")
+                                .setBodyDelay(1, TimeUnit.SECONDS);
+                    default:
+                        return new MockResponse().setResponseCode(HTTP_NOT_FOUND)
+                                .setBody("second").addHeader("Name", "second");
+                }
+            }
+        });
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
     }
 
     @Test
@@ -152,4 +187,78 @@ public class HttpClientImplTest {
         mHttpClient.connect(Uri.parse(mEndPoint.getUrl()), mRequest.mConnParams);
         assertEquals("OK", mHttpClient.getResponseMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void exchangesKeepTheirOwnResponses() throws Exception {
+        OktaHttpClient.Exchange first = mHttpClient.execute(uri("/first"), getParameters());
+        OktaHttpClient.Exchange second = mHttpClient.execute(uri("/second"), getParameters());
+
+        assertEquals(HTTP_NOT_FOUND, second.getResponseCode());
+        assertEquals("second", second.getHeader("Name"));
+        assertEquals("second", read(second));
+        assertEquals(HTTP_OK, first.getResponseCode());
+        assertEquals("first", first.getHeader("Name"));
+        assertEquals("OK", first.getResponseMessage());
+        assertEquals("first", read(first));
+        first.close();
+        second.close();
+        assertEquals(0, mHttpClient.getExchangeCount());
+    }
+
+    @Test
+    public void cancelExchangeDoesNotAffectOtherExchanges() throws Exception {
+        OktaHttpClient.Exchange slow = mHttpClient.execute(uri("/slow"), getParameters());
+        OktaHttpClient.Exchange first = mHttpClient.execute(uri("/first"), getParameters());
+        slow.cancel();
+        try {
+            read(slow);
+            fail("Expected canceled exchange to fail");
+        } catch (IOException e) {
+            //NO-OP
+        }
+        assertEquals("first", read(first));
+        first.close();
+    }
+
+    @Test
+    public void closedExchangeConnectionIsReused() throws Exception {
+        OktaHttpClient.Exchange first = mHttpClient.execute(uri("/first"), getParameters());
+        assertEquals("first", read(first));
+        first.close();
+        OktaHttpClient.Exchange second = mHttpClient.execute(uri("/first"), getParameters());
+        assertEquals("first", read(second));
+        second.close();
+
+        assertEquals(0, mServer.takeRequest().getSequenceNumber());
+        assertEquals(1, mServer.takeRequest().getSequenceNumber());
+    }
+
+    @Test
+    public void cancelClientCancelsAllExchanges() throws Exception {
+        OktaHttpClient.Exchange slow = mHttpClient.execute(uri("/slow"), getParameters());
+        mHttpClient.cancel();
+        assertEquals(0, mHttpClient.getExchangeCount());
+        try {
+            read(slow);
+            fail("Expected canceled exchange to fail");
+        } catch (IOException e) {
+            //NO-OP
+        }
+    }
+
+    private Uri uri(String path) {
+        return Uri.parse(mServer.url(path).toString());
+    }
+
+    private static ConnectionParameters getParameters() {
+        return new ConnectionParameters.ParameterBuilder()
+                .setRequestMethod(ConnectionParameters.RequestMethod.GET)
+                .create();
+    }
+
+    private static String read(OktaHttpClient.Exchange exchange) throws IOException {
+        Buffer buffer = new Buffer();
+        buffer.writeAll(Okio.source(exchange.getContent()));
+        return buffer.readUtf8();
+    }
+}
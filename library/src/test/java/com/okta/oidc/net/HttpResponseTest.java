@@ -21,6 +21,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import com.okta.oidc.net.response.TokenResponse;
 
 import org.json.JSONObject;
@@ -32,11 +33,13 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -55,6 +58,7 @@ import static java.net.HttpURLConnection.HTTP_FORBIDDEN;
 import static java.net.HttpURLConnection.HTTP_MOVED_TEMP;
 import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
 import static java.net.HttpURLConnection.HTTP_OK;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -202,6 +206,61 @@ public class HttpResponseTest {
         assertEquals(contentLength, CONFIGURATION_NOT_FOUND.length());
     }
 
+    @Test
+    public void asType() throws Exception {
+        byte[] body = TOKEN_SUCCESS.getBytes(UTF_8);
+        HttpResponse response = new HttpResponse(HTTP_OK, Collections.emptyMap(),
+                body.length, new ByteArrayInputStream(body), null);
+
+        TokenResponse tokenResponse = response.asType(TokenResponse.class);
+        TokenResponse expected = new Gson().fromJson(TOKEN_SUCCESS, TokenResponse.class);
+        assertEquals(expected.persist(), tokenResponse.persist());
+    }
+
+    @Test
+    public void asTypeUnknownLength() throws Exception {
+        byte[] body = TOKEN_SUCCESS.getBytes(UTF_8);
+        HttpResponse response = new HttpResponse(HTTP_OK, Collections.emptyMap(),
+                -1, new ByteArrayInputStream(body), null);
+        assertNotNull(response.asType(TokenResponse.class).getAccessToken());
+    }
+
+    @Test
+    public void asTypeMalformedBody() {
+        byte[] body = "{\"access_token\":".getBytes(UTF_8);
+        HttpResponse response = new HttpResponse(HTTP_OK, Collections.emptyMap(),
+                body.length, new ByteArrayInputStream(body), null);
+        assertThrows(JsonParseException.class, () -> response.asType(TokenResponse.class));
+    }
+
+    @Test
+    public void asTypeEmptyBody() {
+        HttpResponse response = new HttpResponse(HTTP_OK, Collections.emptyMap(),
+                0, new ByteArrayInputStream(new byte[0]), null);
+        assertThrows(JsonParseException.class, () -> response.asType(TokenResponse.class));
+    }
+
+    @Test
+    public void asTypeReadFailure() {
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        };
+        HttpResponse response = new HttpResponse(HTTP_OK, Collections.emptyMap(),
+                -1, failing, null);
+        assertThrows(IOException.class, () -> response.asType(TokenResponse.class));
+    }
+
+    @Test
+    public void asJsonKeepsLineBreaks() throws Exception {
+        byte[] body = "{\"value\":\n\"a\\nb\"\n}".getBytes(UTF_8);
+        HttpResponse response = new HttpResponse(HTTP_OK, Collections.emptyMap(),
+                body.length, new ByteArrayInputStream(body), null);
+        assertEquals("a\nb", response.asJson().getString("value"));
+    }
+
     @Test
     public void redirectResponse() throws Exception {
         mServer.enqueue(new MockResponse().setResponseCode(HTTP_MOVED_TEMP)
@@ -34,15 +34,20 @@ import org.robolectric.annotation.Config;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static com.okta.oidc.util.HttpClientFactory.USE_DEFAULT_HTTP;
 import static java.net.HttpURLConnection.HTTP_OK;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(ParameterizedRobolectricTestRunner.class)
 @Config(sdk = 27)
 public class BaseRequestTest {
+    private static final int HEADERS_DELAY_SECONDS = 10;
     private BaseRequest<String, AuthorizationException> mRequest;
     private MockEndPoint mEndPoint;
     private OktaHttpClient mHttpClient;
@@ -67,12 +72,7 @@ public class BaseRequestTest {
     @Before
     public void setUp() throws Exception {
         mEndPoint = new MockEndPoint();
-        mRequest = new BaseRequest<String, AuthorizationException>() {
-            @Override
-            public String executeRequest(OktaHttpClient client) throws AuthorizationException {
-                return null;
-            }
-        };
+        mRequest = newRequest();
         mClientFactory = new HttpClientFactory();
         mClientFactory.setClientType(mClientType);
         mHttpClient = mClientFactory.build();
@@ -115,6 +115,57 @@ public class BaseRequestTest {
         }
     }
 
+    @Test
+    public void cancelAbortsRequestWaitingForResponse() throws Exception {
+        mEndPoint.enqueueReturnSuccessEmptyBody(HEADERS_DELAY_SECONDS);
+        Thread t = startRequest(mRequest, new AtomicReference<>());
+        mEndPoint.takeRequest();
+
+        long start = System.currentTimeMillis();
+        mRequest.cancelRequest();
+        t.join(TimeUnit.SECONDS.toMillis(HEADERS_DELAY_SECONDS));
+        assertFalse(t.isAlive());
+        assertTrue(System.currentTimeMillis() - start
+                < TimeUnit.SECONDS.toMillis(HEADERS_DELAY_SECONDS) / 2);
+    }
+
+    @Test
+    public void canceledRequestReleasesClient() throws Exception {
+        mEndPoint.enqueueReturnSuccessEmptyBody(HEADERS_DELAY_SECONDS);
+        AtomicReference<Exception> exception = new AtomicReference<>();
+        Thread t = startRequest(mRequest, exception);
+        mEndPoint.takeRequest();
+        mRequest.cancelRequest();
+        t.join(TimeUnit.SECONDS.toMillis(HEADERS_DELAY_SECONDS));
+        assertTrue(exception.get() instanceof IOException);
+
+        mEndPoint.enqueueReturnSuccessEmptyBody();
+        BaseRequest<String, AuthorizationException> next = newRequest();
+        AtomicReference<Exception> nextException = new AtomicReference<>();
+        Thread second = startRequest(next, nextException);
+        second.join(TimeUnit.SECONDS.toMillis(HEADERS_DELAY_SECONDS));
+        assertFalse(second.isAlive());
+        assertNull(nextException.get());
+        next.close();
+    }
+
+    private Thread startRequest(BaseRequest<String, AuthorizationException> request,
+                                AtomicReference<Exception> exception) {
+        request.mUri = Uri.parse(mEndPoint.getUrl());
+        request.mConnParams = new ConnectionParameters.ParameterBuilder()
+                .setRequestMethod(ConnectionParameters.RequestMethod.GET)
+                .create();
+        Thread t = new Thread(() -> {
+            try {
+                request.openConnection(mHttpClient);
+            } catch (Exception e) {
+                exception.set(e);
+            }
+        });
+        t.start();
+        return t;
+    }
+
     @Test
     public void close() throws Exception {
         mExpectedEx.expect(IOException.class);
@@ -133,4 +184,13 @@ public class BaseRequestTest {
         mRequest.close();
         response.getContent().read();
     }
-}
\ No newline at end of file
+
+    private static BaseRequest<String, AuthorizationException> newRequest() {
+        return new BaseRequest<String, AuthorizationException>() {
+            @Override
+            public String executeRequest(OktaHttpClient client) throws AuthorizationException {
+                return null;
+            }
+        };
+    }
+}
@@ -39,7 +39,11 @@ import java.util.concurrent.Executors;
 
 import static com.okta.oidc.util.TestValues.WELL_KNOWN_OAUTH;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(ParameterizedRobolectricTestRunner.class)
 @Config(sdk = 27)
@@ -119,4 +123,39 @@ public class ConfigurationRequestTest {
         mEndPoint.enqueueConfigurationFailure();
         mRequest.executeRequest(mHttpClient);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void executeRequestRevalidatesWithETag() throws Exception {
+        mEndPoint.enqueueConfigurationSuccess("\"v1\"", "max-age=60");
+        ProviderConfiguration configuration = mRequest.executeRequest(mHttpClient);
+        assertEquals("\"v1\"", configuration.getETag());
+        assertNull(mEndPoint.takeRequest().getHeader("If-None-Match"));
+
+        mEndPoint.enqueueConfigurationNotModified("max-age=120");
+        ConfigurationRequest revalidation = HttpRequestBuilder.newConfigurationRequest()
+                .config(TestValues.getConfigWithUrl(mEndPoint.getUrl()))
+                .providerConfiguration(configuration)
+                .createRequest();
+        ProviderConfiguration revalidated = revalidation.executeRequest(mHttpClient);
+        assertNotSame(configuration, revalidated);
+        assertEquals(configuration.issuer, revalidated.issuer);
+        assertEquals("\"v1\"", revalidated.getETag());
+        assertEquals("\"v1\"", mEndPoint.takeRequest().getHeader("If-None-Match"));
+
+        //the new max-age applies to the copy only, the cached instance may be in use
+        configuration.setFetchedAt(0);
+        revalidated.setFetchedAt(0);
+        assertFalse(configuration.isFresh(90_000, Long.MAX_VALUE));
+        assertTrue(revalidated.isFresh(90_000, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void maxAge() {
+        assertNull(ConfigurationRequest.maxAge(null));
+        assertNull(ConfigurationRequest.maxAge("public"));
+        assertEquals(Long.valueOf(86400000), ConfigurationRequest.maxAge("public, max-age=86400"));
+        assertEquals(Long.valueOf(0), ConfigurationRequest.maxAge("max-age=60, no-cache"));
+        assertEquals(Long.valueOf(0), ConfigurationRequest.maxAge("no-store"));
+        assertEquals(Long.valueOf(0), ConfigurationRequest.maxAge("max-age=invalid"));
+    }
+}
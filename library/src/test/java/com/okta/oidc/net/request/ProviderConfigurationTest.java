@@ -25,6 +25,8 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.util.concurrent.TimeUnit;
+
 import static com.okta.oidc.util.TestValues.AUTHORIZATION_ENDPOINT;
 import static com.okta.oidc.util.TestValues.CUSTOM_OAUTH2_URL;
 import static com.okta.oidc.util.TestValues.CUSTOM_URL;
@@ -37,7 +39,9 @@ import static com.okta.oidc.util.TestValues.TOKEN_ENDPOINT;
 import static com.okta.oidc.util.TestValues.USERINFO_ENDPOINT;
 import static com.okta.oidc.util.TestValues.getCustomConfiguration;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(RobolectricTestRunner.class)
 @Config(sdk = 27)
@@ -102,4 +106,32 @@ public class ProviderConfigurationTest {
         assertEquals(CUSTOM_URL + USERINFO_ENDPOINT, config.userinfo_endpoint);
         assertEquals(CUSTOM_URL + REGISTRATION_ENDPOINT, config.registration_endpoint);
     }
+
+    @Test
+    public void isFresh() {
+        long now = System.currentTimeMillis();
+        long ttl = TimeUnit.HOURS.toMillis(1);
+        assertFalse(mValidConfiguration.isFresh(now, ttl));
+
+        mValidConfiguration.setFetchedAt(now);
+        assertTrue(mValidConfiguration.isFresh(now + ttl - 1, ttl));
+        assertFalse(mValidConfiguration.isFresh(now + ttl, ttl));
+        assertFalse(mValidConfiguration.isFresh(now - 1, ttl));
+
+        mValidConfiguration.setCacheHeaders("\"v1\"", TimeUnit.MINUTES.toMillis(1));
+        assertFalse(mValidConfiguration.isFresh(now + TimeUnit.MINUTES.toMillis(1), ttl));
+        mValidConfiguration.setCacheHeaders("\"v1\"", TimeUnit.DAYS.toMillis(1));
+        assertFalse(mValidConfiguration.isFresh(now + ttl, ttl));
+    }
+
+    @Test
+    public void persistCacheMetadata() {
+        long now = System.currentTimeMillis();
+        mValidConfiguration.setFetchedAt(now);
+        mValidConfiguration.setCacheHeaders("\"v1\"", null);
+        ProviderConfiguration restored =
+                ProviderConfiguration.RESTORE.restore(mValidConfiguration.persist());
+        assertEquals("\"v1\"", restored.getETag());
+        assertTrue(restored.isFresh(now, TimeUnit.HOURS.toMillis(1)));
+    }
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.net.request;
+
+import android.net.Uri;
+
+import com.okta.oidc.net.ConnectionParameters;
+import com.okta.oidc.net.HttpClientImpl;
+import com.okta.oidc.net.OktaHttpClient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import javax.net.ssl.SSLContext;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
+import okio.Buffer;
+import okio.Okio;
+
+import static java.net.HttpURLConnection.HTTP_OK;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+// The factory is only used by HttpClientImpl up to Lollipop.
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21)
+public class TLSSocketFactoryTest {
+    private static final int CALLS = 3;
+
+    private MockWebServer mServer;
+    private SSLContext mClientContext;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new MockWebServer();
+        HeldCertificate certificate = new HeldCertificate.Builder()
+                .addSubjectAlternativeName(mServer.getHostName())
+                .build();
+        HandshakeCertificates serverCertificates = new HandshakeCertificates.Builder()
+                .heldCertificate(certificate)
+                .build();
+        HandshakeCertificates clientCertificates = new HandshakeCertificates.Builder()
+                .addTrustedCertificate(certificate.certificate())
+                .build();
+        mServer.useHttps(serverCertificates.sslSocketFactory(), false);
+        mClientContext = clientCertificates.sslContext();
+        TLSSocketFactory.setInstance(new TLSSocketFactory(mClientContext));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TLSSocketFactory.setInstance(null);
+        mServer.shutdown();
+    }
+
+    @Test
+    public void getInstanceReturnsSharedFactory() throws Exception {
+        TLSSocketFactory.setInstance(null);
+        assertSame(TLSSocketFactory.getInstance(), TLSSocketFactory.getInstance());
+    }
+
+    @Test
+    public void sequentialConnectionsResumeTlsSession() throws Exception {
+        for (int i = 0; i < CALLS; i++) {
+            // Close every connection so each call needs a new TLS handshake.
+            mServer.enqueue(new MockResponse().setBody("{}").addHeader("Connection", "close"));
+        }
+        HttpClientImpl client = new HttpClientImpl();
+        call(client, "/token", new ConnectionParameters.ParameterBuilder()
+                .setRequestMethod(ConnectionParameters.RequestMethod.POST)
+                .setPostParameter("grant_type", "authorization_code")
+                .setPostParameter("code", "code")
+                .create());
+        call(client, "/token", new ConnectionParameters.ParameterBuilder()
+                .setRequestMethod(ConnectionParameters.RequestMethod.POST)
+                .setPostParameter("grant_type", "refresh_token")
+                .setPostParameter("refresh_token", "refresh_token")
+                .create());
+        call(client, "/userinfo", new ConnectionParameters.ParameterBuilder()
+                .setRequestMethod(ConnectionParameters.RequestMethod.GET)
+                .setRequestProperty("Authorization", "Bearer access_token")
+                .create());
+
+        for (int i = 0; i < CALLS; i++) {
+            assertEquals(0, mServer.takeRequest().getSequenceNumber());
+        }
+        // A full handshake would have added a new session for every connection.
+        assertEquals(1, Collections.list(mClientContext.getClientSessionContext().getIds())
+                .size());
+    }
+
+    private void call(HttpClientImpl client, String path, ConnectionParameters parameters)
+            throws Exception {
+        OktaHttpClient.Exchange exchange =
+                client.execute(Uri.parse(mServer.url(path).toString()), parameters);
+        assertEquals(HTTP_OK, exchange.getResponseCode());
+        Buffer buffer = new Buffer();
+        buffer.writeAll(Okio.source(exchange.getContent()));
+        assertEquals("{}", buffer.readUtf8());
+        exchange.close();
+    }
+}
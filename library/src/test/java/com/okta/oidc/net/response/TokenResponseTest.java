@@ -34,6 +34,7 @@ import static com.okta.oidc.util.TestValues.REFRESH_TOKEN;
 import static com.okta.oidc.util.TestValues.SCOPES;
 import static com.okta.oidc.util.TestValues.TYPE_BEARER;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(RobolectricTestRunner.class)
 @Config(sdk = 27)
@@ -76,6 +77,14 @@ public class TokenResponseTest {
         assertEquals(mToken.getIdToken(), ID_TOKEN);
     }
 
+    @Test
+    public void getExpiresAt() {
+        mToken.setCreationTime(System.currentTimeMillis());
+        long expiresAt = mToken.getExpiresAt();
+        assertTrue(expiresAt > System.currentTimeMillis());
+        assertEquals(expiresAt, mToken.getExpiresAt());
+    }
+
     @Test
     public void getKey() {
         assertEquals(mToken.getKey(), RESTORE.getKey());
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class LogFileStorageTest {
+    private static final int NO_COMPACTION = Integer.MAX_VALUE;
+    private static final int COMPACTION_THRESHOLD = 1024;
+    private static final int WRITES = 100;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = new File(mFolder.getRoot(), "storage.log");
+    }
+
+    @After
+    public void tearDown() {
+        new LogFileStorage(mFile, NO_COMPACTION).close();
+    }
+
+    @Test
+    public void saveGetAndDelete() {
+        LogFileStorage storage = new LogFileStorage(mFile, NO_COMPACTION);
+        assertNull(storage.get("key"));
+        storage.save("key", "value");
+        assertEquals("value", storage.get("key"));
+        storage.save("key", "newValue");
+        assertEquals("newValue", storage.get("key"));
+        storage.delete("key");
+        assertNull(storage.get("key"));
+    }
+
+    @Test
+    public void valuesSurviveReopen() {
+        LogFileStorage storage = new LogFileStorage(mFile, NO_COMPACTION);
+        storage.save("first", "1");
+        storage.save("second", "2");
+        storage.save("first", "3");
+        storage.delete("second");
+
+        LogFileStorage reopened = reopen(storage, NO_COMPACTION);
+        assertEquals("3", reopened.get("first"));
+        assertNull(reopened.get("second"));
+    }
+
+    @Test
+    public void updateAppliesDeletesAndSaves() {
+        LogFileStorage storage = new LogFileStorage(mFile, NO_COMPACTION);
+        storage.save("old", "value");
+        Map<String, String> values = new HashMap<>();
+        values.put("first", "1");
+        values.put("second", "2");
+        storage.update(values, Arrays.asList("old"));
+
+        LogFileStorage reopened = reopen(storage, NO_COMPACTION);
+        assertNull(reopened.get("old"));
+        assertEquals("1", reopened.get("first"));
+        assertEquals("2", reopened.get("second"));
+    }
+
+    @Test
+    public void partiallyWrittenRecordIsDiscarded() throws IOException {
+        LogFileStorage storage = new LogFileStorage(mFile, NO_COMPACTION);
+        storage.save("key", "value");
+        long committed = mFile.length();
+        storage.save("key", "newValue");
+        truncate(mFile.length() - 1);
+
+        LogFileStorage reopened = reopen(storage, NO_COMPACTION);
+        assertEquals("value", reopened.get("key"));
+        assertEquals(committed, mFile.length());
+
+        reopened.save("other", "value");
+        LogFileStorage again = reopen(reopened, NO_COMPACTION);
+        assertEquals("value", again.get("key"));
+        assertEquals("value", again.get("other"));
+    }
+
+    @Test
+    public void partiallyWrittenUpdateIsDiscardedAsAWhole() throws IOException {
+        LogFileStorage storage = new LogFileStorage(mFile, NO_COMPACTION);
+        storage.save("first", "1");
+        long committed = mFile.length();
+        Map<String, String> values = new HashMap<>();
+        values.put("first", "updated");
+        values.put("second", "2");
+        storage.update(values, Arrays.asList("third"));
+        truncate(committed + (mFile.length() - committed) / 2);
+
+        LogFileStorage reopened = reopen(storage, NO_COMPACTION);
+        assertEquals("1", reopened.get("first"));
+        assertNull(reopened.get("second"));
+    }
+
+    @Test
+    public void corruptedRecordAndFollowingRecordsAreDiscarded() throws IOException {
+        LogFileStorage storage = new LogFileStorage(mFile, NO_COMPACTION);
+        storage.save("key", "value");
+        long corrupted = mFile.length();
+        storage.save("key", "newValue");
+        storage.save("other", "value");
+        flipByte(corrupted + 10);
+
+        LogFileStorage reopened = reopen(storage, NO_COMPACTION);
+        assertEquals("value", reopened.get("key"));
+        assertNull(reopened.get("other"));
+        assertEquals(corrupted, mFile.length());
+    }
+
+    @Test
+    public void unknownFileIsReplaced() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+            file.write("not a log".getBytes("UTF-8"));
+        }
+        LogFileStorage storage = new LogFileStorage(mFile, NO_COMPACTION);
+        assertNull(storage.get("key"));
+        storage.save("key", "value");
+        assertEquals("value", reopen(storage, NO_COMPACTION).get("key"));
+    }
+
+    @Test
+    public void compactionKeepsLatestValues() {
+        LogFileStorage storage = new LogFileStorage(mFile, COMPACTION_THRESHOLD);
+        storage.save("kept", "value");
+        for (int i = 0; i < WRITES; i++) {
+            storage.save("key", "value" + i);
+        }
+        storage.save("deleted", "value");
+        storage.delete("deleted");
+        assertTrue(storage.getFileSize() < COMPACTION_THRESHOLD);
+        assertEquals(storage.getFileSize(), mFile.length());
+
+        LogFileStorage reopened = reopen(storage, COMPACTION_THRESHOLD);
+        assertEquals("value", reopened.get("kept"));
+        assertEquals("value" + (WRITES - 1), reopened.get("key"));
+        assertNull(reopened.get("deleted"));
+    }
+
+    @Test
+    public void interruptedCompactionIsIgnored() throws IOException {
+        LogFileStorage storage = new LogFileStorage(mFile, NO_COMPACTION);
+        storage.save("key", "value");
+        File compacted = new File(mFile.getPath() + ".compact");
+        try (RandomAccessFile file = new RandomAccessFile(compacted, "rw")) {
+            file.write(new byte[]{1, 2, 3});
+        }
+
+        LogFileStorage reopened = reopen(storage, NO_COMPACTION);
+        assertEquals("value", reopened.get("key"));
+        assertFalse(compacted.exists());
+    }
+
+    @Test
+    public void storagesOfTheSameFileShareValues() {
+        LogFileStorage first = new LogFileStorage(mFile, NO_COMPACTION);
+        LogFileStorage second = new LogFileStorage(
+                new File(mFolder.getRoot(), "./storage.log"), NO_COMPACTION);
+        first.save("first", "1");
+        second.save("second", "2");
+        first.save("first", "3");
+        assertEquals("3", second.get("first"));
+        assertEquals("2", first.get("second"));
+
+        LogFileStorage reopened = reopen(first, NO_COMPACTION);
+        assertEquals("3", reopened.get("first"));
+        assertEquals("2", reopened.get("second"));
+    }
+
+    private LogFileStorage reopen(LogFileStorage storage, int compactionThreshold) {
+        storage.close();
+        return new LogFileStorage(mFile, compactionThreshold);
+    }
+
+    private void truncate(long length) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+            file.setLength(length);
+        }
+    }
+
+    private void flipByte(long position) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0xFF);
+        }
+    }
+}
@@ -17,8 +17,11 @@ package com.okta.oidc.storage;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.test.platform.app.InstrumentationRegistry;
 
+import com.okta.oidc.RequestExecutors;
+import com.okta.oidc.net.request.ProviderConfiguration;
 import com.okta.oidc.util.EncryptedPersistableMock;
 import com.okta.oidc.util.EncryptionManagerStub;
 import com.okta.oidc.util.OktaStorageMock;
@@ -32,18 +35,39 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
 import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
+import java.security.ProviderException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 @RunWith(RobolectricTestRunner.class)
 @Config(sdk = 27)
 public class OktaRepositoryTest {
     private static final String PREF_NAME_HARDWARE = "HARDWARE_REQUIREMENT";
     private static final String PREF_NAME_SOFTWARE = "NO_HARDWARE_REQUIREMENT";
+    private static final int WAIT_SECONDS = 10;
+    private static final int THREADS = 4;
+    private static final int ITERATIONS = 50;
+    private static final String OTHER_KEY = "OtherKey";
 
     //encryption manager that has hardware support
     private EncryptionManagerStub mHardwareEncryption;
@@ -172,4 +196,429 @@ public class OktaRepositoryTest {
         assertNotEquals(valueFromCache, persistable.getData() +
                 EncryptionManagerStub.STUPID_SALT);
     }
+
+    @Test
+    public void getReturnsRestoredInstanceUntilChanged()
+            throws OktaRepository.EncryptionException {
+        OktaRepository repository = new OktaRepository(mOktaStorageSoftware, mContext,
+                mSoftwareEncryption, false, true);
+        repository.save(TestValues.getNotEncryptedPersistable("first"));
+        PersistableMock first = repository.get(PersistableMock.RESTORE);
+        assertSame(first, repository.get(PersistableMock.RESTORE));
+
+        repository.save(TestValues.getNotEncryptedPersistable("second"));
+        PersistableMock second = repository.get(PersistableMock.RESTORE);
+        assertNotSame(first, second);
+        assertEquals("second", second.getData());
+
+        repository.delete(second);
+        assertNull(repository.get(PersistableMock.RESTORE));
+    }
+
+    @Test
+    public void getDoesNotShareRestoredInstanceBetweenTypes()
+            throws OktaRepository.EncryptionException {
+        OktaRepository repository = new OktaRepository(mOktaStorageSoftware, mContext,
+                mSoftwareEncryption, false, true);
+        repository.save(TestValues.getNotEncryptedPersistable());
+        assertNotNull(repository.get(PersistableMock.RESTORE));
+
+        EncryptedPersistableMock restored = repository.get(EncryptedPersistableMock.RESTORE);
+        assertEquals(TestValues.getNotEncryptedPersistable().getData(), restored.getData());
+    }
+
+    @Test
+    public void getRestoresMutableTypesEveryTime() throws OktaRepository.EncryptionException {
+        OktaRepository repository = new OktaRepository(mOktaStorageSoftware, mContext,
+                mSoftwareEncryption, false, true);
+        repository.save(TestValues.getProviderConfiguration(TestValues.CUSTOM_URL));
+        ProviderConfiguration first = repository.get(ProviderConfiguration.RESTORE);
+        first.jwks_uri = null;
+        ProviderConfiguration second = repository.get(ProviderConfiguration.RESTORE);
+        assertNotSame(first, second);
+        assertNotNull(second.jwks_uri);
+    }
+
+    @Test
+    public void getWithoutCacheModeRestoresEveryTime() throws OktaRepository.EncryptionException {
+        OktaRepository repository = new OktaRepository(mOktaStorageSoftware, mContext,
+                mSoftwareEncryption, false, false);
+        repository.save(TestValues.getNotEncryptedPersistable());
+        assertNotSame(repository.get(PersistableMock.RESTORE),
+                repository.get(PersistableMock.RESTORE));
+    }
+
+    @Test
+    public void getFromCacheDoesNotWaitForEncryption() throws Exception {
+        BlockingEncryptionManager encryption = new BlockingEncryptionManager();
+        OktaRepository repository = new OktaRepository(mOktaStorageSoftware, mContext,
+                encryption, false, true);
+        repository.save(TestValues.getNotEncryptedPersistable("old"));
+
+        encryption.block();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> save = executor.submit(() -> {
+            repository.save(TestValues.getNotEncryptedPersistable("new"));
+            return null;
+        });
+        assertTrue(encryption.awaitEncrypting());
+
+        Future<PersistableMock> get = executor.submit(() ->
+                repository.get(PersistableMock.RESTORE));
+        assertEquals("old", get.get(WAIT_SECONDS, SECONDS).getData());
+
+        encryption.release();
+        save.get(WAIT_SECONDS, SECONDS);
+        executor.shutdown();
+        assertEquals("new", repository.get(PersistableMock.RESTORE).getData());
+    }
+
+    @Test
+    public void writeBehindSaveDoesNotWaitForEncryption() throws Exception {
+        BlockingEncryptionManager encryption = new BlockingEncryptionManager();
+        OktaRepository repository = new OktaRepository(mOktaStorageSoftware, mContext,
+                encryption, false, false, true);
+        encryption.block();
+        repository.save(TestValues.getNotEncryptedPersistable("new"));
+        assertTrue(encryption.awaitEncrypting());
+        assertTrue(repository.contains(PersistableMock.RESTORE));
+        assertEquals("new", repository.get(PersistableMock.RESTORE).getData());
+
+        encryption.release();
+        repository.flush();
+        String hashedKey = encryption.getHashed(PersistableMock.RESTORE.getKey());
+        assertEquals(encryption.encrypt("new"), mOktaStorageSoftware.get(hashedKey));
+        assertTrue(repository.pendingWrites.isEmpty());
+    }
+
+    @Test
+    public void writeBehindCoalescesWritesOfSameKey() throws Exception {
+        BlockingEncryptionManager encryption = new BlockingEncryptionManager();
+        OktaRepository repository = new OktaRepository(mOktaStorageSoftware, mContext,
+                encryption, false, true, true);
+        encryption.block();
+        repository.save(TestValues.getNotEncryptedPersistable("first"));
+        assertTrue(encryption.awaitEncrypting());
+        repository.save(TestValues.getNotEncryptedPersistable("second"));
+        repository.save(TestValues.getNotEncryptedPersistable("third"));
+        assertEquals("third", repository.get(PersistableMock.RESTORE).getData());
+
+        encryption.release();
+        repository.flush();
+        assertEquals(2, encryption.mEncryptCount);
+        String hashedKey = encryption.getHashed(PersistableMock.RESTORE.getKey());
+        assertEquals(encryption.encrypt("third"), mOktaStorageSoftware.get(hashedKey));
+    }
+
+    @Test
+    public void writeBehindDeleteCancelsPendingWrite() throws Exception {
+        BlockingEncryptionManager encryption = new BlockingEncryptionManager();
+        OktaRepository repository = new OktaRepository(mOktaStorageSoftware, mContext,
+                encryption, false, true, true);
+        encryption.block();
+        repository.save(TestValues.getNotEncryptedPersistable());
+        assertTrue(encryption.awaitEncrypting());
+        repository.delete(PersistableMock.RESTORE.getKey());
+        assertNull(repository.get(PersistableMock.RESTORE));
+
+        encryption.release();
+        repository.flush();
+        assertNull(mOktaStorageSoftware.get(
+                encryption.getHashed(PersistableMock.RESTORE.getKey())));
+        assertNull(repository.get(PersistableMock.RESTORE));
+    }
+
+    @Test
+    public void writeBehindFailureIsReportedByFlush() throws Exception {
+        EncryptionManagerStub failing = new EncryptionManagerStub(false) {
+            @Override
+            public String encrypt(String value) throws GeneralSecurityException {
+                throw new GeneralSecurityException("failed");
+            }
+        };
+        OktaRepository repository = new OktaRepository(mOktaStorageSoftware, mContext,
+                failing, false, true, true);
+        repository.save(TestValues.getNotEncryptedPersistable());
+        try {
+            repository.flush();
+            fail("Expected EncryptionException");
+        } catch (OktaRepository.EncryptionException e) {
+            assertEquals(OktaRepository.EncryptionException.INVALID_KEYS_ERROR, e.getType());
+        }
+        assertNull(repository.get(PersistableMock.RESTORE));
+        repository.flush();
+    }
+
+    @Test
+    public void writeBehindProviderFailureDoesNotStopLaterWrites() throws Exception {
+        AtomicInteger failures = new AtomicInteger(2);
+        EncryptionManagerStub failing = new EncryptionManagerStub(false) {
+            @Override
+            public String encrypt(String value) throws GeneralSecurityException {
+                if (failures.getAndDecrement() > 0) {
+                    throw new ProviderException("failed");
+                }
+                return super.encrypt(value);
+            }
+        };
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        OktaRepository repository = new OktaRepository(mOktaStorageSoftware, mContext,
+                failing, false, true, true, new RequestExecutors(null, worker, null));
+        repository.save(TestValues.getNotEncryptedPersistable("first"));
+        String hashedKey = failing.getHashed(PersistableMock.RESTORE.getKey());
+        long deadline = System.currentTimeMillis() + SECONDS.toMillis(WAIT_SECONDS);
+        while (!repository.pendingWrites.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(repository.pendingWrites.isEmpty());
+        assertNull(mOktaStorageSoftware.get(hashedKey));
+
+        repository.save(TestValues.getNotEncryptedPersistable("second"));
+        String expected = failing.encrypt("second");
+        while (!expected.equals(mOktaStorageSoftware.get(hashedKey))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        worker.shutdown();
+        assertEquals(expected, mOktaStorageSoftware.get(hashedKey));
+        try {
+            repository.flush();
+            fail("Expected EncryptionException");
+        } catch (OktaRepository.EncryptionException e) {
+            assertEquals(OktaRepository.EncryptionException.ENCRYPT_ERROR, e.getType());
+        }
+    }
+
+    @Test
+    public void writeBehindRunsOnProvidedWorkerExecutor() throws Exception {
+        ExecutorService worker = Executors.newFixedThreadPool(THREADS);
+        AtomicInteger executed = new AtomicInteger();
+        Executor counting = task -> {
+            executed.incrementAndGet();
+            worker.execute(task);
+        };
+        OktaRepository repository = new OktaRepository(mOktaStorageSoftware, mContext,
+                mSoftwareEncryption, false, true, true,
+                new RequestExecutors(null, counting, null));
+        repository.save(TestValues.getNotEncryptedPersistable("first"));
+        repository.save(TestValues.getNotEncryptedPersistable("second"));
+        repository.flush();
+        worker.shutdown();
+        assertTrue(executed.get() > 0);
+        String hashedKey = mSoftwareEncryption.getHashed(PersistableMock.RESTORE.getKey());
+        assertEquals(mSoftwareEncryption.encrypt("second"), mOktaStorageSoftware.get(hashedKey));
+    }
+
+    @Test
+    public void flushOnThreadOfWorkerExecutorDoesNotWait() throws Exception {
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        OktaRepository repository = new OktaRepository(mOktaStorageSoftware, mContext,
+                mSoftwareEncryption, false, true, true,
+                new RequestExecutors(null, worker, null));
+        Future<?> flushed = worker.submit(() -> {
+            repository.save(TestValues.getNotEncryptedPersistable("new"));
+            repository.flush();
+            return null;
+        });
+        flushed.get(WAIT_SECONDS, SECONDS);
+        worker.shutdown();
+        String hashedKey = mSoftwareEncryption.getHashed(PersistableMock.RESTORE.getKey());
+        assertEquals(mSoftwareEncryption.encrypt("new"), mOktaStorageSoftware.get(hashedKey));
+    }
+
+    @Test
+    public void concurrentSaveAndGetKeepCacheAndStorageInSync() throws Exception {
+        OktaRepository repository = new OktaRepository(mOktaStorageSoftware, mContext,
+                mSoftwareEncryption, false, true);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            final String prefix = thread + "-";
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < ITERATIONS; i++) {
+                    repository.save(TestValues.getNotEncryptedPersistable(prefix + i));
+                    assertNotNull(repository.get(PersistableMock.RESTORE));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(WAIT_SECONDS, SECONDS);
+        }
+        executor.shutdown();
+
+        String hashedKey = mSoftwareEncryption.getHashed(PersistableMock.RESTORE.getKey());
+        String stored = mSoftwareEncryption.decrypt(mOktaStorageSoftware.getSharedPreferences()
+                .getString(hashedKey, null));
+        assertEquals(stored, repository.cacheStorage.get(hashedKey));
+    }
+
+    @Test
+    public void hashedKeysAreComputedOncePerEncryptionManager()
+            throws OktaRepository.EncryptionException {
+        CountingEncryptionManager first = new CountingEncryptionManager();
+        OktaRepository repository = new OktaRepository(mOktaStorageSoftware, mContext,
+                first, false, false);
+        repository.save(TestValues.getNotEncryptedPersistable());
+        assertTrue(repository.contains(PersistableMock.RESTORE));
+        assertNotNull(repository.get(PersistableMock.RESTORE));
+        assertEquals(1, first.mHashCount);
+
+        CountingEncryptionManager second = new CountingEncryptionManager();
+        repository.setEncryptionManager(second);
+        repository.contains(PersistableMock.RESTORE);
+        repository.contains(PersistableMock.RESTORE);
+        assertEquals(1, first.mHashCount);
+        assertEquals(1, second.mHashCount);
+    }
+
+    @Test
+    public void transactionWritesWithOneStorageUpdate()
+            throws OktaRepository.EncryptionException {
+        CountingStorage storage = new CountingStorage(mContext);
+        OktaRepository repository = new OktaRepository(storage, mContext,
+                mSoftwareEncryption, false, true);
+        repository.save(TestValues.getNotEncryptedPersistable("old"));
+
+        repository.newTransaction()
+                .delete(PersistableMock.RESTORE.getKey())
+                .delete(OTHER_KEY)
+                .save(TestValues.getNotEncryptedPersistable("new"))
+                .commit();
+        assertEquals(1, storage.mSaveCount);
+        assertEquals(1, storage.mUpdateCount);
+        assertEquals(0, storage.mDeleteCount);
+        assertEquals("new", repository.get(PersistableMock.RESTORE).getData());
+    }
+
+    @Test
+    public void transactionMovesValuesToNewEncryptionManager() throws Exception {
+        OktaRepository repository = new OktaRepository(mOktaStorageSoftware, mContext,
+                mSoftwareEncryption, false, false);
+        PersistableMock persistable = TestValues.getNotEncryptedPersistable();
+        repository.save(persistable);
+
+        EncryptionManagerStub manager = new EncryptionManagerStub(false) {
+            @Override
+            public String encrypt(String value) throws GeneralSecurityException {
+                return super.encrypt(value) + "new";
+            }
+
+            @Override
+            public String decrypt(String value) throws GeneralSecurityException {
+                return super.decrypt(value.substring(0, value.length() - "new".length()));
+            }
+        };
+        PersistableMock restored = repository.get(PersistableMock.RESTORE);
+        repository.newTransaction()
+                .delete(PersistableMock.RESTORE.getKey())
+                .setEncryptionManager(manager)
+                .save(restored)
+                .commit();
+
+        String hashedKey = manager.getHashed(PersistableMock.RESTORE.getKey());
+        assertEquals(manager.encrypt(persistable.persist()),
+                mOktaStorageSoftware.get(hashedKey));
+        assertEquals(persistable.getData(), repository.get(PersistableMock.RESTORE).getData());
+    }
+
+    @Test
+    public void failedTransactionKeepsStorageAndEncryptionManager()
+            throws OktaRepository.EncryptionException {
+        OktaRepository repository = new OktaRepository(mOktaStorageSoftware, mContext,
+                mSoftwareEncryption, false, false);
+        PersistableMock persistable = TestValues.getNotEncryptedPersistable();
+        repository.save(persistable);
+
+        EncryptionManagerStub failing = new EncryptionManagerStub(false) {
+            @Override
+            public String encrypt(String value) throws GeneralSecurityException {
+                throw new GeneralSecurityException("failed");
+            }
+        };
+        try {
+            repository.newTransaction()
+                    .delete(PersistableMock.RESTORE.getKey())
+                    .setEncryptionManager(failing)
+                    .save(persistable)
+                    .commit();
+            fail("Expected EncryptionException");
+        } catch (OktaRepository.EncryptionException e) {
+            assertEquals(OktaRepository.EncryptionException.INVALID_KEYS_ERROR, e.getType());
+        }
+        assertEquals(persistable.getData(), repository.get(PersistableMock.RESTORE).getData());
+    }
+
+    private static class CountingStorage extends OktaStorageMock {
+        private int mSaveCount;
+        private int mDeleteCount;
+        private int mUpdateCount;
+
+        CountingStorage(Context context) {
+            super(context, PREF_NAME_SOFTWARE, false);
+        }
+
+        @Override
+        public void save(@NonNull String key, @NonNull String value) {
+            mSaveCount++;
+            super.save(key, value);
+        }
+
+        @Override
+        public void delete(@NonNull String key) {
+            mDeleteCount++;
+            super.delete(key);
+        }
+
+        @Override
+        public void update(@NonNull Map<String, String> values,
+                           @NonNull Collection<String> deletedKeys) {
+            mUpdateCount++;
+            super.update(values, deletedKeys);
+        }
+    }
+
+    private static class CountingEncryptionManager extends EncryptionManagerStub {
+        private int mHashCount;
+
+        @Override
+        public String getHashed(String value) throws NoSuchAlgorithmException,
+                UnsupportedEncodingException {
+            mHashCount++;
+            return super.getHashed(value);
+        }
+    }
+
+    private static class BlockingEncryptionManager extends EncryptionManagerStub {
+        private final CountDownLatch mEncrypting = new CountDownLatch(1);
+        private final CountDownLatch mRelease = new CountDownLatch(1);
+        private volatile boolean mBlock;
+        private volatile int mEncryptCount;
+
+        void block() {
+            mBlock = true;
+        }
+
+        boolean awaitEncrypting() throws InterruptedException {
+            return mEncrypting.await(WAIT_SECONDS, SECONDS);
+        }
+
+        void release() {
+            mRelease.countDown();
+        }
+
+        @Override
+        public String encrypt(String value) throws GeneralSecurityException {
+            mEncryptCount++;
+            if (mBlock) {
+                mEncrypting.countDown();
+                try {
+                    mRelease.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.encrypt(value);
+        }
+    }
 }
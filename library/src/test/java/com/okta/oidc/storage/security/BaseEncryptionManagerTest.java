@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.storage.security;
+
+import android.util.Base64;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class BaseEncryptionManagerTest {
+    private static final String VALUE = "{\"access_token\":\"eyJhbGciOiJSUzI1NiJ9.\u00fcn\u00efc\u00f6d\u00e9\","
+            + "\"refresh_token\":\"refresh\",\"expires_in\":\"3600\"}";
+
+    private SoftwareEncryptionManager mManager;
+
+    @Before
+    public void setUp() {
+        mManager = new SoftwareEncryptionManager();
+    }
+
+    @After
+    public void tearDown() {
+        mManager.removeKeys();
+    }
+
+    @Test
+    public void encryptWritesEnvelope() throws GeneralSecurityException {
+        String encrypted = mManager.encrypt(VALUE);
+        assertTrue(encrypted.startsWith("v2:"));
+        assertNotEquals(encrypted, mManager.encrypt(VALUE));
+        assertEquals(VALUE, mManager.decrypt(encrypted));
+    }
+
+    @Test
+    public void longValueRoundTrip() throws GeneralSecurityException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append(VALUE);
+        }
+        String value = builder.toString();
+        assertEquals(value, mManager.decrypt(mManager.encrypt(value)));
+    }
+
+    @Test
+    public void decryptLegacyChunkedValue() throws GeneralSecurityException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            builder.append(VALUE);
+        }
+        String value = builder.toString();
+        String legacy = mManager.encryptLegacy(value);
+        assertTrue(legacy.contains(","));
+        assertEquals(value, mManager.decrypt(legacy));
+    }
+
+    @Test
+    public void tamperedEnvelopeIsRejected() throws GeneralSecurityException {
+        String encrypted = mManager.encrypt(VALUE);
+        String[] parts = encrypted.substring("v2:".length()).split(":");
+        byte[] payload = Base64.decode(parts[2], Base64.NO_WRAP);
+        payload[0] ^= 1;
+        String tampered = "v2:" + parts[0] + ":" + parts[1] + ":"
+                + Base64.encodeToString(payload, Base64.NO_WRAP);
+        try {
+            mManager.decrypt(tampered);
+            fail("Expected tampered value to be rejected");
+        } catch (GeneralSecurityException e) {
+            //expected
+        }
+        assertEquals(VALUE, mManager.decrypt(encrypted));
+    }
+
+    @Test
+    public void malformedEnvelopeIsRejected() {
+        try {
+            mManager.decrypt("v2:abc");
+            fail("Expected malformed value to be rejected");
+        } catch (GeneralSecurityException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void repeatedOperationsReuseInitializedCiphers() throws GeneralSecurityException {
+        assertEquals(VALUE, mManager.decrypt(mManager.encrypt(VALUE)));
+        int keyReads = SoftwareKeyStoreProvider.keyReads();
+        int createdCiphers = mManager.mCreatedCiphers;
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(VALUE, mManager.decrypt(mManager.encrypt(VALUE)));
+        }
+        assertEquals(keyReads, SoftwareKeyStoreProvider.keyReads());
+        assertEquals(createdCiphers, mManager.mCreatedCiphers);
+
+        mManager.recreateCipher();
+        assertEquals(VALUE, mManager.decrypt(mManager.encrypt(VALUE)));
+        assertTrue(SoftwareKeyStoreProvider.keyReads() > keyReads);
+        assertTrue(mManager.mCreatedCiphers > createdCiphers);
+    }
+
+    @Test
+    public void roundTripAfterRecreateCipher() throws GeneralSecurityException {
+        String before = mManager.encrypt(VALUE);
+        assertEquals(VALUE, mManager.decrypt(before));
+        Cipher cipher = mManager.getCipher();
+        mManager.recreateCipher();
+        assertNotEquals(cipher, mManager.getCipher());
+
+        assertEquals(VALUE, mManager.decrypt(before));
+        assertEquals(VALUE, mManager.decrypt(mManager.encrypt(VALUE)));
+    }
+
+    @Test
+    public void roundTripAfterSetCipher() throws GeneralSecurityException {
+        String before = mManager.encrypt(VALUE);
+        assertEquals(VALUE, mManager.decrypt(before));
+        mManager.setCipher(mManager.createCipher(mManager.mTransformationString));
+
+        assertEquals(VALUE, mManager.decrypt(before));
+    }
+
+    @Test
+    public void recreatedKeysInvalidateCachedCiphers() throws GeneralSecurityException {
+        String before = mManager.encrypt(VALUE);
+        assertEquals(VALUE, mManager.decrypt(before));
+        mManager.removeKeys();
+        mManager.recreateKeys(null);
+
+        String after = mManager.encrypt(VALUE);
+        assertEquals(VALUE, mManager.decrypt(after));
+        try {
+            mManager.decrypt(before);
+            fail("Expected value of the removed keys to be unreadable");
+        } catch (GeneralSecurityException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void emptyValueIsNotEncrypted() throws GeneralSecurityException {
+        assertEquals("", mManager.encrypt(""));
+        assertEquals("", mManager.decrypt(""));
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.storage.security;
+
+import android.content.Context;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.okta.oidc.util.EncryptionManagerStub;
+import com.okta.oidc.util.OktaStorageMock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class PrewarmEncryptionManagerTest {
+    private static final String KEY = "TokenResponse";
+    private static final String PREF_NAME = "PrewarmEncryptionManagerTest";
+    private static final int WAIT_SECONDS = 10;
+    private static final int BLOCKED_MILLIS = 200;
+
+    private OktaStorageMock mStorage;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mStorage = new OktaStorageMock(context, PREF_NAME, false);
+    }
+
+    @Test
+    public void warmUpDecryptsStoredValue() throws Exception {
+        RecordingEncryptionManager delegate = new RecordingEncryptionManager();
+        mStorage.save(delegate.getHashed(KEY), delegate.encrypt("tokens"));
+        delegate.mDecrypted.clear();
+
+        PrewarmEncryptionManager manager =
+                new PrewarmEncryptionManager(() -> delegate, mStorage, KEY);
+        manager.isValidKeys();
+        assertEquals(1, delegate.mDecrypted.size());
+        assertEquals("tokens", delegate.mDecrypted.get(0));
+    }
+
+    @Test
+    public void decryptOfStoredValueIsPassedToManagerAfterWarmUp() throws Exception {
+        RecordingEncryptionManager delegate = new RecordingEncryptionManager();
+        String stored = delegate.encrypt("tokens");
+        mStorage.save(delegate.getHashed(KEY), stored);
+        delegate.mDecrypted.clear();
+
+        PrewarmEncryptionManager manager =
+                new PrewarmEncryptionManager(() -> delegate, mStorage, KEY);
+        assertEquals("tokens", manager.decrypt(stored));
+        assertEquals(2, delegate.mDecrypted.size());
+    }
+
+    @Test
+    public void warmUpWithoutStoredValueDecryptsTestValue() {
+        RecordingEncryptionManager delegate = new RecordingEncryptionManager();
+        PrewarmEncryptionManager manager =
+                new PrewarmEncryptionManager(() -> delegate, mStorage, KEY);
+        manager.isValidKeys();
+        assertEquals(1, delegate.mDecrypted.size());
+    }
+
+    @Test
+    public void callsWaitForWarmUpOnBackgroundThread() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Thread> factoryThread = new ArrayList<>();
+        PrewarmEncryptionManager manager = new PrewarmEncryptionManager(() -> {
+            factoryThread.add(Thread.currentThread());
+            release.await();
+            return new EncryptionManagerStub();
+        }, mStorage, KEY);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<String> hashed = executor.submit(() -> manager.getHashed(KEY));
+        try {
+            hashed.get(BLOCKED_MILLIS, MILLISECONDS);
+            fail("Expected call to wait for warm up");
+        } catch (TimeoutException e) {
+            assertFalse(hashed.isDone());
+        }
+        release.countDown();
+        assertEquals(new EncryptionManagerStub().getHashed(KEY),
+                hashed.get(WAIT_SECONDS, SECONDS));
+        assertNotSame(Thread.currentThread(), factoryThread.get(0));
+        executor.shutdown();
+    }
+
+    @Test
+    public void creationFailureIsRethrown() throws GeneralSecurityException {
+        IllegalStateException failure = new IllegalStateException("no keystore");
+        PrewarmEncryptionManager manager = new PrewarmEncryptionManager(() -> {
+            throw failure;
+        }, mStorage, KEY);
+        try {
+            manager.encrypt("value");
+            fail("Expected creation failure");
+        } catch (IllegalStateException e) {
+            assertEquals(failure, e);
+        }
+    }
+
+    private static class RecordingEncryptionManager extends EncryptionManagerStub {
+        private final List<String> mDecrypted = new ArrayList<>();
+
+        @Override
+        public String decrypt(String value) throws GeneralSecurityException {
+            String decrypted = super.decrypt(value);
+            mDecrypted.add(decrypted);
+            return decrypted;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.storage.security;
+
+import android.content.Context;
+import android.util.Base64;
+
+import androidx.annotation.Nullable;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyPairGenerator;
+import java.security.spec.MGF1ParameterSpec;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.OAEPParameterSpec;
+import javax.crypto.spec.PSource;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An encryption manager with the same ciphers as the API 23 implementation, backed by the
+ * {@link SoftwareKeyStoreProvider} instead of the AndroidKeyStore. The benchmarks compile
+ * this class from the library test sources.
+ */
+public class SoftwareEncryptionManager extends BaseEncryptionManager {
+    private static final String KEY_ALIAS = "_test_key_";
+    // Same chunk size as the chunked format written by earlier versions of the library.
+    private static final int LEGACY_CHUNK_SIZE = (int) ((2048 / 8 - 11) * 0.5);
+    private static final String LEGACY_CHUNK_SEPARATOR = ",";
+
+    int mCreatedCiphers;
+
+    public SoftwareEncryptionManager() {
+        super(SoftwareKeyStoreProvider.NAME, KEY_ALIAS);
+        this.mKeyStoreAlgorithm = "RSA";
+        this.mBlockMode = "ECB";
+        this.mEncryptionPadding = "OAEPPadding";
+        this.mTransformationString = mKeyStoreAlgorithm + "/" + mBlockMode
+                + "/OAEPWithSHA-256AndMGF1Padding";
+        SoftwareKeyStoreProvider.install();
+        prepare(null, true);
+    }
+
+    // The JVM provider uses SHA-1 for MGF1 by default, like the AndroidKeyStore. Other
+    // providers on the test classpath default to SHA-256.
+    @Override
+    protected Cipher createCipher(String transformation) throws GeneralSecurityException {
+        mCreatedCiphers++;
+        return Cipher.getInstance(transformation, "SunJCE");
+    }
+
+    @Override
+    boolean generateKeyPair(Context context, KeyPairGenerator generator, String keyAlias,
+                            int keySize, String encryptionPaddings, String blockMode,
+                            boolean isStrongBoxBacked, @Nullable byte[] seed) {
+        try {
+            generator.initialize(new SoftwareKeyStoreProvider.KeySpec(keyAlias, keySize));
+            return true;
+        } catch (InvalidAlgorithmParameterException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Encrypts the value in the chunked RSA format, which is still read for values saved by
+     * earlier versions of the library.
+     *
+     * @param value the value
+     * @return the encrypted value
+     * @throws GeneralSecurityException if encryption failed
+     */
+    public String encryptLegacy(String value) throws GeneralSecurityException {
+        Cipher cipher = createCipher(mTransformationString);
+        cipher.init(Cipher.ENCRYPT_MODE, mKeyStore.getCertificate(mKeyAlias).getPublicKey(),
+                new OAEPParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA1,
+                        PSource.PSpecified.DEFAULT));
+        StringBuilder builder = new StringBuilder();
+        for (int start = 0; start < value.length(); start += LEGACY_CHUNK_SIZE) {
+            String chunk = value.substring(start,
+                    Math.min(value.length(), start + LEGACY_CHUNK_SIZE));
+            if (builder.length() > 0) {
+                builder.append(LEGACY_CHUNK_SEPARATOR);
+            }
+            builder.append(Base64.encodeToString(cipher.doFinal(chunk.getBytes(UTF_8)),
+                    Base64.NO_WRAP));
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public boolean isHardwareBackedKeyStore() {
+        return false;
+    }
+
+    @Override
+    public boolean isUserAuthenticatedOnDevice() {
+        return true;
+    }
+
+    @Override
+    public boolean isValidKeys() {
+        return true;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.storage.security;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyPairGeneratorSpi;
+import java.security.KeyStoreSpi;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.security.cert.Certificate;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A software keystore standing in for the AndroidKeyStore provider. Key pairs are generated
+ * with the default RSA implementation of the JVM and kept in memory under the alias passed
+ * in a {@link KeySpec}, the same way the AndroidKeyStore stores the key pairs generated with
+ * a KeyGenParameterSpec. The benchmarks compile this class from the library test sources.
+ */
+final class SoftwareKeyStoreProvider extends Provider {
+    static final String NAME = "OktaTestKeyStore";
+    private static final String KEY_ALGORITHM = "RSA";
+
+    private static final Map<String, KeyPair> KEYS = new ConcurrentHashMap<>();
+    private static final AtomicInteger KEY_READS = new AtomicInteger();
+
+    private SoftwareKeyStoreProvider() {
+        super(NAME, 1.0, "Software keystore for tests and benchmarks");
+        putService(new Service(this, "KeyStore", NAME, SoftwareKeyStore.class.getName(),
+                null, null) {
+            @Override
+            public Object newInstance(Object constructorParameter) {
+                return new SoftwareKeyStore();
+            }
+        });
+        putService(new Service(this, "KeyPairGenerator", KEY_ALGORITHM,
+                SoftwareKeyPairGenerator.class.getName(), null, null) {
+            @Override
+            public Object newInstance(Object constructorParameter) {
+                return new SoftwareKeyPairGenerator();
+            }
+        });
+    }
+
+    static synchronized void install() {
+        if (Security.getProvider(NAME) == null) {
+            Security.addProvider(new SoftwareKeyStoreProvider());
+        }
+    }
+
+    /**
+     * Number of keys and certificates read from the keystore so far.
+     */
+    static int keyReads() {
+        return KEY_READS.get();
+    }
+
+    /**
+     * Parameters of a generated key pair.
+     */
+    static final class KeySpec implements AlgorithmParameterSpec {
+        private final String mAlias;
+        private final int mKeySize;
+
+        KeySpec(String alias, int keySize) {
+            mAlias = alias;
+            mKeySize = keySize;
+        }
+    }
+
+    private static final class SoftwareKeyPairGenerator extends KeyPairGeneratorSpi {
+        private KeySpec mSpec;
+
+        @Override
+        public void initialize(int keysize, SecureRandom random) {
+            throw new UnsupportedOperationException("Initialize with a KeySpec");
+        }
+
+        @Override
+        public void initialize(AlgorithmParameterSpec params, SecureRandom random)
+                throws InvalidAlgorithmParameterException {
+            if (!(params instanceof KeySpec)) {
+                throw new InvalidAlgorithmParameterException("Unsupported spec " + params);
+            }
+            mSpec = (KeySpec) params;
+        }
+
+        @Override
+        public KeyPair generateKeyPair() {
+            if (mSpec == null) {
+                throw new IllegalStateException("Not initialized");
+            }
+            try {
+                // Not this provider, it is installed after the JVM providers.
+                KeyPairGenerator generator = KeyPairGenerator.getInstance(KEY_ALGORITHM);
+                generator.initialize(mSpec.mKeySize);
+                KeyPair keyPair = generator.generateKeyPair();
+                KEYS.put(mSpec.mAlias, keyPair);
+                return keyPair;
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static final class SoftwareKeyStore extends KeyStoreSpi {
+        @Override
+        public Key engineGetKey(String alias, char[] password) {
+            KEY_READS.incrementAndGet();
+            KeyPair keyPair = KEYS.get(alias);
+            return keyPair == null ? null : keyPair.getPrivate();
+        }
+
+        @Override
+        public Certificate[] engineGetCertificateChain(String alias) {
+            Certificate certificate = engineGetCertificate(alias);
+            return certificate == null ? null : new Certificate[]{certificate};
+        }
+
+        @Override
+        public Certificate engineGetCertificate(String alias) {
+            KEY_READS.incrementAndGet();
+            KeyPair keyPair = KEYS.get(alias);
+            return keyPair == null ? null : new PublicKeyCertificate(keyPair.getPublic());
+        }
+
+        @Override
+        public Date engineGetCreationDate(String alias) {
+            return KEYS.containsKey(alias) ? new Date() : null;
+        }
+
+        @Override
+        public void engineSetKeyEntry(String alias, Key key, char[] password,
+                                      Certificate[] chain) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void engineSetKeyEntry(String alias, byte[] key, Certificate[] chain) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void engineSetCertificateEntry(String alias, Certificate cert) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void engineDeleteEntry(String alias) {
+            KEYS.remove(alias);
+        }
+
+        @Override
+        public Enumeration<String> engineAliases() {
+            return Collections.enumeration(KEYS.keySet());
+        }
+
+        @Override
+        public boolean engineContainsAlias(String alias) {
+            return KEYS.containsKey(alias);
+        }
+
+        @Override
+        public int engineSize() {
+            return KEYS.size();
+        }
+
+        @Override
+        public boolean engineIsKeyEntry(String alias) {
+            return KEYS.containsKey(alias);
+        }
+
+        @Override
+        public boolean engineIsCertificateEntry(String alias) {
+            return false;
+        }
+
+        @Override
+        public String engineGetCertificateAlias(Certificate cert) {
+            return null;
+        }
+
+        @Override
+        public void engineStore(OutputStream stream, char[] password) {
+            //NO-OP
+        }
+
+        @Override
+        public void engineLoad(InputStream stream, char[] password) {
+            //NO-OP
+        }
+    }
+
+    // Only carries the public key, which is all the encryption manager reads from it.
+    private static final class PublicKeyCertificate extends Certificate {
+        private final PublicKey mPublicKey;
+
+        PublicKeyCertificate(PublicKey publicKey) {
+            super("X.509");
+            mPublicKey = publicKey;
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            return mPublicKey.getEncoded();
+        }
+
+        @Override
+        public void verify(PublicKey key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void verify(PublicKey key, String sigProvider) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String toString() {
+            return "PublicKeyCertificate[" + mPublicKey.getAlgorithm() + "]";
+        }
+
+        @Override
+        public PublicKey getPublicKey() {
+            return mPublicKey;
+        }
+    }
+}
@@ -52,5 +52,10 @@ public class EncryptedPersistableMock implements Persistable {
             return null;
         }
 
+        @Override
+        public boolean isImmutable() {
+            return true;
+        }
+
     };
 }
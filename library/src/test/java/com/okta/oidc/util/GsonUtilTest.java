@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2020, Okta, Inc. and/or its affiliates. All rights reserved.
+ * The Okta software accompanied by this notice is provided pursuant to the Apache License,
+ * Version 2.0 (the "License.")
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+
+package com.okta.oidc.util;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class GsonUtilTest {
+    @Test
+    public void gsonIsShared() {
+        assertSame(GsonUtil.gson(), GsonUtil.gson());
+    }
+
+    @Test
+    public void readStringReadsPrimitivesAsString() throws IOException {
+        JsonReader reader = reader("[\"value\",3600,true,null]");
+        reader.beginArray();
+        assertEquals("value", GsonUtil.readString(reader));
+        assertEquals("3600", GsonUtil.readString(reader));
+        assertEquals("true", GsonUtil.readString(reader));
+        assertNull(GsonUtil.readString(reader));
+        reader.endArray();
+    }
+
+    @Test
+    public void readNumbers() throws IOException {
+        JsonReader reader = reader("[1583365002,\"50\",null,4102444800000,null]");
+        reader.beginArray();
+        assertEquals(1583365002, GsonUtil.readInt(reader, 0));
+        assertEquals(50, GsonUtil.readInt(reader, 0));
+        assertEquals(-1, GsonUtil.readInt(reader, -1));
+        assertEquals(4102444800000L, GsonUtil.readLong(reader, 0));
+        assertEquals(-1L, GsonUtil.readLong(reader, -1));
+        reader.endArray();
+    }
+
+    @Test
+    public void readInvalidNumber() {
+        assertThrows(JsonSyntaxException.class,
+                () -> GsonUtil.readInt(reader("\"invalid\""), 0));
+        assertThrows(JsonSyntaxException.class,
+                () -> GsonUtil.readLong(reader("1.5"), 0));
+    }
+
+    @Test
+    public void readBoolean() throws IOException {
+        JsonReader reader = reader("[true,\"true\",null]");
+        reader.beginArray();
+        assertTrue(GsonUtil.readBoolean(reader, false));
+        assertTrue(GsonUtil.readBoolean(reader, false));
+        assertFalse(GsonUtil.readBoolean(reader, false));
+        reader.endArray();
+    }
+
+    @Test
+    public void readStringList() throws IOException {
+        assertEquals(Arrays.asList("a", "b"),
+                GsonUtil.readStringList(reader("[\"a\",\"b\"]"), false));
+        assertEquals(Collections.singletonList("a"),
+                GsonUtil.readStringList(reader("\"a\""), true));
+        assertNull(GsonUtil.readStringList(reader("null"), true));
+        assertThrows(IllegalStateException.class,
+                () -> GsonUtil.readStringList(reader("\"a\""), false));
+        assertArrayEquals(new String[]{"a", "b"},
+                GsonUtil.readStringArray(reader("[\"a\",\"b\"]")));
+    }
+
+    @Test
+    public void readStringMapKeepsOrder() throws IOException {
+        Map<String, String> map = GsonUtil.readStringMap(reader("{\"z\":\"1\",\"a\":\"2\"}"));
+        assertEquals(Arrays.asList("z", "a"), Arrays.asList(map.keySet().toArray()));
+        assertEquals("2", map.get("a"));
+    }
+
+    @Test
+    public void writeValues() throws IOException {
+        Map<String, String> map = new LinkedHashMap<>();
+        map.put("z", "1");
+        map.put("a", null);
+        List<String> single = Collections.singletonList("one");
+        StringWriter out = new StringWriter();
+        JsonWriter writer = GsonUtil.gson().newJsonWriter(out);
+        writer.beginObject();
+        writer.name("single");
+        GsonUtil.writeStringList(writer, single, true);
+        writer.name("list");
+        GsonUtil.writeStringList(writer, single, false);
+        writer.name("array");
+        GsonUtil.writeStringArray(writer, new String[]{"a", "b"});
+        writer.name("map");
+        GsonUtil.writeStringMap(writer, map);
+        writer.name("missing");
+        GsonUtil.writeStringArray(writer, null);
+        writer.endObject();
+        assertEquals("{\"single\":\"one\",\"list\":[\"one\"],\"array\":[\"a\",\"b\"],"
+                + "\"map\":{\"z\":\"1\"}}", out.toString());
+    }
+
+    private static JsonReader reader(String json) {
+        return new JsonReader(new StringReader(json));
+    }
+}
@@ -56,6 +56,7 @@ import static com.okta.oidc.util.TestValues.EXCHANGE_CODE;
 import static java.net.HttpURLConnection.HTTP_FORBIDDEN;
 import static java.net.HttpURLConnection.HTTP_MOVED_TEMP;
 import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
 import static java.net.HttpURLConnection.HTTP_OK;
 import static java.net.HttpURLConnection.HTTP_UNAUTHORIZED;
 
@@ -121,6 +122,17 @@ public class MockEndPoint {
         mServer.enqueue(jsonResponse(HTTP_OK, config));
     }
 
+    public void enqueueConfigurationSuccess(String eTag, String cacheControl) {
+        mServer.enqueue(jsonResponse(HTTP_OK, PROVIDER_CONFIG)
+                .addHeader("ETag", eTag)
+                .addHeader("Cache-Control", cacheControl));
+    }
+
+    public void enqueueConfigurationNotModified(String cacheControl) {
+        mServer.enqueue(emptyResponse(HTTP_NOT_MODIFIED)
+                .addHeader("Cache-Control", cacheControl));
+    }
+
     public MockResponse enqueueConfigurationFailure() {
         MockResponse response = jsonResponse(HTTP_NOT_FOUND, CONFIGURATION_NOT_FOUND);
         mServer.enqueue(response);
@@ -117,6 +117,8 @@ public class OkHttp implements OktaHttpClient {
     @WorkerThread
     public InputStream connect(@NonNull Uri uri, @NonNull ConnectionParameters param) throws Exception {
         Request request = buildRequest(uri, param);
+        mException = null;
+        mResponse = null;
         mCall = sOkHttpClient.newCall(request);
         final CountDownLatch latch = new CountDownLatch(1);
         mCall.enqueue(new Callback() {
@@ -51,5 +51,10 @@ public class PersistableMock implements Persistable {
             }
             return null;
         }
+
+        @Override
+        public boolean isImmutable() {
+            return true;
+        }
     };
 }
@@ -286,6 +286,10 @@ public class TestValues {
         return new PersistableMock("data");
     }
 
+    public static PersistableMock getNotEncryptedPersistable(String data) {
+        return new PersistableMock(data);
+    }
+
     public static EncryptedPersistableMock getEncryptedPersistable() {
         return new EncryptedPersistableMock("data");
     }